@@ -11,6 +11,12 @@ public final class Constants {
     public static final String SYSTEM_ACCOUNT = "system";
     public static final String DEFAULT_LANGUAGE = "en";
     public static final String ANONYMOUS_USER = "anonymoususer";
+    // Counterparty of the postings of deposits and withdrawals: money entering or leaving the bank
+    public static final String EXTERNAL_ACCOUNT = "EXTERNAL";
+    // Counterparty of both sides of cross-currency transfers
+    public static final String FX_ACCOUNT = "FX";
+    // Counterparty of the postings of interest credited to accounts
+    public static final String INTEREST_ACCOUNT = "INTEREST";
 
     private Constants() {
     }
@@ -1,14 +1,20 @@
 package com.xbank.config;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.xbank.domain.Transaction;
-import com.xbank.event.TransactionEvent;
+import com.xbank.domain.Account;
 import com.xbank.event.TransactionEventPublisher;
+import com.xbank.event.TransactionNotifications;
+import com.xbank.repository.AccountRepository;
+import com.xbank.security.SecurityUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.web.reactive.HandlerMapping;
 import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.reactive.socket.CloseStatus;
 import org.springframework.web.reactive.socket.WebSocketHandler;
 import org.springframework.web.reactive.socket.WebSocketMessage;
 import org.springframework.web.reactive.socket.WebSocketSession;
@@ -16,18 +22,15 @@ import org.springframework.web.reactive.socket.server.support.WebSocketHandlerAd
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.text.DecimalFormat;
-import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Optional;
 
 @Configuration
 public class WebSocketConfig {
 
-    private static final Map<String, WebSocketSession> userMap = new ConcurrentHashMap<>();
     public static final String WS_EVENTS = "/ws/events";
     @Bean
     HandlerMapping handlerMapping(WebSocketHandler webSocketHandler) {
@@ -42,45 +45,50 @@ public class WebSocketConfig {
         return new WebSocketHandlerAdapter();
     }
 
+    /**
+     * Streams the transaction events of the connected user, who is identified by an {@code access_token} query
+     * parameter or by the principal of the handshake. Sessions are subscribed by owner and accounts, so an event
+     * is only sent to the sessions it concerns, which share one rendering of its notification. Accounts opened
+     * after the session connected are added to it by {@code AccountService}. A user may have any number of
+     * sessions, and each is unsubscribed when it closes. Sessions without a valid user are closed.
+     */
     @Bean
-    WebSocketHandler webSocketHandler(TransactionEventPublisher transactionEventPublisher, ObjectMapper objectMapper) {
-        Flux<TransactionEvent> publish = Flux.create(transactionEventPublisher).share();
-        // Push events that are captured when catalogue item is added or updated
-        return session -> {
-            String query = session.getHandshakeInfo().getUri().getQuery();
-            Map<String, String> queryMap = getQueryMap(query);
-            String userId = queryMap.getOrDefault("id", "");
-            userMap.put(userId, session);
-
-            return publish.map(evt -> {
-                Transaction item = (Transaction) evt.getSource();
-                return item;
-            }).flatMap(tx -> {
-                String transactionAt = tx.getTransactAt().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-                DecimalFormat formatter = new DecimalFormat("###,###,###.##");
-
-                WebSocketMessage textMessage = null;
-                if (tx.getAction() == 1) {
-                    // Tranfer action
-                    textMessage = session.textMessage("Số dư tài khoản " + tx.getAccount() + " - " + formatter.format(tx.getAmount()) + "VNĐ. Chuyển tiền sang tài khoàn " + tx.getToAccount() + " ngày " + transactionAt);
-                } else if (tx.getAction() == 2) {
-                    // withdraw action
-                    textMessage = session.textMessage("Số dư tài khoản " + tx.getAccount() + " - " + formatter.format(tx.getAmount()) + "VNĐ. Rút tiền ngày " + transactionAt);
-                } else if (tx.getAction() == 3) {
-                    // deposit action
-                    textMessage = session.textMessage("Số dư tài khoản " + tx.getAccount() + " + " + formatter.format(tx.getAmount()) + "VNĐ. Nạp tiền ngày " + transactionAt);
-                }
-
-                String targetId = tx.getAccount();
-                if (userMap.containsKey(targetId)) {
-                    WebSocketSession targetSession = userMap.get(targetId);
-                    if (null != targetSession) {
-                        return targetSession.send(Mono.just(textMessage)).doFinally(signal ->  userMap.remove(userId));
+    WebSocketHandler webSocketHandler(TransactionEventPublisher transactionEventPublisher, ObjectProvider<ReactiveJwtDecoder> jwtDecoder,
+                                      AccountRepository accountRepository) {
+        return session -> login(session, jwtDecoder.getIfAvailable())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(login -> {
+                    if (!login.isPresent()) {
+                        return session.close(CloseStatus.POLICY_VIOLATION);
                     }
-                }
-                return session.send(Mono.just(textMessage));
-            }).then();
-        };
+                    return accountRepository.findByOwner(login.get())
+                            .map(Account::getAccount)
+                            .collectList()
+                            .flatMap(accounts -> {
+                                Flux<WebSocketMessage> messages = transactionEventPublisher.subscribe(login.get(), accounts)
+                                        .map(evt -> evt.getNotification(TransactionNotifications.DEFAULT_LOCALE))
+                                        .filter(notification -> notification.length > 0)
+                                        // Wraps the shared bytes, the payload is neither copied nor encoded per session
+                                        .map(notification -> new WebSocketMessage(WebSocketMessage.Type.TEXT,
+                                                session.bufferFactory().wrap(notification)));
+                                // Closing the connection completes the inbound side, which cancels the subscription
+                                return Mono.first(session.send(messages), session.receive().then());
+                            });
+                });
+    }
+
+    // Browsers cannot set headers on a WebSocket handshake, so the token may come as a query parameter
+    private Mono<String> login(WebSocketSession session, ReactiveJwtDecoder jwtDecoder) {
+        String token = getQueryMap(session.getHandshakeInfo().getUri().getQuery()).get("access_token");
+        if (!StringUtils.isEmpty(token) && jwtDecoder != null) {
+            return jwtDecoder.decode(token)
+                    .map(SecurityUtils::getLogin)
+                    .onErrorResume(JwtException.class, e -> Mono.empty());
+        }
+        return session.getHandshakeInfo().getPrincipal()
+                .filter(JwtAuthenticationToken.class::isInstance)
+                .map(principal -> SecurityUtils.getLogin(((JwtAuthenticationToken) principal).getToken()));
     }
 
     private Map<String, String> getQueryMap(String queryStr) {
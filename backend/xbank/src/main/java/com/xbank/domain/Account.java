@@ -1,6 +1,8 @@
 package com.xbank.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -30,6 +32,24 @@ public class Account extends AbstractAuditingEntity implements Serializable {
     @Column(name = "currency")
     private String currency;
 
+    @Version
+    @Column(name = "version")
+    @JsonIgnore
+    private Long version;
+
+    @Column(name = "stripes")
+    @JsonIgnore
+    private int stripes;
+
+    // Annual interest rate in basis points, 0 for accounts that do not earn interest
+    @Column(name = "interest_rate")
+    private int interestRate;
+
+    // Interest accrued but not credited yet, in millionths of a currency unit
+    @Column(name = "accrued_interest")
+    @JsonIgnore
+    private long accruedInterest;
+
     public Long getId() {
         return id;
     }
@@ -77,4 +97,36 @@ public class Account extends AbstractAuditingEntity implements Serializable {
     public void setCurrency(String currency) {
         this.currency = currency;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
+    public int getInterestRate() {
+        return interestRate;
+    }
+
+    public void setInterestRate(int interestRate) {
+        this.interestRate = interestRate;
+    }
+
+    public long getAccruedInterest() {
+        return accruedInterest;
+    }
+
+    public void setAccruedInterest(long accruedInterest) {
+        this.accruedInterest = accruedInterest;
+    }
 }
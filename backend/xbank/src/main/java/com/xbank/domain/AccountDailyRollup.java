@@ -0,0 +1,121 @@
+package com.xbank.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * The successful transactions of an account on one day: how many, how much went out and in, and the balance
+ * the day closed with.
+ */
+@Entity(name = "account_daily_rollup")
+public class AccountDailyRollup implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Column(name = "account")
+    private String account;
+
+    @Column(name = "rollup_date")
+    private LocalDate rollupDate;
+
+    @Column(name = "transaction_count")
+    private long transactionCount;
+
+    @Column(name = "debit_sum")
+    private BigDecimal debitSum = BigDecimal.ZERO;
+
+    @Column(name = "credit_sum")
+    private BigDecimal creditSum = BigDecimal.ZERO;
+
+    @Column(name = "closing_balance")
+    private BigDecimal closingBalance;
+
+    @Column(name = "updated_date")
+    private LocalDateTime updatedDate;
+
+    public AccountDailyRollup() {
+    }
+
+    public AccountDailyRollup(String account, LocalDate rollupDate) {
+        this.account = account;
+        this.rollupDate = rollupDate;
+    }
+
+    /**
+     * Add one transaction debiting {@code debit} and crediting {@code credit} to this day.
+     */
+    public void add(BigDecimal debit, BigDecimal credit) {
+        transactionCount++;
+        debitSum = debitSum.add(debit);
+        creditSum = creditSum.add(credit);
+    }
+
+    /**
+     * Add the totals of {@code other}, a rollup of the same account and day.
+     */
+    public void merge(AccountDailyRollup other) {
+        transactionCount += other.transactionCount;
+        debitSum = debitSum.add(other.debitSum);
+        creditSum = creditSum.add(other.creditSum);
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public LocalDate getRollupDate() {
+        return rollupDate;
+    }
+
+    public void setRollupDate(LocalDate rollupDate) {
+        this.rollupDate = rollupDate;
+    }
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    public void setTransactionCount(long transactionCount) {
+        this.transactionCount = transactionCount;
+    }
+
+    public BigDecimal getDebitSum() {
+        return debitSum;
+    }
+
+    public void setDebitSum(BigDecimal debitSum) {
+        this.debitSum = debitSum;
+    }
+
+    public BigDecimal getCreditSum() {
+        return creditSum;
+    }
+
+    public void setCreditSum(BigDecimal creditSum) {
+        this.creditSum = creditSum;
+    }
+
+    public BigDecimal getClosingBalance() {
+        return closingBalance;
+    }
+
+    public void setClosingBalance(BigDecimal closingBalance) {
+        this.closingBalance = closingBalance;
+    }
+
+    public LocalDateTime getUpdatedDate() {
+        return updatedDate;
+    }
+
+    public void setUpdatedDate(LocalDateTime updatedDate) {
+        this.updatedDate = updatedDate;
+    }
+}
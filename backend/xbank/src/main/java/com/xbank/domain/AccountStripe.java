@@ -0,0 +1,71 @@
+package com.xbank.domain;
+
+import org.springframework.data.annotation.Id;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * One of the sub-balances of a striped {@link Account}. Credits land on a random stripe and are
+ * periodically folded into the account balance.
+ */
+@Entity(name = "account_stripe")
+public class AccountStripe implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private Long id;
+
+    @Column(name = "account")
+    private String account;
+
+    @Column(name = "stripe")
+    private int stripe;
+
+    @Column(name = "balance")
+    private BigDecimal balance;
+
+    public AccountStripe() {
+    }
+
+    public AccountStripe(String account, int stripe) {
+        this.account = account;
+        this.stripe = stripe;
+        this.balance = BigDecimal.ZERO;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public int getStripe() {
+        return stripe;
+    }
+
+    public void setStripe(int stripe) {
+        this.stripe = stripe;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+}
@@ -0,0 +1,70 @@
+package com.xbank.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The balance of an account once every journal entry up to {@code seq} is applied.
+ */
+@Entity(name = "balance_snapshot")
+public class BalanceSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Column(name = "account")
+    private String account;
+
+    @Column(name = "seq")
+    private long seq;
+
+    @Column(name = "balance")
+    private BigDecimal balance;
+
+    @Column(name = "taken_at")
+    private LocalDateTime takenAt;
+
+    public BalanceSnapshot() {
+    }
+
+    public BalanceSnapshot(String account, long seq, BigDecimal balance, LocalDateTime takenAt) {
+        this.account = account;
+        this.seq = seq;
+        this.balance = balance;
+        this.takenAt = takenAt;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+
+    public LocalDateTime getTakenAt() {
+        return takenAt;
+    }
+
+    public void setTakenAt(LocalDateTime takenAt) {
+        this.takenAt = takenAt;
+    }
+}
@@ -0,0 +1,69 @@
+package com.xbank.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Units of {@code quoteCurrency} for one unit of {@code baseCurrency}.
+ */
+@Entity(name = "fx_rate")
+public class FxRate implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Column(name = "base_currency")
+    private String baseCurrency;
+
+    @Column(name = "quote_currency")
+    private String quoteCurrency;
+
+    @Column(name = "rate")
+    private BigDecimal rate;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public FxRate() {
+    }
+
+    public FxRate(String baseCurrency, String quoteCurrency, BigDecimal rate) {
+        this.baseCurrency = baseCurrency;
+        this.quoteCurrency = quoteCurrency;
+        this.rate = rate;
+    }
+
+    public String getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    public void setBaseCurrency(String baseCurrency) {
+        this.baseCurrency = baseCurrency;
+    }
+
+    public String getQuoteCurrency() {
+        return quoteCurrency;
+    }
+
+    public void setQuoteCurrency(String quoteCurrency) {
+        this.quoteCurrency = quoteCurrency;
+    }
+
+    public BigDecimal getRate() {
+        return rate;
+    }
+
+    public void setRate(BigDecimal rate) {
+        this.rate = rate;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
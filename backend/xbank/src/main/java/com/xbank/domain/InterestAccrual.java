@@ -0,0 +1,88 @@
+package com.xbank.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the interest accrual of one day: accounts up to {@code lastAccountId} are done. A run that did not
+ * finish resumes after it.
+ */
+@Entity(name = "interest_accrual")
+public class InterestAccrual implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Column(name = "accrual_date")
+    private LocalDate accrualDate;
+
+    @Column(name = "last_account_id")
+    private long lastAccountId;
+
+    @Column(name = "accounts")
+    private long accounts;
+
+    @Column(name = "credited")
+    private BigDecimal credited;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public LocalDate getAccrualDate() {
+        return accrualDate;
+    }
+
+    public void setAccrualDate(LocalDate accrualDate) {
+        this.accrualDate = accrualDate;
+    }
+
+    public long getLastAccountId() {
+        return lastAccountId;
+    }
+
+    public void setLastAccountId(long lastAccountId) {
+        this.lastAccountId = lastAccountId;
+    }
+
+    public long getAccounts() {
+        return accounts;
+    }
+
+    public void setAccounts(long accounts) {
+        this.accounts = accounts;
+    }
+
+    public BigDecimal getCredited() {
+        return credited;
+    }
+
+    public void setCredited(BigDecimal credited) {
+        this.credited = credited;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+}
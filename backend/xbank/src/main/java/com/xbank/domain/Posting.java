@@ -0,0 +1,170 @@
+package com.xbank.domain;
+
+import com.xbank.config.Constants;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import org.springframework.data.annotation.Id;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One leg of a double-entry booking: a debit (negative amount) or a credit (positive amount) of an account.
+ * <p>
+ * The legs of one operation share an {@code entryId} and sum to zero per currency. Deposits and withdrawals
+ * are booked against {@link Constants#EXTERNAL_ACCOUNT}, and cross-currency transfers go through
+ * {@link Constants#FX_ACCOUNT}, which sells one currency and buys the other.
+ */
+@Entity(name = "posting")
+public class Posting implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private Long id;
+
+    @Column(name = "entry_id")
+    private String entryId;
+
+    @Column(name = "account")
+    private String account;
+
+    @Column(name = "counter_account")
+    private String counterAccount;
+
+    @Column(name = "amount")
+    private BigDecimal amount;
+
+    @Column(name = "currency")
+    private String currency;
+
+    @Column(name = "posted_at")
+    private LocalDateTime postedAt;
+
+    public Posting() {
+    }
+
+    public Posting(String entryId, String account, String counterAccount, BigDecimal amount, String currency, LocalDateTime postedAt) {
+        this.entryId = entryId;
+        this.account = account;
+        this.counterAccount = counterAccount;
+        this.amount = amount;
+        this.currency = currency;
+        this.postedAt = postedAt;
+    }
+
+    /**
+     * The debit and credit legs of a transfer ({@code action} 1), withdrawal (2) or deposit (3): two legs, or
+     * four for a cross-currency transfer.
+     */
+    public static List<Posting> legsOf(Transaction transaction) {
+        String from;
+        String to;
+        switch (transaction.getAction()) {
+            case 1:
+                from = transaction.getAccount();
+                to = transaction.getToAccount();
+                break;
+            case 2:
+                from = transaction.getAccount();
+                to = Constants.EXTERNAL_ACCOUNT;
+                break;
+            default:
+                from = Constants.EXTERNAL_ACCOUNT;
+                to = transaction.getAccount();
+        }
+        String entryId = UUID.randomUUID().toString();
+        BigDecimal amount = transaction.getAmount();
+        LocalDateTime postedAt = transaction.getTransactAt();
+        if (transaction.getToCurrency() == null || transaction.getToCurrency().equals(transaction.getCurrency())) {
+            return legs(entryId, from, to, amount, transaction.getCurrency(), postedAt);
+        }
+        BigDecimal credited = transaction.creditAmount();
+        return Arrays.asList(
+                new Posting(entryId, from, Constants.FX_ACCOUNT, amount.negate(), transaction.getCurrency(), postedAt),
+                new Posting(entryId, Constants.FX_ACCOUNT, from, amount, transaction.getCurrency(), postedAt),
+                new Posting(entryId, Constants.FX_ACCOUNT, to, credited.negate(), transaction.getToCurrency(), postedAt),
+                new Posting(entryId, to, Constants.FX_ACCOUNT, credited, transaction.getToCurrency(), postedAt));
+    }
+
+    /**
+     * The two legs of moving {@code amount} from {@code from} to {@code to} in one currency.
+     */
+    public static List<Posting> legs(String entryId, String from, String to, BigDecimal amount, String currency,
+                                     LocalDateTime postedAt) {
+        return Arrays.asList(
+                new Posting(entryId, from, to, amount.negate(), currency, postedAt),
+                new Posting(entryId, to, from, amount, currency, postedAt));
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getEntryId() {
+        return entryId;
+    }
+
+    public void setEntryId(String entryId) {
+        this.entryId = entryId;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public String getCounterAccount() {
+        return counterAccount;
+    }
+
+    public void setCounterAccount(String counterAccount) {
+        this.counterAccount = counterAccount;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public LocalDateTime getPostedAt() {
+        return postedAt;
+    }
+
+    public void setPostedAt(LocalDateTime postedAt) {
+        this.postedAt = postedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "Posting{" +
+            "entryId='" + entryId + '\'' +
+            ", account='" + account + '\'' +
+            ", counterAccount='" + counterAccount + '\'' +
+            ", amount=" + amount +
+            ", postedAt=" + postedAt +
+            '}';
+    }
+}
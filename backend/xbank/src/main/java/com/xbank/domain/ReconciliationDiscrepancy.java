@@ -0,0 +1,88 @@
+package com.xbank.domain;
+
+import org.springframework.data.annotation.Id;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * An account whose balance, stripes included, is not the sum of its postings.
+ */
+@Entity(name = "reconciliation_discrepancy")
+public class ReconciliationDiscrepancy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private Long id;
+
+    @Column(name = "run_id")
+    private Long runId;
+
+    @Column(name = "account")
+    private String account;
+
+    @Column(name = "balance")
+    private BigDecimal balance;
+
+    @Column(name = "posted")
+    private BigDecimal posted;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getRunId() {
+        return runId;
+    }
+
+    public void setRunId(Long runId) {
+        this.runId = runId;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+
+    public BigDecimal getPosted() {
+        return posted;
+    }
+
+    public void setPosted(BigDecimal posted) {
+        this.posted = posted;
+    }
+
+    /**
+     * @return how much the balance is above the sum of the postings.
+     */
+    public BigDecimal getDifference() {
+        return balance.subtract(posted);
+    }
+
+    @Override
+    public String toString() {
+        return "ReconciliationDiscrepancy{" +
+            "account='" + account + '\'' +
+            ", balance=" + balance +
+            ", posted=" + posted +
+            '}';
+    }
+}
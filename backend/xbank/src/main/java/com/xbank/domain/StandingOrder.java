@@ -0,0 +1,227 @@
+package com.xbank.domain;
+
+import org.springframework.data.annotation.Id;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A transfer of a fixed amount from {@code account} to {@code toAccount}, repeated every period from
+ * {@code startDate} until {@code endDate}.
+ * <p>
+ * {@code nextRun} is the date of the next period to execute and {@code runs} the number of periods executed
+ * so far. {@code bucket} is derived from the source account and decides which scheduler partition executes
+ * the order.
+ */
+@Entity(name = "standing_order")
+public class StandingOrder implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of buckets orders are hashed into; scheduler partitions take the buckets equal to their index
+     * modulo the number of partitions.
+     */
+    public static final int BUCKETS = 1024;
+
+    public enum Frequency {
+        DAILY, WEEKLY, MONTHLY;
+
+        /**
+         * The date of period {@code n} of an order starting on {@code start}, period 0 being the start date.
+         * Monthly orders keep their day of month, clamped to the length of shorter months.
+         */
+        public LocalDate period(LocalDate start, int n) {
+            switch (this) {
+                case DAILY:
+                    return start.plusDays(n);
+                case WEEKLY:
+                    return start.plusWeeks(n);
+                default:
+                    return start.plusMonths(n);
+            }
+        }
+    }
+
+    @Id
+    private Long id;
+
+    @Column(name = "owner")
+    private String owner;
+
+    @Column(name = "account")
+    private String account;
+
+    @Column(name = "to_account")
+    private String toAccount;
+
+    @Column(name = "amount")
+    private BigDecimal amount;
+
+    @Column(name = "note")
+    private String note;
+
+    @Column(name = "frequency")
+    private Frequency frequency;
+
+    @Column(name = "start_date")
+    private LocalDate startDate;
+
+    @Column(name = "end_date")
+    private LocalDate endDate;
+
+    @Column(name = "next_run")
+    private LocalDate nextRun;
+
+    @Column(name = "runs")
+    private int runs;
+
+    @Column(name = "bucket")
+    private int bucket;
+
+    @Column(name = "active")
+    private boolean active;
+
+    @Column(name = "created_date")
+    private LocalDateTime createdDate;
+
+    public static int bucketOf(String account) {
+        return Math.floorMod(account.hashCode(), BUCKETS);
+    }
+
+    /**
+     * @return the date of the period after the one due now, or null if the order ends before it.
+     */
+    public LocalDate followingRun() {
+        LocalDate following = frequency.period(startDate, runs + 1);
+        return endDate != null && following.isAfter(endDate) ? null : following;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public String getToAccount() {
+        return toAccount;
+    }
+
+    public void setToAccount(String toAccount) {
+        this.toAccount = toAccount;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getNote() {
+        return note;
+    }
+
+    public void setNote(String note) {
+        this.note = note;
+    }
+
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    public void setFrequency(Frequency frequency) {
+        this.frequency = frequency;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(LocalDate endDate) {
+        this.endDate = endDate;
+    }
+
+    public LocalDate getNextRun() {
+        return nextRun;
+    }
+
+    public void setNextRun(LocalDate nextRun) {
+        this.nextRun = nextRun;
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    public void setRuns(int runs) {
+        this.runs = runs;
+    }
+
+    public int getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(int bucket) {
+        this.bucket = bucket;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+
+    public LocalDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(LocalDateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    @Override
+    public String toString() {
+        return "StandingOrder{" +
+            "id=" + id +
+            ", account='" + account + '\'' +
+            ", toAccount='" + toAccount + '\'' +
+            ", amount=" + amount +
+            ", frequency=" + frequency +
+            ", nextRun=" + nextRun +
+            '}';
+    }
+}
@@ -0,0 +1,83 @@
+package com.xbank.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * The execution of one period of a {@link StandingOrder}: {@code result} 1 if the transfer was booked, 0 with
+ * the reason in {@code error} if it was rejected. There is at most one per order and {@code runDate}.
+ */
+@Entity(name = "standing_order_run")
+public class StandingOrderRun implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "run_date")
+    private LocalDate runDate;
+
+    @Column(name = "result")
+    private int result;
+
+    @Column(name = "error")
+    private String error;
+
+    @Column(name = "executed_at")
+    private LocalDateTime executedAt;
+
+    public StandingOrderRun() {
+    }
+
+    public StandingOrderRun(Long orderId, LocalDate runDate, String error, LocalDateTime executedAt) {
+        this.orderId = orderId;
+        this.runDate = runDate;
+        this.result = error == null ? 1 : 0;
+        this.error = error;
+        this.executedAt = executedAt;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+
+    public LocalDate getRunDate() {
+        return runDate;
+    }
+
+    public void setRunDate(LocalDate runDate) {
+        this.runDate = runDate;
+    }
+
+    public int getResult() {
+        return result;
+    }
+
+    public void setResult(int result) {
+        this.result = result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public LocalDateTime getExecutedAt() {
+        return executedAt;
+    }
+
+    public void setExecutedAt(LocalDateTime executedAt) {
+        this.executedAt = executedAt;
+    }
+}
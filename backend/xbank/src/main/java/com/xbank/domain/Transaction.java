@@ -34,6 +34,13 @@ public class Transaction extends AbstractAuditingEntity implements Serializable
     @Column(name = "currency")
     private String currency;
 
+    // Amount and currency credited to toAccount, when they differ from the debited ones
+    @Column(name = "to_amount")
+    private BigDecimal toAmount;
+
+    @Column(name = "to_currency")
+    private String toCurrency;
+
     @Column(name = "note")
     private String note;
 
@@ -102,6 +109,36 @@ public class Transaction extends AbstractAuditingEntity implements Serializable
         this.currency = currency;
     }
 
+    public BigDecimal getToAmount() {
+        return toAmount;
+    }
+
+    public void setToAmount(BigDecimal toAmount) {
+        this.toAmount = toAmount;
+    }
+
+    public String getToCurrency() {
+        return toCurrency;
+    }
+
+    public void setToCurrency(String toCurrency) {
+        this.toCurrency = toCurrency;
+    }
+
+    /**
+     * @return the amount credited to {@code toAccount}: {@code toAmount} for a cross-currency transfer, else {@code amount}.
+     */
+    public BigDecimal creditAmount() {
+        return toAmount != null ? toAmount : amount;
+    }
+
+    /**
+     * @return the currency of {@link #creditAmount()}.
+     */
+    public String creditCurrency() {
+        return toCurrency != null ? toCurrency : currency;
+    }
+
     public String getNote() {
         return note;
     }
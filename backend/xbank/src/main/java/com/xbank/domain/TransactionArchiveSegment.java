@@ -0,0 +1,105 @@
+package com.xbank.domain;
+
+import org.springframework.data.annotation.Id;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * A file of archived transactions, with the range of ids and {@code transact_at} it holds.
+ */
+@Entity(name = "transaction_archive_segment")
+public class TransactionArchiveSegment implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private Long id;
+
+    @Column(name = "file_name")
+    private String fileName;
+
+    @Column(name = "row_count")
+    private long rowCount;
+
+    @Column(name = "first_id")
+    private long firstId;
+
+    @Column(name = "last_id")
+    private long lastId;
+
+    @Column(name = "min_transact_at")
+    private LocalDateTime minTransactAt;
+
+    @Column(name = "max_transact_at")
+    private LocalDateTime maxTransactAt;
+
+    @Column(name = "created_date")
+    private LocalDateTime createdDate;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    public long getFirstId() {
+        return firstId;
+    }
+
+    public void setFirstId(long firstId) {
+        this.firstId = firstId;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(long lastId) {
+        this.lastId = lastId;
+    }
+
+    public LocalDateTime getMinTransactAt() {
+        return minTransactAt;
+    }
+
+    public void setMinTransactAt(LocalDateTime minTransactAt) {
+        this.minTransactAt = minTransactAt;
+    }
+
+    public LocalDateTime getMaxTransactAt() {
+        return maxTransactAt;
+    }
+
+    public void setMaxTransactAt(LocalDateTime maxTransactAt) {
+        this.maxTransactAt = maxTransactAt;
+    }
+
+    public LocalDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(LocalDateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+}
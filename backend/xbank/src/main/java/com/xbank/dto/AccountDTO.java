@@ -1,5 +1,7 @@
 package com.xbank.dto;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import java.math.BigDecimal;
 
@@ -15,6 +17,14 @@ public class AccountDTO {
 
     private BigDecimal balance;
 
+    // ISO 4217 code, the base currency if not set
+    private String currency;
+
+    // Annual interest rate in basis points
+    @Min(0)
+    @Max(10000)
+    private int interestRate;
+
     public String getAccount() {
         return account;
     }
@@ -38,4 +48,20 @@ public class AccountDTO {
     public void setBalance(BigDecimal balance) {
         this.balance = balance;
     }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public int getInterestRate() {
+        return interestRate;
+    }
+
+    public void setInterestRate(int interestRate) {
+        this.interestRate = interestRate;
+    }
 }
@@ -0,0 +1,92 @@
+package com.xbank.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * A DTO representing the totals of the transactions of an account over a range of days
+ */
+public class AccountSummaryDTO {
+
+    private String account;
+
+    private LocalDate from;
+
+    private LocalDate to;
+
+    private long transactionCount;
+
+    private BigDecimal debitSum = BigDecimal.ZERO;
+
+    private BigDecimal creditSum = BigDecimal.ZERO;
+
+    private BigDecimal closingBalance;
+
+    public AccountSummaryDTO() {
+    }
+
+    public AccountSummaryDTO(String account, LocalDate from, LocalDate to) {
+        this.account = account;
+        this.from = from;
+        this.to = to;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    public void setTransactionCount(long transactionCount) {
+        this.transactionCount = transactionCount;
+    }
+
+    public BigDecimal getDebitSum() {
+        return debitSum;
+    }
+
+    public void setDebitSum(BigDecimal debitSum) {
+        this.debitSum = debitSum;
+    }
+
+    public BigDecimal getCreditSum() {
+        return creditSum;
+    }
+
+    public void setCreditSum(BigDecimal creditSum) {
+        this.creditSum = creditSum;
+    }
+
+    /**
+     * @return the balance at the end of the last day of the range with transactions, or null if there is none.
+     */
+    public BigDecimal getClosingBalance() {
+        return closingBalance;
+    }
+
+    public void setClosingBalance(BigDecimal closingBalance) {
+        this.closingBalance = closingBalance;
+    }
+}
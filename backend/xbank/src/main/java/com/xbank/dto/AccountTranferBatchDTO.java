@@ -0,0 +1,27 @@
+package com.xbank.dto;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * A DTO holding a batch of balance transfers
+ */
+public class AccountTranferBatchDTO {
+
+    public static final int MAX_ITEMS = 1000;
+
+    @Valid
+    @NotEmpty
+    @Size(max = MAX_ITEMS)
+    private List<AccountTranferDTO> items;
+
+    public List<AccountTranferDTO> getItems() {
+        return items;
+    }
+
+    public void setItems(List<AccountTranferDTO> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,49 @@
+package com.xbank.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * A DTO representing the balance of an account at a point in time
+ */
+public class BalanceDTO {
+
+    private String account;
+
+    private BigDecimal balance;
+
+    private Instant at;
+
+    public BalanceDTO() {
+    }
+
+    public BalanceDTO(String account, BigDecimal balance, Instant at) {
+        this.account = account;
+        this.balance = balance;
+        this.at = at;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+
+    public Instant getAt() {
+        return at;
+    }
+
+    public void setAt(Instant at) {
+        this.at = at;
+    }
+}
@@ -0,0 +1,80 @@
+package com.xbank.dto;
+
+import com.xbank.rest.errors.BadRequestAlertException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a listing ordered by ({@code at}, {@code id}), handed to clients as an opaque {@code after} token.
+ * <p>
+ * The next page starts right after the row the cursor was taken from, which the database finds with an index
+ * seek whatever the depth of the page. Listings ordered by id alone leave {@code at} unset.
+ */
+public final class PageCursor {
+
+    public static final int DEFAULT_SIZE = 20;
+
+    public static final int MAX_SIZE = 100;
+
+    // Sorts after every row, so that the first page of a newest-first listing needs no special case
+    private static final PageCursor FIRST_NEWEST = new PageCursor(LocalDateTime.of(9999, 12, 31, 0, 0), Long.MAX_VALUE);
+
+    private final LocalDateTime at;
+
+    private final long id;
+
+    public PageCursor(LocalDateTime at, long id) {
+        this.at = at;
+        this.id = id;
+    }
+
+    /**
+     * @return the cursor of {@code token}, or the cursor before the newest row if {@code token} is empty.
+     * @throws BadRequestAlertException if {@code token} was not issued by {@link #encode()}.
+     */
+    public static PageCursor decodeNewestFirst(String token) {
+        return token == null || token.isEmpty() ? FIRST_NEWEST : decode(token);
+    }
+
+    /**
+     * @return the cursor of {@code token}, or the cursor before the lowest id if {@code token} is empty.
+     * @throws BadRequestAlertException if {@code token} was not issued by {@link #encode()}.
+     */
+    public static PageCursor decodeById(String token) {
+        return token == null || token.isEmpty() ? new PageCursor(null, 0) : decode(token);
+    }
+
+    /**
+     * @return {@code size} within 1 and {@link #MAX_SIZE}, {@link #DEFAULT_SIZE} if it is not set.
+     */
+    public static int limit(Integer size) {
+        return size == null ? DEFAULT_SIZE : Math.max(1, Math.min(MAX_SIZE, size));
+    }
+
+    public String encode() {
+        String value = (at != null ? at.toString() : "") + '|' + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getAt() {
+        return at;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    private static PageCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.indexOf('|');
+            String at = value.substring(0, separator);
+            return new PageCursor(at.isEmpty() ? null : LocalDateTime.parse(at), Long.parseLong(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new BadRequestAlertException("Invalid page cursor", "PageCursor", "cursor");
+        }
+    }
+}
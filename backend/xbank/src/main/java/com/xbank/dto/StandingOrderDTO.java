@@ -0,0 +1,90 @@
+package com.xbank.dto;
+
+import com.xbank.domain.StandingOrder;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * A DTO creating a standing order
+ */
+public class StandingOrderDTO {
+
+    @NotBlank
+    private String account;
+
+    @NotBlank
+    private String toAccount;
+
+    @NotNull
+    private BigDecimal amount;
+
+    private String note;
+
+    @NotNull
+    private StandingOrder.Frequency frequency;
+
+    // Date of the first transfer, today if not set
+    private LocalDate startDate;
+
+    // Date after which no more transfers are made, never ends if not set
+    private LocalDate endDate;
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public String getToAccount() {
+        return toAccount;
+    }
+
+    public void setToAccount(String toAccount) {
+        this.toAccount = toAccount;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getNote() {
+        return note;
+    }
+
+    public void setNote(String note) {
+        this.note = note;
+    }
+
+    public StandingOrder.Frequency getFrequency() {
+        return frequency;
+    }
+
+    public void setFrequency(StandingOrder.Frequency frequency) {
+        this.frequency = frequency;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(LocalDate endDate) {
+        this.endDate = endDate;
+    }
+}
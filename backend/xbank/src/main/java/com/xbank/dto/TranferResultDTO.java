@@ -0,0 +1,68 @@
+package com.xbank.dto;
+
+/**
+ * A DTO representing the outcome of one item of a transfer batch
+ */
+public class TranferResultDTO {
+
+    private int index;
+
+    private String account;
+
+    private String toAccount;
+
+    private boolean success;
+
+    private String error;
+
+    public TranferResultDTO() {
+    }
+
+    public TranferResultDTO(int index, AccountTranferDTO item, String error) {
+        this.index = index;
+        this.account = item.getAccount();
+        this.toAccount = item.getToAccount();
+        this.success = error == null;
+        this.error = error;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public String getToAccount() {
+        return toAccount;
+    }
+
+    public void setToAccount(String toAccount) {
+        this.toAccount = toAccount;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,270 @@
+package com.xbank.event;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * In-process multicast of events to any number of subscribers, without blocking the publisher.
+ * <p>
+ * {@link #publish} hands the event to the buffer of every subscriber on the calling thread and returns; each
+ * subscriber drains its own buffer at the pace it requests. A buffer holds at most {@code bufferSize} events,
+ * and what happens to a subscriber that falls further behind is up to the {@link OverflowPolicy}: one slow
+ * subscriber never holds up the others or grows memory without bound.
+ * <p>
+ * A subscriber either takes every event, or only the events with one of its routing keys. Keyed subscribers are
+ * indexed by key, so publishing an event costs one hand-off per recipient, however many subscribers there are.
+ * Keys can be added to the current subscribers to a key with {@link #addKey}.
+ * <p>
+ * Published as {@code xbank.events.*}, tagged with the bus name: {@code published}, {@code dropped},
+ * {@code subscribers}, {@code queue.depth} (events buffered over all subscribers), {@code queue.max-depth} (of
+ * the furthest behind subscriber) and {@code lag} (time from publish to delivery).
+ */
+public class EventBus<T> {
+
+    /**
+     * What to do with an event for a subscriber whose buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Drop the oldest buffered event to make room. */
+        DROP_OLDEST(BufferOverflowStrategy.DROP_OLDEST),
+        /** Drop the new event. */
+        DROP_LATEST(BufferOverflowStrategy.DROP_LATEST),
+        /** Terminate the subscriber with an overflow error. */
+        ERROR(BufferOverflowStrategy.ERROR);
+
+        private final BufferOverflowStrategy strategy;
+
+        OverflowPolicy(BufferOverflowStrategy strategy) {
+            this.strategy = strategy;
+        }
+    }
+
+    private final Function<T, Collection<String>> routingKeys;
+
+    private final int bufferSize;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final Set<Subscriber<T>> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final Set<Subscriber<T>> everyEvent = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentMap<String, Set<Subscriber<T>>> byKey = new ConcurrentHashMap<>();
+
+    private final Counter published;
+
+    private final Counter dropped;
+
+    private final Timer lag;
+
+    /**
+     * @param routingKeys the keys of an event, to find its keyed subscribers.
+     */
+    public EventBus(String name, MeterRegistry meterRegistry, int bufferSize, OverflowPolicy overflowPolicy,
+                    Function<T, Collection<String>> routingKeys) {
+        this.routingKeys = routingKeys;
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = overflowPolicy;
+        this.published = Counter.builder("xbank.events.published")
+                .description("Events published")
+                .tag("bus", name)
+                .register(meterRegistry);
+        this.dropped = Counter.builder("xbank.events.dropped")
+                .description("Events dropped for subscribers that fell behind")
+                .tag("bus", name)
+                .register(meterRegistry);
+        this.lag = Timer.builder("xbank.events.lag")
+                .description("Time from publishing an event to delivering it to a subscriber")
+                .tag("bus", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("xbank.events.subscribers", subscribers, Set::size)
+                .description("Current subscribers")
+                .tag("bus", name)
+                .register(meterRegistry);
+        Gauge.builder("xbank.events.queue.depth", this, bus -> bus.depth(false))
+                .description("Events buffered for all subscribers")
+                .tag("bus", name)
+                .register(meterRegistry);
+        Gauge.builder("xbank.events.queue.max-depth", this, bus -> bus.depth(true))
+                .description("Events buffered for the subscriber furthest behind")
+                .tag("bus", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Hand {@code event} to the subscribers to every event and to the subscribers to one of its keys.
+     */
+    public void publish(T event) {
+        published.increment();
+        Envelope<T> envelope = new Envelope<>(event, System.nanoTime());
+        for (Subscriber<T> subscriber : everyEvent) {
+            subscriber.offer(envelope);
+        }
+        Collection<String> keys = routingKeys.apply(event);
+        // A subscriber to several keys of the event gets it once
+        Set<Subscriber<T>> offered = keys.size() > 1 ? new HashSet<>() : null;
+        for (String key : keys) {
+            Set<Subscriber<T>> subscribed = byKey.get(key);
+            if (subscribed == null) {
+                continue;
+            }
+            for (Subscriber<T> subscriber : subscribed) {
+                if (offered == null || offered.add(subscriber)) {
+                    subscriber.offer(envelope);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return every event published from the time of subscription on, buffered for this subscriber alone.
+     */
+    public Flux<T> subscribe() {
+        return subscribe(null);
+    }
+
+    /**
+     * @return the events with one of {@code keys} published from the time of subscription on, buffered for this
+     * subscriber alone.
+     */
+    public Flux<T> subscribe(Collection<String> keys) {
+        return Flux.defer(() -> {
+            Subscriber<T> subscriber = new Subscriber<>(keys);
+            return Flux.<Envelope<T>>create(sink -> {
+                subscriber.sink = sink;
+                sink.onDispose(() -> remove(subscriber));
+                add(subscriber);
+            })
+                    .onBackpressureBuffer(bufferSize, overflow -> {
+                        subscriber.depth.decrementAndGet();
+                        dropped.increment();
+                    }, overflowPolicy.strategy)
+                    .map(envelope -> {
+                        subscriber.depth.decrementAndGet();
+                        lag.record(System.nanoTime() - envelope.publishedAt, TimeUnit.NANOSECONDS);
+                        return envelope.event;
+                    });
+        });
+    }
+
+    /**
+     * Give the events with {@code key} to the current subscribers to {@code subscribedKey} as well.
+     */
+    public void addKey(String subscribedKey, String key) {
+        Set<Subscriber<T>> subscribed = byKey.get(subscribedKey);
+        if (subscribed == null) {
+            return;
+        }
+        for (Subscriber<T> subscriber : subscribed) {
+            if (subscriber.keys.add(key)) {
+                index(subscriber, key);
+                // Removed meanwhile, it may have missed the new key
+                if (subscriber.removed) {
+                    unindex(subscriber, key);
+                }
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void add(Subscriber<T> subscriber) {
+        subscribers.add(subscriber);
+        if (subscriber.keys == null) {
+            everyEvent.add(subscriber);
+            return;
+        }
+        for (String key : subscriber.keys) {
+            index(subscriber, key);
+        }
+    }
+
+    private void remove(Subscriber<T> subscriber) {
+        subscriber.removed = true;
+        subscribers.remove(subscriber);
+        if (subscriber.keys == null) {
+            everyEvent.remove(subscriber);
+            return;
+        }
+        for (String key : subscriber.keys) {
+            unindex(subscriber, key);
+        }
+    }
+
+    private void index(Subscriber<T> subscriber, String key) {
+        byKey.compute(key, (k, subscribed) -> {
+            Set<Subscriber<T>> set = subscribed != null ? subscribed : ConcurrentHashMap.newKeySet();
+            set.add(subscriber);
+            return set;
+        });
+    }
+
+    private void unindex(Subscriber<T> subscriber, String key) {
+        byKey.computeIfPresent(key, (k, subscribed) -> {
+            subscribed.remove(subscriber);
+            return subscribed.isEmpty() ? null : subscribed;
+        });
+    }
+
+    private double depth(boolean max) {
+        int depth = 0;
+        for (Subscriber<T> subscriber : subscribers) {
+            depth = max ? Math.max(depth, subscriber.depth.get()) : depth + subscriber.depth.get();
+        }
+        return depth;
+    }
+
+    private static final class Subscriber<T> {
+
+        private final Set<String> keys;
+
+        private final AtomicInteger depth = new AtomicInteger();
+
+        private volatile FluxSink<Envelope<T>> sink;
+
+        private volatile boolean removed;
+
+        private Subscriber(Collection<String> keys) {
+            if (keys != null) {
+                this.keys = ConcurrentHashMap.newKeySet();
+                this.keys.addAll(keys);
+            } else {
+                this.keys = null;
+            }
+        }
+
+        private void offer(Envelope<T> envelope) {
+            depth.incrementAndGet();
+            sink.next(envelope);
+        }
+    }
+
+    private static final class Envelope<T> {
+
+        private final T event;
+
+        private final long publishedAt;
+
+        private Envelope(T event, long publishedAt) {
+            this.event = event;
+            this.publishedAt = publishedAt;
+        }
+    }
+}
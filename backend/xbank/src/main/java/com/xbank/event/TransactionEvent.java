@@ -3,6 +3,10 @@ package com.xbank.event;
 import com.xbank.domain.Transaction;
 import org.springframework.context.ApplicationEvent;
 
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class TransactionEvent extends ApplicationEvent {
 
     public static final String ITEM_CREATED = "CREATED";
@@ -10,6 +14,8 @@ public class TransactionEvent extends ApplicationEvent {
 
     private String eventType;
 
+    private final Map<Locale, byte[]> notifications = new ConcurrentHashMap<>(2);
+
     public TransactionEvent(String eventType, Transaction transactionItem) {
         super(transactionItem);
         this.eventType = eventType;
@@ -18,4 +24,14 @@ public class TransactionEvent extends ApplicationEvent {
     public String getEventType() {
         return eventType;
     }
+
+    /**
+     * The notification of this event, rendered by the first session that needs it in {@code locale} and shared
+     * by all the others. The array must not be modified.
+     *
+     * @return the notification in UTF-8, or an empty array if the transaction has none.
+     */
+    public byte[] getNotification(Locale locale) {
+        return notifications.computeIfAbsent(locale, key -> TransactionNotifications.render((Transaction) getSource(), key));
+    }
 }
@@ -1,43 +1,80 @@
 package com.xbank.event;
 
+import com.xbank.domain.Transaction;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
-import org.springframework.util.ReflectionUtils;
-import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Flux;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.function.Consumer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
+/**
+ * Multicasts the {@link TransactionEvent}s of the application to the WebSocket sessions, over an {@link EventBus}
+ * with a buffer of {@code application.events.buffer-size} events per subscriber and the
+ * {@code application.events.overflow-policy} for subscribers that fall behind.
+ * <p>
+ * Sessions subscribe by owner and accounts: an event only goes to the sessions of the user who made the
+ * transaction and of the owners of its accounts. An account opened later is added to the sessions of its owner
+ * with {@link #addAccount}.
+ */
 @Component
-public class TransactionEventPublisher implements ApplicationListener<TransactionEvent>, Consumer<FluxSink<TransactionEvent>> {
+public class TransactionEventPublisher implements ApplicationListener<TransactionEvent> {
 
-    private final Executor executor;
-    private final BlockingQueue<TransactionEvent> queue;
+    private final EventBus<TransactionEvent> eventBus;
 
-    TransactionEventPublisher() {
-        this.executor = Executors.newSingleThreadExecutor();
-        this.queue = new LinkedBlockingQueue<>();
+    public TransactionEventPublisher(MeterRegistry meterRegistry,
+                                     @Value("${application.events.buffer-size:256}") int bufferSize,
+                                     @Value("${application.events.overflow-policy:DROP_OLDEST}") EventBus.OverflowPolicy overflowPolicy) {
+        this.eventBus = new EventBus<>("transactions", meterRegistry, bufferSize, overflowPolicy, TransactionEventPublisher::routingKeys);
     }
 
     @Override
     public void onApplicationEvent(TransactionEvent event) {
-        this.queue.offer(event);
+        eventBus.publish(event);
     }
 
-    @Override
-    public void accept(FluxSink<TransactionEvent> sink) {
-        this.executor.execute(() -> {
-            while (true) {
-                try {
-                    TransactionEvent event = queue.take();
-                    sink.next(event);
-                } catch (InterruptedException e) {
-                    ReflectionUtils.rethrowRuntimeException(e);
-                }
-            }
-        });
-    }
-}
\ No newline at end of file
+    /**
+     * @return the events of the transactions made by {@code owner} or on one of {@code accounts}, from now on.
+     */
+    public Flux<TransactionEvent> subscribe(String owner, Collection<String> accounts) {
+        List<String> keys = new ArrayList<>(accounts.size() + 1);
+        keys.add(ownerKey(owner));
+        for (String account : accounts) {
+            keys.add(accountKey(account));
+        }
+        return eventBus.subscribe(keys);
+    }
+
+    /**
+     * Send the events of {@code account}, just opened, to the sessions of {@code owner} that are already subscribed.
+     */
+    public void addAccount(String owner, String account) {
+        eventBus.addKey(ownerKey(owner), accountKey(account));
+    }
+
+    public int getSubscriberCount() {
+        return eventBus.getSubscriberCount();
+    }
+
+    private static Collection<String> routingKeys(TransactionEvent event) {
+        Transaction transaction = (Transaction) event.getSource();
+        List<String> keys = new ArrayList<>(3);
+        keys.add(ownerKey(transaction.getOwner()));
+        keys.add(accountKey(transaction.getAccount()));
+        if (transaction.getToAccount() != null && !transaction.getToAccount().equals(transaction.getAccount())) {
+            keys.add(accountKey(transaction.getToAccount()));
+        }
+        return keys;
+    }
+
+    private static String ownerKey(String owner) {
+        return "owner:" + owner;
+    }
+
+    private static String accountKey(String account) {
+        return "account:" + account;
+    }
+}
@@ -0,0 +1,66 @@
+package com.xbank.event;
+
+import com.xbank.domain.Transaction;
+
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Renders the notification text of a transaction, as sent to the WebSocket sessions, into UTF-8 bytes.
+ * <p>
+ * The formatters are built once: {@link DateTimeFormatter} is immutable and shared, {@link DecimalFormat} is
+ * not thread-safe and kept per thread and locale.
+ */
+public final class TransactionNotifications {
+
+    /**
+     * The locale amounts are formatted in for the sessions. The texts themselves are only written in Vietnamese.
+     */
+    public static final Locale DEFAULT_LOCALE = Locale.getDefault(Locale.Category.FORMAT);
+
+    static final byte[] NONE = new byte[0];
+
+    private static final DateTimeFormatter TRANSACT_AT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final Map<Locale, ThreadLocal<DecimalFormat>> AMOUNTS = new ConcurrentHashMap<>();
+
+    private TransactionNotifications() {
+    }
+
+    /**
+     * @return the notification of {@code transaction} in UTF-8, or an empty array if its action has none.
+     */
+    public static byte[] render(Transaction transaction, Locale locale) {
+        String text;
+        if (transaction.getAction() == 1) {
+            // Tranfer action
+            text = "Số dư tài khoản " + transaction.getAccount() + " - " + amount(transaction, locale) + "VNĐ. Chuyển tiền sang tài khoàn "
+                    + transaction.getToAccount() + " ngày " + transactAt(transaction);
+        } else if (transaction.getAction() == 2) {
+            // withdraw action
+            text = "Số dư tài khoản " + transaction.getAccount() + " - " + amount(transaction, locale) + "VNĐ. Rút tiền ngày " + transactAt(transaction);
+        } else if (transaction.getAction() == 3) {
+            // deposit action
+            text = "Số dư tài khoản " + transaction.getAccount() + " + " + amount(transaction, locale) + "VNĐ. Nạp tiền ngày " + transactAt(transaction);
+        } else {
+            return NONE;
+        }
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String amount(Transaction transaction, Locale locale) {
+        return AMOUNTS.computeIfAbsent(locale, key -> ThreadLocal.withInitial(
+                () -> new DecimalFormat("###,###,###.##", DecimalFormatSymbols.getInstance(key))))
+                .get()
+                .format(transaction.getAmount());
+    }
+
+    private static String transactAt(Transaction transaction) {
+        return transaction.getTransactAt().format(TRANSACT_AT);
+    }
+}
@@ -2,15 +2,22 @@ package com.xbank.repository;
 
 import com.xbank.domain.Account;
 import com.xbank.domain.Transaction;
-import org.springframework.data.domain.Pageable;
+import io.r2dbc.spi.ConnectionFactory;
 import org.springframework.data.r2dbc.core.DatabaseClient;
 import org.springframework.data.r2dbc.core.ReactiveDataAccessStrategy;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.data.repository.query.Param;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+
 /**
  * Spring Data R2DBC repository for the {@link Account} entity.
  */
@@ -28,38 +35,282 @@ public interface AccountRepository extends R2dbcRepository<Account, Long>, Accou
     @Query("SELECT * FROM \"ACCOUNT\" where owner = :owner")
     Flux<Account> findByOwner(String owner);
 
+    /**
+     * Accounts of {@code owner} by id, after {@code afterId}.
+     */
+    @Query("SELECT * FROM \"ACCOUNT\" WHERE owner = :owner AND id > :afterId ORDER BY id LIMIT :limit")
+    Flux<Account> findPageByOwner(String owner, long afterId, int limit);
+
     @Query("SELECT * FROM \"ACCOUNT\" where owner = :owner AND account = :account")
     Mono<Account> getAccountDetail(String username, String account);
+
+    @Query("SELECT * FROM \"ACCOUNT\" WHERE stripes > 0")
+    Flux<Account> findAllStriped();
+
+    /**
+     * The account with the not yet folded credits of its stripes included in the balance.
+     */
+    @Query("SELECT a.id, a.account, a.owner, a.action, " +
+        "a.balance + COALESCE((SELECT SUM(s.balance) FROM account_stripe s WHERE s.account = a.account), 0) AS balance, " +
+        "a.currency, a.version, a.stripes, a.interest_rate, a.accrued_interest, " +
+        "a.created_by, a.created_date, a.last_modified_by, a.last_modified_date " +
+        "FROM \"ACCOUNT\" a WHERE a.account = :account")
+    Mono<Account> findOneWithStripes(String account);
+
+    /**
+     * The accounts {@code accounts}, with the not yet folded credits of their stripes included in the balances.
+     */
+    @Query("SELECT a.id, a.account, a.owner, a.action, " +
+        "a.balance + COALESCE((SELECT SUM(s.balance) FROM account_stripe s WHERE s.account = a.account), 0) AS balance, " +
+        "a.currency, a.version, a.stripes, a.interest_rate, a.accrued_interest, " +
+        "a.created_by, a.created_date, a.last_modified_by, a.last_modified_date " +
+        "FROM \"ACCOUNT\" a WHERE a.account IN (:accounts)")
+    Flux<Account> findAllWithStripesByAccountIn(Collection<String> accounts);
+
+    @Query("SELECT id FROM \"ACCOUNT\" WHERE account = :account FOR UPDATE")
+    Mono<Long> lock(String account);
+
+    @Query("SELECT id FROM \"ACCOUNT\" WHERE account IN (:account, :toAccount) ORDER BY id FOR UPDATE")
+    Flux<Long> lockInIdOrder(String account, String toAccount);
 }
 
 interface AccountRepositoryCustom {
-    Flux<Account> findAllAsPage(Pageable pageable);
+    /**
+     * Add {@code delta} to the balance of {@code account} and journal it.
+     *
+     * @return the number of updated rows.
+     */
+    Mono<Integer> addBalance(String account, BigDecimal delta);
 
-    Flux<Account> findByOwnerAsPage(Pageable pageable);
+    /**
+     * Add {@code delta} to the balance of {@code account} and journal it, unless the balance would go negative.
+     *
+     * @return the number of updated rows.
+     */
+    Mono<Integer> addBalanceIfCovered(String account, BigDecimal delta);
+
+    /**
+     * Debit a striped account, checked against its balance plus its stripes, and journal it. The account row
+     * must be locked first, so that no fold moves stripes into the balance while this statement reads them.
+     *
+     * @return the number of updated rows.
+     */
+    Mono<Integer> debitWithStripes(String account, BigDecimal amount);
+
+    /**
+     * Journal the opening balance of a newly created account.
+     */
+    Mono<Integer> journalOpening(Account account);
+
+    /**
+     * Debit {@code account}, credit {@code toAccount} with {@link Transaction#creditAmount()} and insert the
+     * transaction row, guarded by {@code balance >= amount} and the existence of the target account. Both rows
+     * are locked in id order first, so two opposite transfers cannot deadlock.
+     *
+     * @return the source account after the debit, or empty if the guard rejected the transfer.
+     */
+    Mono<Account> transfer(Transaction transaction);
+
+    /**
+     * Debit {@code account} and insert the transaction row, guarded by {@code balance >= amount}.
+     *
+     * @return the account after the debit, or empty if the guard rejected the withdrawal.
+     */
+    Mono<Account> withdraw(Transaction transaction);
+
+    /**
+     * Credit {@code account} and insert the transaction row.
+     *
+     * @return the account after the credit, or empty if it does not exist.
+     */
+    Mono<Account> deposit(Transaction transaction);
 }
 
 class AccountRepositoryCustomImpl implements AccountRepositoryCustom {
+
+    private static final String GUARDED_DEBIT = "UPDATE \"ACCOUNT\" SET balance = balance - :amount, version = version + 1 " +
+            "WHERE account = :account AND balance >= :amount";
+
+    private static final String CREDIT = "UPDATE \"ACCOUNT\" SET balance = balance + :toAmount, version = version + 1 WHERE account = :toAccount";
+
+    private static final String ADD_BALANCE = "UPDATE \"ACCOUNT\" SET balance = balance + :delta, version = version + 1 WHERE account = :account";
+
+    private static final String IF_COVERED = " AND balance + :delta >= 0";
+
+    private static final String DEBIT_WITH_STRIPES = "UPDATE \"ACCOUNT\" SET balance = balance - :amount, version = version + 1 " +
+            "WHERE account = :account " +
+            "AND balance + COALESCE((SELECT SUM(s.balance) FROM account_stripe s WHERE s.account = :account), 0) >= :amount";
+
+    // The version written by the balance update is the journal sequence number of the account
+    private static final String INSERT_JOURNAL = "INSERT INTO balance_journal (account, seq, delta, created_date) ";
+
+    private static final String JOURNAL = INSERT_JOURNAL +
+            "SELECT account, version, :delta, :journalAt FROM \"ACCOUNT\" WHERE account = :account";
+
+    private static final String LOCK_BOTH = "SELECT id FROM \"ACCOUNT\" WHERE account IN (:account, :toAccount) ORDER BY id FOR UPDATE";
+
+    private static final String INSERT_TRANSACTION = "INSERT INTO transaction (" + TransactionStatements.COLUMNS + ") ";
+
+    // PostgreSQL runs each operation as one statement: data-modifying CTEs chain the guarded updates and the insert
+    // count(*) reads the whole locked CTE, so both rows are locked in id order before the debit, and only if both exist
+    private static final String TRANSFER_STATEMENT = "WITH locked AS (" + LOCK_BOTH + "), " +
+            "debit AS (" + GUARDED_DEBIT + " AND (SELECT count(*) FROM locked) = 2 RETURNING *), " +
+            "credit AS (" + CREDIT + " AND EXISTS (SELECT 1 FROM debit) RETURNING id, account, version), " +
+            "debit_journal AS (" + INSERT_JOURNAL + "SELECT account, version, 0 - :amount, :journalAt FROM debit), " +
+            "credit_journal AS (" + INSERT_JOURNAL + "SELECT account, version, :toAmount, :journalAt FROM credit), " +
+            "tx AS (" + INSERT_TRANSACTION + "SELECT " + TransactionStatements.values("t") + " FROM credit RETURNING id) " +
+            "SELECT debit.* FROM debit, tx";
+
+    private static final String WITHDRAW_STATEMENT = "WITH debit AS (" + GUARDED_DEBIT + " RETURNING *), " +
+            "debit_journal AS (" + INSERT_JOURNAL + "SELECT account, version, 0 - :amount, :journalAt FROM debit), " +
+            "tx AS (" + INSERT_TRANSACTION + "SELECT " + TransactionStatements.values("t") + " FROM debit RETURNING id) " +
+            "SELECT debit.* FROM debit, tx";
+
+    private static final String DEPOSIT_STATEMENT = "WITH credit AS (" + CREDIT + " RETURNING *), " +
+            "credit_journal AS (" + INSERT_JOURNAL + "SELECT account, version, :toAmount, :journalAt FROM credit), " +
+            "tx AS (" + INSERT_TRANSACTION + "SELECT " + TransactionStatements.values("t") + " FROM credit RETURNING id) " +
+            "SELECT credit.* FROM credit, tx";
+
     private final DatabaseClient db;
     private final ReactiveDataAccessStrategy dataAccessStrategy;
+    private final boolean singleStatement;
 
-    public AccountRepositoryCustomImpl(DatabaseClient db, ReactiveDataAccessStrategy dataAccessStrategy) {
+    public AccountRepositoryCustomImpl(DatabaseClient db, ReactiveDataAccessStrategy dataAccessStrategy,
+                                       ConnectionFactory connectionFactory) {
         this.db = db;
         this.dataAccessStrategy = dataAccessStrategy;
+        this.singleStatement = DialectResolver.getDialect(connectionFactory) instanceof PostgresDialect;
     }
 
     @Override
-    public Flux<Account> findByOwnerAsPage(Pageable pageable) {
-        return db.select().from(Account.class)
-                .page(pageable)
-                .as(Account.class)
-                .all();
+    public Mono<Account> transfer(Transaction transaction) {
+        if (singleStatement) {
+            return execute(TRANSFER_STATEMENT, transaction);
+        }
+        return bindAmounts(db.execute(LOCK_BOTH), LOCK_BOTH, transaction)
+                .fetch()
+                .all()
+                .count()
+                .filter(locked -> locked == 2)
+                .flatMap(locked -> rowsUpdated(GUARDED_DEBIT, transaction))
+                .filter(debited -> debited > 0)
+                .flatMap(debited -> journal(transaction.getAccount(), transaction.getAmount().negate()))
+                .flatMap(journaled -> rowsUpdated(CREDIT, transaction))
+                .flatMap(credited -> journal(transaction.getToAccount(), transaction.creditAmount()))
+                .flatMap(credited -> insert(transaction))
+                .flatMap(inserted -> findOne(transaction.getAccount()));
+    }
+
+    @Override
+    public Mono<Account> withdraw(Transaction transaction) {
+        if (singleStatement) {
+            return execute(WITHDRAW_STATEMENT, transaction);
+        }
+        return rowsUpdated(GUARDED_DEBIT, transaction)
+                .filter(debited -> debited > 0)
+                .flatMap(debited -> journal(transaction.getAccount(), transaction.getAmount().negate()))
+                .flatMap(journaled -> insert(transaction))
+                .flatMap(inserted -> findOne(transaction.getAccount()));
+    }
+
+    @Override
+    public Mono<Account> deposit(Transaction transaction) {
+        if (singleStatement) {
+            return execute(DEPOSIT_STATEMENT, transaction);
+        }
+        return rowsUpdated(CREDIT, transaction)
+                .filter(credited -> credited > 0)
+                .flatMap(credited -> journal(transaction.getToAccount(), transaction.creditAmount()))
+                .flatMap(journaled -> insert(transaction))
+                .flatMap(inserted -> findOne(transaction.getToAccount()));
+    }
+
+    @Override
+    public Mono<Integer> addBalance(String account, BigDecimal delta) {
+        return updateAndJournal(ADD_BALANCE, account, delta);
     }
 
     @Override
-    public Flux<Account> findAllAsPage(Pageable pageable) {
-        return db.select().from(Account.class)
-                .page(pageable)
+    public Mono<Integer> addBalanceIfCovered(String account, BigDecimal delta) {
+        return updateAndJournal(ADD_BALANCE + IF_COVERED, account, delta);
+    }
+
+    @Override
+    public Mono<Integer> debitWithStripes(String account, BigDecimal amount) {
+        return db.execute(DEBIT_WITH_STRIPES)
+                .bind("account", account)
+                .bind("amount", amount)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(updated -> updated > 0 ? journal(account, amount.negate()) : Mono.just(updated));
+    }
+
+    @Override
+    public Mono<Integer> journalOpening(Account account) {
+        return journal(account.getAccount(), account.getBalance());
+    }
+
+    private Mono<Integer> updateAndJournal(String sql, String account, BigDecimal delta) {
+        return db.execute(sql)
+                .bind("account", account)
+                .bind("delta", delta)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(updated -> updated > 0 ? journal(account, delta) : Mono.just(updated));
+    }
+
+    private Mono<Integer> journal(String account, BigDecimal delta) {
+        return db.execute(JOURNAL)
+                .bind("account", account)
+                .bind("delta", delta)
+                .bind("journalAt", LocalDateTime.now(ZoneOffset.UTC))
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private Mono<Account> execute(String sql, Transaction transaction) {
+        return TransactionStatements.bind(bindAmounts(db.execute(sql), sql, transaction), "t", transaction)
+                .as(Account.class)
+                .fetch()
+                .one();
+    }
+
+    private Mono<Integer> rowsUpdated(String sql, Transaction transaction) {
+        return bindAmounts(db.execute(sql), sql, transaction)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private Mono<Integer> insert(Transaction transaction) {
+        return TransactionStatements.bind(db.execute(INSERT_TRANSACTION + "VALUES (" + TransactionStatements.values("t") + ")"), "t", transaction)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private Mono<Account> findOne(String account) {
+        return db.execute("SELECT * FROM \"ACCOUNT\" WHERE account = :account")
+                .bind("account", account)
                 .as(Account.class)
-                .all();
+                .fetch()
+                .one();
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindAmounts(DatabaseClient.GenericExecuteSpec spec, String sql, Transaction transaction) {
+        if (sql.contains(":amount")) {
+            spec = spec.bind("amount", transaction.getAmount());
+        }
+        if (sql.contains(":toAmount")) {
+            spec = spec.bind("toAmount", transaction.creditAmount());
+        }
+        if (sql.contains(":account")) {
+            spec = spec.bind("account", transaction.getAccount());
+        }
+        if (sql.contains(":toAccount")) {
+            spec = spec.bind("toAccount", transaction.getToAccount());
+        }
+        if (sql.contains(":journalAt")) {
+            spec = spec.bind("journalAt", LocalDateTime.now(ZoneOffset.UTC));
+        }
+        return spec;
     }
 }
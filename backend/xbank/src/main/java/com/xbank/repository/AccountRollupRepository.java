@@ -0,0 +1,162 @@
+package com.xbank.repository;
+
+import com.xbank.domain.AccountDailyRollup;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Reads and maintains the {@code account_daily_rollup} table.
+ */
+@Repository
+public class AccountRollupRepository {
+
+    private static final String COLUMNS = "account, rollup_date, transaction_count, debit_sum, credit_sum, closing_balance, updated_date";
+
+    // Formatted with the alias of the new values
+    private static final String ADD_TOTALS = "transaction_count = r.transaction_count + %1$s.transaction_count, " +
+            "debit_sum = r.debit_sum + %1$s.debit_sum, credit_sum = r.credit_sum + %1$s.credit_sum, " +
+            "closing_balance = COALESCE(%1$s.closing_balance, r.closing_balance), updated_date = %1$s.updated_date";
+
+    private static final String MOVEMENTS = "SELECT account, amount AS debit, 0 AS credit FROM transaction " +
+            "WHERE action IN (1, 2) AND result = 1 AND transact_at >= :start AND transact_at < :end " +
+            "UNION ALL SELECT to_account, 0, COALESCE(to_amount, amount) FROM transaction " +
+            "WHERE action = 1 AND result = 1 AND transact_at >= :start AND transact_at < :end " +
+            "UNION ALL SELECT account, 0, amount FROM transaction " +
+            "WHERE action = 3 AND result = 1 AND transact_at >= :start AND transact_at < :end";
+
+    private static final String REBUILD_DAY = "INSERT INTO account_daily_rollup (" + COLUMNS + ") " +
+            "SELECT m.account, CAST(:day AS DATE), COUNT(*), SUM(m.debit), SUM(m.credit), NULL, CAST(:now AS TIMESTAMP) FROM (" + MOVEMENTS + ") m " +
+            "GROUP BY m.account";
+
+    private final DatabaseClient db;
+
+    private final boolean postgres;
+
+    public AccountRollupRepository(DatabaseClient db, ConnectionFactory connectionFactory) {
+        this.db = db;
+        this.postgres = DialectResolver.getDialect(connectionFactory) instanceof PostgresDialect;
+    }
+
+    /**
+     * @return the days of {@code account} from {@code from} to {@code to} inclusive that had transactions, in date order.
+     */
+    public Flux<AccountDailyRollup> findByAccount(String account, LocalDate from, LocalDate to) {
+        return db.execute("SELECT * FROM account_daily_rollup WHERE account = :account AND rollup_date >= :from " +
+                "AND rollup_date <= :to ORDER BY rollup_date")
+                .bind("account", account)
+                .bind("from", from)
+                .bind("to", to)
+                .as(AccountDailyRollup.class)
+                .fetch()
+                .all();
+    }
+
+    /**
+     * @return the rollups of {@code day}.
+     */
+    public Flux<AccountDailyRollup> findByDate(LocalDate day) {
+        return db.execute("SELECT * FROM account_daily_rollup WHERE rollup_date = :day")
+                .bind("day", day)
+                .as(AccountDailyRollup.class)
+                .fetch()
+                .all();
+    }
+
+    public Mono<Boolean> isEmpty() {
+        return db.execute("SELECT account FROM account_daily_rollup LIMIT 1")
+                .fetch()
+                .first()
+                .map(row -> Boolean.FALSE)
+                .defaultIfEmpty(Boolean.TRUE);
+    }
+
+    /**
+     * @return the time of the oldest transaction, or empty if there is none.
+     */
+    public Mono<LocalDateTime> findFirstTransactionAt() {
+        return db.execute("SELECT MIN(transact_at) AS first_at FROM transaction")
+                .map(row -> row.get("first_at", LocalDateTime.class))
+                .one();
+    }
+
+    /**
+     * Add the totals of {@code deltas} to the rollups of their account and day, creating the missing ones, in one
+     * statement. The closing balances of {@code deltas}, where set, replace the stored ones.
+     * <p>
+     * {@code deltas} must be sorted by account and day, so that concurrent upserts lock the rows in the same order.
+     */
+    public Mono<Integer> addAll(List<AccountDailyRollup> deltas, LocalDateTime now) {
+        StringBuilder sql = new StringBuilder();
+        if (postgres) {
+            sql.append("INSERT INTO account_daily_rollup AS r (").append(COLUMNS).append(") VALUES ");
+            for (int i = 0; i < deltas.size(); i++) {
+                sql.append(i > 0 ? ", " : "").append(String.format("(:account%1$d, :date%1$d, :count%1$d, :debit%1$d, :credit%1$d, :closing%1$d, :now)", i));
+            }
+            sql.append(" ON CONFLICT (account, rollup_date) DO UPDATE SET ").append(String.format(ADD_TOTALS, "EXCLUDED"));
+        } else {
+            sql.append("MERGE INTO account_daily_rollup r USING (");
+            for (int i = 0; i < deltas.size(); i++) {
+                sql.append(i > 0 ? " UNION ALL " : "").append(String.format("SELECT CAST(:account%1$d AS VARCHAR(50)) AS account, " +
+                        "CAST(:date%1$d AS DATE) AS rollup_date, CAST(:count%1$d AS BIGINT) AS transaction_count, " +
+                        "CAST(:debit%1$d AS BIGINT) AS debit_sum, CAST(:credit%1$d AS BIGINT) AS credit_sum, " +
+                        "CAST(:closing%1$d AS BIGINT) AS closing_balance, CAST(:now AS TIMESTAMP) AS updated_date", i));
+            }
+            sql.append(") s ON (r.account = s.account AND r.rollup_date = s.rollup_date) WHEN MATCHED THEN UPDATE SET ")
+                    .append(String.format(ADD_TOTALS, "s"))
+                    .append(" WHEN NOT MATCHED THEN INSERT (").append(COLUMNS).append(") VALUES (s.")
+                    .append(COLUMNS.replace(", ", ", s.")).append(")");
+        }
+        DatabaseClient.GenericExecuteSpec spec = db.execute(sql.toString()).bind("now", now);
+        for (int i = 0; i < deltas.size(); i++) {
+            AccountDailyRollup delta = deltas.get(i);
+            spec = spec.bind("account" + i, delta.getAccount())
+                    .bind("date" + i, delta.getRollupDate())
+                    .bind("count" + i, delta.getTransactionCount())
+                    .bind("debit" + i, delta.getDebitSum())
+                    .bind("credit" + i, delta.getCreditSum());
+            spec = delta.getClosingBalance() != null
+                    ? spec.bind("closing" + i, delta.getClosingBalance())
+                    : spec.bindNull("closing" + i, BigDecimal.class);
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    /**
+     * Recompute the rollups of {@code day}, the transactions from {@code start} to {@code end}, from the
+     * {@code transaction} table. Closing balances are left empty.
+     *
+     * @return the number of rollups written.
+     */
+    public Mono<Integer> rebuildDay(LocalDate day, LocalDateTime start, LocalDateTime end, LocalDateTime now) {
+        return db.execute("DELETE FROM account_daily_rollup WHERE rollup_date = :day")
+                .bind("day", day)
+                .fetch()
+                .rowsUpdated()
+                .then(db.execute(REBUILD_DAY)
+                        .bind("day", day)
+                        .bind("start", start)
+                        .bind("end", end)
+                        .bind("now", now)
+                        .fetch()
+                        .rowsUpdated());
+    }
+
+    public Mono<Integer> setClosingBalance(String account, LocalDate day, BigDecimal balance) {
+        return db.execute("UPDATE account_daily_rollup SET closing_balance = :balance WHERE account = :account AND rollup_date = :day")
+                .bind("balance", balance)
+                .bind("account", account)
+                .bind("day", day)
+                .fetch()
+                .rowsUpdated();
+    }
+}
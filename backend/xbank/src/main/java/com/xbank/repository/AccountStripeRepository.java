@@ -0,0 +1,33 @@
+package com.xbank.repository;
+
+import com.xbank.domain.AccountStripe;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+/**
+ * Spring Data R2DBC repository for the {@link AccountStripe} entity.
+ */
+public interface AccountStripeRepository extends R2dbcRepository<AccountStripe, Long> {
+
+    @Query("SELECT stripe FROM account_stripe WHERE account = :account")
+    Flux<Integer> findStripes(String account);
+
+    @Query("SELECT DISTINCT account FROM account_stripe WHERE balance <> 0")
+    Flux<String> findAccountsToFold();
+
+    @Query("SELECT * FROM account_stripe WHERE account = :account ORDER BY stripe FOR UPDATE")
+    Flux<AccountStripe> lockAll(String account);
+
+    @Modifying
+    @Query("UPDATE account_stripe SET balance = balance + :amount WHERE account = :account AND stripe = :stripe")
+    Mono<Integer> credit(String account, int stripe, BigDecimal amount);
+
+    @Modifying
+    @Query("UPDATE account_stripe SET balance = 0 WHERE account = :account")
+    Mono<Integer> reset(String account);
+}
@@ -0,0 +1,74 @@
+package com.xbank.repository;
+
+import com.xbank.domain.BalanceSnapshot;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Reads the {@code balance_journal} and maintains the {@code balance_snapshot} tables.
+ * <p>
+ * Journal entries are appended by the balance updates of {@link AccountRepository}, with the account version
+ * as sequence number.
+ */
+@Repository
+public class BalanceJournalRepository {
+
+    // One new snapshot per account with at least :minEntries journal entries since its latest snapshot. Driven by the
+    // accounts, so that each one reads its latest snapshot and then only the journal after it, both through the
+    // (account, seq) primary keys, instead of filtering the whole journal
+    private static final String ROLL_UP = "INSERT INTO balance_snapshot (account, seq, balance, taken_at) " +
+            "SELECT a.account, MAX(j.seq), COALESCE(MAX(s.balance), 0) + SUM(j.delta), MAX(j.created_date) " +
+            "FROM \"ACCOUNT\" a " +
+            "LEFT JOIN balance_snapshot s ON s.account = a.account " +
+            "AND s.seq = (SELECT MAX(l.seq) FROM balance_snapshot l WHERE l.account = a.account) " +
+            "JOIN balance_journal j ON j.account = a.account AND j.seq > COALESCE(s.seq, -1) " +
+            "GROUP BY a.account " +
+            "HAVING COUNT(*) >= :minEntries";
+
+    private final DatabaseClient db;
+
+    public BalanceJournalRepository(DatabaseClient db) {
+        this.db = db;
+    }
+
+    /**
+     * @return the latest snapshot of {@code account} taken at or before {@code at}, or empty if there is none.
+     */
+    public Mono<BalanceSnapshot> findLatestSnapshot(String account, LocalDateTime at) {
+        return db.execute("SELECT * FROM balance_snapshot WHERE account = :account AND taken_at <= :at ORDER BY seq DESC LIMIT 1")
+                .bind("account", account)
+                .bind("at", at)
+                .as(BalanceSnapshot.class)
+                .fetch()
+                .one();
+    }
+
+    /**
+     * @return the sum of the journal entries of {@code account} after {@code seq}, up to {@code at}.
+     */
+    public Mono<BigDecimal> sumAfter(String account, long seq, LocalDateTime at) {
+        return db.execute("SELECT COALESCE(SUM(delta), 0) AS total FROM balance_journal " +
+                "WHERE account = :account AND seq > :seq AND created_date <= :at")
+                .bind("account", account)
+                .bind("seq", seq)
+                .bind("at", at)
+                .map(row -> new BigDecimal(row.get("total", Number.class).toString()))
+                .one();
+    }
+
+    /**
+     * Snapshot every account with at least {@code minEntries} journal entries since its latest snapshot.
+     *
+     * @return the number of snapshots taken.
+     */
+    public Mono<Integer> rollUp(int minEntries) {
+        return db.execute(ROLL_UP)
+                .bind("minEntries", minEntries)
+                .fetch()
+                .rowsUpdated();
+    }
+}
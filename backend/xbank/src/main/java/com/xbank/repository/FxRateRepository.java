@@ -0,0 +1,26 @@
+package com.xbank.repository;
+
+import com.xbank.domain.FxRate;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Reads the {@code fx_rate} table.
+ */
+@Repository
+public class FxRateRepository {
+
+    private final DatabaseClient db;
+
+    public FxRateRepository(DatabaseClient db) {
+        this.db = db;
+    }
+
+    public Flux<FxRate> findAll() {
+        return db.execute("SELECT * FROM fx_rate")
+                .as(FxRate.class)
+                .fetch()
+                .all();
+    }
+}
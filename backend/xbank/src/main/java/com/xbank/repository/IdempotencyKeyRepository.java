@@ -0,0 +1,22 @@
+package com.xbank.repository;
+
+import com.xbank.domain.IdempotencyKey;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Spring Data R2DBC repository for the {@link IdempotencyKey} entity.
+ */
+public interface IdempotencyKeyRepository extends R2dbcRepository<IdempotencyKey, Long> {
+
+    @Query("SELECT * FROM idempotency_key WHERE owner = :owner AND idempotency_key = :key")
+    Mono<IdempotencyKey> findOneByOwnerAndKey(String owner, String key);
+
+    @Modifying
+    @Query("DELETE FROM idempotency_key WHERE created_date < :before")
+    Mono<Integer> deleteCreatedBefore(LocalDateTime before);
+}
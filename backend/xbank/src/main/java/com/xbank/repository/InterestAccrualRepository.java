@@ -0,0 +1,200 @@
+package com.xbank.repository;
+
+import com.xbank.domain.Account;
+import com.xbank.domain.InterestAccrual;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the interest-bearing accounts and writes their accruals, and keeps the progress of the daily runs in
+ * {@code interest_accrual}.
+ * <p>
+ * Accruals of a batch of accounts are written with one {@code CASE} update per kind (fraction only, or fraction
+ * and credit) and one journal insert, whatever the batch size.
+ */
+@Repository
+public class InterestAccrualRepository {
+
+    private final DatabaseClient db;
+
+    public InterestAccrualRepository(DatabaseClient db) {
+        this.db = db;
+    }
+
+    /**
+     * @return the run of {@code date}, created if it was not started yet.
+     */
+    public Mono<InterestAccrual> findOrStart(LocalDate date) {
+        return db.execute("INSERT INTO interest_accrual (accrual_date, started_at) VALUES (:date, :now)")
+                .bind("date", date)
+                .bind("now", LocalDateTime.now(ZoneOffset.UTC))
+                .fetch()
+                .rowsUpdated()
+                // Started before
+                .onErrorResume(DataIntegrityViolationException.class, e -> Mono.just(0))
+                .then(findRun(date));
+    }
+
+    /**
+     * @return the run of the latest date, or empty if there was none.
+     */
+    public Mono<InterestAccrual> findLatestRun() {
+        return db.execute("SELECT * FROM interest_accrual ORDER BY accrual_date DESC LIMIT 1")
+                .as(InterestAccrual.class)
+                .fetch()
+                .one();
+    }
+
+    public Mono<InterestAccrual> findRun(LocalDate date) {
+        return db.execute("SELECT * FROM interest_accrual WHERE accrual_date = :date")
+                .bind("date", date)
+                .as(InterestAccrual.class)
+                .fetch()
+                .one();
+    }
+
+    /**
+     * Keyset scan of the interest-bearing accounts after {@code afterId}, reading only the columns accrual needs.
+     */
+    public Flux<Account> findInterestBearing(long afterId, int limit) {
+        return db.execute("SELECT id, account, balance, currency, interest_rate, accrued_interest FROM \"ACCOUNT\" " +
+                "WHERE id > :afterId AND interest_rate > 0 ORDER BY id LIMIT :limit")
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(row -> {
+                    Account account = new Account();
+                    account.setId(row.get("id", Long.class));
+                    account.setAccount(row.get("account", String.class));
+                    account.setBalance(new BigDecimal(row.get("balance", Number.class).toString()));
+                    account.setCurrency(row.get("currency", String.class));
+                    account.setInterestRate(row.get("interest_rate", Integer.class));
+                    account.setAccruedInterest(row.get("accrued_interest", Long.class));
+                    return account;
+                })
+                .all();
+    }
+
+    /**
+     * Store the new {@code accruedInterest} of {@code accounts} and add {@code credits} (by account id) to their
+     * balances, journaling the credits.
+     */
+    public Mono<Void> accrue(List<Account> accounts, Map<Long, BigDecimal> credits) {
+        List<Account> fractions = new ArrayList<>();
+        List<Account> credited = new ArrayList<>();
+        for (Account account : accounts) {
+            (credits.containsKey(account.getId()) ? credited : fractions).add(account);
+        }
+        return updateFractions(fractions)
+                .then(credit(credited, credits))
+                .then(journal(credited, credits));
+    }
+
+    /**
+     * Record that the run of {@code date} went from {@code fromId} to {@code toId}. Meant to run in the
+     * transaction of the accruals; fails if the run is not at {@code fromId} any more.
+     */
+    public Mono<Void> advance(LocalDate date, long fromId, long toId, int accounts, BigDecimal credited) {
+        return db.execute("UPDATE interest_accrual SET last_account_id = :toId, accounts = accounts + :accounts, " +
+                "credited = credited + :credited WHERE accrual_date = :date AND last_account_id = :fromId")
+                .bind("toId", toId)
+                .bind("accounts", accounts)
+                .bind("credited", credited)
+                .bind("date", date)
+                .bind("fromId", fromId)
+                .fetch()
+                .rowsUpdated()
+                .filter(updated -> updated > 0)
+                .switchIfEmpty(Mono.error(new IllegalStateException(
+                        "Interest accrual of " + date + " is not at account " + fromId + " any more")))
+                .then();
+    }
+
+    public Mono<Void> finish(LocalDate date) {
+        return db.execute("UPDATE interest_accrual SET finished_at = :now WHERE accrual_date = :date")
+                .bind("now", LocalDateTime.now(ZoneOffset.UTC))
+                .bind("date", date)
+                .fetch()
+                .rowsUpdated()
+                .then();
+    }
+
+    private Mono<Void> updateFractions(List<Account> accounts) {
+        if (accounts.isEmpty()) {
+            return Mono.empty();
+        }
+        StringBuilder sql = new StringBuilder("UPDATE \"ACCOUNT\" SET accrued_interest = ");
+        caseOf(sql, accounts.size(), "f");
+        sql.append(" WHERE id IN (:ids)");
+        DatabaseClient.GenericExecuteSpec spec = db.execute(sql.toString()).bind("ids", idsOf(accounts));
+        for (int i = 0; i < accounts.size(); i++) {
+            spec = spec.bind("i" + i, accounts.get(i).getId())
+                    .bind("f" + i, accounts.get(i).getAccruedInterest());
+        }
+        return spec.fetch().rowsUpdated().then();
+    }
+
+    private Mono<Void> credit(List<Account> accounts, Map<Long, BigDecimal> credits) {
+        if (accounts.isEmpty()) {
+            return Mono.empty();
+        }
+        StringBuilder sql = new StringBuilder("UPDATE \"ACCOUNT\" SET balance = balance + ");
+        caseOf(sql, accounts.size(), "c");
+        sql.append(", accrued_interest = ");
+        caseOf(sql, accounts.size(), "f");
+        sql.append(", version = version + 1 WHERE id IN (:ids)");
+        DatabaseClient.GenericExecuteSpec spec = db.execute(sql.toString()).bind("ids", idsOf(accounts));
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            spec = spec.bind("i" + i, account.getId())
+                    .bind("c" + i, credits.get(account.getId()))
+                    .bind("f" + i, account.getAccruedInterest());
+        }
+        return spec.fetch().rowsUpdated().then();
+    }
+
+    // The version written by the credit is the journal sequence number, as for the other balance updates
+    private Mono<Void> journal(List<Account> accounts, Map<Long, BigDecimal> credits) {
+        if (accounts.isEmpty()) {
+            return Mono.empty();
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO balance_journal (account, seq, delta, created_date) SELECT account, version, ");
+        caseOf(sql, accounts.size(), "c");
+        sql.append(", :journalAt FROM \"ACCOUNT\" WHERE id IN (:ids)");
+        DatabaseClient.GenericExecuteSpec spec = db.execute(sql.toString())
+                .bind("ids", idsOf(accounts))
+                .bind("journalAt", LocalDateTime.now(ZoneOffset.UTC));
+        for (int i = 0; i < accounts.size(); i++) {
+            spec = spec.bind("i" + i, accounts.get(i).getId())
+                    .bind("c" + i, credits.get(accounts.get(i).getId()));
+        }
+        return spec.fetch().rowsUpdated().then();
+    }
+
+    /**
+     * Append {@code CASE id WHEN :i0 THEN :<value>0 ... END}.
+     */
+    private static void caseOf(StringBuilder sql, int size, String value) {
+        sql.append("CASE id");
+        for (int i = 0; i < size; i++) {
+            sql.append(" WHEN :i").append(i).append(" THEN :").append(value).append(i);
+        }
+        sql.append(" END");
+    }
+
+    private static List<Long> idsOf(List<Account> accounts) {
+        List<Long> ids = new ArrayList<>(accounts.size());
+        accounts.forEach(account -> ids.add(account.getId()));
+        return ids;
+    }
+}
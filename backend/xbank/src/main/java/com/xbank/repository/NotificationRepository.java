@@ -1,48 +1,82 @@
 package com.xbank.repository;
 
 import com.xbank.domain.Notification;
-import com.xbank.domain.Transaction;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.r2dbc.core.DatabaseClient;
-import org.springframework.data.r2dbc.core.ReactiveDataAccessStrategy;
-import org.springframework.data.r2dbc.query.Criteria;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.data.repository.query.Param;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * Spring Data R2DBC repository for the {@link Notification} entity.
  */
 public interface NotificationRepository extends R2dbcRepository<Notification, Long>, NotificationRepositoryCustom {
 
-    @Query("SELECT COUNT(DISTINCT id) FROM notification")
-    Mono<Long> countAll();
-
-    @Query("UPDATE notification SET is_read = true WHERE account = :account")
+    @Query("UPDATE notification SET is_read = true WHERE account = :account AND is_read = false")
     Mono<Void> readAll(@Param("account") String account);
 
+    @Modifying
+    @Query("UPDATE notification SET is_read = true WHERE id = :id AND account = :account AND is_read = false")
+    Mono<Integer> read(String account, long id);
+
+    @Query("SELECT * FROM notification WHERE id = :id AND account = :account")
+    Mono<Notification> findOneByAccount(String account, long id);
+
+    @Query("SELECT COUNT(*) FROM notification WHERE account = :account AND is_read = false")
+    Mono<Long> countUnread(String account);
+
+    /**
+     * Notifications of {@code account}, newest first, before the id {@code id}.
+     */
+    @Query("SELECT * FROM notification WHERE account = :account AND id < :id ORDER BY id DESC LIMIT :limit")
+    Flux<Notification> findPageByAccount(String account, long id, int limit);
+
 }
 
 interface NotificationRepositoryCustom {
-    Flux<Notification> findAllAsPage(Pageable pageable);
+    Mono<Void> insertAll(List<Notification> notifications);
 }
 
 class NotificationRepositoryCustomImpl implements NotificationRepositoryCustom {
     private final DatabaseClient db;
-    private final ReactiveDataAccessStrategy dataAccessStrategy;
 
-    public NotificationRepositoryCustomImpl(DatabaseClient db, ReactiveDataAccessStrategy dataAccessStrategy) {
+    public NotificationRepositoryCustomImpl(DatabaseClient db) {
         this.db = db;
-        this.dataAccessStrategy = dataAccessStrategy;
     }
 
+    /**
+     * Insert all notifications with a single multi-row statement.
+     */
     @Override
-    public Flux<Notification> findAllAsPage(Pageable pageable) {
-        return db.select().from(Notification.class)
-                .page(pageable)
-                .as(Notification.class)
-                .all();
+    public Mono<Void> insertAll(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return Mono.empty();
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO notification (account, title, is_read, created_date, last_modified_date) VALUES ");
+        for (int i = 0; i < notifications.size(); i++) {
+            sql.append(i == 0 ? "(" : ", (")
+                .append(":n").append(i).append("_0, :n").append(i).append("_1, :n").append(i).append("_2, :n")
+                .append(i).append("_3, :n").append(i).append("_4)");
+        }
+        DatabaseClient.GenericExecuteSpec spec = db.execute(sql.toString());
+        for (int i = 0; i < notifications.size(); i++) {
+            Notification notification = notifications.get(i);
+            String prefix = "n" + i + "_";
+            spec = bind(spec, prefix + 0, notification.getAccount(), String.class);
+            spec = bind(spec, prefix + 1, notification.getTitle(), String.class);
+            spec = bind(spec, prefix + 2, notification.getRead() != null ? notification.getRead() : Boolean.FALSE, Boolean.class);
+            spec = bind(spec, prefix + 3, notification.getCreatedDate(), LocalDateTime.class);
+            spec = bind(spec, prefix + 4, notification.getLastModifiedDate(), LocalDateTime.class);
+        }
+        return spec.fetch().rowsUpdated().then();
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, String name, Object value, Class<?> type) {
+        return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
     }
 }
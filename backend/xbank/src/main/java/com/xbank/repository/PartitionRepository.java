@@ -0,0 +1,80 @@
+package com.xbank.repository;
+
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Creates, lists and detaches the monthly partitions of the tables partitioned by range on PostgreSQL.
+ * <p>
+ * The partition of {@code table} for a month is named {@code <table>_pYYYYMM}. Identifiers cannot be bound, so
+ * table names are only ever taken from the callers' constants, never from input.
+ */
+@Repository
+public class PartitionRepository {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final DatabaseClient db;
+
+    public PartitionRepository(DatabaseClient db) {
+        this.db = db;
+    }
+
+    public static String partitionName(String table, YearMonth month) {
+        return table + "_p" + month.format(SUFFIX);
+    }
+
+    /**
+     * @return the month of the partition {@code partition} of {@code table}, or null if it is not a monthly
+     * partition, like the default partition.
+     */
+    public static YearMonth monthOf(String table, String partition) {
+        String prefix = table + "_p";
+        if (!partition.startsWith(prefix) || partition.length() != prefix.length() + 6) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partition.substring(prefix.length()), SUFFIX);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the names of the partitions attached to {@code table}.
+     */
+    public Flux<String> findPartitions(String table) {
+        return db.execute("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = :table")
+                .bind("table", table)
+                .map(row -> row.get("relname", String.class))
+                .all();
+    }
+
+    /**
+     * Create the partition of {@code table} for {@code month}, unless it exists.
+     */
+    public Mono<Void> createPartition(String table, YearMonth month) {
+        return db.execute("CREATE TABLE IF NOT EXISTS " + partitionName(table, month) + " PARTITION OF " + table +
+                " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')")
+                .fetch()
+                .rowsUpdated()
+                .then();
+    }
+
+    /**
+     * Detach {@code partition} from {@code table}. Its rows are kept in a table of the same name and are no longer
+     * seen by queries on {@code table}; this is a catalog change, whatever the size of the partition.
+     */
+    public Mono<Void> detachPartition(String table, String partition) {
+        return db.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition)
+                .fetch()
+                .rowsUpdated()
+                .then();
+    }
+}
@@ -0,0 +1,98 @@
+package com.xbank.repository;
+
+import com.xbank.domain.Posting;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Spring Data R2DBC repository for the {@link Posting} entity.
+ * <p>
+ * Queries by account are range scans of {@code idx_posting_account_posted_at}, which also holds the amount
+ * and the counter account.
+ */
+public interface PostingRepository extends R2dbcRepository<Posting, Long>, PostingRepositoryCustom {
+
+    @Query("SELECT * FROM posting WHERE account = :account AND posted_at >= :from AND posted_at < :to ORDER BY posted_at")
+    Flux<Posting> findByAccountPostedBetween(String account, LocalDateTime from, LocalDateTime to);
+
+    @Query("SELECT COALESCE(SUM(amount), 0) FROM posting WHERE account = :account")
+    Mono<BigDecimal> sumByAccount(String account);
+
+    @Query("SELECT COALESCE(SUM(amount), 0) FROM posting WHERE account = :account AND posted_at < :before")
+    Mono<BigDecimal> sumByAccountBefore(String account, LocalDateTime before);
+}
+
+interface PostingRepositoryCustom {
+
+    /**
+     * Insert all postings with a single multi-row statement.
+     */
+    Mono<Void> insertAll(List<Posting> postings);
+
+    /**
+     * The postings of {@code account} in [{@code from}, {@code to}), in time order, with only the columns of a
+     * statement line: time, counter account and amount. Read from the index alone.
+     */
+    Flux<Posting> findStatementLines(String account, LocalDateTime from, LocalDateTime to);
+}
+
+class PostingRepositoryCustomImpl implements PostingRepositoryCustom {
+
+    private static final String COLUMNS = "entry_id, account, counter_account, amount, currency, posted_at";
+
+    private final DatabaseClient db;
+
+    public PostingRepositoryCustomImpl(DatabaseClient db) {
+        this.db = db;
+    }
+
+    @Override
+    public Mono<Void> insertAll(List<Posting> postings) {
+        if (postings.isEmpty()) {
+            return Mono.empty();
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO posting (" + COLUMNS + ") VALUES ");
+        for (int i = 0; i < postings.size(); i++) {
+            sql.append(i == 0 ? "(" : ", (")
+                    .append(":e").append(i).append(", :a").append(i).append(", :c").append(i)
+                    .append(", :m").append(i).append(", :u").append(i).append(", :p").append(i)
+                    .append(')');
+        }
+        DatabaseClient.GenericExecuteSpec spec = db.execute(sql.toString());
+        for (int i = 0; i < postings.size(); i++) {
+            Posting posting = postings.get(i);
+            spec = spec.bind("e" + i, posting.getEntryId())
+                    .bind("a" + i, posting.getAccount())
+                    .bind("c" + i, posting.getCounterAccount())
+                    .bind("m" + i, posting.getAmount())
+                    .bind("p" + i, posting.getPostedAt());
+            spec = posting.getCurrency() == null ? spec.bindNull("u" + i, String.class) : spec.bind("u" + i, posting.getCurrency());
+        }
+        return spec.fetch().rowsUpdated().then();
+    }
+
+    @Override
+    public Flux<Posting> findStatementLines(String account, LocalDateTime from, LocalDateTime to) {
+        return db.execute("SELECT posted_at, counter_account, amount FROM posting " +
+                "WHERE account = :account AND posted_at >= :from AND posted_at < :to ORDER BY posted_at")
+                .bind("account", account)
+                .bind("from", from)
+                .bind("to", to)
+                .map(row -> {
+                    Posting posting = new Posting();
+                    posting.setAccount(account);
+                    posting.setPostedAt(row.get("posted_at", LocalDateTime.class));
+                    posting.setCounterAccount(row.get("counter_account", String.class));
+                    posting.setAmount(new BigDecimal(row.get("amount", Number.class).toString()));
+                    return posting;
+                })
+                .all();
+    }
+}
@@ -0,0 +1,118 @@
+package com.xbank.repository;
+
+import com.xbank.domain.ReconciliationDiscrepancy;
+import com.xbank.domain.ReconciliationRun;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Spring Data R2DBC repository for the {@link ReconciliationRun} entity and its discrepancies.
+ */
+public interface ReconciliationRepository extends R2dbcRepository<ReconciliationRun, Long>, ReconciliationRepositoryCustom {
+
+    @Query("SELECT * FROM reconciliation_run ORDER BY id DESC LIMIT 1")
+    Mono<ReconciliationRun> findLatest();
+
+    @Query("SELECT * FROM reconciliation_discrepancy WHERE run_id = :runId ORDER BY account")
+    Flux<ReconciliationDiscrepancy> findDiscrepancies(Long runId);
+}
+
+interface ReconciliationRepositoryCustom {
+
+    /**
+     * @return the lowest and highest account id, or empty if there is no account.
+     */
+    Mono<long[]> findAccountIdRange();
+
+    Mono<Long> countAccounts(long fromId, long toId);
+
+    /**
+     * The accounts with an id in [{@code fromId}, {@code toId}) whose balance, stripes included, is not the sum
+     * of their postings. Balances and sums are read by one statement, so they are consistent with each other.
+     */
+    Flux<ReconciliationDiscrepancy> compare(long fromId, long toId);
+
+    /**
+     * Insert all discrepancies with a single multi-row statement.
+     */
+    Mono<Void> insertDiscrepancies(List<ReconciliationDiscrepancy> discrepancies);
+}
+
+class ReconciliationRepositoryCustomImpl implements ReconciliationRepositoryCustom {
+
+    // The posting sums are index-only scans of idx_posting_account_posted_at
+    private static final String COMPARE = "SELECT r.account, r.balance, r.posted FROM (" +
+            "SELECT a.account, " +
+            "a.balance + COALESCE((SELECT SUM(s.balance) FROM account_stripe s WHERE s.account = a.account), 0) AS balance, " +
+            "COALESCE((SELECT SUM(p.amount) FROM posting p WHERE p.account = a.account), 0) AS posted " +
+            "FROM \"ACCOUNT\" a WHERE a.id >= :fromId AND a.id < :toId) r " +
+            "WHERE r.balance <> r.posted";
+
+    private final DatabaseClient db;
+
+    public ReconciliationRepositoryCustomImpl(DatabaseClient db) {
+        this.db = db;
+    }
+
+    @Override
+    public Mono<long[]> findAccountIdRange() {
+        return db.execute("SELECT MIN(id) AS low, MAX(id) AS high FROM \"ACCOUNT\"")
+                .map(row -> row.get("low", Long.class) == null
+                        ? new long[0]
+                        : new long[]{row.get("low", Long.class), row.get("high", Long.class)})
+                .one()
+                .filter(range -> range.length == 2);
+    }
+
+    @Override
+    public Mono<Long> countAccounts(long fromId, long toId) {
+        return db.execute("SELECT COUNT(*) AS total FROM \"ACCOUNT\" WHERE id >= :fromId AND id < :toId")
+                .bind("fromId", fromId)
+                .bind("toId", toId)
+                .map(row -> row.get("total", Long.class))
+                .one();
+    }
+
+    @Override
+    public Flux<ReconciliationDiscrepancy> compare(long fromId, long toId) {
+        return db.execute(COMPARE)
+                .bind("fromId", fromId)
+                .bind("toId", toId)
+                .map(row -> {
+                    ReconciliationDiscrepancy discrepancy = new ReconciliationDiscrepancy();
+                    discrepancy.setAccount(row.get("account", String.class));
+                    discrepancy.setBalance(new BigDecimal(row.get("balance", Number.class).toString()));
+                    discrepancy.setPosted(new BigDecimal(row.get("posted", Number.class).toString()));
+                    return discrepancy;
+                })
+                .all();
+    }
+
+    @Override
+    public Mono<Void> insertDiscrepancies(List<ReconciliationDiscrepancy> discrepancies) {
+        if (discrepancies.isEmpty()) {
+            return Mono.empty();
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO reconciliation_discrepancy (run_id, account, balance, posted) VALUES ");
+        for (int i = 0; i < discrepancies.size(); i++) {
+            sql.append(i == 0 ? "(" : ", (")
+                    .append(":r").append(i).append(", :a").append(i).append(", :b").append(i).append(", :p").append(i)
+                    .append(')');
+        }
+        DatabaseClient.GenericExecuteSpec spec = db.execute(sql.toString());
+        for (int i = 0; i < discrepancies.size(); i++) {
+            ReconciliationDiscrepancy discrepancy = discrepancies.get(i);
+            spec = spec.bind("r" + i, discrepancy.getRunId())
+                    .bind("a" + i, discrepancy.getAccount())
+                    .bind("b" + i, discrepancy.getBalance())
+                    .bind("p" + i, discrepancy.getPosted());
+        }
+        return spec.fetch().rowsUpdated().then();
+    }
+}
@@ -0,0 +1,126 @@
+package com.xbank.repository;
+
+import com.xbank.domain.StandingOrder;
+import com.xbank.domain.StandingOrderRun;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Spring Data R2DBC repository for the {@link StandingOrder} entity and its {@link StandingOrderRun} rows.
+ */
+public interface StandingOrderRepository extends R2dbcRepository<StandingOrder, Long>, StandingOrderRepositoryCustom {
+
+    @Query("SELECT * FROM standing_order WHERE owner = :owner ORDER BY id")
+    Flux<StandingOrder> findByOwner(String owner);
+
+    @Query("SELECT * FROM standing_order WHERE id = :id AND owner = :owner")
+    Mono<StandingOrder> findOneByOwner(Long id, String owner);
+
+    /**
+     * Keyset scan of the orders of one scheduler partition due on or before {@code today}, after {@code afterId}.
+     */
+    @Query("SELECT * FROM standing_order WHERE next_run <= :today AND active = TRUE " +
+        "AND MOD(bucket, :partitions) = :partition AND id > :afterId ORDER BY id LIMIT :limit")
+    Flux<StandingOrder> findDue(LocalDate today, int partition, int partitions, long afterId, int limit);
+
+    @Query("SELECT COUNT(*) FROM standing_order_run WHERE order_id = :orderId")
+    Mono<Long> countRuns(Long orderId);
+
+    /**
+     * Record the transfer of a claimed run as rejected with {@code error}.
+     */
+    @Modifying
+    @Query("UPDATE standing_order_run SET result = 0, error = :error WHERE order_id = :orderId AND run_date = :runDate")
+    Mono<Integer> rejectRun(Long orderId, LocalDate runDate, String error);
+}
+
+interface StandingOrderRepositoryCustom {
+
+    /**
+     * Insert all runs with a single multi-row statement. Fails with a
+     * {@link org.springframework.dao.DataIntegrityViolationException} if one of them was already inserted.
+     */
+    Mono<Void> insertRuns(List<StandingOrderRun> runs);
+
+    /**
+     * Move the orders {@code ids} to their next period, {@code nextRun}.
+     */
+    Mono<Integer> advance(Collection<Long> ids, LocalDate nextRun);
+
+    /**
+     * Deactivate the orders {@code ids}, whose last period was executed.
+     */
+    Mono<Integer> finish(Collection<Long> ids);
+
+    /**
+     * Record the transfers of the claimed runs of the orders {@code ids} for {@code runDate} as booked.
+     */
+    Mono<Integer> completeRuns(Collection<Long> ids, LocalDate runDate);
+}
+
+class StandingOrderRepositoryCustomImpl implements StandingOrderRepositoryCustom {
+
+    private final DatabaseClient db;
+
+    public StandingOrderRepositoryCustomImpl(DatabaseClient db) {
+        this.db = db;
+    }
+
+    @Override
+    public Mono<Void> insertRuns(List<StandingOrderRun> runs) {
+        if (runs.isEmpty()) {
+            return Mono.empty();
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO standing_order_run (order_id, run_date, result, error, executed_at) VALUES ");
+        for (int i = 0; i < runs.size(); i++) {
+            sql.append(i == 0 ? "(" : ", (")
+                    .append(":o").append(i).append(", :d").append(i).append(", :r").append(i)
+                    .append(", :e").append(i).append(", :x").append(i)
+                    .append(')');
+        }
+        DatabaseClient.GenericExecuteSpec spec = db.execute(sql.toString());
+        for (int i = 0; i < runs.size(); i++) {
+            StandingOrderRun run = runs.get(i);
+            spec = spec.bind("o" + i, run.getOrderId())
+                    .bind("d" + i, run.getRunDate())
+                    .bind("r" + i, run.getResult())
+                    .bind("x" + i, run.getExecutedAt());
+            spec = run.getError() == null ? spec.bindNull("e" + i, String.class) : spec.bind("e" + i, run.getError());
+        }
+        return spec.fetch().rowsUpdated().then();
+    }
+
+    @Override
+    public Mono<Integer> advance(Collection<Long> ids, LocalDate nextRun) {
+        return db.execute("UPDATE standing_order SET next_run = :nextRun, runs = runs + 1 WHERE id IN (:ids)")
+                .bind("nextRun", nextRun)
+                .bind("ids", ids)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    @Override
+    public Mono<Integer> finish(Collection<Long> ids) {
+        return db.execute("UPDATE standing_order SET active = FALSE, runs = runs + 1 WHERE id IN (:ids)")
+                .bind("ids", ids)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    @Override
+    public Mono<Integer> completeRuns(Collection<Long> ids, LocalDate runDate) {
+        return db.execute("UPDATE standing_order_run SET result = 1, error = NULL WHERE run_date = :runDate AND order_id IN (:ids)")
+                .bind("runDate", runDate)
+                .bind("ids", ids)
+                .fetch()
+                .rowsUpdated();
+    }
+}
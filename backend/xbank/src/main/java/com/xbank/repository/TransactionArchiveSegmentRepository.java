@@ -0,0 +1,15 @@
+package com.xbank.repository;
+
+import com.xbank.domain.TransactionArchiveSegment;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Spring Data R2DBC repository for the {@link TransactionArchiveSegment} entity.
+ */
+public interface TransactionArchiveSegmentRepository extends R2dbcRepository<TransactionArchiveSegment, Long> {
+
+    @Query("SELECT * FROM transaction_archive_segment ORDER BY id")
+    Flux<TransactionArchiveSegment> findAllInOrder();
+}
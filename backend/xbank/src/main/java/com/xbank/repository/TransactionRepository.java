@@ -2,9 +2,9 @@ package com.xbank.repository;
 
 import com.xbank.domain.Transaction;
 import liquibase.pro.packaged.S;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.r2dbc.core.DatabaseClient;
 import org.springframework.data.r2dbc.core.ReactiveDataAccessStrategy;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.transaction.annotation.Transactional;
@@ -13,6 +13,7 @@ import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Spring Data R2DBC repository for the {@link Transaction} entity.
@@ -26,11 +27,34 @@ public interface TransactionRepository extends R2dbcRepository<Transaction, Long
     Mono<Void> saveTransactionData(String owner, int action, String account, String toAccount,
                                    BigDecimal amount, String currency, LocalDateTime transactAt, int result, String error);
 
-    @Query("SELECT * FROM transaction where account = :account")
-    Flux<Transaction> getAllTransactionsByAccount(String account);
+    /**
+     * Transactions of {@code account} since {@code from}, newest first, after the cursor ({@code at}, {@code id}).
+     * Both bounds are on {@code transact_at}, so that only the partitions between them are scanned.
+     */
+    @Query("SELECT * FROM transaction WHERE account = :account AND transact_at >= :from AND transact_at <= :at " +
+        "AND (transact_at < :at OR id < :id) ORDER BY transact_at DESC, id DESC LIMIT :limit")
+    Flux<Transaction> findPageByAccount(String account, LocalDateTime from, LocalDateTime at, long id, int limit);
 
-    @Query("SELECT * FROM transaction where owner = :owner")
-    Flux<Transaction> getAllTransactionsByUser(String owner);
+    /**
+     * Transactions of {@code owner} since {@code from}, newest first, after the cursor ({@code at}, {@code id}).
+     * Both bounds are on {@code transact_at}, so that only the partitions between them are scanned.
+     */
+    @Query("SELECT * FROM transaction WHERE owner = :owner AND transact_at >= :from AND transact_at <= :at " +
+        "AND (transact_at < :at OR id < :id) ORDER BY transact_at DESC, id DESC LIMIT :limit")
+    Flux<Transaction> findPageByOwner(String owner, LocalDateTime from, LocalDateTime at, long id, int limit);
+
+    /**
+     * The oldest transactions by id among those before {@code before}, to archive.
+     */
+    @Query("SELECT * FROM transaction WHERE transact_at < :before ORDER BY id LIMIT :limit")
+    Flux<Transaction> findArchivable(LocalDateTime before, int limit);
+
+    /**
+     * Delete the transactions returned by {@link #findArchivable} up to {@code lastId}.
+     */
+    @Modifying
+    @Query("DELETE FROM transaction WHERE transact_at < :before AND id <= :lastId")
+    Mono<Integer> deleteArchived(LocalDateTime before, long lastId);
 
     @Query("SELECT COUNT(DISTINCT id) FROM transaction where owner = :owner")
     Mono<Long> countTransactionsByUser(String owner);
@@ -38,7 +62,7 @@ public interface TransactionRepository extends R2dbcRepository<Transaction, Long
 }
 
 interface TransactionRepositoryCustom {
-    Flux<Transaction> findAllAsPage(Pageable pageable);
+    Mono<Void> insertAll(List<Transaction> transactions);
 }
 
 class TransactionRepositoryCustomImpl implements TransactionRepositoryCustom {
@@ -50,11 +74,22 @@ class TransactionRepositoryCustomImpl implements TransactionRepositoryCustom {
         this.dataAccessStrategy = dataAccessStrategy;
     }
 
+    /**
+     * Insert all transactions with a single multi-row statement.
+     */
     @Override
-    public Flux<Transaction> findAllAsPage(Pageable pageable) {
-        return db.select().from(Transaction.class)
-                .page(pageable)
-                .as(Transaction.class)
-                .all();
+    public Mono<Void> insertAll(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return Mono.empty();
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO transaction (" + TransactionStatements.COLUMNS + ") VALUES ");
+        for (int i = 0; i < transactions.size(); i++) {
+            sql.append(i == 0 ? "(" : ", (").append(TransactionStatements.values("t" + i + "_")).append(')');
+        }
+        DatabaseClient.GenericExecuteSpec spec = db.execute(sql.toString());
+        for (int i = 0; i < transactions.size(); i++) {
+            spec = TransactionStatements.bind(spec, "t" + i + "_", transactions.get(i));
+        }
+        return spec.fetch().rowsUpdated().then();
     }
 }
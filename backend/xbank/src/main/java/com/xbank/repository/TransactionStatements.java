@@ -0,0 +1,69 @@
+package com.xbank.repository;
+
+import com.xbank.domain.Transaction;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * SQL fragments shared by the statements that insert {@link Transaction} rows by hand.
+ */
+final class TransactionStatements {
+
+    static final String COLUMNS = "owner, action, account, to_account, amount, currency, note, " +
+        "transact_at, result, error, created_by, created_date, last_modified_by, last_modified_date, to_amount, to_currency";
+
+    private static final int COLUMN_COUNT = 16;
+
+    private TransactionStatements() {
+    }
+
+    /**
+     * @return the bind markers of one row, e.g. {@code :t0, :t1, ...} for prefix {@code t}.
+     */
+    static String values(String prefix) {
+        StringBuilder values = new StringBuilder();
+        for (int column = 0; column < COLUMN_COUNT; column++) {
+            if (column > 0) {
+                values.append(", ");
+            }
+            values.append(':').append(prefix).append(column);
+        }
+        return values.toString();
+    }
+
+    /**
+     * Bind one transaction to the markers produced by {@link #values(String)} with the same prefix.
+     */
+    static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, String prefix, Transaction t) {
+        spec = bind(spec, prefix + 0, t.getOwner(), String.class);
+        spec = bind(spec, prefix + 1, t.getAction(), Integer.class);
+        spec = bind(spec, prefix + 2, t.getAccount(), String.class);
+        spec = bind(spec, prefix + 3, t.getToAccount(), String.class);
+        spec = bind(spec, prefix + 4, t.getAmount(), BigDecimal.class);
+        spec = bind(spec, prefix + 5, t.getCurrency(), String.class);
+        spec = bind(spec, prefix + 6, t.getNote(), String.class);
+        spec = bind(spec, prefix + 7, t.getTransactAt(), LocalDateTime.class);
+        spec = bind(spec, prefix + 8, t.getResult(), Integer.class);
+        spec = bind(spec, prefix + 9, t.getError(), String.class);
+        spec = bind(spec, prefix + 10, t.getCreatedBy(), String.class);
+        spec = bind(spec, prefix + 11, toLocalDateTime(t.getCreatedDate()), LocalDateTime.class);
+        spec = bind(spec, prefix + 12, t.getLastModifiedBy(), String.class);
+        spec = bind(spec, prefix + 13, toLocalDateTime(t.getLastModifiedDate()), LocalDateTime.class);
+        spec = bind(spec, prefix + 14, t.getToAmount(), BigDecimal.class);
+        return bind(spec, prefix + 15, t.getToCurrency(), String.class);
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, String name, Object value, Class<?> type) {
+        return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+    }
+
+    // LocalDateTime seems to be the only type that is supported across all drivers atm
+    // See https://github.com/r2dbc/r2dbc-h2/pull/139 https://github.com/mirromutth/r2dbc-mysql/issues/105
+    private static LocalDateTime toLocalDateTime(Instant instant) {
+        return instant == null ? null : LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,55 @@
+package com.xbank.repository;
+
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Reads and advances the {@code wal_checkpoint} of a node: the sequence number of the last write-ahead log
+ * record applied to the database.
+ */
+@Repository
+public class WalCheckpointRepository {
+
+    private final DatabaseClient db;
+
+    public WalCheckpointRepository(DatabaseClient db) {
+        this.db = db;
+    }
+
+    /**
+     * @return the last sequence number applied by {@code node}, or 0 if it never applied a record.
+     */
+    public Mono<Long> findSeq(String node) {
+        return db.execute("SELECT seq FROM wal_checkpoint WHERE node = :node")
+                .bind("node", node)
+                .map(row -> row.get("seq", Long.class))
+                .one()
+                .defaultIfEmpty(0L);
+    }
+
+    /**
+     * Record {@code seq} as the last sequence number applied by {@code node}. Meant to run in the transaction
+     * that applied the record.
+     */
+    public Mono<Void> advance(String node, long seq) {
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        return db.execute("UPDATE wal_checkpoint SET seq = :seq, last_modified_date = :now WHERE node = :node")
+                .bind("seq", seq)
+                .bind("now", now)
+                .bind("node", node)
+                .fetch()
+                .rowsUpdated()
+                .filter(updated -> updated == 0)
+                .flatMap(missing -> db.execute("INSERT INTO wal_checkpoint (node, seq, last_modified_date) VALUES (:node, :seq, :now)")
+                        .bind("node", node)
+                        .bind("seq", seq)
+                        .bind("now", now)
+                        .fetch()
+                        .rowsUpdated())
+                .then();
+    }
+}
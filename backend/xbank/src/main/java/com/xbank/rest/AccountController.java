@@ -1,15 +1,23 @@
 package com.xbank.rest;
 
+import com.xbank.config.Constants;
 import com.xbank.domain.Account;
 import com.xbank.dto.AccountDTO;
+import com.xbank.dto.AccountTranferBatchDTO;
 import com.xbank.dto.AccountTranferDTO;
+import com.xbank.dto.BalanceDTO;
+import com.xbank.dto.TranferResultDTO;
 import com.xbank.dto.WithDrawDTO;
 import com.xbank.rest.errors.BadRequestAlertException;
 import com.xbank.security.SecurityUtils;
 import com.xbank.service.AccountService;
+import com.xbank.service.IdempotencyService;
+import com.xbank.service.StatementService;
 import io.github.jhipster.web.util.PaginationUtil;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
@@ -18,7 +26,12 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * REST controller for managing the account.
@@ -27,10 +40,18 @@ import java.util.ArrayList;
 @RequestMapping("/api/accounts")
 public class AccountController {
 
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
     private final AccountService accountService;
 
-    public AccountController(AccountService accountService) {
+    private final IdempotencyService idempotencyService;
+
+    private final StatementService statementService;
+
+    public AccountController(AccountService accountService, IdempotencyService idempotencyService, StatementService statementService) {
         this.accountService = accountService;
+        this.idempotencyService = idempotencyService;
+        this.statementService = statementService;
     }
 
     @PostMapping
@@ -42,13 +63,18 @@ public class AccountController {
         }
     }
 
+    /**
+     * {@code GET /accounts/user} : a page of the accounts of the current user.
+     *
+     * @param after the {@code X-Next-Cursor} of the previous page; the first page if not set.
+     * @param size  the number of accounts per page.
+     */
     @GetMapping("/user")
-    public Mono<ResponseEntity<Flux<Account>>> getAccountsByUser(ServerHttpRequest request, Pageable pageable) {
+    public Mono<ResponseEntity<List<Account>>> getAccountsByUser(@RequestParam(required = false) String after,
+                                                                 @RequestParam(required = false) Integer size) {
         return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
-                .flatMap(login -> accountService.countAccountsByUser(login)
-                        .map(total -> new PageImpl<>(new ArrayList<>(), pageable, total))
-                        .map(page -> ResponseEntity.ok().headers(PaginationUtil.generatePaginationHttpHeaders(UriComponentsBuilder.fromHttpRequest(request), page))
-                                .body(accountService.getAccountByUser(login))));
+                .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
+                .flatMap(login -> accountService.getAccounts(login, after, size));
     }
 
     @GetMapping("/{account}")
@@ -61,30 +87,71 @@ public class AccountController {
                                 .body(accountService.getAccountDetail(login, account))));
     }
 
+    @GetMapping("/{account}/balance")
+    public Mono<ResponseEntity<BalanceDTO>> getBalanceAt(@PathVariable String account,
+                                                        @RequestParam(required = false) Instant at) {
+        Instant time = at != null ? at : Instant.now();
+        return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
+                .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
+                .flatMap(login -> accountService.getBalanceAt(login, account, time))
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * {@code GET /accounts/{account}/statement} : the statement of an account as CSV, streamed.
+     *
+     * @param from start of the statement, inclusive; 30 days ago if not set.
+     * @param to   end of the statement, exclusive; now if not set.
+     */
+    @GetMapping("/{account}/statement")
+    public Mono<ResponseEntity<Flux<String>>> getStatement(@PathVariable String account,
+                                                          @RequestParam(required = false) Instant from,
+                                                          @RequestParam(required = false) Instant to) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(30, ChronoUnit.DAYS);
+        return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
+                .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
+                // Postings are timestamped in the server's time zone
+                .flatMap(login -> statementService.csv(login, account,
+                        LocalDateTime.ofInstant(start, ZoneId.systemDefault()), LocalDateTime.ofInstant(end, ZoneId.systemDefault())))
+                .map(lines -> ResponseEntity.ok()
+                        .contentType(TEXT_CSV)
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"statement-" + account + ".csv\"")
+                        .body(lines));
+    }
+
+    /**
+     * {@code GET /accounts} : a page of the accounts of the current user.
+     *
+     * @param after the {@code X-Next-Cursor} of the previous page; the first page if not set.
+     * @param size  the number of accounts per page.
+     */
     @GetMapping
-    public Mono<ResponseEntity<Flux<Account>>> getAccounts(ServerHttpRequest request, Pageable pageable) {
-        try {
-            return accountService.countAccounts()
-                    .map(total -> new PageImpl<>(new ArrayList<>(), pageable, total))
-                    .map(page -> ResponseEntity.ok().headers(PaginationUtil.generatePaginationHttpHeaders(UriComponentsBuilder.fromHttpRequest(request), page))
-                            .body(accountService.getAccounts(pageable)));
-        } catch (Exception e) {
-            throw new BadRequestAlertException(e.getMessage(), "Account", null);
-        }
+    public Mono<ResponseEntity<List<Account>>> getAccounts(@RequestParam(required = false) String after,
+                                                           @RequestParam(required = false) Integer size) {
+        return getAccountsByUser(after, size);
     }
 
     @PostMapping("/deposit")
-    public Mono<ResponseEntity<Account>> deposit(@Valid @RequestBody WithDrawDTO data) {
-        return accountService.deposit(data);
+    public Mono<ResponseEntity<Account>> deposit(@Valid @RequestBody WithDrawDTO data,
+                                                 @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "deposit", data, Account.class, () -> accountService.deposit(data));
     }
 
     @PostMapping("/withdraw")
-    public Mono<ResponseEntity<Account>> withDraw(@Valid @RequestBody WithDrawDTO data) {
-        return accountService.withDraw(data);
+    public Mono<ResponseEntity<Account>> withDraw(@Valid @RequestBody WithDrawDTO data,
+                                                  @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "withdraw", data, Account.class, () -> accountService.withDraw(data));
     }
 
     @PostMapping("/transfer")
-    public Mono<ResponseEntity<Account>> transfer(@Valid @RequestBody AccountTranferDTO data) {
-        return accountService.transfer(data);
+    public Mono<ResponseEntity<Account>> transfer(@Valid @RequestBody AccountTranferDTO data,
+                                                  @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "transfer", data, Account.class, () -> accountService.transfer(data));
+    }
+
+    @PostMapping("/transfer/batch")
+    public Mono<ResponseEntity<List<TranferResultDTO>>> transferBatch(@Valid @RequestBody AccountTranferBatchDTO batch) {
+        return accountService.transferBatch(batch.getItems()).map(ResponseEntity::ok);
     }
 }
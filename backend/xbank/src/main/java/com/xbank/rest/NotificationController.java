@@ -1,18 +1,14 @@
 package com.xbank.rest;
 
+import com.xbank.config.Constants;
 import com.xbank.domain.Notification;
+import com.xbank.security.SecurityUtils;
 import com.xbank.service.NotificationService;
-import io.github.jhipster.web.util.PaginationUtil;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.util.UriComponentsBuilder;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * REST controller for managing the Notification.
@@ -28,18 +24,30 @@ public class NotificationController {
     }
 
     /**
-     * {@code GET /notifications} : get all notifications.
+     * {@code GET /notifications} : a page of the notifications of the current user, newest first.
      *
-     * @param request  a {@link ServerHttpRequest} request.
-     * @param pageable the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body all transactions.
+     * @param after the {@code X-Next-Cursor} of the previous page; the first page if not set.
+     * @param size  the number of notifications per page.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the notifications.
      */
     @GetMapping
-    public Mono<ResponseEntity<Flux<Notification>>> getAllNotificationUser(ServerHttpRequest request, Pageable pageable) {
-        return notificationService.countNotifications()
-                .map(total -> new PageImpl<>(new ArrayList<>(), pageable, total))
-                .map(page -> ResponseEntity.ok().headers(PaginationUtil.generatePaginationHttpHeaders(UriComponentsBuilder.fromHttpRequest(request), page))
-                        .body(notificationService.getAllNotifications(pageable)));
+    public Mono<ResponseEntity<List<Notification>>> getAllNotificationUser(@RequestParam(required = false) String after,
+                                                                          @RequestParam(required = false) Integer size) {
+        return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
+                .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
+                .flatMap(login -> notificationService.getAllNotifications(login, after, size));
+    }
+
+    /**
+     * {@code GET /notifications/unread-count} : the number of unread notifications of the current user.
+     *
+     * @return the number of unread notifications.
+     */
+    @GetMapping("/unread-count")
+    public Mono<Long> getUnreadCount() {
+        return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
+                .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
+                .flatMap(notificationService::countUnread);
     }
 
     @GetMapping("/readAll")
@@ -48,13 +56,15 @@ public class NotificationController {
     }
 
     /**
-     * {@code GET /notifications} : get all notifications.
+     * {@code GET /notifications/:id} : get a notification of the current user, and mark it as read.
      *
      * @param id  id notification.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body all transactions.
+     * @return the notification, empty if the current user has none with this id.
      */
     @GetMapping("/{id}")
     public Mono<Notification> detailNotification(@PathVariable long id){
-        return notificationService.detailNotification(id);
+        return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
+                .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
+                .flatMap(login -> notificationService.detailNotification(login, id));
     }
 }
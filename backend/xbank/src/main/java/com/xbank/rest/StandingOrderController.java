@@ -0,0 +1,52 @@
+package com.xbank.rest;
+
+import com.xbank.config.Constants;
+import com.xbank.domain.StandingOrder;
+import com.xbank.dto.StandingOrderDTO;
+import com.xbank.security.SecurityUtils;
+import com.xbank.service.StandingOrderService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.net.URI;
+
+/**
+ * REST controller for managing the standing orders of the current user.
+ */
+@RestController
+@RequestMapping("/api/standing-orders")
+public class StandingOrderController {
+
+    private final StandingOrderService standingOrderService;
+
+    public StandingOrderController(StandingOrderService standingOrderService) {
+        this.standingOrderService = standingOrderService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<StandingOrder>> createStandingOrder(@Valid @RequestBody StandingOrderDTO standingOrderDTO) {
+        return currentLogin()
+                .flatMap(login -> standingOrderService.create(login, standingOrderDTO))
+                .map(order -> ResponseEntity.created(URI.create("/api/standing-orders/" + order.getId())).body(order));
+    }
+
+    @GetMapping
+    public Flux<StandingOrder> getStandingOrders() {
+        return currentLogin().flatMapMany(standingOrderService::getByOwner);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<StandingOrder>> cancelStandingOrder(@PathVariable Long id) {
+        return currentLogin()
+                .flatMap(login -> standingOrderService.cancel(login, id))
+                .map(ResponseEntity::ok);
+    }
+
+    private static Mono<String> currentLogin() {
+        return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
+                .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT));
+    }
+}
@@ -1,27 +1,29 @@
 package com.xbank.rest;
 
+import com.xbank.config.Constants;
+import com.xbank.domain.AccountDailyRollup;
 import com.xbank.domain.Transaction;
+import com.xbank.dto.AccountSummaryDTO;
 import com.xbank.dto.TransactionDTO;
 import com.xbank.dto.UserDTO;
 import com.xbank.security.AuthoritiesConstants;
 import com.xbank.security.SecurityUtils;
+import com.xbank.service.AccountRollupService;
 import com.xbank.service.TransactionService;
 import io.github.jhipster.web.util.HeaderUtil;
-import io.github.jhipster.web.util.PaginationUtil;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.util.UriComponentsBuilder;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
 
 /**
  * REST controller for managing the Transaction.
@@ -35,8 +37,11 @@ public class TransactionController {
 
     private final TransactionService transactionService;
 
-    public TransactionController(TransactionService transactionService) {
+    private final AccountRollupService accountRollupService;
+
+    public TransactionController(TransactionService transactionService, AccountRollupService accountRollupService) {
         this.transactionService = transactionService;
+        this.accountRollupService = accountRollupService;
     }
 
     @PostMapping
@@ -53,36 +58,92 @@ public class TransactionController {
     }
 
     /**
-     * {@code GET /transactions} : get all transactions.
+     * {@code GET /transactions} : a page of the transactions of the current user, newest first.
      *
-     * @param request  a {@link ServerHttpRequest} request.
-     * @param pageable the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body all transactions.
+     * @param from  the oldest transactions to list; {@code application.partitioning.history-months} ago, or all, if not set.
+     * @param after the {@code X-Next-Cursor} of the previous page; the first page if not set.
+     * @param size  the number of transactions per page.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the transactions.
      */
     @GetMapping
-    public Mono<ResponseEntity<Flux<Transaction>>> getAllTransactions(ServerHttpRequest request, Pageable pageable) {
-        return transactionService.countTransactions()
-                .map(total -> new PageImpl<>(new ArrayList<>(), pageable, total))
-                .map(page -> ResponseEntity.ok().headers(PaginationUtil.generatePaginationHttpHeaders(UriComponentsBuilder.fromHttpRequest(request), page))
-                        .body(transactionService.getAllTransactions(pageable)));
+    public Mono<ResponseEntity<List<Transaction>>> getAllTransactions(@RequestParam(required = false) Instant from,
+                                                                      @RequestParam(required = false) String after,
+                                                                      @RequestParam(required = false) Integer size) {
+        return getAllTransactionsByUser(from, after, size);
     }
 
     /**
-     * {@code GET /transactions} : get all transactions by account.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body all transactions.
+     * {@code GET /transactions/user/{account}} : a page of the transactions of an account, newest first.
+     *
+     * @param from  the oldest transactions to list; {@code application.partitioning.history-months} ago, or all, if not set.
+     * @param after the {@code X-Next-Cursor} of the previous page; the first page if not set.
+     * @param size  the number of transactions per page.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the transactions.
      */
     @GetMapping("/user/{account}")
-    public Mono<ResponseEntity<Flux<Transaction>>> getAllTransactionsByUser(@PathVariable String account) {
-        return transactionService.getAllTransactionsByAccount(account);
+    public Mono<ResponseEntity<List<Transaction>>> getAllTransactionsByUser(@PathVariable String account,
+                                                                            @RequestParam(required = false) Instant from,
+                                                                            @RequestParam(required = false) String after,
+                                                                            @RequestParam(required = false) Integer size) {
+        return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
+                .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
+                .flatMap(login -> transactionService.getAllTransactionsByAccount(login, account, localTime(from), after, size));
     }
 
     /**
-     * {@code GET /transactions} : get all transactions.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body all transactions.
+     * {@code GET /transactions/user} : a page of the transactions of the current user, newest first.
+     *
+     * @param from  the oldest transactions to list; {@code application.partitioning.history-months} ago, or all, if not set.
+     * @param after the {@code X-Next-Cursor} of the previous page; the first page if not set.
+     * @param size  the number of transactions per page.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the transactions.
      */
     @GetMapping("/user")
-    public Mono<ResponseEntity<Flux<Transaction>>> getAllTransactionsByUser() {
-        return transactionService.getAllTransactionsByUser();
+    public Mono<ResponseEntity<List<Transaction>>> getAllTransactionsByUser(@RequestParam(required = false) Instant from,
+                                                                            @RequestParam(required = false) String after,
+                                                                            @RequestParam(required = false) Integer size) {
+        return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
+                .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
+                .flatMap(login -> transactionService.getAllTransactionsByUser(login, localTime(from), after, size));
+    }
+
+    /**
+     * {@code GET /transactions/user/{account}/daily} : the transaction totals of an account per day.
+     *
+     * @param from the first day; the first of the current month if not set.
+     * @param to   the last day; today if not set.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the days that had transactions.
+     */
+    @GetMapping("/user/{account}/daily")
+    public Mono<ResponseEntity<List<AccountDailyRollup>>> getDailyRollups(@PathVariable String account,
+                                                                        @RequestParam(required = false) LocalDate from,
+                                                                        @RequestParam(required = false) LocalDate to) {
+        return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
+                .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
+                .flatMap(login -> accountRollupService.getDailyRollups(login, account, from, to))
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * {@code GET /transactions/user/{account}/summary} : the transaction totals of an account over a range of days.
+     *
+     * @param from the first day; the first of the current month if not set.
+     * @param to   the last day; today if not set.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the totals.
+     */
+    @GetMapping("/user/{account}/summary")
+    public Mono<ResponseEntity<AccountSummaryDTO>> getSummary(@PathVariable String account,
+                                                              @RequestParam(required = false) LocalDate from,
+                                                              @RequestParam(required = false) LocalDate to) {
+        return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
+                .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
+                .flatMap(login -> accountRollupService.getSummary(login, account, from, to))
+                .map(ResponseEntity::ok);
+    }
+
+    // Transactions are timestamped in the server's time zone
+    private static LocalDateTime localTime(Instant instant) {
+        return instant != null ? LocalDateTime.ofInstant(instant, ZoneId.systemDefault()) : null;
     }
 
     /**
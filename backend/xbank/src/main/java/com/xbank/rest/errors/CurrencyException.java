@@ -0,0 +1,10 @@
+package com.xbank.rest.errors;
+
+public class CurrencyException extends BadRequestAlertException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CurrencyException(String message) {
+        super(ErrorConstants.CURRENCY_TYPE, message, "Currency", "currency");
+    }
+}
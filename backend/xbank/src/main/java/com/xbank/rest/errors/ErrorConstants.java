@@ -13,6 +13,8 @@ public final class ErrorConstants {
     public static final URI EMAIL_ALREADY_USED_TYPE = URI.create(PROBLEM_BASE_URL + "/email-already-used");
     public static final URI LOGIN_ALREADY_USED_TYPE = URI.create(PROBLEM_BASE_URL + "/login-already-used");
     public static final URI WITHDRAW_ERROR = URI.create(PROBLEM_BASE_URL + "/withdraw");
+    public static final URI IDEMPOTENCY_KEY_TYPE = URI.create(PROBLEM_BASE_URL + "/idempotency-key");
+    public static final URI CURRENCY_TYPE = URI.create(PROBLEM_BASE_URL + "/currency");
 
     private ErrorConstants() {
     }
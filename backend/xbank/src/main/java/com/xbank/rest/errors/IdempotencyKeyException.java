@@ -0,0 +1,10 @@
+package com.xbank.rest.errors;
+
+public class IdempotencyKeyException extends BadRequestAlertException {
+
+    private static final long serialVersionUID = 1L;
+
+    public IdempotencyKeyException(String message) {
+        super(ErrorConstants.IDEMPOTENCY_KEY_TYPE, message, "IdempotencyKey", "idempotencyKey");
+    }
+}
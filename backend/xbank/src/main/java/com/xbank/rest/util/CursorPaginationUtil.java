@@ -0,0 +1,29 @@
+package com.xbank.rest.util;
+
+import com.xbank.dto.PageCursor;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Utility class for handling cursor pagination.
+ * <p>
+ * A page is answered as a JSON array; when it is full, the {@value #NEXT_CURSOR_HEADER} header carries the
+ * {@code after} token of the next page.
+ */
+public final class CursorPaginationUtil {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private CursorPaginationUtil() {
+    }
+
+    public static <T> ResponseEntity<List<T>> page(List<T> items, int limit, Function<T, PageCursor> cursorOf) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (items.size() >= limit) {
+            response.header(NEXT_CURSOR_HEADER, cursorOf.apply(items.get(items.size() - 1)).encode());
+        }
+        return response.body(items);
+    }
+}
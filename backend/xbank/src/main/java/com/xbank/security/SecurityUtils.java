@@ -49,12 +49,21 @@ public final class SecurityUtils {
                     .getContext()
                     .map(ctx -> ctx.getAuthentication().getPrincipal())
                     .cast(Jwt.class)
-                    .map(jwt -> jwt.getClaimAsString(USERNAME_CLAIM));
+                    .map(SecurityUtils::getLogin);
         }
 
         return getCurrentUserLogin();
     }
 
+    /**
+     * Get the login carried by a JWT.
+     *
+     * @return the login of the user of {@code jwt}.
+     */
+    public static String getLogin(Jwt jwt) {
+        return jwt.getClaimAsString(USERNAME_CLAIM);
+    }
+
 
     /**
      * Get the JWT of the current user.
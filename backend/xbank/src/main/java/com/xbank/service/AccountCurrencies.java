@@ -0,0 +1,46 @@
+package com.xbank.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.xbank.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * The currency of each account, cached in memory: it is set when the account is created and never changes,
+ * so money operations look it up at most once per account.
+ */
+@Component
+public class AccountCurrencies {
+
+    private final AccountRepository accountRepository;
+
+    private final FxRates fxRates;
+
+    private final Cache<String, String> currencies;
+
+    public AccountCurrencies(AccountRepository accountRepository, FxRates fxRates,
+                             @Value("${application.fx.account-cache-size:100000}") long cacheSize) {
+        this.accountRepository = accountRepository;
+        this.fxRates = fxRates;
+        this.currencies = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * @return the currency of {@code account}, or empty if it does not exist.
+     */
+    public Mono<String> of(String account) {
+        String currency = currencies.getIfPresent(account);
+        if (currency != null) {
+            return Mono.just(currency);
+        }
+        return accountRepository.findOneByAccount(account)
+                .map(found -> {
+                    // Accounts created before currencies were supported are held in the base currency
+                    String loaded = found.getCurrency() != null ? found.getCurrency() : fxRates.getBaseCurrency();
+                    currencies.put(account, loaded);
+                    return loaded;
+                });
+    }
+}
@@ -0,0 +1,304 @@
+package com.xbank.service;
+
+import com.xbank.domain.AccountDailyRollup;
+import com.xbank.domain.Transaction;
+import com.xbank.dto.AccountSummaryDTO;
+import com.xbank.event.TransactionEvent;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.AccountRollupRepository;
+import com.xbank.rest.errors.BadRequestAlertException;
+import com.xbank.service.archive.TransactionArchive;
+import javassist.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Per account and day totals of the successful transactions, so that summaries over a range of days read one
+ * row per day instead of every transaction.
+ * <p>
+ * Transaction events are added up in memory by account and day, and flushed every
+ * {@code application.rollup.flush-interval-ms} as upserts of {@code batch-size} rows that add to the stored
+ * totals. Each row carries the closing balance of its day from the balance journal. A batch that fails is put
+ * back and goes with the next flush.
+ * <p>
+ * Every night the previous {@code backfill-days} days are rebuilt from the {@code transaction} table, which
+ * repairs what was booked without an event or lost with a crash before a flush. On an empty rollup table the
+ * whole history is rebuilt. The totals of a day still waiting to be flushed are dropped when the day is rebuilt,
+ * as its transactions are already counted by the rebuild. Flushes and rebuilt days are written one at a time, so
+ * that a flush cannot add totals on top of a day rebuilt meanwhile.
+ * <p>
+ * Days reached by the {@link TransactionArchive} are not rebuilt: their transactions have left the
+ * {@code transaction} table, and their rollups, written while they were there, are kept as they are.
+ */
+@Service
+public class AccountRollupService implements ApplicationListener<TransactionEvent>, DisposableBean {
+
+    private static final Comparator<AccountDailyRollup> BY_ACCOUNT_AND_DATE = Comparator
+            .comparing(AccountDailyRollup::getAccount)
+            .thenComparing(AccountDailyRollup::getRollupDate);
+
+    private final Logger log = LoggerFactory.getLogger(AccountRollupService.class);
+
+    private final AccountRollupRepository accountRollupRepository;
+
+    private final AccountRepository accountRepository;
+
+    private final BalanceJournalService balanceJournalService;
+
+    private final ContentionRetry contentionRetry;
+
+    /**
+     * Cold tier of the transaction history, only present when {@code application.archive.enabled} is set.
+     */
+    private final TransactionArchive transactionArchive;
+
+    private final int batchSize;
+
+    private final int backfillDays;
+
+    private final int maxDays;
+
+    private Map<Map.Entry<String, LocalDate>, AccountDailyRollup> pending = new HashMap<>();
+
+    /**
+     * Completes once the flush or rebuilt day being written is done.
+     */
+    private Mono<Void> writing = Mono.empty();
+
+    public AccountRollupService(AccountRollupRepository accountRollupRepository, AccountRepository accountRepository,
+                                BalanceJournalService balanceJournalService, ContentionRetry contentionRetry,
+                                ObjectProvider<TransactionArchive> transactionArchive,
+                                @Value("${application.rollup.batch-size:500}") int batchSize,
+                                @Value("${application.rollup.backfill-days:1}") int backfillDays,
+                                @Value("${application.rollup.max-days:366}") int maxDays) {
+        this.accountRollupRepository = accountRollupRepository;
+        this.accountRepository = accountRepository;
+        this.balanceJournalService = balanceJournalService;
+        this.contentionRetry = contentionRetry;
+        this.transactionArchive = transactionArchive.getIfAvailable();
+        this.batchSize = batchSize;
+        this.backfillDays = backfillDays;
+        this.maxDays = maxDays;
+    }
+
+    @Override
+    public void onApplicationEvent(TransactionEvent event) {
+        Transaction transaction = (Transaction) event.getSource();
+        if (!TransactionEvent.ITEM_CREATED.equals(event.getEventType()) || !Integer.valueOf(1).equals(transaction.getResult())) {
+            return;
+        }
+        LocalDate day = transaction.getTransactAt().toLocalDate();
+        switch (transaction.getAction()) {
+            case 1:
+                add(transaction.getAccount(), day, transaction.getAmount(), BigDecimal.ZERO);
+                add(transaction.getToAccount(), day, BigDecimal.ZERO, transaction.creditAmount());
+                break;
+            case 2:
+                add(transaction.getAccount(), day, transaction.getAmount(), BigDecimal.ZERO);
+                break;
+            case 3:
+                add(transaction.getAccount(), day, BigDecimal.ZERO, transaction.getAmount());
+                break;
+            default:
+        }
+    }
+
+    /**
+     * The days of {@code account} from {@code from} to {@code to} that had transactions.
+     *
+     * @param from the first day, the first of the current month if null.
+     * @param to   the last day, today if null.
+     */
+    public Mono<List<AccountDailyRollup>> getDailyRollups(String username, String account, LocalDate from, LocalDate to) {
+        LocalDate first = from != null ? from : LocalDate.now().withDayOfMonth(1);
+        LocalDate last = to != null ? to : LocalDate.now();
+        if (first.isAfter(last) || ChronoUnit.DAYS.between(first, last) >= maxDays) {
+            return Mono.error(new BadRequestAlertException("Invalid date range", "AccountDailyRollup", "date"));
+        }
+        return accountRepository.getAccountDetail(username, account)
+                .switchIfEmpty(Mono.error(new NotFoundException("Account not found!")))
+                .flatMap(acc -> accountRollupRepository.findByAccount(account, first, last).collectList());
+    }
+
+    /**
+     * The totals of the transactions of {@code account} from {@code from} to {@code to}.
+     *
+     * @param from the first day, the first of the current month if null.
+     * @param to   the last day, today if null.
+     */
+    public Mono<AccountSummaryDTO> getSummary(String username, String account, LocalDate from, LocalDate to) {
+        LocalDate first = from != null ? from : LocalDate.now().withDayOfMonth(1);
+        LocalDate last = to != null ? to : LocalDate.now();
+        return getDailyRollups(username, account, first, last).map(days -> {
+            AccountSummaryDTO summary = new AccountSummaryDTO(account, first, last);
+            for (AccountDailyRollup day : days) {
+                summary.setTransactionCount(summary.getTransactionCount() + day.getTransactionCount());
+                summary.setDebitSum(summary.getDebitSum().add(day.getDebitSum()));
+                summary.setCreditSum(summary.getCreditSum().add(day.getCreditSum()));
+                summary.setClosingBalance(day.getClosingBalance());
+            }
+            return summary;
+        });
+    }
+
+    /**
+     * Write the totals added up since the last flush.
+     * <p>
+     * This is scheduled to get fired every second by default.
+     */
+    @Scheduled(fixedDelayString = "${application.rollup.flush-interval-ms:1000}")
+    public void flush() {
+        flushPending().block();
+    }
+
+    /**
+     * @return the number of rollups written.
+     */
+    public Mono<Integer> flushPending() {
+        return exclusive(this::writePending);
+    }
+
+    private Mono<Integer> writePending() {
+        List<AccountDailyRollup> deltas;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return Mono.just(0);
+            }
+            deltas = new ArrayList<>(pending.values());
+            pending = new HashMap<>();
+        }
+        deltas.sort(BY_ACCOUNT_AND_DATE);
+        LocalDateTime now = LocalDateTime.now();
+        return Flux.fromIterable(deltas)
+                .flatMapSequential(delta -> balanceJournalService.balanceAt(delta.getAccount(), endOf(delta.getRollupDate()))
+                        .doOnNext(delta::setClosingBalance)
+                        // Written without a closing balance, the stored one is kept
+                        .onErrorResume(e -> Mono.empty())
+                        .thenReturn(delta), 8)
+                .buffer(batchSize)
+                .concatMap(batch -> contentionRetry.transactional("rollup", () -> accountRollupRepository.addAll(batch, now))
+                        .onErrorResume(e -> {
+                            log.warn("Could not write {} account rollups, retrying with the next flush: {}", batch.size(), e.getMessage());
+                            putBack(batch);
+                            return Mono.just(0);
+                        }))
+                .reduce(0, Integer::sum);
+    }
+
+    /**
+     * Rebuild the rollups of the last {@code application.rollup.backfill-days} days before today, or of every day
+     * before today if there are no rollups yet.
+     * <p>
+     * This is scheduled to get fired every day at 00:30 by default.
+     */
+    @Scheduled(cron = "${application.rollup.backfill-cron:0 30 0 * * *}")
+    public void backfill() {
+        LocalDate today = LocalDate.now();
+        Integer rebuilt = accountRollupRepository.isEmpty()
+                .flatMap(empty -> empty
+                        ? accountRollupRepository.findFirstTransactionAt().map(LocalDateTime::toLocalDate)
+                        : Mono.just(today.minusDays(backfillDays)))
+                .flatMap(from -> backfill(from, today))
+                .block();
+        log.info("Rebuilt {} account rollups", rebuilt);
+    }
+
+    /**
+     * Rebuild the rollups of the days from {@code from} to {@code to}, exclusive, from the {@code transaction} table.
+     * Archived days are skipped.
+     *
+     * @return the number of rollups written.
+     */
+    public Mono<Integer> backfill(LocalDate from, LocalDate to) {
+        LocalDateTime now = LocalDateTime.now();
+        return Flux.range(0, (int) ChronoUnit.DAYS.between(from, to))
+                .map(from::plusDays)
+                .filter(day -> {
+                    if (transactionArchive != null && transactionArchive.reaches(day.atStartOfDay())) {
+                        log.debug("Not rebuilding the account rollups of {}, its transactions are archived", day);
+                        return false;
+                    }
+                    return true;
+                })
+                .concatMap(day -> exclusive(() -> {
+                    dropPending(day);
+                    return contentionRetry.transactional("rollup-backfill", () -> accountRollupRepository
+                            .rebuildDay(day, day.atStartOfDay(), day.plusDays(1).atStartOfDay(), now))
+                            .thenMany(accountRollupRepository.findByDate(day))
+                            .concatMap(rollup -> balanceJournalService.balanceAt(rollup.getAccount(), endOf(day))
+                                    .flatMap(balance -> accountRollupRepository.setClosingBalance(rollup.getAccount(), day, balance))
+                                    .thenReturn(1))
+                            .reduce(0, Integer::sum);
+                }))
+                .reduce(0, Integer::sum);
+    }
+
+    /**
+     * Write what is still pending.
+     */
+    @Override
+    public void destroy() {
+        flush();
+    }
+
+    /**
+     * Run {@code write} once the writes subscribed before it are done.
+     */
+    private <T> Mono<T> exclusive(Supplier<Mono<T>> write) {
+        return Mono.defer(() -> {
+            MonoProcessor<Void> done = MonoProcessor.create();
+            Mono<Void> previous;
+            synchronized (this) {
+                previous = writing;
+                writing = done;
+            }
+            return previous.then(Mono.defer(write)).doFinally(signal -> done.onComplete());
+        });
+    }
+
+    private synchronized void add(String account, LocalDate day, BigDecimal debit, BigDecimal credit) {
+        pending.computeIfAbsent(new AbstractMap.SimpleImmutableEntry<>(account, day), key -> new AccountDailyRollup(account, day))
+                .add(debit, credit);
+    }
+
+    private synchronized void dropPending(LocalDate day) {
+        pending.keySet().removeIf(key -> key.getValue().equals(day));
+    }
+
+    private synchronized void putBack(List<AccountDailyRollup> deltas) {
+        for (AccountDailyRollup delta : deltas) {
+            pending.merge(new AbstractMap.SimpleImmutableEntry<>(delta.getAccount(), delta.getRollupDate()), delta, (current, back) -> {
+                current.merge(back);
+                return current;
+            });
+        }
+    }
+
+    // Transactions are timestamped in the server's time zone, the journal in UTC
+    private static Instant endOf(LocalDate day) {
+        return day.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().minusNanos(1);
+    }
+}
@@ -3,25 +3,33 @@ package com.xbank.service;
 import com.xbank.config.Constants;
 import com.xbank.domain.Account;
 import com.xbank.domain.Notification;
+import com.xbank.domain.Posting;
 import com.xbank.domain.Transaction;
 import com.xbank.dto.AccountDTO;
 import com.xbank.dto.AccountTranferDTO;
+import com.xbank.dto.BalanceDTO;
+import com.xbank.dto.PageCursor;
+import com.xbank.dto.TranferResultDTO;
 import com.xbank.dto.WithDrawDTO;
 import com.xbank.event.TransactionEvent;
+import com.xbank.event.TransactionEventPublisher;
 import com.xbank.repository.AccountRepository;
-import com.xbank.repository.NotificationRepository;
+import com.xbank.repository.PostingRepository;
 import com.xbank.repository.TransactionRepository;
 import com.xbank.rest.errors.*;
+import com.xbank.rest.util.CursorPaginationUtil;
 import com.xbank.security.SecurityUtils;
+import com.xbank.service.ledger.LedgerEngine;
+import com.xbank.service.wal.WriteAheadLog;
 import io.github.jhipster.web.util.HeaderUtil;
 import javassist.NotFoundException;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.data.domain.Pageable;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -33,9 +41,20 @@ import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.DecimalFormat;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Service class for managing accounts.
@@ -43,6 +62,8 @@ import java.util.Objects;
 @Service
 public class AccountService {
 
+    public static final String WAL_SEQUENCE_HEADER = "X-Wal-Sequence";
+
     private final Logger log = LoggerFactory.getLogger(AccountService.class);
 
     @Value("${clientApp.name}")
@@ -52,16 +73,59 @@ public class AccountService {
 
     private final TransactionRepository transactionRepository;
 
-    private final NotificationRepository notificationRepository;
+    private final PostingRepository postingRepository;
+
+    private final NotificationWriter notificationWriter;
 
     private final ApplicationEventPublisher publisher;
 
-    public AccountService(AccountRepository accountRepository, TransactionRepository transactionRepository,
-                          NotificationRepository notificationRepository, ApplicationEventPublisher publisher) {
+    private final TransactionEventPublisher transactionEventPublisher;
+
+    /**
+     * In-memory ledger, only present when {@code application.ledger.enabled} is set.
+     */
+    private final LedgerEngine ledgerEngine;
+
+    private final ContentionRetry contentionRetry;
+
+    private final GroupCommit groupCommit;
+
+    private final StripedBalances stripedBalances;
+
+    private final BalanceJournalService balanceJournalService;
+
+    private final FxRates fxRates;
+
+    private final AccountCurrencies accountCurrencies;
+
+    /**
+     * Local write-ahead log, only present when {@code application.wal.enabled} is set.
+     */
+    private final WriteAheadLog writeAheadLog;
+
+    public AccountService(AccountRepository accountRepository, TransactionRepository transactionRepository, PostingRepository postingRepository,
+                          NotificationWriter notificationWriter, ApplicationEventPublisher publisher,
+                          TransactionEventPublisher transactionEventPublisher, ObjectProvider<LedgerEngine> ledgerEngine, ContentionRetry contentionRetry,
+                          ObjectProvider<GroupCommit> groupCommit, StripedBalances stripedBalances,
+                          BalanceJournalService balanceJournalService, ObjectProvider<WriteAheadLog> writeAheadLog,
+                          FxRates fxRates, AccountCurrencies accountCurrencies) {
         this.accountRepository = accountRepository;
         this.transactionRepository = transactionRepository;
-        this.notificationRepository = notificationRepository;
+        this.postingRepository = postingRepository;
+        this.notificationWriter = notificationWriter;
         this.publisher = publisher;
+        this.transactionEventPublisher = transactionEventPublisher;
+        this.ledgerEngine = ledgerEngine.getIfAvailable();
+        this.contentionRetry = contentionRetry;
+        this.groupCommit = groupCommit.getIfAvailable();
+        this.stripedBalances = stripedBalances;
+        this.balanceJournalService = balanceJournalService;
+        this.writeAheadLog = writeAheadLog.getIfAvailable();
+        this.fxRates = fxRates;
+        this.accountCurrencies = accountCurrencies;
+        if (this.ledgerEngine != null && this.writeAheadLog != null) {
+            throw new IllegalStateException("application.ledger and application.wal cannot both be enabled");
+        }
     }
 
     @Transactional(readOnly = true)
@@ -79,11 +143,36 @@ public class AccountService {
     }
 
     public Mono<Account> getAccountDetail(String username, String account) {
+        if (ledgerEngine != null) {
+            return ledgerEngine.getAccount(account).filter(acc -> Objects.equals(acc.getOwner(), username));
+        }
+        if (stripedBalances.isStriped(account)) {
+            return accountRepository.findOneWithStripes(account).filter(acc -> Objects.equals(acc.getOwner(), username));
+        }
         return accountRepository.getAccountDetail(username, account);
     }
 
-    public Flux<Account> getAccounts(Pageable pageable) {
-        return accountRepository.findByOwnerAsPage(pageable);
+    /**
+     * The balance of an account of {@code username} at a point in time, from the balance journal.
+     */
+    public Mono<BalanceDTO> getBalanceAt(String username, String account, Instant at) {
+        return accountRepository.getAccountDetail(username, account)
+                .switchIfEmpty(Mono.error(new NotFoundException("Account not found!")))
+                .flatMap(acc -> balanceJournalService.balanceAt(account, at))
+                .map(balance -> new BalanceDTO(account, balance, at));
+    }
+
+    /**
+     * A page of the accounts of {@code owner}, by id.
+     *
+     * @param after the cursor of the previous page, or null for the first page.
+     */
+    public Mono<ResponseEntity<List<Account>>> getAccounts(String owner, String after, Integer size) {
+        PageCursor cursor = PageCursor.decodeById(after);
+        int limit = PageCursor.limit(size);
+        return accountRepository.findPageByOwner(owner, cursor.getId(), limit)
+                .collectList()
+                .map(page -> CursorPaginationUtil.page(page, limit, acc -> new PageCursor(null, acc.getId())));
     }
 
     @Transactional
@@ -91,7 +180,12 @@ public class AccountService {
         Account account = new Account();
         account.setAccount(accountDTO.getAccount());
         account.setAction(accountDTO.getAction());
-        account.setCurrency("VND");
+        String currency = accountDTO.getCurrency() != null ? accountDTO.getCurrency().toUpperCase() : fxRates.getBaseCurrency();
+        if (!fxRates.isSupported(currency)) {
+            return Mono.error(new CurrencyException("Unsupported currency " + currency));
+        }
+        account.setCurrency(currency);
+        account.setInterestRate(accountDTO.getInterestRate());
         if(accountDTO.getBalance().compareTo(BigDecimal.ZERO) <= 0) {
             account.setBalance(BigDecimal.ZERO);
         } else {
@@ -113,7 +207,13 @@ public class AccountService {
                                 if (Boolean.TRUE.equals(loginExists)) {
                                     return Mono.error(new AccountExitsException());
                                 }
-                                return accountRepository.save(account);
+                                return accountRepository.save(account)
+                                        .flatMap(saved -> accountRepository.journalOpening(saved).thenReturn(saved))
+                                        .flatMap(saved -> saved.getBalance().signum() == 0
+                                                ? Mono.just(saved)
+                                                : postingRepository.insertAll(openingLegs(login, saved)).thenReturn(saved))
+                                        // Sessions of the owner opened before the account get its events too
+                                        .doOnNext(saved -> transactionEventPublisher.addAccount(login, saved.getAccount()));
                             }).map(acc -> {
                                 try {
                                     return ResponseEntity.created(new URI("/api/accounts/" + acc.getId()))
@@ -126,7 +226,13 @@ public class AccountService {
                 });
     }
 
-    @Transactional
+    /**
+     * Move money between two accounts.
+     * <p>
+     * The debit, the credit and the transaction row are applied by one guarded statement
+     * ({@code balance >= amount}), so concurrent transfers can neither overdraw nor lose an update.
+     * Both account rows are locked in id order and lost races are retried by {@link ContentionRetry}.
+     */
     public Mono<ResponseEntity<Account>> transfer(AccountTranferDTO data) {
         return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
                 .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
@@ -134,55 +240,29 @@ public class AccountService {
                     if(StringUtils.isBlank(login)) {
                         return Mono.error(new UserNotfoundException());
                     }
-                    return accountRepository.findOneByAccount(data.getAccount())
-                            .flatMap(account -> {
-                                if (Objects.isNull(account)) {
-                                    return Mono.error(new NotFoundException("Account not found!"));
-                                }
-                                if(data.getBalance().compareTo(BigDecimal.ZERO) <= 0) {
-                                    return Mono.error(new TranferException());
-                                }
-                                if (account.getBalance().subtract(data.getBalance()).compareTo(BigDecimal.ZERO) < NumberUtils.INTEGER_ZERO) {
-                                    throw new TranferException();
-                                }
-                                Transaction transaction = new Transaction();
-                                transaction.setOwner(login);
-                                transaction.setAction(1);
-                                transaction.setAccount(data.getAccount());
-                                transaction.setToAccount(data.getAccount());
-                                transaction.setAmount(data.getBalance());
-                                transaction.setCurrency("VND");
-                                transaction.setNote(data.getNote());
-                                transaction.setTransactAt(LocalDateTime.now());
-                                transaction.setResult(1);
-                                transaction.setError("No error");
-                                if (transaction.getCreatedBy() == null) {
-                                    transaction.setCreatedBy(login);
-                                }
-                                transaction.setLastModifiedBy(login);
-                                return transactionRepository.save(transaction).flatMap(t -> {
-                                    account.setBalance(account.getBalance().subtract(data.getBalance()));
-                                    return accountRepository.save(account).flatMap(acc -> accountRepository.findOneByAccount(data.getToAccount()).flatMap(acc1 -> {
-                                        if (Objects.isNull(acc1)) {
-                                            return Mono.error(new NotFoundException("To Account not found!"));
-                                        }
-                                        acc1.setBalance(acc1.getBalance().add(data.getBalance()));
-                                        return accountRepository.save(acc1);
-                                    }));
-                                }).doOnSuccess(item -> publishTransactionEvent(TransactionEvent.ITEM_CREATED, transaction));
-                            }).map(acc -> {
-                                try {
-                                    return ResponseEntity.created(new URI("/api/accounts/tranfer" + acc.getId()))
-                                            .headers(HeaderUtil.createAlert(applicationName, "accountManagement.tranfered", acc.getAccount()))
-                                            .body(acc);
-                                } catch (URISyntaxException e) {
-                                    throw new RuntimeException(e);
-                                }
-                            });
+                    if (data.getBalance().compareTo(BigDecimal.ZERO) <= 0 || data.getAccount().equals(data.getToAccount())) {
+                        return Mono.error(new TranferException());
+                    }
+                    Transaction transaction = newTransaction(login, 1, data.getAccount(), data.getToAccount(), data.getBalance(), data.getNote());
+                    return price(transaction).flatMap(priced -> {
+                        if (transaction.creditAmount().signum() <= 0) {
+                            return Mono.error(new TranferException());
+                        }
+                        if (writeAheadLog != null) {
+                            return accept(transaction, "accountManagement.tranfered");
+                        }
+                        Mono<Account> applied = ledgerEngine != null
+                                ? ledgerEngine.transfer(transaction, TranferException::new)
+                                : inTransaction("transfer", () -> transferInDatabase(transaction)
+                                        .switchIfEmpty(Mono.defer(() -> rejectTransfer(transaction))), transaction.getAccount(), transaction.getToAccount());
+                        return applied
+                                .switchIfEmpty(Mono.error(new NotFoundException("Account not found!")))
+                                .doOnSuccess(acc -> publishTransactionEvent(TransactionEvent.ITEM_CREATED, transaction))
+                                .map(acc -> toResponse("/api/accounts/tranfer", "accountManagement.tranfered", acc));
+                    });
                 });
     }
 
-    @Transactional
     public Mono<ResponseEntity<Account>> withDraw(WithDrawDTO data) {
         return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
                 .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
@@ -190,85 +270,395 @@ public class AccountService {
                     if(StringUtils.isBlank(login)) {
                         return Mono.error(new UserNotfoundException());
                     }
-                    return accountRepository.findOneByAccount(data.getAccount())
-                            .flatMap(account -> {
-                                if(data.getBalance().compareTo(BigDecimal.ZERO) <= 0) {
-                                    return Mono.error(new WithdrawException());
-                                }
-                                if (account.getBalance().subtract(data.getBalance()).compareTo(BigDecimal.ZERO) < NumberUtils.INTEGER_ZERO) {
-                                    throw new WithdrawException();
-                                }
-                                Transaction transaction = new Transaction();
-                                transaction.setOwner(login);
-                                transaction.setAction(2);
-                                transaction.setAccount(data.getAccount());
-                                transaction.setToAccount(data.getAccount());
-                                transaction.setAmount(data.getBalance());
-                                transaction.setCurrency("VND");
-                                transaction.setTransactAt(LocalDateTime.now());
-                                transaction.setResult(1);
-                                transaction.setError("No error");
-                                if (transaction.getCreatedBy() == null) {
-                                    transaction.setCreatedBy(login);
-                                }
-                                transaction.setLastModifiedBy(login);
-                                return transactionRepository.save(transaction).flatMap(t -> {
-                                    account.setBalance(account.getBalance().subtract(data.getBalance()));
-                                    return accountRepository.save(account);
-                                }).doOnSuccess(item -> publishTransactionEvent(TransactionEvent.ITEM_CREATED, transaction));
-                            }).map(acc -> {
-                                try {
-                                    return ResponseEntity.created(new URI("/api/accounts/withdraw" + acc.getId()))
-                                            .headers(HeaderUtil.createAlert(applicationName, "accountManagement.withdraw", acc.getAccount()))
-                                            .body(acc);
-                                } catch (URISyntaxException e) {
-                                    throw new RuntimeException(e);
-                                }
-                            });
+                    if (data.getBalance().compareTo(BigDecimal.ZERO) <= 0) {
+                        return Mono.error(new WithdrawException());
+                    }
+                    Transaction transaction = newTransaction(login, 2, data.getAccount(), data.getAccount(), data.getBalance(), null);
+                    return price(transaction).flatMap(priced -> {
+                        if (writeAheadLog != null) {
+                            return accept(transaction, "accountManagement.withdraw");
+                        }
+                        Mono<Account> applied = ledgerEngine != null
+                                ? ledgerEngine.withdraw(transaction, WithdrawException::new)
+                                : inTransaction("withdraw", () -> withdrawInDatabase(transaction)
+                                        .switchIfEmpty(Mono.defer(() -> rejectWithdraw(transaction))), transaction.getAccount());
+                        return applied
+                                .switchIfEmpty(Mono.error(new NotFoundException("Account not found!")))
+                                .doOnSuccess(acc -> publishTransactionEvent(TransactionEvent.ITEM_CREATED, transaction))
+                                .map(acc -> toResponse("/api/accounts/withdraw", "accountManagement.withdraw", acc));
+                    });
                 });
     }
 
-    @Transactional
     public Mono<ResponseEntity<Account>> deposit(WithDrawDTO data) {
         return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
                 .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
                 .flatMap(login -> {
-                            if(StringUtils.isBlank(login)) {
-                                return Mono.error(new UserNotfoundException());
+                    if(StringUtils.isBlank(login)) {
+                        return Mono.error(new UserNotfoundException());
+                    }
+                    if (data.getBalance().compareTo(BigDecimal.ZERO) <= 0) {
+                        return Mono.error(new DepositException());
+                    }
+                    Transaction transaction = newTransaction(login, 3, data.getAccount(), data.getAccount(), data.getBalance(), null);
+                    return price(transaction).flatMap(priced -> {
+                        if (writeAheadLog != null) {
+                            return accept(transaction, "accountManagement.deposit");
+                        }
+                        Mono<Account> applied = ledgerEngine != null
+                                ? ledgerEngine.deposit(transaction)
+                                : inTransaction("deposit", () -> depositInDatabase(transaction), transaction.getAccount());
+                        return applied
+                                .switchIfEmpty(Mono.error(new NotFoundException("Account not found!")))
+                                .doOnSuccess(acc -> publishTransactionEvent(TransactionEvent.ITEM_CREATED, transaction))
+                                .map(acc -> toResponse("/api/accounts/deposit", "accountManagement.deposit", acc));
+                    });
+                });
+    }
+
+    /**
+     * Apply a money operation read back from the write-ahead log, in one transaction with {@code checkpoint}.
+     * <p>
+     * The operation was acknowledged when it was logged, so an operation that does not apply (insufficient
+     * balance, unknown account) is recorded as a failed transaction instead of failing the request.
+     *
+     * @return whether the operation was applied.
+     */
+    public Mono<Boolean> applyLogged(Transaction transaction, Mono<Void> checkpoint) {
+        Supplier<Mono<Boolean>> apply = () -> {
+            // Successful unless it does not apply, as for newTransaction; a retry starts over from here
+            transaction.setResult(1);
+            transaction.setError("No error");
+            Mono<Account> applied;
+            switch (transaction.getAction()) {
+                case 1:
+                    applied = transferInDatabase(transaction);
+                    break;
+                case 2:
+                    applied = withdrawInDatabase(transaction);
+                    break;
+                default:
+                    applied = depositInDatabase(transaction);
+            }
+            return applied
+                    .map(acc -> Boolean.TRUE)
+                    .switchIfEmpty(Mono.defer(() -> {
+                        transaction.setResult(0);
+                        transaction.setError("Insufficient balance or account not found");
+                        return transactionRepository.insertAll(Collections.singletonList(transaction)).thenReturn(Boolean.FALSE);
+                    }))
+                    .flatMap(done -> checkpoint.thenReturn(done));
+        };
+        String[] accounts = transaction.getAction() == 1
+                ? new String[]{transaction.getAccount(), transaction.getToAccount()}
+                : new String[]{transaction.getAccount()};
+        return contentionRetry.transactional("wal-apply", apply, accounts)
+                .doOnNext(done -> {
+                    if (done) {
+                        publishTransactionEvent(TransactionEvent.ITEM_CREATED, transaction);
+                    } else {
+                        log.info("Logged operation {} of {} on {} was rejected: {}", transaction.getAction(), transaction.getAmount(),
+                                transaction.getAccount(), transaction.getError());
+                    }
+                });
+    }
+
+    /**
+     * Record a money operation read back from the write-ahead log that cannot be applied as a failed transaction,
+     * in one transaction with {@code checkpoint}.
+     */
+    public Mono<Void> rejectLogged(Transaction transaction, String error, Mono<Void> checkpoint) {
+        Supplier<Mono<Void>> reject = () -> {
+            transaction.setResult(0);
+            transaction.setError(StringUtils.abbreviate(error, 256));
+            return transactionRepository.insertAll(Collections.singletonList(transaction)).then(checkpoint);
+        };
+        return contentionRetry.transactional("wal-reject", reject, transaction.getAccount());
+    }
+
+    /**
+     * Apply a batch of transfers and report the outcome of every item.
+     * <p>
+     * All referenced accounts are loaded with a single {@code IN} query, stripes included, and the items are
+     * checked in order against the running balances. The accepted items are then written in one database transaction as a
+     * multi-row insert plus one guarded balance update per account, in account id order. If a concurrent
+     * request keeps moving one of those balances in the meantime, the batch is re-run item by item with the
+     * guarded single-transfer statement.
+     */
+    public Mono<List<TranferResultDTO>> transferBatch(List<AccountTranferDTO> items) {
+        return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
+                .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
+                .flatMap(login -> {
+                    if(StringUtils.isBlank(login)) {
+                        return Mono.error(new UserNotfoundException());
+                    }
+                    List<Transaction> transactions = new ArrayList<>(items.size());
+                    for (AccountTranferDTO item : items) {
+                        transactions.add(newTransaction(login, 1, item.getAccount(), item.getToAccount(), item.getBalance(), item.getNote()));
+                    }
+                    return applyTransferBatch(items, transactions, results -> Mono.empty());
+                });
+    }
+
+    /**
+     * Apply a batch of transfers made on behalf of {@code owners}, one per item, like {@link #transferBatch}.
+     * <p>
+     * {@code alsoWrite} is given the outcome of every item and runs in the database transaction of the batch,
+     * so what it writes is committed if and only if the transfers are. With the ledger engine, which books
+     * outside of the database, it runs in its own transaction once the transfers are booked.
+     */
+    Mono<List<TranferResultDTO>> transferBatchAs(List<String> owners, List<AccountTranferDTO> items,
+                                                 Function<List<TranferResultDTO>, Mono<Void>> alsoWrite) {
+        List<Transaction> transactions = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            AccountTranferDTO item = items.get(i);
+            transactions.add(newTransaction(owners.get(i), 1, item.getAccount(), item.getToAccount(), item.getBalance(), item.getNote()));
+        }
+        return applyTransferBatch(items, transactions, alsoWrite);
+    }
+
+    private Mono<List<TranferResultDTO>> applyTransferBatch(List<AccountTranferDTO> items, List<Transaction> transactions,
+                                                            Function<List<TranferResultDTO>, Mono<Void>> alsoWrite) {
+        // An item without an exchange rate fails on its own, in validateTransfer
+        Mono<Void> priced = Flux.fromIterable(transactions)
+                .filter(transaction -> transaction.getAmount() != null && transaction.getAmount().signum() > 0)
+                .concatMap(transaction -> price(transaction)
+                        .onErrorResume(CurrencyException.class, e -> {
+                            transaction.setResult(0);
+                            transaction.setError(e.getMessage());
+                            return Mono.empty();
+                        }))
+                .then();
+        Mono<List<TranferResultDTO>> results = ledgerEngine != null
+                ? transferItemByItem(items, transactions, transaction -> ledgerEngine.transfer(transaction, TranferException::new))
+                    .flatMap(list -> contentionRetry.transactional("transfer-batch", () -> alsoWrite.apply(list)).thenReturn(list))
+                : contentionRetry.transactional("transfer-batch", () -> transferBatchInDatabase(items, transactions)
+                        .flatMap(list -> alsoWrite.apply(list).thenReturn(list)))
+                    .onErrorResume(OptimisticLockingFailureException.class, e -> {
+                        log.debug("Transfer batch raced with concurrent updates, applying it item by item");
+                        return contentionRetry.transactional("transfer-batch", () -> transferItemByItem(items, transactions, this::transferInDatabase)
+                                .flatMap(list -> alsoWrite.apply(list).thenReturn(list)));
+                    });
+        return priced.then(results).doOnSuccess(list -> list.stream()
+                .filter(TranferResultDTO::isSuccess)
+                .forEach(result -> publishTransactionEvent(TransactionEvent.ITEM_CREATED, transactions.get(result.getIndex()))));
+    }
+
+    private Mono<List<TranferResultDTO>> transferBatchInDatabase(List<AccountTranferDTO> items, List<Transaction> transactions) {
+        Set<String> referenced = new HashSet<>();
+        for (AccountTranferDTO item : items) {
+            referenced.add(item.getAccount());
+            referenced.add(item.getToAccount());
+        }
+        return accountRepository.findAllWithStripesByAccountIn(referenced)
+                .collectMap(Account::getAccount)
+                .flatMap(accounts -> {
+                    Map<String, BigDecimal> balances = new HashMap<>();
+                    accounts.forEach((account, acc) -> balances.put(account, acc.getBalance()));
+                    List<TranferResultDTO> results = new ArrayList<>(items.size());
+                    List<Transaction> accepted = new ArrayList<>();
+                    Map<String, BigDecimal> deltas = new HashMap<>();
+                    for (int i = 0; i < items.size(); i++) {
+                        AccountTranferDTO item = items.get(i);
+                        Transaction transaction = transactions.get(i);
+                        String error = validateTransfer(item, transaction);
+                        if (error == null) {
+                            BigDecimal balance = balances.get(item.getAccount());
+                            if (balance == null) {
+                                error = "Account not found";
+                            } else if (!balances.containsKey(item.getToAccount())) {
+                                error = "To account not found";
+                            } else if (balance.compareTo(item.getBalance()) < 0) {
+                                error = "Insufficient balance";
                             }
-                            return accountRepository.findOneByAccount(data.getAccount())
-                                    .flatMap(account -> {
-                                        if(data.getBalance().compareTo(BigDecimal.ZERO) <= 0) {
-                                            return Mono.error(new DepositException());
-                                        }
-                                        Transaction transaction = new Transaction();
-                                        transaction.setOwner(login);
-                                        transaction.setAction(3);
-                                        transaction.setAccount(data.getAccount());
-                                        transaction.setToAccount(data.getAccount());
-                                        transaction.setAmount(data.getBalance());
-                                        transaction.setCurrency("VND");
-                                        transaction.setTransactAt(LocalDateTime.now());
-                                        transaction.setResult(1);
-                                        transaction.setError("No error");
-                                        if (transaction.getCreatedBy() == null) {
-                                            transaction.setCreatedBy(login);
-                                        }
-                                        transaction.setLastModifiedBy(login);
-                                        return transactionRepository.save(transaction).flatMap(t -> {
-                                            account.setBalance(account.getBalance().add(data.getBalance()));
-                                            return accountRepository.save(account);
-                                        }).doOnSuccess(item -> publishTransactionEvent(TransactionEvent.ITEM_CREATED, transaction));
-                                    }).map(acc -> {
-                                        try {
-                                            return ResponseEntity.created(new URI("/api/accounts/deposit" + acc.getId()))
-                                                    .headers(HeaderUtil.createAlert(applicationName, "accountManagement.deposit", acc.getAccount()))
-                                                    .body(acc);
-                                        } catch (URISyntaxException e) {
-                                            throw new RuntimeException(e);
-                                        }
-                                    });
-                        });
+                        }
+                        if (error == null) {
+                            balances.merge(item.getAccount(), item.getBalance().negate(), BigDecimal::add);
+                            balances.merge(item.getToAccount(), transaction.creditAmount(), BigDecimal::add);
+                            deltas.merge(item.getAccount(), item.getBalance().negate(), BigDecimal::add);
+                            deltas.merge(item.getToAccount(), transaction.creditAmount(), BigDecimal::add);
+                            accepted.add(transaction);
+                        }
+                        results.add(new TranferResultDTO(i, item, error));
+                    }
+                    // Updated in id order, like single transfers, so concurrent writers lock the rows in the same order
+                    List<Map.Entry<String, BigDecimal>> updates = new ArrayList<>(deltas.entrySet());
+                    updates.sort(Comparator.comparing(delta -> accounts.get(delta.getKey()).getId()));
+                    List<Posting> postings = new ArrayList<>(accepted.size() * 2);
+                    accepted.forEach(transaction -> postings.addAll(Posting.legsOf(transaction)));
+                    return transactionRepository.insertAll(accepted)
+                            .then(postingRepository.insertAll(postings))
+                            .thenMany(Flux.fromIterable(updates)
+                                    .filter(delta -> delta.getValue().signum() != 0)
+                                    .concatMap(delta -> addBatchDelta(accounts.get(delta.getKey()), delta.getValue())
+                                            .filter(updated -> updated > 0)
+                                            .switchIfEmpty(Mono.error(new OptimisticLockingFailureException(
+                                                    "Balance of " + delta.getKey() + " changed during the batch")))))
+                            .then(Mono.just(results));
+                });
+    }
+
+    /**
+     * Add the net {@code delta} of a batch to {@code account}, unless it would take the balance, stripes
+     * included, below zero.
+     */
+    private Mono<Integer> addBatchDelta(Account account, BigDecimal delta) {
+        if (account.getStripes() > 0 && delta.signum() < 0) {
+            // Locked first, so that no fold moves the stripes while the debit reads them
+            return accountRepository.lock(account.getAccount())
+                    .then(accountRepository.debitWithStripes(account.getAccount(), delta.negate()));
+        }
+        return accountRepository.addBalanceIfCovered(account.getAccount(), delta);
+    }
+
+    private Mono<List<TranferResultDTO>> transferItemByItem(List<AccountTranferDTO> items, List<Transaction> transactions,
+                                                            Function<Transaction, Mono<Account>> transfer) {
+        return Flux.range(0, items.size())
+                .concatMap(i -> {
+                    AccountTranferDTO item = items.get(i);
+                    String error = validateTransfer(item, transactions.get(i));
+                    if (error != null) {
+                        return Mono.just(new TranferResultDTO(i, item, error));
+                    }
+                    return transfer.apply(transactions.get(i))
+                            .map(account -> new TranferResultDTO(i, item, null))
+                            .onErrorResume(TranferException.class, e -> Mono.just(new TranferResultDTO(i, item, "Insufficient balance")))
+                            .defaultIfEmpty(new TranferResultDTO(i, item, "Insufficient balance or account not found"));
+                })
+                .collectList();
+    }
+
+    private static String validateTransfer(AccountTranferDTO item, Transaction transaction) {
+        if (item.getBalance() == null || item.getBalance().compareTo(BigDecimal.ZERO) <= 0) {
+            return "Amount must be positive";
+        }
+        if (item.getAccount().equals(item.getToAccount())) {
+            return "Cannot transfer to the same account";
+        }
+        if (Integer.valueOf(0).equals(transaction.getResult())) {
+            return transaction.getError();
+        }
+        if (transaction.creditAmount().signum() <= 0) {
+            return "Amount too small for the target currency";
+        }
+        return null;
+    }
+
+    /**
+     * Set the currencies of {@code transaction} from its accounts and convert the amount credited to
+     * {@code toAccount} when they differ. Rates come from the in-memory {@link FxRates} snapshot.
+     *
+     * @return the transaction, or empty if one of its accounts does not exist.
+     */
+    private Mono<Transaction> price(Transaction transaction) {
+        return accountCurrencies.of(transaction.getAccount())
+                .zipWith(accountCurrencies.of(transaction.getToAccount()))
+                .map(currencies -> {
+                    transaction.setCurrency(currencies.getT1());
+                    if (!currencies.getT1().equals(currencies.getT2())) {
+                        transaction.setToCurrency(currencies.getT2());
+                        transaction.setToAmount(fxRates.convert(transaction.getAmount(), currencies.getT1(), currencies.getT2()));
+                    }
+                    return transaction;
+                });
+    }
+
+    /**
+     * Run a single money operation in its own transaction, or in the next shared one when group commit is enabled.
+     */
+    private <T> Mono<T> inTransaction(String name, Supplier<Mono<T>> operation, String... accounts) {
+        return groupCommit != null
+                ? groupCommit.submit(name, operation, accounts)
+                : contentionRetry.transactional(name, operation, accounts);
+    }
+
+    private Mono<Account> transferInDatabase(Transaction transaction) {
+        return post(transaction, isStriped(transaction) ? stripedBalances.transfer(transaction) : accountRepository.transfer(transaction));
+    }
+
+    private Mono<Account> withdrawInDatabase(Transaction transaction) {
+        return post(transaction, isStriped(transaction) ? stripedBalances.withdraw(transaction) : accountRepository.withdraw(transaction));
+    }
+
+    private Mono<Account> depositInDatabase(Transaction transaction) {
+        return post(transaction, isStriped(transaction) ? stripedBalances.deposit(transaction) : accountRepository.deposit(transaction));
+    }
+
+    /**
+     * Book the debit and credit legs of {@code transaction} once {@code applied} succeeded, in the same transaction.
+     */
+    private Mono<Account> post(Transaction transaction, Mono<Account> applied) {
+        return applied.flatMap(account -> postingRepository.insertAll(Posting.legsOf(transaction)).thenReturn(account));
+    }
+
+    private boolean isStriped(Transaction transaction) {
+        return stripedBalances.isStriped(transaction.getAccount()) || stripedBalances.isStriped(transaction.getToAccount());
+    }
+
+    /**
+     * Work out why the guarded transfer statement did not apply. Only runs on the rejection path.
+     */
+    private Mono<Account> rejectTransfer(Transaction transaction) {
+        return accountRepository.findOneWithStripes(transaction.getAccount())
+                .flatMap(account -> {
+                    if (account.getBalance().compareTo(transaction.getAmount()) < 0) {
+                        return Mono.error(new TranferException());
+                    }
+                    return Mono.error(new NotFoundException("To Account not found!"));
+                });
+    }
+
+    private Mono<Account> rejectWithdraw(Transaction transaction) {
+        return accountRepository.findOneWithStripes(transaction.getAccount())
+                .flatMap(account -> Mono.error(new WithdrawException()));
+    }
+
+    /**
+     * The postings of the opening balance of a new account, booked as a deposit.
+     */
+    private static List<Posting> openingLegs(String login, Account account) {
+        Transaction opening = newTransaction(login, 3, account.getAccount(), account.getAccount(), account.getBalance(), null);
+        opening.setCurrency(account.getCurrency());
+        return Posting.legsOf(opening);
+    }
+
+    private static Transaction newTransaction(String login, int action, String account, String toAccount,
+                                              BigDecimal amount, String note) {
+        Transaction transaction = new Transaction();
+        transaction.setOwner(login);
+        transaction.setAction(action);
+        transaction.setAccount(account);
+        transaction.setToAccount(toAccount);
+        transaction.setAmount(amount);
+        transaction.setNote(note);
+        transaction.setTransactAt(LocalDateTime.now());
+        transaction.setResult(1);
+        transaction.setError("No error");
+        transaction.setCreatedBy(login);
+        transaction.setLastModifiedBy(login);
+        return transaction;
+    }
+
+    /**
+     * Log {@code transaction} and answer {@code 202 Accepted} once the log is durable; the balance changes
+     * when the write-ahead log is drained.
+     */
+    private Mono<ResponseEntity<Account>> accept(Transaction transaction, String alertKey) {
+        return writeAheadLog.append(transaction)
+                .map(seq -> ResponseEntity.accepted()
+                        .headers(HeaderUtil.createAlert(applicationName, alertKey, transaction.getAccount()))
+                        .header(WAL_SEQUENCE_HEADER, String.valueOf(seq))
+                        .<Account>build());
+    }
+
+    private ResponseEntity<Account> toResponse(String location, String alertKey, Account acc) {
+        try {
+            return ResponseEntity.created(new URI(location + acc.getId()))
+                    .headers(HeaderUtil.createAlert(applicationName, alertKey, acc.getAccount()))
+                    .body(acc);
+        } catch (URISyntaxException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     private final void publishTransactionEvent(String eventType, Transaction transaction) {
@@ -290,7 +680,7 @@ public class AccountService {
             // deposit action
             notification.setTitle("Số dư tài khoản " + transaction.getAccount() + " + " + formatter.format(transaction.getAmount()) + "VNĐ. Nạp tiền ngày " + transactionAt);
         }
-        notificationRepository.save(notification).subscribe(result -> log.info("Entity has been saved: {}", result));
+        notificationWriter.write(notification);
     }
 
     /**
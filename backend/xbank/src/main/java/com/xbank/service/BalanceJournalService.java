@@ -0,0 +1,66 @@
+package com.xbank.service;
+
+import com.xbank.repository.BalanceJournalRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Point-in-time balances from the balance journal.
+ * <p>
+ * Every balance update appends its delta to {@code balance_journal}, sequenced by the account version. A scheduled
+ * job rolls the journal up into {@code balance_snapshot} incrementally, starting from each account's latest
+ * snapshot, so the balance at a time T is the nearest snapshot before T plus a short journal tail.
+ * <p>
+ * Credits to striped accounts are journaled when they are folded into the account balance.
+ */
+@Service
+public class BalanceJournalService {
+
+    private final Logger log = LoggerFactory.getLogger(BalanceJournalService.class);
+
+    private final BalanceJournalRepository balanceJournalRepository;
+
+    private final int snapshotEvery;
+
+    public BalanceJournalService(BalanceJournalRepository balanceJournalRepository,
+                                 @Value("${application.journal.snapshot-every:100}") int snapshotEvery) {
+        this.balanceJournalRepository = balanceJournalRepository;
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    /**
+     * @return the balance of {@code account} at {@code at}.
+     */
+    public Mono<BigDecimal> balanceAt(String account, Instant at) {
+        LocalDateTime time = LocalDateTime.ofInstant(at, ZoneOffset.UTC);
+        return balanceJournalRepository.findLatestSnapshot(account, time)
+                .flatMap(snapshot -> balanceJournalRepository.sumAfter(account, snapshot.getSeq(), time)
+                        .map(tail -> snapshot.getBalance().add(tail)))
+                .switchIfEmpty(Mono.defer(() -> balanceJournalRepository.sumAfter(account, -1, time)));
+    }
+
+    /**
+     * Snapshot the accounts whose journal grew by {@code application.journal.snapshot-every} entries.
+     * <p>
+     * This is scheduled to get fired every minute by default.
+     */
+    @Scheduled(fixedDelayString = "${application.journal.snapshot-interval-ms:60000}")
+    public void takeSnapshots() {
+        balanceJournalRepository.rollUp(snapshotEvery)
+                .doOnNext(taken -> log.debug("Took {} balance snapshots", taken))
+                .onErrorResume(e -> {
+                    log.warn("Could not take balance snapshots: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .block();
+    }
+}
@@ -0,0 +1,158 @@
+package com.xbank.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Runs money operations in their own transaction and retries them, with jittered exponential backoff,
+ * when they lose a race on an account row (version conflict, deadlock, lock timeout).
+ * <p>
+ * Only the outermost transaction can be retried: an operation that joins a transaction started by its
+ * caller is run as is and its conflicts propagate to that caller.
+ * <p>
+ * Conflicts and retries are counted per operation as {@code xbank.account.conflicts} and
+ * {@code xbank.account.retries}. They are not tagged by account, which would make one time series per
+ * account. Instead, every {@code application.retry.hot-accounts-interval-ms} the
+ * {@code application.retry.hot-accounts} accounts with the most conflicts over the interval are published as
+ * {@code xbank.account.hot-conflicts}, tagged by account. The accounts of a retried operation are also in the
+ * debug log.
+ */
+@Component
+public class ContentionRetry {
+
+    /**
+     * Accounts counted per interval, so that a storm of conflicts over many accounts cannot grow the map without bound.
+     */
+    private static final int MAX_TRACKED_ACCOUNTS = 10_000;
+
+    private final Logger log = LoggerFactory.getLogger(ContentionRetry.class);
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final MeterRegistry meterRegistry;
+
+    private final long maxAttempts;
+
+    private final Duration minBackoff;
+
+    private final Duration maxBackoff;
+
+    private final int hotAccountCount;
+
+    private final MultiGauge hotAccounts;
+
+    /**
+     * Conflicts per account since the hot accounts were last published.
+     */
+    private volatile Map<String, LongAdder> conflictsByAccount = new ConcurrentHashMap<>();
+
+    public ContentionRetry(ReactiveTransactionManager transactionManager, MeterRegistry meterRegistry,
+                           @Value("${application.retry.max-attempts:5}") long maxAttempts,
+                           @Value("${application.retry.min-backoff-ms:5}") long minBackoffMs,
+                           @Value("${application.retry.max-backoff-ms:200}") long maxBackoffMs,
+                           @Value("${application.retry.hot-accounts:10}") int hotAccountCount) {
+        this.transactionalOperator = TransactionalOperator.create(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.minBackoff = Duration.ofMillis(minBackoffMs);
+        this.maxBackoff = Duration.ofMillis(maxBackoffMs);
+        this.hotAccountCount = hotAccountCount;
+        this.hotAccounts = MultiGauge.builder("xbank.account.hot-conflicts")
+                .description("Conflicts of the accounts with the most conflicts over the last interval")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run {@code operation} in a transaction, retrying it on conflicts unless a transaction is already active.
+     *
+     * @param name      the name of the operation, used to tag the counters.
+     * @param operation the operation, subscribed again on every attempt.
+     * @param accounts  the accounts the operation updates, logged when it is retried.
+     */
+    public <T> Mono<T> transactional(String name, Supplier<Mono<T>> operation, String... accounts) {
+        Counter conflicts = counter("xbank.account.conflicts", name);
+        Counter retries = counter("xbank.account.retries", name);
+        Mono<T> attempt = Mono.defer(operation).doOnError(ContentionRetry::isConflict, e -> {
+            conflicts.increment();
+            countConflict(accounts);
+        });
+        return isTransactionActive().flatMap(active -> active
+                ? attempt
+                : attempt.as(transactionalOperator::transactional)
+                    .retryWhen(Retry.backoff(maxAttempts, minBackoff)
+                            .maxBackoff(maxBackoff)
+                            .jitter(0.5d)
+                            .filter(ContentionRetry::isConflict)
+                            .doBeforeRetry(signal -> {
+                                log.debug("Retrying {} after conflict on {} (attempt {}): {}", name, Arrays.toString(accounts), signal.totalRetries() + 1, signal.failure().getMessage());
+                                retries.increment();
+                            })
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure())));
+    }
+
+    /**
+     * Publish the accounts with the most conflicts since the last time, and start counting again.
+     * <p>
+     * This is scheduled to get fired every minute by default.
+     */
+    @Scheduled(fixedDelayString = "${application.retry.hot-accounts-interval-ms:60000}")
+    public void publishHotAccounts() {
+        Map<String, LongAdder> counted = conflictsByAccount;
+        conflictsByAccount = new ConcurrentHashMap<>();
+        List<MultiGauge.Row<?>> rows = counted.entrySet().stream()
+                .map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().sum()))
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(hotAccountCount)
+                .<MultiGauge.Row<?>>map(entry -> MultiGauge.Row.of(Tags.of("account", entry.getKey()), entry.getValue()))
+                .collect(Collectors.toList());
+        hotAccounts.register(rows, true);
+    }
+
+    private void countConflict(String[] accounts) {
+        Map<String, LongAdder> counted = conflictsByAccount;
+        for (String account : accounts) {
+            if (account == null || !counted.containsKey(account) && counted.size() >= MAX_TRACKED_ACCOUNTS) {
+                continue;
+            }
+            counted.computeIfAbsent(account, key -> new LongAdder()).increment();
+        }
+    }
+
+    private Counter counter(String name, String operation) {
+        return Counter.builder(name).tag("operation", operation).register(meterRegistry);
+    }
+
+    static Mono<Boolean> isTransactionActive() {
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .map(TransactionSynchronizationManager::isActualTransactionActive)
+                .onErrorResume(NoTransactionException.class, e -> Mono.just(Boolean.FALSE));
+    }
+
+    private static boolean isConflict(Throwable e) {
+        return e instanceof TransientDataAccessException;
+    }
+}
@@ -0,0 +1,160 @@
+package com.xbank.service;
+
+import com.xbank.domain.FxRate;
+import com.xbank.repository.FxRateRepository;
+import com.xbank.rest.errors.CurrencyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Exchange rates for cross-currency transfers.
+ * <p>
+ * The {@code fx_rate} table is loaded into an immutable snapshot holding the rate of every currency pair,
+ * completed with inverse rates and cross rates through {@code application.fx.base-currency}. A refresh builds
+ * a new snapshot and swaps it in with a single volatile write, so conversions never query the database, take
+ * no lock and see either the old or the new rates, never a mix.
+ */
+@Service
+public class FxRates implements InitializingBean {
+
+    private final Logger log = LoggerFactory.getLogger(FxRates.class);
+
+    private final FxRateRepository fxRateRepository;
+
+    private final String baseCurrency;
+
+    private volatile Snapshot snapshot;
+
+    public FxRates(FxRateRepository fxRateRepository, @Value("${application.fx.base-currency:VND}") String baseCurrency) {
+        this.fxRateRepository = fxRateRepository;
+        this.baseCurrency = baseCurrency;
+        this.snapshot = Snapshot.of(baseCurrency, Collections.emptyList());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        refresh();
+    }
+
+    /**
+     * Reload the rates.
+     * <p>
+     * This is scheduled to get fired every minute by default.
+     */
+    @Scheduled(fixedDelayString = "${application.fx.refresh-interval-ms:60000}")
+    public void refresh() {
+        fxRateRepository.findAll()
+                .collectList()
+                .doOnNext(rates -> {
+                    update(rates);
+                    log.debug("Loaded {} exchange rates", rates.size());
+                })
+                .onErrorResume(e -> {
+                    log.warn("Could not load the exchange rates, keeping the current ones: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .block();
+    }
+
+    /**
+     * Replace the rates with {@code rates} in one step.
+     */
+    public void update(List<FxRate> rates) {
+        snapshot = Snapshot.of(baseCurrency, rates);
+    }
+
+    public String getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    public boolean isSupported(String currency) {
+        return snapshot.rates.containsKey(currency);
+    }
+
+    /**
+     * Convert {@code amount} from {@code from} to {@code to}, rounded half-even to whole units like balances.
+     *
+     * @throws CurrencyException if there is no rate for the pair.
+     */
+    public BigDecimal convert(BigDecimal amount, String from, String to) {
+        if (from.equals(to)) {
+            return amount;
+        }
+        Map<String, BigDecimal> quotes = snapshot.rates.get(from);
+        BigDecimal rate = quotes == null ? null : quotes.get(to);
+        if (rate == null) {
+            throw new CurrencyException("No exchange rate from " + from + " to " + to);
+        }
+        return amount.multiply(rate).setScale(0, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Rates of every currency pair, indexed by base then quote currency.
+     */
+    static final class Snapshot {
+
+        private final Map<String, Map<String, BigDecimal>> rates;
+
+        private Snapshot(Map<String, Map<String, BigDecimal>> rates) {
+            this.rates = rates;
+        }
+
+        static Snapshot of(String baseCurrency, List<FxRate> rows) {
+            Map<String, Map<String, BigDecimal>> direct = new HashMap<>();
+            Set<String> currencies = new HashSet<>();
+            currencies.add(baseCurrency);
+            for (FxRate row : rows) {
+                if (row.getRate() == null || row.getRate().signum() <= 0) {
+                    continue;
+                }
+                currencies.add(row.getBaseCurrency());
+                currencies.add(row.getQuoteCurrency());
+                direct.computeIfAbsent(row.getBaseCurrency(), c -> new HashMap<>()).put(row.getQuoteCurrency(), row.getRate());
+            }
+            Map<String, Map<String, BigDecimal>> rates = new HashMap<>();
+            for (String from : currencies) {
+                Map<String, BigDecimal> quotes = new HashMap<>();
+                for (String to : currencies) {
+                    BigDecimal rate = from.equals(to) ? BigDecimal.ONE : rate(direct, from, to);
+                    if (rate == null) {
+                        BigDecimal toBase = rate(direct, from, baseCurrency);
+                        BigDecimal fromBase = rate(direct, baseCurrency, to);
+                        rate = toBase == null || fromBase == null ? null : toBase.multiply(fromBase, MathContext.DECIMAL64);
+                    }
+                    if (rate != null) {
+                        quotes.put(to, rate);
+                    }
+                }
+                rates.put(from, Collections.unmodifiableMap(quotes));
+            }
+            return new Snapshot(Collections.unmodifiableMap(rates));
+        }
+
+        private static BigDecimal rate(Map<String, Map<String, BigDecimal>> direct, String from, String to) {
+            if (from.equals(to)) {
+                return BigDecimal.ONE;
+            }
+            BigDecimal rate = direct.getOrDefault(from, Collections.emptyMap()).get(to);
+            if (rate != null) {
+                return rate;
+            }
+            BigDecimal inverse = direct.getOrDefault(to, Collections.emptyMap()).get(from);
+            return inverse == null ? null : BigDecimal.ONE.divide(inverse, MathContext.DECIMAL64);
+        }
+    }
+}
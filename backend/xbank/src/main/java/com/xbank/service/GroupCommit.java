@@ -0,0 +1,221 @@
+package com.xbank.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Merges money operations that arrive within a short window into one database transaction, so that they
+ * share a single commit (and fsync) instead of paying for one each.
+ * <p>
+ * A group is flushed after {@code application.group-commit.window-ms} or once it holds
+ * {@code application.group-commit.max-batch} operations. Each caller's {@code Mono} completes only once the
+ * shared commit succeeded. Operations that fail with a business error (insufficient balance, unknown account)
+ * have written nothing and do not affect the rest of the group. If the group transaction itself fails, it is
+ * rolled back and every operation is run again on its own through {@link ContentionRetry}.
+ * <p>
+ * At most {@code application.group-commit.capacity} operations wait for their group; past that, new ones are
+ * refused with {@code 503 Service Unavailable} until the database catches up.
+ * <p>
+ * Enabled with {@code application.group-commit.enabled=true}. Batch size and commit latency are published as
+ * {@code xbank.group.commit.size} and {@code xbank.group.commit.latency}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.group-commit", name = "enabled", havingValue = "true")
+public class GroupCommit implements DisposableBean {
+
+    private final Logger log = LoggerFactory.getLogger(GroupCommit.class);
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final ContentionRetry contentionRetry;
+
+    private final DistributionSummary batchSize;
+
+    private final Timer commitLatency;
+
+    private final FluxSink<PendingOperation<?>> pending;
+
+    private final Disposable committer;
+
+    private final CountDownLatch drained = new CountDownLatch(1);
+
+    private final int capacity;
+
+    /**
+     * Operations submitted and not yet completed.
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public GroupCommit(ReactiveTransactionManager transactionManager, ContentionRetry contentionRetry, MeterRegistry meterRegistry,
+                       @Value("${application.group-commit.window-ms:2}") long windowMs,
+                       @Value("${application.group-commit.max-batch:64}") int maxBatch,
+                       @Value("${application.group-commit.concurrency:1}") int concurrency,
+                       @Value("${application.group-commit.capacity:10000}") int capacity) {
+        this.capacity = capacity;
+        this.transactionalOperator = TransactionalOperator.create(transactionManager);
+        this.contentionRetry = contentionRetry;
+        this.batchSize = DistributionSummary.builder("xbank.group.commit.size")
+                .description("Operations committed together")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.commitLatency = Timer.builder("xbank.group.commit.latency")
+                .description("Time to apply and commit one group")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        // Never overflows: an operation is only queued once it was admitted against the capacity
+        UnicastProcessor<PendingOperation<?>> queue = UnicastProcessor.create(Queues.<PendingOperation<?>>get(capacity).get());
+        this.pending = queue.sink();
+        // bufferTimeout fails when its window closes with no request open, as it does while the commits in
+        // flight hold every slot; the groups wait here instead, bounded by the capacity as their operations are
+        this.committer = queue
+                .bufferTimeout(maxBatch, Duration.ofMillis(windowMs))
+                .onBackpressureBuffer()
+                .flatMap(this::commit, concurrency)
+                .doFinally(signal -> drained.countDown())
+                .subscribe();
+        log.info("Group commit started with a window of {}ms or {} operations", windowMs, maxBatch);
+    }
+
+    /**
+     * Run {@code operation} in the next group transaction.
+     * <p>
+     * If the caller already runs in a transaction, the operation simply joins it.
+     *
+     * @param name      the name of the operation, used to tag the contention counters.
+     * @param operation the operation, subscribed again if it has to be run on its own.
+     * @param accounts  the accounts the operation updates, logged when it has to be retried.
+     * @return the result of the operation, emitted once the group has been committed, or an error if too many
+     * operations are already waiting.
+     */
+    public <T> Mono<T> submit(String name, Supplier<Mono<T>> operation, String... accounts) {
+        return ContentionRetry.isTransactionActive().flatMap(active -> {
+            if (active) {
+                return Mono.defer(operation);
+            }
+            if (queued.incrementAndGet() > capacity) {
+                queued.decrementAndGet();
+                return Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Group commit queue is full"));
+            }
+            PendingOperation<T> pendingOperation = new PendingOperation<>(name, operation, accounts);
+            pending.next(pendingOperation);
+            return pendingOperation.result;
+        });
+    }
+
+    /**
+     * Commit the queued operations and stop accepting new ones.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        pending.complete();
+        if (!drained.await(30, TimeUnit.SECONDS)) {
+            log.error("Group commit did not drain within 30 seconds");
+            committer.dispose();
+        }
+    }
+
+    private Mono<Void> commit(List<PendingOperation<?>> group) {
+        long start = System.nanoTime();
+        batchSize.record(group.size());
+        return Flux.fromIterable(group)
+                .concatMap(PendingOperation::run)
+                .then()
+                .as(transactionalOperator::transactional)
+                .doOnSuccess(committed -> {
+                    commitLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    group.forEach(PendingOperation::complete);
+                })
+                .onErrorResume(e -> {
+                    log.debug("Group commit of {} operations failed, committing them one by one: {}", group.size(), e.getMessage());
+                    return Flux.fromIterable(group)
+                            .flatMap(PendingOperation::runAlone)
+                            .then();
+                });
+    }
+
+    private final class PendingOperation<T> {
+
+        private final Supplier<Mono<T>> operation;
+
+        private final String name;
+
+        private final String[] accounts;
+
+        private final MonoProcessor<T> result = MonoProcessor.create();
+
+        private T value;
+
+        private Throwable error;
+
+        PendingOperation(String name, Supplier<Mono<T>> operation, String[] accounts) {
+            this.name = name;
+            this.operation = operation;
+            this.accounts = accounts;
+        }
+
+        /**
+         * Run within the group transaction. Database errors abort the group; any other error is the
+         * operation's own outcome.
+         */
+        Mono<Void> run() {
+            return Mono.defer(operation)
+                    .doOnNext(v -> value = v)
+                    .onErrorResume(e -> !(e instanceof DataAccessException), e -> {
+                        error = e;
+                        return Mono.empty();
+                    })
+                    .then();
+        }
+
+        Mono<Void> runAlone() {
+            return Mono.defer(() -> {
+                value = null;
+                error = null;
+                return contentionRetry.transactional(name, operation, accounts);
+            })
+                    .doOnNext(v -> value = v)
+                    .onErrorResume(e -> {
+                        error = e;
+                        return Mono.empty();
+                    })
+                    .then(Mono.fromRunnable(this::complete));
+        }
+
+        void complete() {
+            queued.decrementAndGet();
+            if (error != null) {
+                result.onError(error);
+            } else if (value != null) {
+                result.onNext(value);
+            } else {
+                result.onComplete();
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.xbank.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.xbank.config.Constants;
+import com.xbank.domain.IdempotencyKey;
+import com.xbank.repository.IdempotencyKeyRepository;
+import com.xbank.rest.errors.IdempotencyKeyException;
+import com.xbank.security.SecurityUtils;
+import com.xbank.service.ledger.LedgerEngine;
+import com.xbank.service.wal.WriteAheadLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Replays the recorded response of money-moving requests sent again with the same {@code Idempotency-Key}.
+ * <p>
+ * Recent responses are kept in a bounded in-memory cache, so a retry is answered without any I/O. Behind it,
+ * the {@code idempotency_key} table is the source of truth: the key is claimed, the operation applied and its
+ * response recorded in one database transaction, so a key either has a recorded response or was never used.
+ * That transaction is the one {@link ContentionRetry} retries when the operation loses a race.
+ * A concurrent request with the same key waits on the unique constraint and then replays the winner's response.
+ * <p>
+ * The ledger engine and the write-ahead log apply the operation outside of that transaction, where rolling the
+ * claim back would not undo it. With either of them enabled the key is claimed in a committed transaction of its
+ * own before the operation runs, and its response recorded after; a concurrent request with the same key is then
+ * told the first one is still in progress. The claim is released if the operation fails.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final ContentionRetry contentionRetry;
+
+    private final Cache<String, RecordedResponse> responses;
+
+    private final Duration retention;
+
+    /**
+     * Whether the operations are applied outside of the database transaction.
+     */
+    private final boolean claimFirst;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository, ObjectMapper objectMapper,
+                              ContentionRetry contentionRetry, ObjectProvider<LedgerEngine> ledgerEngine,
+                              ObjectProvider<WriteAheadLog> writeAheadLog,
+                              @Value("${application.idempotency.cache-size:100000}") long cacheSize,
+                              @Value("${application.idempotency.retention-hours:24}") long retentionHours) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.contentionRetry = contentionRetry;
+        this.retention = Duration.ofHours(retentionHours);
+        this.claimFirst = ledgerEngine.getIfAvailable() != null || writeAheadLog.getIfAvailable() != null;
+        this.responses = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(retentionHours, TimeUnit.HOURS)
+                .build();
+    }
+
+    /**
+     * Run {@code operation} at most once per idempotency key and caller.
+     *
+     * @param key       the {@code Idempotency-Key} header, or {@code null} to always run the operation.
+     * @param endpoint  the name of the endpoint, recorded so a key cannot be reused across endpoints.
+     * @param request   the request body, fingerprinted so a key cannot be reused with a different payload.
+     * @param bodyType  the type of the response body, used to read a recorded response back.
+     * @param operation the operation to run the first time the key is seen.
+     * @return the response of the operation, or the recorded one if the key was used before.
+     */
+    public <T> Mono<ResponseEntity<T>> execute(String key, String endpoint, Object request, Class<T> bodyType,
+                                               Supplier<Mono<ResponseEntity<T>>> operation) {
+        if (key == null) {
+            return Mono.defer(operation);
+        }
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            return Mono.error(new IdempotencyKeyException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters"));
+        }
+        String requestHash = fingerprint(endpoint, request);
+        return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
+                .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
+                .flatMap(owner -> {
+                    String cacheKey = owner + ':' + key;
+                    RecordedResponse recorded = responses.getIfPresent(cacheKey);
+                    if (recorded != null) {
+                        return Mono.just(recorded.replay(requestHash, bodyType));
+                    }
+                    return firstExecution(owner, key, endpoint, requestHash, cacheKey, operation)
+                            .onErrorResume(KeyTakenException.class, e -> idempotencyKeyRepository.findOneByOwnerAndKey(owner, key)
+                                    .filter(record -> record.getResponseStatus() != null)
+                                    .map(record -> remember(cacheKey, read(record, bodyType)).replay(requestHash, bodyType))
+                                    .switchIfEmpty(Mono.error(new IdempotencyKeyException("A request with this Idempotency-Key is still in progress"))));
+                });
+    }
+
+    /**
+     * Forget recorded responses once clients are no longer expected to retry them.
+     * <p>
+     * This is scheduled to get fired every hour.
+     */
+    @Scheduled(cron = "0 15 * * * ?")
+    public void removeExpiredKeys() {
+        LocalDateTime before = LocalDateTime.now(ZoneOffset.UTC).minus(retention);
+        idempotencyKeyRepository.deleteCreatedBefore(before)
+                .subscribe(deleted -> log.debug("Deleted {} expired idempotency keys", deleted));
+    }
+
+    private <T> Mono<ResponseEntity<T>> firstExecution(String owner, String key, String endpoint, String requestHash,
+                                                       String cacheKey, Supplier<Mono<ResponseEntity<T>>> operation) {
+        Supplier<Mono<IdempotencyKey>> claim = () -> idempotencyKeyRepository
+                .save(new IdempotencyKey(owner, key, endpoint, requestHash, LocalDateTime.now(ZoneOffset.UTC)))
+                .onErrorMap(DataIntegrityViolationException.class, KeyTakenException::new);
+        Mono<ResponseEntity<T>> executed;
+        if (claimFirst) {
+            executed = Mono.defer(claim)
+                    .flatMap(record -> Mono.defer(operation)
+                            .onErrorResume(e -> idempotencyKeyRepository.delete(record).then(Mono.error(e)))
+                            .flatMap(response -> recordResponse(record, response)));
+        } else {
+            executed = contentionRetry.transactional("idempotency", () -> claim.get()
+                    .flatMap(record -> Mono.defer(operation).flatMap(response -> recordResponse(record, response))));
+        }
+        return executed.doOnNext(response -> remember(cacheKey, new RecordedResponse(requestHash, response)));
+    }
+
+    private <T> Mono<ResponseEntity<T>> recordResponse(IdempotencyKey record, ResponseEntity<T> response) {
+        record.setResponseStatus(response.getStatusCodeValue());
+        record.setResponseHeaders(write(response.getHeaders()));
+        record.setResponseBody(write(response.getBody()));
+        return idempotencyKeyRepository.save(record).thenReturn(response);
+    }
+
+    private RecordedResponse remember(String cacheKey, RecordedResponse recorded) {
+        responses.put(cacheKey, recorded);
+        return recorded;
+    }
+
+    private <T> RecordedResponse read(IdempotencyKey record, Class<T> bodyType) {
+        try {
+            LinkedHashMap<String, List<String>> headers = objectMapper.readValue(record.getResponseHeaders(),
+                    new TypeReference<LinkedHashMap<String, List<String>>>() {});
+            T body = record.getResponseBody() == null ? null : objectMapper.readValue(record.getResponseBody(), bodyType);
+            return new RecordedResponse(record.getRequestHash(),
+                    ResponseEntity.status(record.getResponseStatus()).headers(new HttpHeaders(new LinkedMultiValueMap<>(headers))).body(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read the response recorded for idempotency key " + record.getIdempotencyKey(), e);
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return value == null ? null : objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot record the response of an idempotent request", e);
+        }
+    }
+
+    private String fingerprint(String endpoint, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(endpoint.getBytes(StandardCharsets.UTF_8));
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Cannot fingerprint the request", e);
+        }
+    }
+
+    /**
+     * A response as it was first sent, together with the fingerprint of the request that produced it.
+     */
+    private static final class RecordedResponse {
+
+        private final String requestHash;
+
+        private final ResponseEntity<?> response;
+
+        RecordedResponse(String requestHash, ResponseEntity<?> response) {
+            this.requestHash = requestHash;
+            this.response = response;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> ResponseEntity<T> replay(String requestHash, Class<T> bodyType) {
+            if (!this.requestHash.equals(requestHash)) {
+                throw new IdempotencyKeyException("Idempotency-Key was already used for a different request");
+            }
+            HttpHeaders headers = new HttpHeaders();
+            headers.addAll(response.getHeaders());
+            headers.set(REPLAYED_HEADER, "true");
+            return ResponseEntity.status(response.getStatusCode()).headers(headers).body((T) response.getBody());
+        }
+    }
+
+    /**
+     * Another request claimed the same key first.
+     */
+    private static final class KeyTakenException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        KeyTakenException(Throwable cause) {
+            super(cause);
+        }
+    }
+}
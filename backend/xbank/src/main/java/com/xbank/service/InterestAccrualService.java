@@ -0,0 +1,195 @@
+package com.xbank.service;
+
+import com.xbank.config.Constants;
+import com.xbank.domain.Account;
+import com.xbank.domain.InterestAccrual;
+import com.xbank.domain.Posting;
+import com.xbank.repository.InterestAccrualRepository;
+import com.xbank.repository.PostingRepository;
+import com.xbank.service.ledger.LedgerEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Daily interest accrual of the accounts with an {@code interest_rate}.
+ * <p>
+ * The accounts are streamed in id order with a keyset scan, {@code application.interest.batch-size} at a time,
+ * reading only the columns accrual needs. Interest is computed in fixed point on longs: the interest of a day,
+ * in millionths of a currency unit, is added to the account's {@code accrued_interest} and whole units are
+ * credited to the balance, with the remainder carried to the next day. The accruals of a batch are written with
+ * a few set-based statements, together with the interest postings and the advance of the run's checkpoint in
+ * {@code interest_accrual}, in one transaction; a run stopped by a crash resumes after its last committed batch.
+ * <p>
+ * Accounts and batches accrued are counted as {@code xbank.interest.accrual.accounts} and
+ * {@code xbank.interest.accrual.batches}, whose rates are the throughput of a run.
+ * <p>
+ * Balances held by the ledger engine are not written by this job, so it does not run when the engine is enabled.
+ */
+@Service
+public class InterestAccrualService {
+
+    static final long MICROS = 1_000_000;
+
+    private static final long BASIS_POINTS = 10_000;
+
+    private static final long DAYS_PER_YEAR = 365;
+
+    private final Logger log = LoggerFactory.getLogger(InterestAccrualService.class);
+
+    private final InterestAccrualRepository interestAccrualRepository;
+
+    private final PostingRepository postingRepository;
+
+    private final ContentionRetry contentionRetry;
+
+    private final LedgerEngine ledgerEngine;
+
+    private final int batchSize;
+
+    private final Counter accountsAccrued;
+
+    private final Counter batchesAccrued;
+
+    public InterestAccrualService(InterestAccrualRepository interestAccrualRepository, PostingRepository postingRepository,
+                                  ContentionRetry contentionRetry, ObjectProvider<LedgerEngine> ledgerEngine,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${application.interest.batch-size:1000}") int batchSize) {
+        this.interestAccrualRepository = interestAccrualRepository;
+        this.postingRepository = postingRepository;
+        this.contentionRetry = contentionRetry;
+        this.ledgerEngine = ledgerEngine.getIfAvailable();
+        this.batchSize = batchSize;
+        this.accountsAccrued = Counter.builder("xbank.interest.accrual.accounts")
+                .description("Accounts accrued by the interest accrual job")
+                .register(meterRegistry);
+        this.batchesAccrued = Counter.builder("xbank.interest.accrual.batches")
+                .description("Batches committed by the interest accrual job")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Accrue every day up to yesterday that was not accrued yet, resuming an unfinished run first.
+     * <p>
+     * This is scheduled to get fired at 5 minutes past every hour by default, so a run stopped by a crash or a
+     * restart resumes within the hour.
+     */
+    @Scheduled(cron = "${application.interest.cron:0 5 * * * *}")
+    public void accrueDue() {
+        if (ledgerEngine != null) {
+            log.debug("Interest accrual does not run with the ledger engine enabled");
+            return;
+        }
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        interestAccrualRepository.findLatestRun()
+                .map(latest -> latest.isFinished() ? latest.getAccrualDate().plusDays(1) : latest.getAccrualDate())
+                .defaultIfEmpty(yesterday)
+                .filter(from -> !from.isAfter(yesterday))
+                .flatMapMany(from -> Flux.range(0, (int) ChronoUnit.DAYS.between(from, yesterday) + 1).map(from::plusDays))
+                .concatMap(this::accrue)
+                .blockLast();
+    }
+
+    /**
+     * Accrue one day of interest on every interest-bearing account, or what is left of it if the run of
+     * {@code date} was started before.
+     *
+     * @return the finished run.
+     */
+    public Mono<InterestAccrual> accrue(LocalDate date) {
+        return interestAccrualRepository.findOrStart(date)
+                .flatMap(run -> {
+                    if (run.isFinished()) {
+                        return Mono.just(run);
+                    }
+                    long start = System.nanoTime();
+                    if (run.getLastAccountId() > 0) {
+                        log.info("Resuming interest accrual of {} after account id {}", date, run.getLastAccountId());
+                    }
+                    // The next batch is read while the current one is written
+                    return findBatch(run.getLastAccountId())
+                            .expand(batch -> batch.getT2().size() < batchSize
+                                    ? Mono.empty()
+                                    : findBatch(lastId(batch.getT2())))
+                            .concatMap(batch -> accrueBatch(date, batch.getT1(), batch.getT2()), 1)
+                            .then(interestAccrualRepository.finish(date))
+                            .then(interestAccrualRepository.findRun(date))
+                            .doOnNext(finished -> {
+                                long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                                log.info("Accrued interest of {} on {} accounts in {}ms ({} accounts/s), {} credited", date,
+                                        finished.getAccounts(), elapsedMs, finished.getAccounts() * 1000 / elapsedMs, finished.getCredited());
+                            });
+                });
+    }
+
+    /**
+     * The interest of one day on {@code balance} at an annual {@code rate} in basis points, in millionths of a
+     * currency unit, rounded down.
+     */
+    static long dailyInterest(long balance, int rate) {
+        return Math.multiplyExact(Math.multiplyExact(balance, (long) rate), MICROS / BASIS_POINTS) / DAYS_PER_YEAR;
+    }
+
+    /**
+     * @return the accounts after {@code afterId}, with {@code afterId}.
+     */
+    private Mono<Tuple2<Long, List<Account>>> findBatch(long afterId) {
+        return interestAccrualRepository.findInterestBearing(afterId, batchSize)
+                .collectList()
+                .filter(batch -> !batch.isEmpty())
+                .map(batch -> Tuples.of(afterId, batch));
+    }
+
+    private Mono<Void> accrueBatch(LocalDate date, long afterId, List<Account> batch) {
+        // Booked at the end of the accrued day
+        LocalDateTime postedAt = date.plusDays(1).atStartOfDay();
+        Map<Long, BigDecimal> credits = new HashMap<>();
+        List<Posting> postings = new ArrayList<>();
+        long credited = 0;
+        for (Account account : batch) {
+            long accrued = account.getAccruedInterest() + dailyInterest(account.getBalance().longValueExact(), account.getInterestRate());
+            long units = accrued / MICROS;
+            account.setAccruedInterest(accrued % MICROS);
+            if (units > 0) {
+                BigDecimal amount = BigDecimal.valueOf(units);
+                credits.put(account.getId(), amount);
+                postings.addAll(Posting.legs(UUID.randomUUID().toString(), Constants.INTEREST_ACCOUNT, account.getAccount(),
+                        amount, account.getCurrency(), postedAt));
+                credited += units;
+            }
+        }
+        BigDecimal total = BigDecimal.valueOf(credited);
+        // Computed once: a retried transaction writes the same accruals again
+        return contentionRetry.transactional("interest-accrual", () -> interestAccrualRepository.accrue(batch, credits)
+                        .then(postingRepository.insertAll(postings))
+                        .then(interestAccrualRepository.advance(date, afterId, lastId(batch), batch.size(), total)))
+                .doOnSuccess(advanced -> {
+                    accountsAccrued.increment(batch.size());
+                    batchesAccrued.increment();
+                });
+    }
+
+    private static long lastId(List<Account> batch) {
+        return batch.get(batch.size() - 1).getId();
+    }
+}
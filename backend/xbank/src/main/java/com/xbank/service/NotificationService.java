@@ -3,11 +3,13 @@ package com.xbank.service;
 import com.xbank.config.Constants;
 import com.xbank.domain.Notification;
 import com.xbank.domain.Transaction;
+import com.xbank.dto.PageCursor;
 import com.xbank.event.TransactionEvent;
 import com.xbank.repository.NotificationRepository;
 import com.xbank.rest.errors.AccountExitsException;
 import com.xbank.rest.errors.DepositException;
 import com.xbank.rest.errors.UserNotfoundException;
+import com.xbank.rest.util.CursorPaginationUtil;
 import com.xbank.security.SecurityUtils;
 import io.github.jhipster.web.util.HeaderUtil;
 import org.apache.commons.lang3.StringUtils;
@@ -22,6 +24,7 @@ import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Service class for managing Notifications.
@@ -31,33 +34,49 @@ public class NotificationService {
 
     private final NotificationRepository notificationRepository;
 
-    public NotificationService(NotificationRepository notificationRepository) {
+    private final UnreadNotificationCounter unreadNotificationCounter;
+
+    public NotificationService(NotificationRepository notificationRepository, UnreadNotificationCounter unreadNotificationCounter) {
         this.notificationRepository = notificationRepository;
+        this.unreadNotificationCounter = unreadNotificationCounter;
     }
 
-    @Transactional(readOnly = true)
-    public Mono<Long> countNotifications() {
-        return notificationRepository.countAll();
+    /**
+     * @return the number of unread notifications of {@code username}, from the {@link UnreadNotificationCounter}.
+     */
+    public Mono<Long> countUnread(String username) {
+        return unreadNotificationCounter.get(username);
     }
 
+    /**
+     * A page of the notifications of {@code username}, newest first.
+     *
+     * @param after the cursor of the previous page, or null for the first page.
+     */
     @Transactional(readOnly = true)
-    public Flux<Notification> getAllNotifications(Pageable pageable) {
-        return notificationRepository.findAllAsPage(pageable);
+    public Mono<ResponseEntity<List<Notification>>> getAllNotifications(String username, String after, Integer size) {
+        PageCursor cursor = PageCursor.decodeNewestFirst(after);
+        int limit = PageCursor.limit(size);
+        return notificationRepository.findPageByAccount(username, cursor.getId(), limit)
+                .collectList()
+                .map(page -> CursorPaginationUtil.page(page, limit, notification -> new PageCursor(null, notification.getId())));
     }
 
+    /**
+     * The notification {@code id} of {@code username}, marked as read.
+     */
     @Transactional
-    public Mono<Notification> detailNotification(long id) {
-        return notificationRepository.findById(id)
-                .flatMap(noti -> {
-                    noti.setRead(Boolean.TRUE);
-                    return notificationRepository.save(noti);
-                });
+    public Mono<Notification> detailNotification(String username, long id) {
+        return notificationRepository.read(username, id)
+                .doOnNext(read -> unreadNotificationCounter.read(username, read))
+                .then(notificationRepository.findOneByAccount(username, id));
     }
 
     @Transactional
     public Mono<Void> readAll() {
         return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
                 .switchIfEmpty(Mono.just(Constants.SYSTEM_ACCOUNT))
-                .flatMap(login -> notificationRepository.readAll(login));
+                .flatMap(login -> notificationRepository.readAll(login)
+                        .doOnSuccess(done -> unreadNotificationCounter.readAll(login)));
     }
 }
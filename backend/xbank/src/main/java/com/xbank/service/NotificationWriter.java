@@ -0,0 +1,351 @@
+package com.xbank.service;
+
+import com.xbank.domain.Notification;
+import com.xbank.repository.NotificationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind stage for the notifications of transactions.
+ * <p>
+ * {@link #write(Notification)} only queues the notification. A writer thread inserts the queue as multi-row
+ * statements of up to {@code application.notifications.batch-size} rows, as soon as a batch is full or
+ * {@code flush-interval-ms} after the oldest queued notification. A failed batch is retried with a growing pause;
+ * after {@code retries} failures the database is taken as down and the queue is appended to the
+ * {@code spill-file}. The spill file is inserted back before the next batch, which also probes whether the
+ * database is back, and on the next start.
+ * <p>
+ * At most {@code max-pending} notifications are queued, the ones written beyond that are dropped. Flush size and
+ * latency are published as {@code xbank.notifications.flush.size} and {@code xbank.notifications.flush.latency}.
+ */
+@Component
+public class NotificationWriter implements InitializingBean, DisposableBean {
+
+    private static final long MAX_PAUSE_MS = 30_000;
+
+    private final Logger log = LoggerFactory.getLogger(NotificationWriter.class);
+
+    private final NotificationRepository notificationRepository;
+
+    private final UnreadNotificationCounter unreadNotificationCounter;
+
+    private final int batchSize;
+
+    private final long flushIntervalMs;
+
+    private final int retries;
+
+    private final int maxPending;
+
+    private final Path spillFile;
+
+    private final DistributionSummary flushSize;
+
+    private final Timer flushLatency;
+
+    private final Counter spilled;
+
+    private final Counter dropped;
+
+    private List<Notification> pending = new ArrayList<>();
+
+    private long oldestPendingAt;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    public NotificationWriter(NotificationRepository notificationRepository, UnreadNotificationCounter unreadNotificationCounter,
+                              MeterRegistry meterRegistry,
+                              @Value("${application.notifications.batch-size:200}") int batchSize,
+                              @Value("${application.notifications.flush-interval-ms:200}") long flushIntervalMs,
+                              @Value("${application.notifications.retries:3}") int retries,
+                              @Value("${application.notifications.max-pending:10000}") int maxPending,
+                              @Value("${application.notifications.spill-file:notifications.spill}") String spillFile) {
+        this.notificationRepository = notificationRepository;
+        this.unreadNotificationCounter = unreadNotificationCounter;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.retries = retries;
+        this.maxPending = maxPending;
+        this.spillFile = Paths.get(spillFile);
+        this.flushSize = DistributionSummary.builder("xbank.notifications.flush.size")
+                .description("Notifications inserted by one statement")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("xbank.notifications.flush.latency")
+                .description("Time to insert a batch of notifications")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.spilled = Counter.builder("xbank.notifications.spilled")
+                .description("Notifications written to the spill file while the database was down")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("xbank.notifications.dropped")
+                .description("Notifications dropped because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("xbank.notifications.pending", this, NotificationWriter::getPendingCount)
+                .description("Notifications queued for the next flush")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        running = true;
+        writer = new Thread(this::run, "notification-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queue {@code notification} for the next flush. Never blocks.
+     *
+     * @return false if the queue is full and the notification was dropped.
+     */
+    public boolean write(Notification notification) {
+        synchronized (this) {
+            if (pending.size() < maxPending) {
+                if (pending.isEmpty()) {
+                    oldestPendingAt = System.currentTimeMillis();
+                }
+                pending.add(notification);
+                if (pending.size() >= batchSize) {
+                    notifyAll();
+                }
+                return true;
+            }
+        }
+        dropped.increment();
+        log.warn("Notification queue is full, dropped the notification of {}", notification.getAccount());
+        return false;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Insert what is queued, then stop. What cannot be inserted is spilled and inserted on the next start.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    /**
+     * Writer loop: wait for a full batch or the flush interval, insert, and retry or spill on failure.
+     */
+    private void run() {
+        int failures = 0;
+        long pause = 0;
+        List<Notification> batch;
+        while ((batch = next(pause)) != null) {
+            // The spill file goes first, and doubles as the probe of a database that is down
+            if ((!Files.exists(spillFile) || replaySpillFile()) && insert(batch)) {
+                failures = 0;
+                pause = 0;
+                continue;
+            }
+            failures++;
+            pause = Math.min(MAX_PAUSE_MS, Math.max(50, pause * 2));
+            if (failures > retries || !running) {
+                batch.addAll(drain());
+                spill(batch);
+            } else {
+                log.warn("Could not insert {} notifications, retrying in {}ms", batch.size(), pause);
+                requeue(batch);
+            }
+        }
+    }
+
+    /**
+     * Wait for a full batch or the flush interval of the oldest queued notification, or for {@code pause} if
+     * greater than zero.
+     *
+     * @return up to {@code batch-size} queued notifications, possibly none, or null once stopped with nothing
+     * left to write.
+     */
+    private synchronized List<Notification> next(long pause) {
+        long deadline = System.currentTimeMillis() + (pause > 0 ? pause : flushIntervalMs);
+        while (running) {
+            long now = System.currentTimeMillis();
+            long wait;
+            if (pause > 0 || pending.isEmpty()) {
+                wait = deadline - now;
+            } else if (pending.size() >= batchSize) {
+                wait = 0;
+            } else {
+                wait = oldestPendingAt + flushIntervalMs - now;
+            }
+            if (wait <= 0) {
+                break;
+            }
+            try {
+                wait(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+        if (!running && pending.isEmpty()) {
+            return null;
+        }
+        if (pending.size() <= batchSize) {
+            return drain();
+        }
+        List<Notification> batch = new ArrayList<>(pending.subList(0, batchSize));
+        pending = new ArrayList<>(pending.subList(batchSize, pending.size()));
+        oldestPendingAt = System.currentTimeMillis();
+        return batch;
+    }
+
+    private synchronized List<Notification> drain() {
+        List<Notification> drained = pending;
+        pending = new ArrayList<>();
+        return drained;
+    }
+
+    private synchronized void requeue(List<Notification> batch) {
+        batch.addAll(pending);
+        pending = batch;
+        oldestPendingAt = System.currentTimeMillis();
+    }
+
+    private boolean insert(List<Notification> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            notificationRepository.insertAll(batch).block(Duration.ofSeconds(30));
+        } catch (RuntimeException e) {
+            log.debug("Could not insert {} notifications: {}", batch.size(), e.getMessage());
+            return false;
+        }
+        flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        flushSize.record(batch.size());
+        unreadNotificationCounter.inserted(batch);
+        return true;
+    }
+
+    private void spill(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (Notification notification : notifications) {
+                out.write(encode(notification));
+                out.newLine();
+            }
+            spilled.increment(notifications.size());
+            log.warn("Database is unavailable, spilled {} notifications to {}", notifications.size(), spillFile.toAbsolutePath());
+        } catch (IOException e) {
+            dropped.increment(notifications.size());
+            log.error("Could not spill {} notifications to {}, they are lost", notifications.size(), spillFile.toAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Insert the spilled notifications in batches. The ones that cannot be inserted are written back.
+     *
+     * @return false if the database is still unavailable.
+     */
+    private boolean replaySpillFile() {
+        List<Notification> spilledNotifications = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(spillFile, StandardCharsets.UTF_8)) {
+                if (!line.isEmpty()) {
+                    spilledNotifications.add(decode(line));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Path unreadable = spillFile.resolveSibling(spillFile.getFileName() + ".unreadable");
+            log.error("Could not read the spilled notifications from {}, moving it to {}", spillFile.toAbsolutePath(), unreadable, e);
+            try {
+                Files.move(spillFile, unreadable, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException moveFailure) {
+                log.error("Could not move {}", spillFile.toAbsolutePath(), moveFailure);
+            }
+            return true;
+        }
+        for (int from = 0; from < spilledNotifications.size(); from += batchSize) {
+            List<Notification> batch = spilledNotifications.subList(from, Math.min(from + batchSize, spilledNotifications.size()));
+            if (!insert(batch)) {
+                rewriteSpillFile(spilledNotifications.subList(from, spilledNotifications.size()));
+                return false;
+            }
+        }
+        try {
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            log.error("Could not delete {}, its notifications will be inserted again", spillFile.toAbsolutePath(), e);
+        }
+        log.info("Inserted {} spilled notifications", spilledNotifications.size());
+        return true;
+    }
+
+    private void rewriteSpillFile(List<Notification> remaining) {
+        Path temp = spillFile.resolveSibling(spillFile.getFileName() + ".tmp");
+        try {
+            List<String> lines = new ArrayList<>(remaining.size());
+            for (Notification notification : remaining) {
+                lines.add(encode(notification));
+            }
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            Files.move(temp, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Could not rewrite {}, inserted notifications may be inserted again", spillFile.toAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * One line per notification: account, created date, last modified date, read flag and the Base64 of the title,
+     * separated by tabs.
+     */
+    static String encode(Notification notification) {
+        return notification.getAccount() + '\t' + notification.getCreatedDate() + '\t' + notification.getLastModifiedDate()
+                + '\t' + notification.getRead() + '\t'
+                + Base64.getEncoder().encodeToString(notification.getTitle() == null ? new byte[0] : notification.getTitle().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Notification decode(String line) {
+        String[] fields = line.split("\t", -1);
+        Notification notification = new Notification();
+        notification.setAccount("null".equals(fields[0]) ? null : fields[0]);
+        notification.setCreatedDate("null".equals(fields[1]) ? null : LocalDateTime.parse(fields[1]));
+        notification.setLastModifiedDate("null".equals(fields[2]) ? null : LocalDateTime.parse(fields[2]));
+        notification.setRead("null".equals(fields[3]) ? null : Boolean.valueOf(fields[3]));
+        notification.setTitle(new String(Base64.getDecoder().decode(fields[4]), StandardCharsets.UTF_8));
+        return notification;
+    }
+}
@@ -0,0 +1,86 @@
+package com.xbank.service;
+
+import com.xbank.repository.PartitionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the monthly partitions of {@code transaction} and {@code notification} ahead of time on PostgreSQL.
+ * <p>
+ * The partitions of the current month and of the next {@code application.partitioning.months-ahead} months are
+ * created if missing, so rows never land in the default partition. If {@code retention-months} is set, the
+ * partitions of the months before it are detached: their rows leave the tables at once, without a bulk delete,
+ * and stay in standalone tables for archiving or dropping.
+ * <p>
+ * Enabled with {@code application.partitioning.enabled=true}, which needs the partitioned tables of changelog
+ * 20261018000013.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.partitioning", name = "enabled", havingValue = "true")
+public class PartitionMaintenance {
+
+    static final List<String> TABLES = Arrays.asList("transaction", "notification");
+
+    private final Logger log = LoggerFactory.getLogger(PartitionMaintenance.class);
+
+    private final PartitionRepository partitionRepository;
+
+    private final int monthsAhead;
+
+    private final int retentionMonths;
+
+    public PartitionMaintenance(PartitionRepository partitionRepository,
+                                @Value("${application.partitioning.months-ahead:3}") int monthsAhead,
+                                @Value("${application.partitioning.retention-months:0}") int retentionMonths) {
+        this.partitionRepository = partitionRepository;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    /**
+     * Create the coming partitions and detach the expired ones.
+     * <p>
+     * This is scheduled to get fired at startup and every hour by default.
+     */
+    @Scheduled(fixedDelayString = "${application.partitioning.interval-ms:3600000}")
+    public void maintain() {
+        YearMonth now = YearMonth.now();
+        Flux.fromIterable(TABLES)
+                .concatMap(table -> createAhead(table, now).then(detachExpired(table, now)))
+                .onErrorContinue((e, table) -> log.warn("Could not maintain the partitions of {}: {}", table, e.getMessage()))
+                .blockLast();
+    }
+
+    private Mono<Void> createAhead(String table, YearMonth now) {
+        return Flux.range(0, monthsAhead + 1)
+                .map(now::plusMonths)
+                .concatMap(month -> partitionRepository.createPartition(table, month))
+                .then();
+    }
+
+    private Mono<Void> detachExpired(String table, YearMonth now) {
+        if (retentionMonths <= 0) {
+            return Mono.empty();
+        }
+        YearMonth oldest = now.minusMonths(retentionMonths);
+        return partitionRepository.findPartitions(table)
+                .filter(partition -> {
+                    YearMonth month = PartitionRepository.monthOf(table, partition);
+                    return month != null && month.isBefore(oldest);
+                })
+                .sort()
+                .concatMap(partition -> partitionRepository.detachPartition(table, partition)
+                        .doOnSuccess(detached -> log.info("Detached partition {} from {}", partition, table)))
+                .then();
+    }
+}
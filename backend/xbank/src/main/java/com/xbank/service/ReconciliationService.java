@@ -0,0 +1,153 @@
+package com.xbank.service;
+
+import com.xbank.domain.ReconciliationRun;
+import com.xbank.repository.ReconciliationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reconciliation of the account balances against their postings.
+ * <p>
+ * The balance of an account, stripes included, must equal the sum of its postings, which is its full
+ * double-entry history. The account id space is split into {@code application.reconciliation.partitions}
+ * ranges, reconciled {@code parallelism} at a time. Each range is compared by one statement that sums the
+ * postings of its accounts on the database side and returns only the accounts that do not match, so neither
+ * the accounts nor the postings are loaded into memory. Discrepancies are stored in
+ * {@code reconciliation_discrepancy} against the {@code reconciliation_run}.
+ * <p>
+ * Accounts checked, partition durations and the fraction of partitions done are published as
+ * {@code xbank.reconciliation.accounts}, {@code xbank.reconciliation.partition} and
+ * {@code xbank.reconciliation.progress}.
+ */
+@Service
+public class ReconciliationService {
+
+    private static final int INSERT_CHUNK = 500;
+
+    private final Logger log = LoggerFactory.getLogger(ReconciliationService.class);
+
+    private final ReconciliationRepository reconciliationRepository;
+
+    private final int partitions;
+
+    private final int parallelism;
+
+    private final Counter accountsChecked;
+
+    private final Timer partitionDuration;
+
+    private final AtomicInteger partitionsDone = new AtomicInteger();
+
+    private volatile int partitionsTotal;
+
+    public ReconciliationService(ReconciliationRepository reconciliationRepository, MeterRegistry meterRegistry,
+                                 @Value("${application.reconciliation.partitions:64}") int partitions,
+                                 @Value("${application.reconciliation.parallelism:4}") int parallelism) {
+        this.reconciliationRepository = reconciliationRepository;
+        this.partitions = partitions;
+        this.parallelism = parallelism;
+        this.accountsChecked = Counter.builder("xbank.reconciliation.accounts")
+                .description("Accounts reconciled against their postings")
+                .register(meterRegistry);
+        this.partitionDuration = Timer.builder("xbank.reconciliation.partition")
+                .description("Time to reconcile one range of accounts")
+                .register(meterRegistry);
+        Gauge.builder("xbank.reconciliation.progress", this,
+                service -> service.partitionsTotal == 0 ? 1d : (double) service.partitionsDone.get() / service.partitionsTotal)
+                .description("Fraction of the partitions of the current reconciliation done")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reconcile every account.
+     * <p>
+     * This is scheduled to get fired every day at 02:30 by default.
+     */
+    @Scheduled(cron = "${application.reconciliation.cron:0 30 2 * * *}")
+    public void reconcileNightly() {
+        reconcile().block();
+    }
+
+    /**
+     * @return the finished run.
+     */
+    public Mono<ReconciliationRun> reconcile() {
+        ReconciliationRun run = new ReconciliationRun();
+        run.setStartedAt(LocalDateTime.now());
+        long start = System.nanoTime();
+        return reconciliationRepository.save(run)
+                .flatMap(started -> reconciliationRepository.findAccountIdRange()
+                        .flatMapMany(range -> {
+                            List<long[]> ranges = split(range[0], range[1] + 1);
+                            partitionsDone.set(0);
+                            partitionsTotal = ranges.size();
+                            return Flux.fromIterable(ranges);
+                        })
+                        .flatMap(range -> reconcile(started.getId(), range[0], range[1]), parallelism)
+                        .reduce(new long[2], (total, partition) -> {
+                            total[0] += partition[0];
+                            total[1] += partition[1];
+                            return total;
+                        })
+                        .flatMap(total -> {
+                            started.setAccounts(total[0]);
+                            started.setDiscrepancies(total[1]);
+                            started.setFinishedAt(LocalDateTime.now());
+                            return reconciliationRepository.save(started);
+                        }))
+                .doOnNext(finished -> log.info("Reconciled {} accounts in {}ms, {} discrepancies", finished.getAccounts(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), finished.getDiscrepancies()));
+    }
+
+    /**
+     * Reconcile the accounts with an id in [{@code fromId}, {@code toId}).
+     *
+     * @return the number of accounts checked and of discrepancies found.
+     */
+    private Mono<long[]> reconcile(Long runId, long fromId, long toId) {
+        long start = System.nanoTime();
+        Mono<Long> discrepancies = reconciliationRepository.compare(fromId, toId)
+                .doOnNext(discrepancy -> {
+                    discrepancy.setRunId(runId);
+                    log.warn("Balance of {} is {} but its postings sum to {}", discrepancy.getAccount(),
+                            discrepancy.getBalance(), discrepancy.getPosted());
+                })
+                .buffer(INSERT_CHUNK)
+                .concatMap(chunk -> reconciliationRepository.insertDiscrepancies(chunk).thenReturn(chunk.size()))
+                .reduce(0L, Long::sum);
+        return reconciliationRepository.countAccounts(fromId, toId)
+                .zipWith(discrepancies, (accounts, found) -> new long[]{accounts, found})
+                .doOnNext(result -> {
+                    partitionDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    accountsChecked.increment(result[0]);
+                    partitionsDone.incrementAndGet();
+                });
+    }
+
+    /**
+     * Split [{@code low}, {@code high}) into at most {@code partitions} ranges of the same width.
+     */
+    private List<long[]> split(long low, long high) {
+        long width = Math.max(1, (high - low + partitions - 1) / partitions);
+        List<long[]> ranges = new ArrayList<>();
+        for (long from = low; from < high; from += width) {
+            ranges.add(new long[]{from, Math.min(high, from + width)});
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,279 @@
+package com.xbank.service;
+
+import com.xbank.domain.StandingOrder;
+import com.xbank.domain.StandingOrderRun;
+import com.xbank.dto.AccountTranferDTO;
+import com.xbank.dto.StandingOrderDTO;
+import com.xbank.dto.TranferResultDTO;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.StandingOrderRepository;
+import com.xbank.rest.errors.BadRequestAlertException;
+import com.xbank.service.ledger.LedgerEngine;
+import javassist.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Standing orders: transfers repeated daily, weekly or monthly.
+ * <p>
+ * A scheduled pass executes the orders due today. Orders are hashed by source account into
+ * {@link StandingOrder#BUCKETS} buckets and the buckets are split over {@code application.standing-orders.partitions}
+ * partitions executed in parallel, so the debits of one account all go through the same partition and partitions
+ * do not queue on each other's rows. Each partition reads its due orders in chunks with a keyset scan on the
+ * order id and books a chunk as one transfer batch of {@link AccountService}.
+ * <p>
+ * A period is executed at most once: the {@code standing_order_run} row of the period and the advance of the
+ * order to its next period are written in the transaction of the transfers, and a second run of the same period
+ * fails on the primary key of {@code standing_order_run}. A chunk that hits an executed period is re-run order
+ * by order, skipping it. A rejected transfer (insufficient balance) is recorded with result 0 and the order moves
+ * on to its next period. An order behind by several periods executes one of them per pass.
+ * <p>
+ * The ledger engine moves money outside of the database transaction, so with it enabled the runs are claimed
+ * first, as {@value #PENDING}, in a transaction of their own with the advance of the orders; the transfers are
+ * booked once the claim is committed, and the runs are then completed with their outcome. A crash in between
+ * leaves the period pending and unpaid rather than paid twice.
+ */
+@Service
+public class StandingOrderService {
+
+    static final String PENDING = "Pending";
+
+    private final Logger log = LoggerFactory.getLogger(StandingOrderService.class);
+
+    private final StandingOrderRepository standingOrderRepository;
+
+    private final AccountRepository accountRepository;
+
+    private final AccountService accountService;
+
+    private final ContentionRetry contentionRetry;
+
+    /**
+     * In-memory ledger, only present when {@code application.ledger.enabled} is set.
+     */
+    private final LedgerEngine ledgerEngine;
+
+    private final int partitions;
+
+    private final int chunkSize;
+
+    public StandingOrderService(StandingOrderRepository standingOrderRepository, AccountRepository accountRepository,
+                                AccountService accountService, ContentionRetry contentionRetry,
+                                ObjectProvider<LedgerEngine> ledgerEngine,
+                                @Value("${application.standing-orders.partitions:4}") int partitions,
+                                @Value("${application.standing-orders.chunk-size:500}") int chunkSize) {
+        this.standingOrderRepository = standingOrderRepository;
+        this.accountRepository = accountRepository;
+        this.accountService = accountService;
+        this.contentionRetry = contentionRetry;
+        this.ledgerEngine = ledgerEngine.getIfAvailable();
+        this.partitions = partitions;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Create a standing order from an account of {@code login}.
+     */
+    public Mono<StandingOrder> create(String login, StandingOrderDTO dto) {
+        LocalDate today = LocalDate.now();
+        LocalDate startDate = dto.getStartDate() != null ? dto.getStartDate() : today;
+        if (dto.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            return Mono.error(new BadRequestAlertException("Amount must be positive", "StandingOrder", "amount"));
+        }
+        if (dto.getAccount().equals(dto.getToAccount())) {
+            return Mono.error(new BadRequestAlertException("Cannot transfer to the same account", "StandingOrder", "toAccount"));
+        }
+        if (startDate.isBefore(today) || (dto.getEndDate() != null && dto.getEndDate().isBefore(startDate))) {
+            return Mono.error(new BadRequestAlertException("Invalid start or end date", "StandingOrder", "date"));
+        }
+        StandingOrder order = new StandingOrder();
+        order.setOwner(login);
+        order.setAccount(dto.getAccount());
+        order.setToAccount(dto.getToAccount());
+        order.setAmount(dto.getAmount());
+        order.setNote(dto.getNote());
+        order.setFrequency(dto.getFrequency());
+        order.setStartDate(startDate);
+        order.setEndDate(dto.getEndDate());
+        order.setNextRun(startDate);
+        order.setBucket(StandingOrder.bucketOf(dto.getAccount()));
+        order.setActive(true);
+        order.setCreatedDate(LocalDateTime.now());
+        return accountRepository.getAccountDetail(login, dto.getAccount())
+                .switchIfEmpty(Mono.error(new NotFoundException("Account not found!")))
+                .then(accountRepository.findOneByAccount(dto.getToAccount()))
+                .switchIfEmpty(Mono.error(new NotFoundException("To Account not found!")))
+                .then(standingOrderRepository.save(order));
+    }
+
+    public Flux<StandingOrder> getByOwner(String login) {
+        return standingOrderRepository.findByOwner(login);
+    }
+
+    /**
+     * Stop a standing order of {@code login}. Periods already executed are kept.
+     */
+    public Mono<StandingOrder> cancel(String login, Long id) {
+        return standingOrderRepository.findOneByOwner(id, login)
+                .switchIfEmpty(Mono.error(new NotFoundException("Standing order not found!")))
+                .flatMap(order -> {
+                    order.setActive(false);
+                    return standingOrderRepository.save(order);
+                });
+    }
+
+    /**
+     * Execute the standing orders due today.
+     * <p>
+     * This is scheduled to get fired every minute by default.
+     */
+    @Scheduled(fixedDelayString = "${application.standing-orders.interval-ms:60000}")
+    public void executeDue() {
+        executeDue(LocalDate.now()).block();
+    }
+
+    /**
+     * Execute the standing orders due on or before {@code today}.
+     *
+     * @return the number of transfers booked.
+     */
+    public Mono<Long> executeDue(LocalDate today) {
+        long start = System.nanoTime();
+        return Flux.range(0, partitions)
+                .flatMap(partition -> executePartition(partition, today), partitions)
+                .reduce(0L, Long::sum)
+                .doOnNext(booked -> {
+                    if (booked > 0) {
+                        log.info("Executed {} standing orders due on {} in {}ms", booked, today,
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    }
+                });
+    }
+
+    private Mono<Long> executePartition(int partition, LocalDate today) {
+        // The next chunk is read while the current one is booked
+        return findDue(partition, today, 0L)
+                .expand(chunk -> chunk.size() < chunkSize
+                        ? Mono.empty()
+                        : findDue(partition, today, chunk.get(chunk.size() - 1).getId()))
+                .concatMap(this::executeChunk, 1)
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<List<StandingOrder>> findDue(int partition, LocalDate today, long afterId) {
+        return standingOrderRepository.findDue(today, partition, partitions, afterId, chunkSize)
+                .collectList()
+                .filter(chunk -> !chunk.isEmpty());
+    }
+
+    private Mono<Long> executeChunk(List<StandingOrder> chunk) {
+        return execute(chunk)
+                .onErrorResume(DataIntegrityViolationException.class, e -> {
+                    log.debug("Standing order chunk from {} has an executed period, executing it order by order", chunk.get(0).getId());
+                    return Flux.fromIterable(chunk)
+                            .concatMap(order -> execute(Collections.singletonList(order))
+                                    .onErrorResume(DataIntegrityViolationException.class, executed -> {
+                                        log.debug("Standing order {} was already executed for {}", order.getId(), order.getNextRun());
+                                        return Mono.just(0L);
+                                    }))
+                            .reduce(0L, Long::sum);
+                })
+                .onErrorResume(e -> {
+                    log.warn("Could not execute {} standing orders from {}: {}", chunk.size(), chunk.get(0).getId(), e.getMessage());
+                    return Mono.just(0L);
+                });
+    }
+
+    /**
+     * Book the due period of {@code orders} as one transfer batch, with their runs and their advance.
+     *
+     * @return the number of transfers booked.
+     */
+    private Mono<Long> execute(List<StandingOrder> orders) {
+        List<String> owners = new ArrayList<>(orders.size());
+        List<AccountTranferDTO> items = new ArrayList<>(orders.size());
+        for (StandingOrder order : orders) {
+            AccountTranferDTO item = new AccountTranferDTO();
+            item.setAccount(order.getAccount());
+            item.setToAccount(order.getToAccount());
+            item.setBalance(order.getAmount());
+            item.setNote(order.getNote());
+            owners.add(order.getOwner());
+            items.add(item);
+        }
+        if (ledgerEngine != null) {
+            // Claimed before any money moves: an executed period fails here, not after its transfer was booked
+            return contentionRetry.transactional("standing-order", () -> recordRuns(orders, Collections.nCopies(orders.size(), PENDING)))
+                    .then(Mono.defer(() -> accountService.transferBatchAs(owners, items, results -> Mono.empty())))
+                    .flatMap(results -> contentionRetry.transactional("standing-order", () -> completeRuns(orders, results)).thenReturn(results))
+                    .map(results -> results.stream().filter(TranferResultDTO::isSuccess).count());
+        }
+        return accountService.transferBatchAs(owners, items, results -> recordRuns(orders, errors(results)))
+                .map(results -> results.stream().filter(TranferResultDTO::isSuccess).count());
+    }
+
+    private static List<String> errors(List<TranferResultDTO> results) {
+        return results.stream().map(TranferResultDTO::getError).collect(Collectors.toList());
+    }
+
+    /**
+     * Settle the {@value #PENDING} runs of {@code orders} with the outcome of their transfers.
+     */
+    private Mono<Void> completeRuns(List<StandingOrder> orders, List<TranferResultDTO> results) {
+        // Booked runs sharing their date are completed by one statement
+        Map<LocalDate, List<Long>> booked = new HashMap<>();
+        List<Mono<Integer>> rejected = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            StandingOrder order = orders.get(i);
+            if (results.get(i).isSuccess()) {
+                booked.computeIfAbsent(order.getNextRun(), date -> new ArrayList<>()).add(order.getId());
+            } else {
+                rejected.add(standingOrderRepository.rejectRun(order.getId(), order.getNextRun(), results.get(i).getError()));
+            }
+        }
+        return Flux.fromIterable(booked.entrySet())
+                .concatMap(runs -> standingOrderRepository.completeRuns(runs.getValue(), runs.getKey()))
+                .thenMany(Flux.concat(rejected))
+                .then();
+    }
+
+    private Mono<Void> recordRuns(List<StandingOrder> orders, List<String> errors) {
+        LocalDateTime now = LocalDateTime.now();
+        List<StandingOrderRun> runs = new ArrayList<>(orders.size());
+        // Orders sharing their next date are advanced by one statement
+        Map<LocalDate, List<Long>> advanced = new HashMap<>();
+        List<Long> finished = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            StandingOrder order = orders.get(i);
+            runs.add(new StandingOrderRun(order.getId(), order.getNextRun(), errors.get(i), now));
+            LocalDate following = order.followingRun();
+            if (following == null) {
+                finished.add(order.getId());
+            } else {
+                advanced.computeIfAbsent(following, date -> new ArrayList<>()).add(order.getId());
+            }
+        }
+        return standingOrderRepository.insertRuns(runs)
+                .thenMany(Flux.fromIterable(advanced.entrySet())
+                        .concatMap(next -> standingOrderRepository.advance(next.getValue(), next.getKey())))
+                .then(finished.isEmpty() ? Mono.empty() : standingOrderRepository.finish(finished).then());
+    }
+}
@@ -0,0 +1,81 @@
+package com.xbank.service;
+
+import com.xbank.domain.Posting;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.PostingRepository;
+import javassist.NotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Account statements as CSV, streamed from the postings of the account.
+ * <p>
+ * Lines are read from {@code idx_posting_account_posted_at} in time order and written to the response as they
+ * arrive, {@code application.statement.lines-per-chunk} lines per chunk, so memory use does not depend on the
+ * length of the history and a slow client slows the read down instead of queueing lines. The running balance
+ * starts from the sum of the postings before the start of the range, which is read from the same index.
+ */
+@Service
+public class StatementService {
+
+    static final String HEADER = "posted_at,counter_account,amount,balance\n";
+
+    private static final DateTimeFormatter POSTED_AT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final AccountRepository accountRepository;
+
+    private final PostingRepository postingRepository;
+
+    private final int linesPerChunk;
+
+    public StatementService(AccountRepository accountRepository, PostingRepository postingRepository,
+                            @Value("${application.statement.lines-per-chunk:256}") int linesPerChunk) {
+        this.accountRepository = accountRepository;
+        this.postingRepository = postingRepository;
+        this.linesPerChunk = linesPerChunk;
+    }
+
+    /**
+     * The statement of an account of {@code username} from {@code from} (inclusive) to {@code to} (exclusive).
+     *
+     * @return the CSV, in chunks of lines, once the account and its opening balance were read.
+     */
+    public Mono<Flux<String>> csv(String username, String account, LocalDateTime from, LocalDateTime to) {
+        return accountRepository.getAccountDetail(username, account)
+                .switchIfEmpty(Mono.error(new NotFoundException("Account not found!")))
+                .then(postingRepository.sumByAccountBefore(account, from))
+                .map(opening -> {
+                    BigDecimal[] balance = {opening};
+                    return postingRepository.findStatementLines(account, from, to)
+                            .buffer(linesPerChunk)
+                            .map(lines -> format(lines, balance))
+                            .startWith(HEADER);
+                });
+    }
+
+    private static String format(List<Posting> lines, BigDecimal[] balance) {
+        StringBuilder chunk = new StringBuilder(lines.size() * 64);
+        for (Posting line : lines) {
+            balance[0] = balance[0].add(line.getAmount());
+            chunk.append(line.getPostedAt().format(POSTED_AT)).append(',')
+                    .append(escape(line.getCounterAccount())).append(',')
+                    .append(line.getAmount().toPlainString()).append(',')
+                    .append(balance[0].toPlainString()).append('\n');
+        }
+        return chunk.toString();
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
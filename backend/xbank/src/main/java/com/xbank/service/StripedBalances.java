@@ -0,0 +1,182 @@
+package com.xbank.service;
+
+import com.xbank.domain.Account;
+import com.xbank.domain.AccountStripe;
+import com.xbank.domain.Transaction;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.AccountStripeRepository;
+import com.xbank.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Balances of hot accounts (merchant settlement, fee collection) spread over sub-balance rows.
+ * <p>
+ * An account is striped by setting {@code ACCOUNT.stripes} to the number of stripes K. Deposits and
+ * incoming transfers then credit one of K {@code account_stripe} rows picked at random instead of the
+ * account row, so concurrent credits no longer queue on a single row lock. A scheduled fold moves the
+ * stripes into the account balance. Reads include the stripes, and debits are checked against the
+ * account balance plus its stripes while the account row is locked, which keeps folds out.
+ * <p>
+ * Lock order is account row, then stripes, everywhere.
+ */
+@Component
+public class StripedBalances {
+
+    private final Logger log = LoggerFactory.getLogger(StripedBalances.class);
+
+    private final AccountRepository accountRepository;
+
+    private final AccountStripeRepository accountStripeRepository;
+
+    private final TransactionRepository transactionRepository;
+
+    private final ContentionRetry contentionRetry;
+
+    private volatile Map<String, Integer> stripes = Collections.emptyMap();
+
+    public StripedBalances(AccountRepository accountRepository, AccountStripeRepository accountStripeRepository,
+                           TransactionRepository transactionRepository, ContentionRetry contentionRetry) {
+        this.accountRepository = accountRepository;
+        this.accountStripeRepository = accountStripeRepository;
+        this.transactionRepository = transactionRepository;
+        this.contentionRetry = contentionRetry;
+    }
+
+    public boolean isStriped(String account) {
+        return stripes.containsKey(account);
+    }
+
+    /**
+     * Credit a random stripe of {@code transaction.account} and insert the transaction row.
+     *
+     * @return the account with its stripes, or empty if it does not exist.
+     */
+    public Mono<Account> deposit(Transaction transaction) {
+        return creditStripe(transaction.getAccount(), transaction.getAmount())
+                .flatMap(credited -> record(transaction, transaction.getAccount()));
+    }
+
+    /**
+     * Debit {@code transaction.account}, checked against its balance plus its stripes, and insert the transaction row.
+     *
+     * @return the account with its stripes, or empty if it does not exist or does not cover the amount.
+     */
+    public Mono<Account> withdraw(Transaction transaction) {
+        String account = transaction.getAccount();
+        return accountRepository.lock(account)
+                .flatMap(locked -> debit(account, transaction.getAmount()))
+                .flatMap(debited -> record(transaction, account));
+    }
+
+    /**
+     * Transfer from or to a striped account.
+     * <p>
+     * A striped target is credited on a stripe, so only the source row is locked. Otherwise both rows are
+     * locked in id order, as for any other transfer.
+     *
+     * @return the source account with its stripes, or empty if an account does not exist or the source does
+     * not cover the amount.
+     */
+    public Mono<Account> transfer(Transaction transaction) {
+        String from = transaction.getAccount();
+        String to = transaction.getToAccount();
+        BigDecimal amount = transaction.getAmount();
+        BigDecimal credited = transaction.creditAmount();
+        Mono<Boolean> locked = isStriped(to)
+                ? accountRepository.lock(from).map(id -> Boolean.TRUE)
+                : accountRepository.lockInIdOrder(from, to).count().map(rows -> rows == 2);
+        return locked
+                .filter(Boolean::booleanValue)
+                .flatMap(ok -> debit(from, amount))
+                .flatMap(debited -> isStriped(to)
+                        ? creditStripe(to, credited)
+                        : accountRepository.addBalance(to, credited).filter(rows -> rows > 0))
+                .flatMap(rows -> record(transaction, from));
+    }
+
+    /**
+     * Pick up newly flagged accounts and fold the stripes into the account balances.
+     * <p>
+     * This is scheduled to get fired every second by default.
+     */
+    @Scheduled(fixedDelayString = "${application.striping.fold-interval-ms:1000}")
+    public void fold() {
+        refresh()
+                .thenMany(accountStripeRepository.findAccountsToFold())
+                .concatMap(account -> contentionRetry.transactional("fold", () -> fold(account), account))
+                .onErrorContinue((e, account) -> log.warn("Could not fold the stripes of {}: {}", account, e.getMessage()))
+                .blockLast();
+    }
+
+    private Mono<Void> fold(String account) {
+        return accountRepository.lock(account)
+                .thenMany(accountStripeRepository.lockAll(account))
+                .map(AccountStripe::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add)
+                .filter(total -> total.signum() != 0)
+                .flatMap(total -> accountRepository.addBalance(account, total)
+                        .then(accountStripeRepository.reset(account))
+                        .doOnSuccess(reset -> log.debug("Folded {} from {} stripes into {}", total, reset, account)))
+                .then();
+    }
+
+    /**
+     * Reload the striped accounts, creating their missing stripes before they start taking credits.
+     */
+    private Mono<Void> refresh() {
+        return accountRepository.findAllStriped()
+                .concatMap(account -> createStripes(account.getAccount(), account.getStripes())
+                        .thenReturn(account))
+                .collectMap(Account::getAccount, Account::getStripes)
+                .doOnNext(striped -> stripes = striped)
+                .then();
+    }
+
+    private Mono<Void> createStripes(String account, int count) {
+        return accountStripeRepository.findStripes(account)
+                .collect(Collectors.toCollection(HashSet::new))
+                .flatMapMany(existing -> Flux.fromStream(IntStream.range(0, count).boxed())
+                        .filter(stripe -> !existing.contains(stripe)))
+                .concatMap(stripe -> accountStripeRepository.save(new AccountStripe(account, stripe))
+                        // Created concurrently by another instance
+                        .onErrorResume(DataIntegrityViolationException.class, e -> Mono.empty()))
+                .then();
+    }
+
+    private Mono<Account> record(Transaction transaction, String account) {
+        return transactionRepository.insertAll(Collections.singletonList(transaction))
+                .then(accountRepository.findOneWithStripes(account));
+    }
+
+    private Mono<Integer> debit(String account, BigDecimal amount) {
+        Mono<Integer> debited = isStriped(account)
+                ? accountRepository.debitWithStripes(account, amount)
+                : accountRepository.addBalanceIfCovered(account, amount.negate());
+        return debited.filter(rows -> rows > 0);
+    }
+
+    private Mono<Integer> creditStripe(String account, BigDecimal amount) {
+        Integer count = stripes.get(account);
+        if (count == null || count <= 0) {
+            return accountRepository.addBalance(account, amount).filter(rows -> rows > 0);
+        }
+        return accountStripeRepository.credit(account, ThreadLocalRandom.current().nextInt(count), amount)
+                .filter(rows -> rows > 0)
+                // The account was unflagged or its stripes are not there yet
+                .switchIfEmpty(Mono.defer(() -> accountRepository.addBalance(account, amount).filter(rows -> rows > 0)));
+    }
+}
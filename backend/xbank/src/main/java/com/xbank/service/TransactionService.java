@@ -1,37 +1,33 @@
 package com.xbank.service;
 
 import com.xbank.config.Constants;
-import com.xbank.domain.Account;
 import com.xbank.domain.Notification;
 import com.xbank.domain.Transaction;
+import com.xbank.dto.PageCursor;
 import com.xbank.dto.TransactionDTO;
 import com.xbank.event.TransactionEvent;
-import com.xbank.repository.NotificationRepository;
+import com.xbank.repository.AccountRepository;
 import com.xbank.repository.TransactionRepository;
-import com.xbank.rest.errors.DepositException;
-import com.xbank.rest.errors.UserNotfoundException;
+import com.xbank.rest.util.CursorPaginationUtil;
 import com.xbank.security.SecurityUtils;
-import io.github.jhipster.web.util.HeaderUtil;
-import io.github.jhipster.web.util.PaginationUtil;
-import org.apache.commons.lang3.StringUtils;
+import com.xbank.service.archive.TransactionArchive;
+import javassist.NotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.math.BigDecimal;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiFunction;
 
 /**
  * Service class for managing Transactions.
@@ -39,17 +35,38 @@ import java.util.ArrayList;
 @Service
 public class TransactionService {
 
+    private static final Comparator<Transaction> NEWEST_FIRST = Comparator
+            .comparing(Transaction::getTransactAt)
+            .thenComparing(Transaction::getId)
+            .reversed();
+
+    /**
+     * The start of listings when {@code application.partitioning.history-months} is 0.
+     */
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
     private final Logger log = LoggerFactory.getLogger(TransactionService.class);
 
     private final TransactionRepository transactionRepository;
-    private final NotificationRepository notificationRepository;
+    private final NotificationWriter notificationWriter;
+    private final AccountRepository accountRepository;
 
     private final ApplicationEventPublisher publisher;
 
-    public TransactionService(TransactionRepository transactionRepository, NotificationRepository notificationRepository, ApplicationEventPublisher publisher) {
+    private final TransactionArchive transactionArchive;
+
+    private final int historyMonths;
+
+    public TransactionService(TransactionRepository transactionRepository, NotificationWriter notificationWriter,
+                              AccountRepository accountRepository, ApplicationEventPublisher publisher,
+                              ObjectProvider<TransactionArchive> transactionArchive,
+                              @Value("${application.partitioning.history-months:0}") int historyMonths) {
         this.transactionRepository = transactionRepository;
-        this.notificationRepository = notificationRepository;
+        this.notificationWriter = notificationWriter;
+        this.accountRepository = accountRepository;
         this.publisher = publisher;
+        this.transactionArchive = transactionArchive.getIfAvailable();
+        this.historyMonths = historyMonths;
     }
 
     @Transactional
@@ -83,26 +100,85 @@ public class TransactionService {
         return transactionRepository.countAll();
     }
 
+    /**
+     * A page of the transactions of an account of {@code username}, newest first. Reads through to the
+     * {@link TransactionArchive} when {@code from} reaches into it.
+     *
+     * @param from  the oldest transactions to list, or null for {@code application.partitioning.history-months} ago, or all.
+     * @param after the cursor of the previous page, or null for the first page.
+     */
     @Transactional(readOnly = true)
-    public Flux<Transaction> getAllTransactions(Pageable pageable) {
-        return transactionRepository.findAllAsPage(pageable);
+    public Mono<ResponseEntity<List<Transaction>>> getAllTransactionsByAccount(String username, String account, LocalDateTime from,
+                                                                              String after, Integer size) {
+        PageCursor cursor = PageCursor.decodeNewestFirst(after);
+        int limit = PageCursor.limit(size);
+        LocalDateTime since = since(from);
+        return accountRepository.getAccountDetail(username, account)
+                .switchIfEmpty(Mono.error(new NotFoundException("Account not found!")))
+                .flatMap(acc -> withArchive(since, limit,
+                        transactionRepository.findPageByAccount(account, since, cursor.getAt(), cursor.getId(), limit),
+                        (archive, oldest) -> archive.findPageByAccount(account, oldest, cursor.getAt(), cursor.getId(), limit)))
+                .map(page -> CursorPaginationUtil.page(page, limit, TransactionService::cursorOf));
     }
 
-    @Transactional
-    public Mono<ResponseEntity<Flux<Transaction>>> getAllTransactionsByAccount(String account) {
-        return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
-                .map(login -> ResponseEntity.ok().body(transactionRepository.getAllTransactionsByAccount(account)));
+    /**
+     * A page of the transactions of {@code username}, newest first. Reads through to the
+     * {@link TransactionArchive} when {@code from} reaches into it.
+     *
+     * @param from  the oldest transactions to list, or null for {@code application.partitioning.history-months} ago, or all.
+     * @param after the cursor of the previous page, or null for the first page.
+     */
+    @Transactional(readOnly = true)
+    public Mono<ResponseEntity<List<Transaction>>> getAllTransactionsByUser(String username, LocalDateTime from, String after, Integer size) {
+        PageCursor cursor = PageCursor.decodeNewestFirst(after);
+        int limit = PageCursor.limit(size);
+        LocalDateTime since = since(from);
+        return withArchive(since, limit,
+                transactionRepository.findPageByOwner(username, since, cursor.getAt(), cursor.getId(), limit),
+                (archive, oldest) -> archive.findPageByOwner(username, oldest, cursor.getAt(), cursor.getId(), limit))
+                .map(page -> CursorPaginationUtil.page(page, limit, TransactionService::cursorOf));
     }
 
-    @Transactional
-    public Mono<ResponseEntity<Flux<Transaction>>> getAllTransactionsByUser() {
-        return SecurityUtils.getCurrentUserLogin(Boolean.TRUE)
-                .map(login -> ResponseEntity.ok().body(transactionRepository.getAllTransactionsByUser(login)));
+    /**
+     * Merge a page from the table with the same page from the archive, if the archive holds transactions that can
+     * make the page: since {@code since}, or, once the table fills the page, since its oldest transaction.
+     */
+    private Mono<List<Transaction>> withArchive(LocalDateTime since, int limit, Flux<Transaction> page,
+                                                BiFunction<TransactionArchive, LocalDateTime, Flux<Transaction>> archived) {
+        if (transactionArchive == null || !transactionArchive.reaches(since)) {
+            return page.collectList();
+        }
+        return page.collectList().flatMap(rows -> {
+            LocalDateTime oldest = rows.size() < limit ? since : rows.get(rows.size() - 1).getTransactAt();
+            if (!transactionArchive.reaches(oldest)) {
+                return Mono.just(rows);
+            }
+            return Flux.fromIterable(rows)
+                    .concatWith(archived.apply(transactionArchive, oldest))
+                    .sort(NEWEST_FIRST)
+                    .take(limit)
+                    .collectList();
+        });
+    }
+
+    private LocalDateTime since(LocalDateTime from) {
+        if (from != null) {
+            return from;
+        }
+        return historyMonths > 0 ? LocalDateTime.now().minusMonths(historyMonths) : BEGINNING;
+    }
+
+    private static PageCursor cursorOf(Transaction transaction) {
+        return new PageCursor(transaction.getTransactAt(), transaction.getId());
     }
 
     @Transactional(readOnly = true)
     public Mono<Transaction> detailTransaction(Long id) {
-        return transactionRepository.findById(id);
+        if (transactionArchive == null) {
+            return transactionRepository.findById(id);
+        }
+        return transactionRepository.findById(id)
+                .switchIfEmpty(Mono.defer(() -> transactionArchive.findById(id)));
     }
 
     private final void publishTransactionEvent(String eventType, Transaction transaction) {
@@ -122,7 +198,7 @@ public class TransactionService {
             // deposit action
             notification.setTitle("Số dư tài khoản " + transaction.getAccount() + " + " + transaction.getAmount() + "VND. Nạp tiền ngày " + transactionAt);
         }
-        notificationRepository.save(notification).subscribe(result -> log.info("Entity has been saved: {}", result));
+        notificationWriter.write(notification);
     }
 
 }
@@ -0,0 +1,109 @@
+package com.xbank.service;
+
+import com.xbank.domain.Notification;
+import com.xbank.repository.NotificationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Number of unread notifications per user, kept in memory so that the unread badge does not count rows.
+ * <p>
+ * A user's count is loaded from {@code idx_notification_account_is_read} on first use, then kept up to date by
+ * the {@link NotificationWriter} and by the reads. Counts are reloaded after {@code application.notifications.unread-ttl-ms},
+ * which repairs what this instance cannot see: the notifications read or inserted by other instances, and those
+ * inserted while the count was loading.
+ */
+@Component
+public class UnreadNotificationCounter {
+
+    private final NotificationRepository notificationRepository;
+
+    private final long ttlMs;
+
+    private final ConcurrentMap<String, Count> counts = new ConcurrentHashMap<>();
+
+    public UnreadNotificationCounter(NotificationRepository notificationRepository,
+                                     @Value("${application.notifications.unread-ttl-ms:300000}") long ttlMs) {
+        this.notificationRepository = notificationRepository;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * @return the number of unread notifications of {@code account}.
+     */
+    public Mono<Long> get(String account) {
+        Count count = counts.get(account);
+        if (count != null && !count.isExpired(System.currentTimeMillis())) {
+            return Mono.just(count.unread.get());
+        }
+        return notificationRepository.countUnread(account)
+                .doOnNext(unread -> counts.put(account, new Count(unread, System.currentTimeMillis() + ttlMs)));
+    }
+
+    /**
+     * Count the unread ones of {@code notifications}, which were just inserted.
+     */
+    public void inserted(List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            Count count = counts.get(notification.getAccount());
+            if (count != null && !Boolean.TRUE.equals(notification.getRead())) {
+                count.unread.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Uncount {@code read} notifications of {@code account}, which were just marked as read.
+     */
+    public void read(String account, long read) {
+        Count count = counts.get(account);
+        if (count != null) {
+            count.unread.updateAndGet(unread -> Math.max(0, unread - read));
+        }
+    }
+
+    public void readAll(String account) {
+        counts.put(account, new Count(0, System.currentTimeMillis() + ttlMs));
+    }
+
+    /**
+     * Forget the count of {@code account}, it is loaded again on next use.
+     */
+    void evict(String account) {
+        counts.remove(account);
+    }
+
+    /**
+     * Forget the expired counts, so that only the users seen lately are kept.
+     * <p>
+     * This is scheduled to get fired every 5 minutes by default.
+     */
+    @Scheduled(fixedDelayString = "${application.notifications.unread-ttl-ms:300000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        counts.values().removeIf(count -> count.isExpired(now));
+    }
+
+    private static final class Count {
+
+        private final AtomicLong unread;
+
+        private final long expiresAt;
+
+        Count(long unread, long expiresAt) {
+            this.unread = new AtomicLong(unread);
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.xbank.service.archive;
+
+import com.xbank.domain.Transaction;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * One column of the {@link Transaction} rows stored in an {@link ArchiveSegment}: how to read it from a
+ * transaction, encode it, and set it back. Every value is preceded by a presence flag, so all columns are nullable.
+ */
+final class ArchiveColumn<T> {
+
+    static final ArchiveColumn<Long> ID = new ArchiveColumn<>(Codec.LONG, Transaction::getId, Transaction::setId);
+
+    static final ArchiveColumn<String> OWNER = new ArchiveColumn<>(Codec.STRING, Transaction::getOwner, Transaction::setOwner);
+
+    static final ArchiveColumn<String> ACCOUNT = new ArchiveColumn<>(Codec.STRING, Transaction::getAccount, Transaction::setAccount);
+
+    static final ArchiveColumn<LocalDateTime> TRANSACT_AT = new ArchiveColumn<>(Codec.LOCAL_DATE_TIME, Transaction::getTransactAt,
+            Transaction::setTransactAt);
+
+    /**
+     * The columns in file order; the columns a lookup filters on come first.
+     */
+    static final List<ArchiveColumn<?>> ALL = Arrays.asList(
+            ID, OWNER, ACCOUNT, TRANSACT_AT,
+            new ArchiveColumn<>(Codec.INT, Transaction::getAction, Transaction::setAction),
+            new ArchiveColumn<>(Codec.STRING, Transaction::getToAccount, Transaction::setToAccount),
+            new ArchiveColumn<>(Codec.DECIMAL, Transaction::getAmount, Transaction::setAmount),
+            new ArchiveColumn<>(Codec.STRING, Transaction::getCurrency, Transaction::setCurrency),
+            new ArchiveColumn<>(Codec.DECIMAL, Transaction::getToAmount, Transaction::setToAmount),
+            new ArchiveColumn<>(Codec.STRING, Transaction::getToCurrency, Transaction::setToCurrency),
+            new ArchiveColumn<>(Codec.STRING, Transaction::getNote, Transaction::setNote),
+            new ArchiveColumn<>(Codec.INT, Transaction::getResult, Transaction::setResult),
+            new ArchiveColumn<>(Codec.STRING, Transaction::getError, Transaction::setError),
+            new ArchiveColumn<>(Codec.STRING, Transaction::getCreatedBy, Transaction::setCreatedBy),
+            new ArchiveColumn<>(Codec.INSTANT, Transaction::getCreatedDate, Transaction::setCreatedDate),
+            new ArchiveColumn<>(Codec.STRING, Transaction::getLastModifiedBy, Transaction::setLastModifiedBy),
+            new ArchiveColumn<>(Codec.INSTANT, Transaction::getLastModifiedDate, Transaction::setLastModifiedDate));
+
+    private final Codec<T> codec;
+
+    private final Function<Transaction, T> getter;
+
+    private final BiConsumer<Transaction, T> setter;
+
+    private ArchiveColumn(Codec<T> codec, Function<Transaction, T> getter, BiConsumer<Transaction, T> setter) {
+        this.codec = codec;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    int index() {
+        return ALL.indexOf(this);
+    }
+
+    void write(DataOutputStream out, Transaction transaction) throws IOException {
+        T value = getter.apply(transaction);
+        out.writeBoolean(value != null);
+        if (value != null) {
+            codec.write(out, value);
+        }
+    }
+
+    T read(DataInputStream in) throws IOException {
+        return in.readBoolean() ? codec.read(in) : null;
+    }
+
+    /**
+     * Read the next value into {@code transaction}; absent values leave the field as it is.
+     */
+    void readInto(DataInputStream in, Transaction transaction) throws IOException {
+        T value = read(in);
+        if (value != null) {
+            setter.accept(transaction, value);
+        }
+    }
+
+    interface Codec<T> {
+
+        Codec<Long> LONG = new Codec<Long>() {
+            public void write(DataOutputStream out, Long value) throws IOException {
+                out.writeLong(value);
+            }
+
+            public Long read(DataInputStream in) throws IOException {
+                return in.readLong();
+            }
+        };
+
+        Codec<Integer> INT = new Codec<Integer>() {
+            public void write(DataOutputStream out, Integer value) throws IOException {
+                out.writeInt(value);
+            }
+
+            public Integer read(DataInputStream in) throws IOException {
+                return in.readInt();
+            }
+        };
+
+        Codec<String> STRING = new Codec<String>() {
+            public void write(DataOutputStream out, String value) throws IOException {
+                out.writeUTF(value);
+            }
+
+            public String read(DataInputStream in) throws IOException {
+                return in.readUTF();
+            }
+        };
+
+        Codec<BigDecimal> DECIMAL = new Codec<BigDecimal>() {
+            public void write(DataOutputStream out, BigDecimal value) throws IOException {
+                byte[] unscaled = value.unscaledValue().toByteArray();
+                out.writeInt(value.scale());
+                out.writeByte(unscaled.length);
+                out.write(unscaled);
+            }
+
+            public BigDecimal read(DataInputStream in) throws IOException {
+                int scale = in.readInt();
+                byte[] unscaled = new byte[in.readUnsignedByte()];
+                in.readFully(unscaled);
+                return new BigDecimal(new BigInteger(unscaled), scale);
+            }
+        };
+
+        // Wall clock time, as stored in the transact_at column
+        Codec<LocalDateTime> LOCAL_DATE_TIME = new Codec<LocalDateTime>() {
+            public void write(DataOutputStream out, LocalDateTime value) throws IOException {
+                out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(value.getNano());
+            }
+
+            public LocalDateTime read(DataInputStream in) throws IOException {
+                return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            }
+        };
+
+        Codec<Instant> INSTANT = new Codec<Instant>() {
+            public void write(DataOutputStream out, Instant value) throws IOException {
+                out.writeLong(value.getEpochSecond());
+                out.writeInt(value.getNano());
+            }
+
+            public Instant read(DataInputStream in) throws IOException {
+                return Instant.ofEpochSecond(in.readLong(), in.readInt());
+            }
+        };
+
+        void write(DataOutputStream out, T value) throws IOException;
+
+        T read(DataInputStream in) throws IOException;
+    }
+}
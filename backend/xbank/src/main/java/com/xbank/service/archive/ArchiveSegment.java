@@ -0,0 +1,440 @@
+package com.xbank.service.archive;
+
+import com.xbank.domain.Transaction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * One immutable file of archived {@link Transaction} rows, memory-mapped for reading.
+ * <p>
+ * Rows are sorted by account, then {@code transact_at} and id, and cut into row groups. Each column of each row
+ * group is deflated into its own block, so a lookup only inflates the columns and row groups it needs. A footer
+ * holds the block offsets and two indexes: per account, its rows and their min/max {@code transact_at}; per owner,
+ * the row groups holding its rows and their min/max {@code transact_at}.
+ * <pre>
+ * block*  footer (deflated)  footer offset (8)  footer length (4)  magic (4)
+ * </pre>
+ */
+final class ArchiveSegment {
+
+    static final String SUFFIX = ".seg";
+
+    private static final int MAGIC = 0x58544131; // XTA1
+
+    private static final int TAIL = 16;
+
+    static final Comparator<Transaction> ORDER = Comparator
+            .comparing(Transaction::getAccount, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(Transaction::getTransactAt)
+            .thenComparing(Transaction::getId);
+
+    static final Comparator<Transaction> NEWEST_FIRST = Comparator
+            .comparing(Transaction::getTransactAt)
+            .thenComparing(Transaction::getId)
+            .reversed();
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final int rows;
+
+    private final int rowGroupSize;
+
+    // [row group][column] -> offset, length
+    private final long[][] offsets;
+
+    private final int[][] lengths;
+
+    private final long minId;
+
+    private final long maxId;
+
+    private final LocalDateTime minAt;
+
+    private final LocalDateTime maxAt;
+
+    private final Map<String, KeyRange> accounts;
+
+    private final Map<String, KeyRange> owners;
+
+    private ArchiveSegment(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        ByteBuffer tail = buffer.duplicate();
+        tail.position(buffer.limit() - TAIL);
+        long footerOffset = tail.getLong();
+        int footerLength = tail.getInt();
+        if (tail.getInt() != MAGIC) {
+            channel.close();
+            throw new IOException("Not an archive segment: " + path);
+        }
+        try (DataInputStream in = inflate(footerOffset, footerLength)) {
+            rows = in.readInt();
+            rowGroupSize = in.readInt();
+            int groups = in.readInt();
+            int columns = in.readInt();
+            offsets = new long[groups][columns];
+            lengths = new int[groups][columns];
+            for (int group = 0; group < groups; group++) {
+                for (int column = 0; column < columns; column++) {
+                    offsets[group][column] = in.readLong();
+                    lengths[group][column] = in.readInt();
+                }
+            }
+            minId = in.readLong();
+            maxId = in.readLong();
+            minAt = ArchiveColumn.Codec.LOCAL_DATE_TIME.read(in);
+            maxAt = ArchiveColumn.Codec.LOCAL_DATE_TIME.read(in);
+            accounts = readIndex(in);
+            owners = readIndex(in);
+        }
+    }
+
+    static ArchiveSegment open(Path path) throws IOException {
+        return new ArchiveSegment(path);
+    }
+
+    /**
+     * Write {@code transactions} to a new segment at {@code path}. The file only appears under its name once it
+     * is complete and on disk.
+     */
+    static ArchiveSegment write(Path path, List<Transaction> transactions, int rowGroupSize) throws IOException {
+        if (transactions.isEmpty()) {
+            throw new IllegalArgumentException("An archive segment cannot be empty");
+        }
+        List<Transaction> sorted = new ArrayList<>(transactions);
+        sorted.sort(ORDER);
+        int groups = (sorted.size() + rowGroupSize - 1) / rowGroupSize;
+        int columns = ArchiveColumn.ALL.size();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            OutputStream stream = Channels.newOutputStream(out);
+            long[][] offsets = new long[groups][columns];
+            int[][] lengths = new int[groups][columns];
+            for (int group = 0; group < groups; group++) {
+                List<Transaction> rows = sorted.subList(group * rowGroupSize, Math.min(sorted.size(), (group + 1) * rowGroupSize));
+                for (int column = 0; column < columns; column++) {
+                    ArchiveColumn<?> archiveColumn = ArchiveColumn.ALL.get(column);
+                    byte[] block = deflate(data -> {
+                        for (Transaction row : rows) {
+                            archiveColumn.write(data, row);
+                        }
+                    });
+                    offsets[group][column] = out.position();
+                    lengths[group][column] = block.length;
+                    stream.write(block);
+                }
+            }
+            long footerOffset = out.position();
+            byte[] footer = deflate(data -> writeFooter(data, sorted, rowGroupSize, offsets, lengths));
+            stream.write(footer);
+            ByteBuffer tail = ByteBuffer.allocate(TAIL);
+            tail.putLong(footerOffset).putInt(footer.length).putInt(MAGIC).flip();
+            while (tail.hasRemaining()) {
+                out.write(tail);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        return open(path);
+    }
+
+    /**
+     * The newest {@code limit} rows of {@code account} with {@code from <= transact_at} that come before the cursor
+     * ({@code at}, {@code id}) in newest first order, newest first.
+     */
+    List<Transaction> findByAccount(String account, LocalDateTime from, LocalDateTime at, long id, int limit) throws IOException {
+        KeyRange range = accounts.get(account);
+        List<Transaction> found = new ArrayList<>();
+        if (range == null || !range.overlaps(from, at)) {
+            return found;
+        }
+        // The rows of an account are contiguous and in transact_at order, so they are read from the last one back,
+        // and a row group is only inflated in full once its transact_at column shows rows of the page
+        int lastRow = range.firstRow + range.rows - 1;
+        for (int group = lastRow / rowGroupSize; group >= range.firstRow / rowGroupSize; group--) {
+            int first = Math.max(range.firstRow, group * rowGroupSize) - group * rowGroupSize;
+            int last = Math.min(lastRow, (group + 1) * rowGroupSize - 1) - group * rowGroupSize;
+            List<LocalDateTime> transactAt = readColumn(group, ArchiveColumn.TRANSACT_AT);
+            if (transactAt.get(last).isBefore(from)) {
+                return found;
+            }
+            if (transactAt.get(first).isAfter(at)) {
+                continue;
+            }
+            List<Transaction> rows = readRows(group);
+            for (int row = last; row >= first; row--) {
+                Transaction transaction = rows.get(row);
+                if (transaction.getTransactAt().isBefore(from)) {
+                    return found;
+                }
+                if (inPage(transaction, from, at, id)) {
+                    found.add(transaction);
+                    if (found.size() == limit) {
+                        return found;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The newest {@code limit} rows of {@code owner} with {@code from <= transact_at} that come before the cursor
+     * ({@code at}, {@code id}) in newest first order, newest first.
+     */
+    List<Transaction> findByOwner(String owner, LocalDateTime from, LocalDateTime at, long id, int limit) throws IOException {
+        KeyRange range = owners.get(owner);
+        List<Transaction> found = new ArrayList<>();
+        if (range == null || !range.overlaps(from, at)) {
+            return found;
+        }
+        // The rows of an owner are spread over its row groups in account order, so each group is read and only
+        // the newest rows found so far are kept
+        for (int group : range.groups) {
+            // Only the row groups where the owner column matches are inflated in full
+            if (!readColumn(group, ArchiveColumn.OWNER).contains(owner)) {
+                continue;
+            }
+            for (Transaction row : readRows(group)) {
+                if (owner.equals(row.getOwner()) && inPage(row, from, at, id)) {
+                    found.add(row);
+                }
+            }
+            found.sort(NEWEST_FIRST);
+            if (found.size() > limit) {
+                found.subList(limit, found.size()).clear();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the row with {@code id}, or null if it is not in this segment.
+     */
+    Transaction findById(long id) throws IOException {
+        if (id < minId || id > maxId) {
+            return null;
+        }
+        for (int group = 0; group < offsets.length; group++) {
+            int row = readColumn(group, ArchiveColumn.ID).indexOf(id);
+            if (row >= 0) {
+                return readRows(group).get(row);
+            }
+        }
+        return null;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    LocalDateTime getMinAt() {
+        return minAt;
+    }
+
+    LocalDateTime getMaxAt() {
+        return maxAt;
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    private static boolean inPage(Transaction row, LocalDateTime from, LocalDateTime at, long id) {
+        LocalDateTime transactAt = row.getTransactAt();
+        return !transactAt.isBefore(from) && (transactAt.isBefore(at) || transactAt.isEqual(at) && row.getId() < id);
+    }
+
+    private <T> List<T> readColumn(int group, ArchiveColumn<T> column) throws IOException {
+        int index = column.index();
+        List<T> values = new ArrayList<>(rowGroupSize);
+        try (DataInputStream in = inflate(offsets[group][index], lengths[group][index])) {
+            for (int row = 0; row < rowsIn(group); row++) {
+                values.add(column.read(in));
+            }
+        }
+        return values;
+    }
+
+    private List<Transaction> readRows(int group) throws IOException {
+        List<Transaction> transactions = new ArrayList<>(rowsIn(group));
+        for (int row = 0; row < rowsIn(group); row++) {
+            transactions.add(new Transaction());
+        }
+        for (int column = 0; column < ArchiveColumn.ALL.size(); column++) {
+            try (DataInputStream in = inflate(offsets[group][column], lengths[group][column])) {
+                for (Transaction transaction : transactions) {
+                    ArchiveColumn.ALL.get(column).readInto(in, transaction);
+                }
+            }
+        }
+        return transactions;
+    }
+
+    private int rowsIn(int group) {
+        return Math.min(rowGroupSize, rows - group * rowGroupSize);
+    }
+
+    private DataInputStream inflate(long offset, int length) {
+        ByteBuffer block = buffer.duplicate();
+        block.position((int) offset);
+        byte[] bytes = new byte[length];
+        block.get(bytes);
+        return new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private interface BlockWriter {
+        void write(DataOutputStream data) throws IOException;
+    }
+
+    private static byte[] deflate(BlockWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream data = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            writer.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeFooter(DataOutputStream out, List<Transaction> sorted, int rowGroupSize,
+                                    long[][] offsets, int[][] lengths) throws IOException {
+        out.writeInt(sorted.size());
+        out.writeInt(rowGroupSize);
+        out.writeInt(offsets.length);
+        out.writeInt(ArchiveColumn.ALL.size());
+        for (int group = 0; group < offsets.length; group++) {
+            for (int column = 0; column < offsets[group].length; column++) {
+                out.writeLong(offsets[group][column]);
+                out.writeInt(lengths[group][column]);
+            }
+        }
+        Map<String, KeyRange> accounts = new LinkedHashMap<>();
+        Map<String, KeyRange> owners = new HashMap<>();
+        long minId = Long.MAX_VALUE;
+        long maxId = Long.MIN_VALUE;
+        LocalDateTime minAt = LocalDateTime.MAX;
+        LocalDateTime maxAt = LocalDateTime.MIN;
+        for (int row = 0; row < sorted.size(); row++) {
+            Transaction transaction = sorted.get(row);
+            LocalDateTime transactAt = transaction.getTransactAt();
+            minId = Math.min(minId, transaction.getId());
+            maxId = Math.max(maxId, transaction.getId());
+            minAt = transactAt.isBefore(minAt) ? transactAt : minAt;
+            maxAt = transactAt.isAfter(maxAt) ? transactAt : maxAt;
+            if (transaction.getAccount() != null) {
+                accounts.computeIfAbsent(transaction.getAccount(), account -> new KeyRange(transactAt)).add(row, rowGroupSize, transactAt);
+            }
+            if (transaction.getOwner() != null) {
+                owners.computeIfAbsent(transaction.getOwner(), owner -> new KeyRange(transactAt)).add(row, rowGroupSize, transactAt);
+            }
+        }
+        out.writeLong(minId);
+        out.writeLong(maxId);
+        ArchiveColumn.Codec.LOCAL_DATE_TIME.write(out, minAt);
+        ArchiveColumn.Codec.LOCAL_DATE_TIME.write(out, maxAt);
+        writeIndex(out, accounts);
+        writeIndex(out, owners);
+    }
+
+    private static void writeIndex(DataOutputStream out, Map<String, KeyRange> index) throws IOException {
+        out.writeInt(index.size());
+        for (Map.Entry<String, KeyRange> entry : index.entrySet()) {
+            KeyRange range = entry.getValue();
+            out.writeUTF(entry.getKey());
+            ArchiveColumn.Codec.LOCAL_DATE_TIME.write(out, range.minAt);
+            ArchiveColumn.Codec.LOCAL_DATE_TIME.write(out, range.maxAt);
+            out.writeInt(range.firstRow);
+            out.writeInt(range.rows);
+            out.writeInt(range.groups.size());
+            for (int group : range.groups) {
+                out.writeInt(group);
+            }
+        }
+    }
+
+    private static Map<String, KeyRange> readIndex(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<String, KeyRange> index = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String key = in.readUTF();
+            KeyRange range = new KeyRange(ArchiveColumn.Codec.LOCAL_DATE_TIME.read(in));
+            range.maxAt = ArchiveColumn.Codec.LOCAL_DATE_TIME.read(in);
+            range.firstRow = in.readInt();
+            range.rows = in.readInt();
+            int groups = in.readInt();
+            for (int group = 0; group < groups; group++) {
+                range.groups.add(in.readInt());
+            }
+            index.put(key, range);
+        }
+        return index;
+    }
+
+    /**
+     * Where the rows of one account or owner are in the segment, and their min/max {@code transact_at}. The rows
+     * of an account are contiguous; those of an owner are only known by row group.
+     */
+    private static final class KeyRange {
+
+        private LocalDateTime minAt;
+
+        private LocalDateTime maxAt;
+
+        private int firstRow = -1;
+
+        private int rows;
+
+        private final TreeSet<Integer> groups = new TreeSet<>();
+
+        KeyRange(LocalDateTime at) {
+            this.minAt = at;
+            this.maxAt = at;
+        }
+
+        void add(int row, int rowGroupSize, LocalDateTime at) {
+            if (firstRow < 0) {
+                firstRow = row;
+            }
+            rows++;
+            groups.add(row / rowGroupSize);
+            minAt = at.isBefore(minAt) ? at : minAt;
+            maxAt = at.isAfter(maxAt) ? at : maxAt;
+        }
+
+        boolean overlaps(LocalDateTime from, LocalDateTime at) {
+            return !maxAt.isBefore(from) && !minAt.isAfter(at);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.xbank.service.archive;
+
+import com.xbank.domain.Transaction;
+import com.xbank.domain.TransactionArchiveSegment;
+import com.xbank.repository.TransactionArchiveSegmentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Cold tier of the transaction history: immutable {@link ArchiveSegment} files on local disk, written by the
+ * {@link TransactionArchiver} and read through by the transaction history queries.
+ * <p>
+ * Segments are listed in {@code transaction_archive_segment}; on startup the listed files are mapped, and files
+ * that are not listed, left over from an interrupted archiving, are deleted. The directory is local to the node,
+ * so only one node should archive, and it has to be backed up like the database.
+ * <p>
+ * Enabled with {@code application.archive.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.archive", name = "enabled", havingValue = "true")
+public class TransactionArchive implements InitializingBean, DisposableBean {
+
+    private final Logger log = LoggerFactory.getLogger(TransactionArchive.class);
+
+    private final TransactionArchiveSegmentRepository segmentRepository;
+
+    private final Path directory;
+
+    private final int rowGroupSize;
+
+    private volatile List<ArchiveSegment> segments = Collections.emptyList();
+
+    public TransactionArchive(TransactionArchiveSegmentRepository segmentRepository,
+                              @Value("${application.archive.directory:archive}") String directory,
+                              @Value("${application.archive.row-group-size:4096}") int rowGroupSize) {
+        this.segmentRepository = segmentRepository;
+        this.directory = Paths.get(directory);
+        this.rowGroupSize = rowGroupSize;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        Files.createDirectories(directory);
+        Set<String> listed = new HashSet<>();
+        List<ArchiveSegment> opened = new ArrayList<>();
+        for (TransactionArchiveSegment segment : segmentRepository.findAllInOrder().collectList().block()) {
+            listed.add(segment.getFileName());
+            Path file = directory.resolve(segment.getFileName());
+            if (Files.exists(file)) {
+                opened.add(ArchiveSegment.open(file));
+            } else {
+                log.error("Archive segment {} is missing from {}, its {} transactions cannot be read", segment.getFileName(),
+                        directory.toAbsolutePath(), segment.getRowCount());
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + ArchiveSegment.SUFFIX + "*")) {
+            for (Path file : files) {
+                if (!listed.contains(file.getFileName().toString())) {
+                    log.warn("Deleting archive segment {} left over from an interrupted archiving", file.getFileName());
+                    Files.delete(file);
+                }
+            }
+        }
+        segments = opened;
+        log.info("Transaction archive opened in {} with {} segments", directory.toAbsolutePath(), opened.size());
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        for (ArchiveSegment segment : segments) {
+            segment.close();
+        }
+    }
+
+    /**
+     * @return whether archived transactions may be at or after {@code from}, so that a history query starting
+     * there has to read through to the archive.
+     */
+    public boolean reaches(LocalDateTime from) {
+        for (ArchiveSegment segment : segments) {
+            if (!segment.getMaxAt().isBefore(from)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Archived transactions of {@code account} since {@code from}, newest first, after the cursor ({@code at}, {@code id}).
+     */
+    public Flux<Transaction> findPageByAccount(String account, LocalDateTime from, LocalDateTime at, long id, int limit) {
+        return find(limit, segment -> segment.findByAccount(account, from, at, id, limit));
+    }
+
+    /**
+     * Archived transactions of {@code owner} since {@code from}, newest first, after the cursor ({@code at}, {@code id}).
+     */
+    public Flux<Transaction> findPageByOwner(String owner, LocalDateTime from, LocalDateTime at, long id, int limit) {
+        return find(limit, segment -> segment.findByOwner(owner, from, at, id, limit));
+    }
+
+    public Mono<Transaction> findById(long id) {
+        return Mono.fromCallable(() -> {
+            for (ArchiveSegment segment : segments) {
+                Transaction transaction = segment.findById(id);
+                if (transaction != null) {
+                    return transaction;
+                }
+            }
+            return null;
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Write {@code transactions} to a new segment, which is not read from until it is {@link #publish published}.
+     */
+    ArchiveSegment write(List<Transaction> transactions) throws IOException {
+        long firstId = transactions.stream().mapToLong(Transaction::getId).min().getAsLong();
+        return ArchiveSegment.write(directory.resolve(String.format("transactions-%020d", firstId) + ArchiveSegment.SUFFIX),
+                transactions, rowGroupSize);
+    }
+
+    synchronized void publish(ArchiveSegment segment) {
+        List<ArchiveSegment> published = new ArrayList<>(segments);
+        published.add(segment);
+        segments = published;
+    }
+
+    /**
+     * Delete a segment that was written but never published.
+     */
+    void discard(ArchiveSegment segment) {
+        try {
+            segment.close();
+            Files.deleteIfExists(segment.getPath());
+        } catch (IOException e) {
+            log.warn("Could not delete archive segment {}: {}", segment.getPath(), e.getMessage());
+        }
+    }
+
+    private interface SegmentLookup {
+        List<Transaction> find(ArchiveSegment segment) throws IOException;
+    }
+
+    // Page faults and inflating block, so lookups run off the event loop
+    private Flux<Transaction> find(int limit, SegmentLookup lookup) {
+        return Mono.fromCallable(() -> {
+            List<ArchiveSegment> newestFirst = new ArrayList<>(segments);
+            newestFirst.sort(Comparator.comparing(ArchiveSegment::getMaxAt).reversed());
+            List<Transaction> found = new ArrayList<>();
+            for (ArchiveSegment segment : newestFirst) {
+                // Once the page is full, the segments left only hold rows older than all of it
+                if (found.size() == limit && segment.getMaxAt().isBefore(found.get(limit - 1).getTransactAt())) {
+                    break;
+                }
+                found.addAll(lookup.find(segment));
+                found.sort(ArchiveSegment.NEWEST_FIRST);
+                if (found.size() > limit) {
+                    found.subList(limit, found.size()).clear();
+                }
+            }
+            return found;
+        })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapIterable(found -> found);
+    }
+}
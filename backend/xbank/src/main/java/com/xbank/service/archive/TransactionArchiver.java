@@ -0,0 +1,113 @@
+package com.xbank.service.archive;
+
+import com.xbank.domain.Transaction;
+import com.xbank.domain.TransactionArchiveSegment;
+import com.xbank.repository.TransactionArchiveSegmentRepository;
+import com.xbank.repository.TransactionRepository;
+import com.xbank.service.ContentionRetry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves the transactions older than {@code application.archive.retention-days} from the {@code transaction} table
+ * to the {@link TransactionArchive}.
+ * <p>
+ * Transactions are taken oldest id first, {@code segment-rows} at a time. Each batch is written to a segment file
+ * and forced to disk, then the segment is registered and the batch deleted from the table in one database
+ * transaction; if that fails, the file is deleted again. A transaction is thus either in the table or in a
+ * registered segment, never in both.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.archive", name = "enabled", havingValue = "true")
+public class TransactionArchiver {
+
+    private final Logger log = LoggerFactory.getLogger(TransactionArchiver.class);
+
+    private final TransactionArchive transactionArchive;
+
+    private final TransactionRepository transactionRepository;
+
+    private final TransactionArchiveSegmentRepository segmentRepository;
+
+    private final ContentionRetry contentionRetry;
+
+    private final int retentionDays;
+
+    private final int segmentRows;
+
+    public TransactionArchiver(TransactionArchive transactionArchive, TransactionRepository transactionRepository,
+                               TransactionArchiveSegmentRepository segmentRepository, ContentionRetry contentionRetry,
+                               @Value("${application.archive.retention-days:90}") int retentionDays,
+                               @Value("${application.archive.segment-rows:100000}") int segmentRows) {
+        this.transactionArchive = transactionArchive;
+        this.transactionRepository = transactionRepository;
+        this.segmentRepository = segmentRepository;
+        this.contentionRetry = contentionRetry;
+        this.retentionDays = retentionDays;
+        this.segmentRows = segmentRows;
+    }
+
+    /**
+     * Archive the transactions older than the retention.
+     * <p>
+     * This is scheduled to get fired every day at 03:00 by default.
+     */
+    @Scheduled(cron = "${application.archive.cron:0 0 3 * * *}")
+    public void archive() {
+        long start = System.currentTimeMillis();
+        Long archived = archive(LocalDateTime.now().minusDays(retentionDays)).block();
+        log.info("Archived {} transactions in {}ms", archived, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Archive the transactions before {@code before}.
+     *
+     * @return the number of transactions archived.
+     */
+    public Mono<Long> archive(LocalDateTime before) {
+        return Mono.defer(() -> archiveSegment(before))
+                .repeat()
+                .takeWhile(rows -> rows > 0)
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> archiveSegment(LocalDateTime before) {
+        return transactionRepository.findArchivable(before, segmentRows)
+                .collectList()
+                .flatMap(batch -> batch.isEmpty()
+                        ? Mono.just(0L)
+                        : Mono.fromCallable(() -> transactionArchive.write(batch))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flatMap(segment -> register(before, batch, segment)
+                                        .doOnError(e -> transactionArchive.discard(segment))
+                                        .doOnSuccess(registered -> transactionArchive.publish(segment))
+                                        .thenReturn((long) batch.size())));
+    }
+
+    private Mono<Void> register(LocalDateTime before, List<Transaction> batch, ArchiveSegment segment) {
+        long lastId = batch.get(batch.size() - 1).getId();
+        TransactionArchiveSegment registered = new TransactionArchiveSegment();
+        registered.setFileName(segment.getPath().getFileName().toString());
+        registered.setRowCount(batch.size());
+        registered.setFirstId(batch.get(0).getId());
+        registered.setLastId(lastId);
+        registered.setMinTransactAt(segment.getMinAt());
+        registered.setMaxTransactAt(segment.getMaxAt());
+        registered.setCreatedDate(LocalDateTime.now());
+        return contentionRetry.transactional("archive", () -> segmentRepository.save(registered)
+                .then(transactionRepository.deleteArchived(before, lastId))
+                .flatMap(deleted -> deleted == batch.size()
+                        ? Mono.<Void>empty()
+                        : Mono.error(new IllegalStateException("Archived " + batch.size() + " transactions up to id " + lastId +
+                                " but " + deleted + " were deleted"))));
+    }
+}
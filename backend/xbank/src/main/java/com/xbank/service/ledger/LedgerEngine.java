@@ -0,0 +1,253 @@
+package com.xbank.service.ledger;
+
+import com.xbank.domain.Account;
+import com.xbank.domain.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.util.concurrent.Queues;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * In-memory ledger for deposits, withdrawals and transfers.
+ * <p>
+ * Accounts are partitioned by hash across single-writer {@link LedgerShard}s (one per core by default).
+ * Balances are checked and updated in memory, and every applied entry is handed to a write-behind
+ * stage that persists batches through the {@link LedgerStore}.
+ * <p>
+ * At most {@code application.ledger.write-behind.capacity} entries wait to be persisted; past that, new
+ * movements are refused with {@code 503 Service Unavailable} until the database catches up. A batch failing
+ * on a transient error (connection, lock, timeout) is retried up to {@code write-behind.max-attempts} times.
+ * One failing otherwise is persisted entry by entry, and the entries that still fail, or outlast their
+ * retries, go to the {@code com.xbank.ledger.dead-letter} log, to be replayed by hand, and are counted as
+ * {@code xbank.ledger.dead-letters}.
+ * <p>
+ * Enabled with {@code application.ledger.enabled=true}; otherwise {@code AccountService} keeps
+ * working directly against the database.
+ */
+@Service
+@ConditionalOnProperty(prefix = "application.ledger", name = "enabled", havingValue = "true")
+public class LedgerEngine implements DisposableBean {
+
+    private final Logger log = LoggerFactory.getLogger(LedgerEngine.class);
+
+    private final Logger deadLetters = LoggerFactory.getLogger("com.xbank.ledger.dead-letter");
+
+    private final LedgerStore store;
+
+    private final LedgerShard[] shards;
+
+    private final int capacity;
+
+    private final long maxAttempts;
+
+    /**
+     * Entries applied in memory and not yet persisted or dead-lettered.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Counter deadLettered;
+
+    private final FluxSink<LedgerEntry> writeBehind;
+
+    private final Disposable writer;
+
+    private final CountDownLatch drained = new CountDownLatch(1);
+
+    public LedgerEngine(LedgerStore store, MeterRegistry meterRegistry,
+                        @Value("${application.ledger.shards:0}") int shards,
+                        @Value("${application.ledger.write-behind.batch-size:500}") int batchSize,
+                        @Value("${application.ledger.write-behind.flush-interval-ms:20}") long flushIntervalMs,
+                        @Value("${application.ledger.write-behind.capacity:100000}") int capacity,
+                        @Value("${application.ledger.write-behind.max-attempts:100}") long maxAttempts) {
+        this.store = store;
+        this.capacity = capacity;
+        this.maxAttempts = maxAttempts;
+        this.deadLettered = meterRegistry.counter("xbank.ledger.dead-letters");
+        int count = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        this.shards = new LedgerShard[count];
+        for (int i = 0; i < count; i++) {
+            this.shards[i] = new LedgerShard(i);
+        }
+        // Never overflows: an entry is only queued once it was admitted against the capacity
+        UnicastProcessor<LedgerEntry> entries = UnicastProcessor.create(Queues.<LedgerEntry>get(capacity).get());
+        this.writeBehind = entries.sink();
+        // bufferTimeout fails when its interval ends with no request open, as it does while a batch is retried;
+        // the batches wait here instead, bounded by the capacity as their entries are
+        this.writer = entries
+            .bufferTimeout(batchSize, Duration.ofMillis(flushIntervalMs))
+            .onBackpressureBuffer()
+            .concatMap(batch -> persist(batch).doFinally(signal -> pending.addAndGet(-batch.size())))
+            .doFinally(signal -> drained.countDown())
+            .subscribe();
+        log.info("Ledger engine started with {} shards", count);
+    }
+
+    /**
+     * Move {@code transaction.amount} from {@code transaction.account} to {@code transaction.toAccount}.
+     *
+     * @return a snapshot of the source account after the debit, or empty if either account does not exist.
+     */
+    public Mono<Account> transfer(Transaction transaction, Supplier<? extends RuntimeException> insufficientFunds) {
+        return admitted(() -> applyTransfer(transaction, insufficientFunds));
+    }
+
+    private Mono<Account> applyTransfer(Transaction transaction, Supplier<? extends RuntimeException> insufficientFunds) {
+        String from = transaction.getAccount();
+        String to = transaction.getToAccount();
+        BigDecimal amount = transaction.getAmount();
+        LedgerShard source = shardOf(from);
+        LedgerShard target = shardOf(to);
+        return target.load(to, store::load)
+            .flatMap(ignored -> source.load(from, store::load))
+            .flatMap(ignored -> source.debit(from, amount, insufficientFunds))
+            .flatMap(debited -> target.credit(to, transaction.creditAmount())
+                .map(credited -> {
+                    Map<String, BigDecimal> deltas = new LinkedHashMap<>();
+                    deltas.merge(from, amount.negate(), BigDecimal::add);
+                    deltas.merge(to, transaction.creditAmount(), BigDecimal::add);
+                    writeBehind.next(new LedgerEntry(transaction, deltas));
+                    return debited;
+                }));
+    }
+
+    /**
+     * Take {@code transaction.amount} out of {@code transaction.account}.
+     *
+     * @return a snapshot of the account after the debit, or empty if it does not exist.
+     */
+    public Mono<Account> withdraw(Transaction transaction, Supplier<? extends RuntimeException> insufficientFunds) {
+        String account = transaction.getAccount();
+        LedgerShard shard = shardOf(account);
+        return admitted(() -> shard.load(account, store::load)
+            .flatMap(ignored -> shard.debit(account, transaction.getAmount(), insufficientFunds))
+            .doOnNext(debited -> writeBehind.next(entry(transaction, account, transaction.getAmount().negate()))));
+    }
+
+    /**
+     * Add {@code transaction.amount} to {@code transaction.account}.
+     *
+     * @return a snapshot of the account after the credit, or empty if it does not exist.
+     */
+    public Mono<Account> deposit(Transaction transaction) {
+        String account = transaction.getAccount();
+        LedgerShard shard = shardOf(account);
+        return admitted(() -> shard.load(account, store::load)
+            .flatMap(ignored -> shard.credit(account, transaction.getAmount()))
+            .doOnNext(credited -> writeBehind.next(entry(transaction, account, transaction.getAmount()))));
+    }
+
+    /**
+     * Read an account through the ledger, so the balance includes entries not yet written behind.
+     */
+    public Mono<Account> getAccount(String account) {
+        return shardOf(account).load(account, store::load);
+    }
+
+    /**
+     * Flush pending entries and stop the shards.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        writeBehind.complete();
+        if (!drained.await(30, TimeUnit.SECONDS)) {
+            log.error("Ledger write-behind did not drain within 30 seconds");
+            writer.dispose();
+        }
+        for (LedgerShard shard : shards) {
+            shard.dispose();
+        }
+    }
+
+    /**
+     * Run {@code movement} if the write-behind has room for its entry. The movement queues one entry when it
+     * returns an account, and none when it is empty or fails.
+     */
+    private Mono<Account> admitted(Supplier<Mono<Account>> movement) {
+        return Mono.defer(() -> {
+            if (pending.incrementAndGet() > capacity) {
+                pending.decrementAndGet();
+                return Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Ledger write-behind is full"));
+            }
+            return movement.get()
+                .doOnSuccess(applied -> {
+                    if (applied == null) {
+                        pending.decrementAndGet();
+                    }
+                })
+                .doOnError(e -> pending.decrementAndGet());
+        });
+    }
+
+    private Mono<Void> persist(List<LedgerEntry> batch) {
+        return store.persist(batch)
+            .retryWhen(Retry.backoff(maxAttempts, Duration.ofMillis(50))
+                .maxBackoff(Duration.ofSeconds(5))
+                .filter(LedgerEngine::isTransient)
+                .doBeforeRetry(signal -> log.warn("Write-behind of {} ledger entries failed, retrying: {}", batch.size(), signal.failure().getMessage()))
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+            .onErrorResume(e -> {
+                if (batch.size() > 1 && !isTransient(e)) {
+                    // Keep one bad entry from holding back the rest of its batch
+                    log.warn("Write-behind of {} ledger entries failed, persisting them one by one: {}", batch.size(), e.getMessage());
+                    return Flux.fromIterable(batch)
+                        .concatMap(entry -> persist(Collections.singletonList(entry)))
+                        .then();
+                }
+                deadLetter(batch, e);
+                return Mono.empty();
+            });
+    }
+
+    private void deadLetter(List<LedgerEntry> batch, Throwable e) {
+        log.error("Write-behind of {} ledger entries failed for good, see the dead-letter log: {}", batch.size(), e.getMessage());
+        for (LedgerEntry entry : batch) {
+            Transaction transaction = entry.getTransaction();
+            deadLetters.error("action={} account={} toAccount={} amount={} currency={} owner={} transactAt={} deltas={}",
+                transaction.getAction(), transaction.getAccount(), transaction.getToAccount(), transaction.getAmount(),
+                transaction.getCurrency(), transaction.getOwner(), transaction.getTransactAt(), entry.getDeltas());
+        }
+        deadLettered.increment(batch.size());
+    }
+
+    private static boolean isTransient(Throwable e) {
+        return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException
+            || e instanceof DataAccessResourceFailureException;
+    }
+
+    private LedgerShard shardOf(String account) {
+        return shards[Math.floorMod(account.hashCode(), shards.length)];
+    }
+
+    private static LedgerEntry entry(Transaction transaction, String account, BigDecimal delta) {
+        Map<String, BigDecimal> deltas = new LinkedHashMap<>();
+        deltas.put(account, delta);
+        return new LedgerEntry(transaction, deltas);
+    }
+}
@@ -0,0 +1,37 @@
+package com.xbank.service.ledger;
+
+import com.xbank.domain.Transaction;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A money movement applied in memory by the {@link LedgerEngine} and waiting to be written behind.
+ * <p>
+ * Balance changes are kept as deltas rather than absolute balances, so entries coming from
+ * different shards can be written in any order and still add up to the in-memory state.
+ */
+public final class LedgerEntry {
+
+    private final Transaction transaction;
+
+    private final Map<String, BigDecimal> deltas;
+
+    LedgerEntry(Transaction transaction, Map<String, BigDecimal> deltas) {
+        this.transaction = transaction;
+        this.deltas = Collections.unmodifiableMap(new LinkedHashMap<>(deltas));
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * @return the signed balance change of every account touched by the entry.
+     */
+    public Map<String, BigDecimal> getDeltas() {
+        return deltas;
+    }
+}
@@ -0,0 +1,99 @@
+package com.xbank.service.ledger;
+
+import com.xbank.domain.Account;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * One partition of the in-memory ledger.
+ * <p>
+ * Every read and write of the balances owned by a shard runs on the shard's single thread,
+ * so the balances are plain fields that need no locking.
+ */
+final class LedgerShard {
+
+    private final Scheduler scheduler;
+
+    private final Map<String, Account> accounts = new HashMap<>();
+
+    LedgerShard(int index) {
+        this.scheduler = Schedulers.newSingle("ledger-shard-" + index);
+    }
+
+    /**
+     * Make sure the account is resident in the shard, loading it on first use.
+     *
+     * @return a snapshot of the account, or empty if it does not exist.
+     */
+    Mono<Account> load(String account, Function<String, Mono<Account>> loader) {
+        return Mono.fromCallable(() -> snapshot(accounts.get(account)))
+            .subscribeOn(scheduler)
+            .switchIfEmpty(Mono.defer(() -> loader.apply(account)
+                .publishOn(scheduler)
+                .map(loaded -> snapshot(accounts.computeIfAbsent(account, key -> loaded)))));
+    }
+
+    /**
+     * Take {@code amount} from a resident account if its balance covers it.
+     */
+    Mono<Account> debit(String account, BigDecimal amount, Supplier<? extends RuntimeException> insufficientFunds) {
+        return Mono.fromCallable(() -> {
+            Account current = accounts.get(account);
+            if (current == null) {
+                return null;
+            }
+            if (current.getBalance().compareTo(amount) < 0) {
+                throw insufficientFunds.get();
+            }
+            current.setBalance(current.getBalance().subtract(amount));
+            return snapshot(current);
+        }).subscribeOn(scheduler);
+    }
+
+    /**
+     * Add {@code amount} to a resident account.
+     */
+    Mono<Account> credit(String account, BigDecimal amount) {
+        return Mono.fromCallable(() -> {
+            Account current = accounts.get(account);
+            if (current == null) {
+                return null;
+            }
+            current.setBalance(current.getBalance().add(amount));
+            return snapshot(current);
+        }).subscribeOn(scheduler);
+    }
+
+    void dispose() {
+        scheduler.dispose();
+    }
+
+    private static Account snapshot(Account source) {
+        if (source == null) {
+            return null;
+        }
+        Account copy = new Account();
+        copy.setId(source.getId());
+        copy.setAccount(source.getAccount());
+        copy.setOwner(source.getOwner());
+        copy.setAction(source.getAction());
+        copy.setBalance(source.getBalance());
+        copy.setCurrency(source.getCurrency());
+        copy.setVersion(source.getVersion());
+        copy.setStripes(source.getStripes());
+        copy.setInterestRate(source.getInterestRate());
+        copy.setAccruedInterest(source.getAccruedInterest());
+        copy.setCreatedBy(source.getCreatedBy());
+        copy.setCreatedDate(source.getCreatedDate());
+        copy.setLastModifiedBy(source.getLastModifiedBy());
+        copy.setLastModifiedDate(source.getLastModifiedDate());
+        return copy;
+    }
+}
@@ -0,0 +1,29 @@
+package com.xbank.service.ledger;
+
+import com.xbank.domain.Account;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Persistence used by the {@link LedgerEngine}: loads accounts into the shards and
+ * writes applied entries back to the {@code ACCOUNT} and {@code transaction} tables.
+ */
+public interface LedgerStore {
+
+    /**
+     * Load the current state of an account.
+     *
+     * @param account the account number.
+     * @return the account, or empty if it does not exist.
+     */
+    Mono<Account> load(String account);
+
+    /**
+     * Persist a batch of applied entries in a single database transaction.
+     *
+     * @param entries the entries, in the order they were applied.
+     * @return completion once the batch is committed.
+     */
+    Mono<Void> persist(List<LedgerEntry> entries);
+}
@@ -0,0 +1,74 @@
+package com.xbank.service.ledger;
+
+import com.xbank.domain.Account;
+import com.xbank.domain.Posting;
+import com.xbank.domain.Transaction;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.PostingRepository;
+import com.xbank.repository.TransactionRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * {@link LedgerStore} writing to the {@code ACCOUNT} and {@code transaction} tables.
+ * <p>
+ * A batch becomes one database transaction: a multi-row insert of the transactions, one of their postings,
+ * then one {@code balance = balance + delta} update per touched account.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.ledger", name = "enabled", havingValue = "true")
+public class R2dbcLedgerStore implements LedgerStore {
+
+    private final AccountRepository accountRepository;
+
+    private final TransactionRepository transactionRepository;
+
+    private final PostingRepository postingRepository;
+
+    private final TransactionalOperator transactionalOperator;
+
+    public R2dbcLedgerStore(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                            PostingRepository postingRepository, ReactiveTransactionManager transactionManager) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.postingRepository = postingRepository;
+        this.transactionalOperator = TransactionalOperator.create(transactionManager);
+    }
+
+    @Override
+    public Mono<Account> load(String account) {
+        return accountRepository.findOneWithStripes(account);
+    }
+
+    @Override
+    public Mono<Void> persist(List<LedgerEntry> entries) {
+        if (entries.isEmpty()) {
+            return Mono.empty();
+        }
+        List<Transaction> transactions = entries.stream().map(LedgerEntry::getTransaction).collect(Collectors.toList());
+        Map<String, BigDecimal> deltas = new LinkedHashMap<>();
+        for (LedgerEntry entry : entries) {
+            entry.getDeltas().forEach((account, delta) -> deltas.merge(account, delta, BigDecimal::add));
+        }
+        List<Posting> postings = transactions.stream()
+            .flatMap(transaction -> Posting.legsOf(transaction).stream())
+            .collect(Collectors.toList());
+        return transactionRepository.insertAll(transactions)
+            .then(postingRepository.insertAll(postings))
+            .thenMany(Flux.fromIterable(deltas.entrySet())
+                .filter(delta -> delta.getValue().signum() != 0)
+                .concatMap(delta -> accountRepository.addBalance(delta.getKey(), delta.getValue())))
+            .then()
+            .as(transactionalOperator::transactional);
+    }
+}
@@ -0,0 +1,170 @@
+package com.xbank.service.wal;
+
+import com.xbank.domain.Transaction;
+import com.xbank.repository.WalCheckpointRepository;
+import com.xbank.service.AccountService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the records of the {@link WriteAheadLog} to the database, one at a time and in log order.
+ * <p>
+ * Each record is applied in one transaction with the advance of this node's {@code wal_checkpoint}, so a
+ * record is applied exactly once even if the process dies in between. On startup the log is opened after that
+ * checkpoint, which replays whatever was acknowledged but not yet applied before the last shutdown or crash.
+ * <p>
+ * While the database is unavailable, the drainer keeps retrying the same record with a growing pause and the
+ * log keeps accepting operations. A record failing otherwise (a constraint violation, data that cannot be
+ * written) is tried {@code application.wal.max-attempts} times, then recorded as a failed transaction so that
+ * the records after it are applied. If even that fails, it goes to the {@code com.xbank.wal.dead-letter} log,
+ * to be replayed by hand, and is counted as {@code xbank.wal.dead-letters}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.wal", name = "enabled", havingValue = "true")
+public class WalDrainer implements InitializingBean, DisposableBean {
+
+    private static final long MAX_PAUSE_MS = 5_000;
+
+    private final Logger log = LoggerFactory.getLogger(WalDrainer.class);
+
+    private final Logger deadLetters = LoggerFactory.getLogger("com.xbank.wal.dead-letter");
+
+    private final WriteAheadLog writeAheadLog;
+
+    private final WalCheckpointRepository walCheckpointRepository;
+
+    private final AccountService accountService;
+
+    private final String node;
+
+    private final int batchSize;
+
+    private final int maxAttempts;
+
+    private final Counter deadLettered;
+
+    private volatile boolean running;
+
+    private Thread drainer;
+
+    private long appliedSeq;
+
+    /**
+     * Failures of the record after {@link #appliedSeq} that retrying will not fix.
+     */
+    private int failures;
+
+    public WalDrainer(WriteAheadLog writeAheadLog, WalCheckpointRepository walCheckpointRepository, AccountService accountService,
+                      MeterRegistry meterRegistry,
+                      @Value("${application.wal.node:default}") String node,
+                      @Value("${application.wal.drain-batch:500}") int batchSize,
+                      @Value("${application.wal.max-attempts:5}") int maxAttempts) {
+        this.writeAheadLog = writeAheadLog;
+        this.walCheckpointRepository = walCheckpointRepository;
+        this.accountService = accountService;
+        this.node = node;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.deadLettered = meterRegistry.counter("xbank.wal.dead-letters");
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        appliedSeq = walCheckpointRepository.findSeq(node).block();
+        writeAheadLog.open(appliedSeq);
+        running = true;
+        drainer = new Thread(this::drain, "wal-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Stop after the record being applied. Records left in the log are applied on the next start.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        if (drainer != null) {
+            drainer.interrupt();
+            drainer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private void drain() {
+        long pause = 0;
+        while (running) {
+            try {
+                if (pause > 0) {
+                    Thread.sleep(pause);
+                }
+                if (writeAheadLog.awaitDurable(appliedSeq, 1_000) <= appliedSeq) {
+                    continue;
+                }
+                List<WalRecord> records = writeAheadLog.read(appliedSeq + 1, batchSize);
+                for (WalRecord record : records) {
+                    apply(record);
+                    appliedSeq = record.getSeq();
+                }
+                writeAheadLog.release(appliedSeq);
+                pause = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                pause = Math.min(MAX_PAUSE_MS, Math.max(50, pause * 2));
+                log.warn("Could not apply write-ahead log record {}, retrying in {}ms: {}", appliedSeq + 1, pause, e.getMessage());
+            }
+        }
+    }
+
+    private void apply(WalRecord record) {
+        try {
+            accountService.applyLogged(record.getTransaction(), walCheckpointRepository.advance(node, record.getSeq())).block();
+        } catch (RuntimeException e) {
+            if (isTransient(e) || ++failures < maxAttempts) {
+                throw e;
+            }
+            reject(record, e);
+        }
+        failures = 0;
+    }
+
+    private void reject(WalRecord record, RuntimeException cause) {
+        log.error("Write-ahead log record {} failed {} times, recording it as a failed transaction: {}", record.getSeq(),
+                failures, cause.getMessage());
+        try {
+            accountService.rejectLogged(record.getTransaction(), cause.toString(),
+                    walCheckpointRepository.advance(node, record.getSeq())).block();
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                throw e;
+            }
+            Transaction transaction = record.getTransaction();
+            log.error("Write-ahead log record {} cannot be recorded either, see the dead-letter log: {}", record.getSeq(), e.getMessage());
+            deadLetters.error("seq={} action={} account={} toAccount={} amount={} currency={} owner={} transactAt={} error={}",
+                    record.getSeq(), transaction.getAction(), transaction.getAccount(), transaction.getToAccount(),
+                    transaction.getAmount(), transaction.getCurrency(), transaction.getOwner(), transaction.getTransactAt(),
+                    cause.getMessage());
+            deadLettered.increment();
+            walCheckpointRepository.advance(node, record.getSeq()).block();
+        }
+    }
+
+    private static boolean isTransient(Throwable e) {
+        return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+}
@@ -0,0 +1,144 @@
+package com.xbank.service.wal;
+
+import com.xbank.domain.Transaction;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32;
+
+/**
+ * A money operation as stored in the {@link WriteAheadLog}.
+ * <p>
+ * On disk a record is {@code [payload length: int][CRC32 of the payload: int][payload]}, the payload starting
+ * with the sequence number. A length of 0 marks the end of the written part of a segment.
+ */
+public final class WalRecord {
+
+    static final int HEADER = 8;
+
+    private final long seq;
+
+    private final Transaction transaction;
+
+    WalRecord(long seq, Transaction transaction) {
+        this.seq = seq;
+        this.transaction = transaction;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    static byte[] encode(long seq, Transaction transaction) {
+        byte[] owner = bytes(transaction.getOwner());
+        byte[] account = bytes(transaction.getAccount());
+        byte[] toAccount = bytes(transaction.getToAccount());
+        byte[] amount = bytes(transaction.getAmount().toPlainString());
+        byte[] currency = bytes(transaction.getCurrency());
+        byte[] note = bytes(transaction.getNote());
+        byte[] toAmount = bytes(transaction.getToAmount() == null ? null : transaction.getToAmount().toPlainString());
+        byte[] toCurrency = bytes(transaction.getToCurrency());
+        int length = 8 + 4 + 8 + size(owner) + size(account) + size(toAccount) + size(amount) + size(currency) + size(note)
+                + size(toAmount) + size(toCurrency);
+        ByteBuffer payload = ByteBuffer.allocate(HEADER + length);
+        payload.position(HEADER);
+        payload.putLong(seq);
+        payload.putInt(transaction.getAction());
+        payload.putLong(transaction.getTransactAt().toInstant(ZoneOffset.UTC).toEpochMilli());
+        put(payload, owner);
+        put(payload, account);
+        put(payload, toAccount);
+        put(payload, amount);
+        put(payload, currency);
+        put(payload, note);
+        put(payload, toAmount);
+        put(payload, toCurrency);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), HEADER, length);
+        payload.putInt(0, length);
+        payload.putInt(4, (int) crc.getValue());
+        return payload.array();
+    }
+
+    /**
+     * Read the record at the position of {@code buffer} and move past it.
+     *
+     * @return the record, or {@code null} (leaving the position alone) at the end of the written part or on a
+     * torn or corrupt record.
+     */
+    static WalRecord read(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER) {
+            return null;
+        }
+        int length = buffer.getInt(start);
+        int checksum = buffer.getInt(start + 4);
+        if (length <= 0 || length > buffer.remaining() - HEADER) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.position(start + HEADER);
+        buffer.get(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        if ((int) crc.getValue() != checksum) {
+            buffer.position(start);
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.wrap(bytes);
+        long seq = payload.getLong();
+        Transaction transaction = new Transaction();
+        transaction.setAction(payload.getInt());
+        transaction.setTransactAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(payload.getLong()), ZoneOffset.UTC));
+        transaction.setOwner(string(payload));
+        transaction.setAccount(string(payload));
+        transaction.setToAccount(string(payload));
+        transaction.setAmount(new BigDecimal(string(payload)));
+        transaction.setCurrency(string(payload));
+        transaction.setNote(string(payload));
+        String toAmount = string(payload);
+        transaction.setToAmount(toAmount == null ? null : new BigDecimal(toAmount));
+        transaction.setToCurrency(string(payload));
+        transaction.setCreatedBy(transaction.getOwner());
+        transaction.setLastModifiedBy(transaction.getOwner());
+        // Only accepted operations are logged; the drainer records the ones that turn out not to apply as failed
+        transaction.setResult(1);
+        transaction.setError("No error");
+        return new WalRecord(seq, transaction);
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int size(byte[] value) {
+        return 4 + (value == null ? 0 : value.length);
+    }
+
+    private static void put(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+    }
+
+    private static String string(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,118 @@
+package com.xbank.service.wal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One memory-mapped file of the {@link WriteAheadLog}, named after the sequence number of its first record.
+ * <p>
+ * Appends are serialized by the log; {@link #force()} and reads of records known to be written may run
+ * concurrently with them.
+ */
+final class WalSegment {
+
+    static final String SUFFIX = ".wal";
+
+    private final Path path;
+
+    private final long firstSeq;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private long lastSeq;
+
+    private WalSegment(Path path, long firstSeq, int size) throws IOException {
+        this.path = path;
+        this.firstSeq = firstSeq;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        this.lastSeq = firstSeq - 1;
+    }
+
+    static WalSegment create(Path directory, long firstSeq, int size) throws IOException {
+        return new WalSegment(directory.resolve(String.format("%020d", firstSeq) + SUFFIX), firstSeq, size);
+    }
+
+    /**
+     * Map an existing segment and position it after its last intact record.
+     */
+    static WalSegment recover(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        long firstSeq = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        WalSegment segment = new WalSegment(path, firstSeq, (int) Files.size(path));
+        ByteBuffer records = segment.buffer.duplicate();
+        records.position(0);
+        WalRecord record;
+        while ((record = WalRecord.read(records)) != null && record.getSeq() == segment.lastSeq + 1) {
+            segment.lastSeq = record.getSeq();
+            segment.buffer.position(records.position());
+        }
+        segment.terminate();
+        return segment;
+    }
+
+    /**
+     * @return false if the segment has no room left for {@code record}.
+     */
+    boolean append(long seq, byte[] record) {
+        if (buffer.remaining() < record.length) {
+            return false;
+        }
+        buffer.put(record);
+        lastSeq = seq;
+        terminate();
+        return true;
+    }
+
+    /**
+     * A view of the records of this segment, positioned at the first one.
+     */
+    ByteBuffer records() {
+        ByteBuffer records = buffer.duplicate();
+        records.position(0);
+        return records;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    long getFirstSeq() {
+        return firstSeq;
+    }
+
+    long getLastSeq() {
+        return lastSeq;
+    }
+
+    boolean isEmpty() {
+        return lastSeq < firstSeq;
+    }
+
+    /**
+     * Zero the length of the next record, so that a torn write left behind by a crash is not read back as
+     * part of the log.
+     */
+    private void terminate() {
+        if (buffer.remaining() >= WalRecord.HEADER) {
+            buffer.putInt(buffer.position(), 0);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.xbank.service.wal;
+
+import com.xbank.domain.Transaction;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local write-ahead log of accepted money operations, so that a request can be acknowledged without waiting
+ * for the database.
+ * <p>
+ * Records are appended to memory-mapped segment files of {@code application.wal.segment-size-mb} and
+ * checksummed with CRC32. A flusher thread forces the segment to disk and completes the appends it covered:
+ * everything appended while one fsync runs is made durable by the next, so appends share fsyncs under load.
+ * The {@link WalDrainer} reads the durable records back in order and applies them to the database; segments
+ * are deleted once all of their records are applied.
+ * <p>
+ * On startup the segments are scanned and the log resumes after the last intact record; a record torn by a
+ * crash was never acknowledged and is dropped.
+ * <p>
+ * Enabled with {@code application.wal.enabled=true}. Append latency and fsync group size are published as
+ * {@code xbank.wal.append.latency} and {@code xbank.wal.fsync.size}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.wal", name = "enabled", havingValue = "true")
+public class WriteAheadLog implements DisposableBean {
+
+    private final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final Timer appendLatency;
+
+    private final DistributionSummary fsyncSize;
+
+    private final List<WalSegment> segments = new ArrayList<>();
+
+    private WalSegment current;
+
+    private long lastSeq;
+
+    private List<PendingAppend> pending = new ArrayList<>();
+
+    private volatile long durableSeq;
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    private IOException failure;
+
+    private WalSegment readSegment;
+
+    private int readPosition;
+
+    private long readSeq;
+
+    public WriteAheadLog(MeterRegistry meterRegistry,
+                         @Value("${application.wal.directory:wal}") String directory,
+                         @Value("${application.wal.segment-size-mb:64}") int segmentSizeMb) {
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.appendLatency = Timer.builder("xbank.wal.append.latency")
+                .description("Time until an appended operation is durable")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.fsyncSize = DistributionSummary.builder("xbank.wal.fsync.size")
+                .description("Operations made durable by one fsync")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Recover the segments on disk and start accepting appends.
+     *
+     * @param appliedSeq the last sequence number already applied to the database. If the log on disk ends
+     *                   before it (the directory was lost or replaced), numbering resumes after it.
+     */
+    public synchronized void open(long appliedSeq) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + WalSegment.SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        for (Path file : files) {
+            segments.add(WalSegment.recover(file));
+        }
+        lastSeq = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).getLastSeq();
+        if (lastSeq < appliedSeq) {
+            if (!segments.isEmpty()) {
+                log.warn("Write-ahead log ends at {} but {} records were applied, starting a new log", lastSeq, appliedSeq);
+            }
+            for (WalSegment segment : segments) {
+                segment.delete();
+            }
+            segments.clear();
+            lastSeq = appliedSeq;
+        }
+        if (segments.isEmpty()) {
+            segments.add(WalSegment.create(directory, lastSeq + 1, segmentSize));
+        }
+        current = segments.get(segments.size() - 1);
+        durableSeq = lastSeq;
+        running = true;
+        flusher = new Thread(this::flush, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Write-ahead log opened in {} with {} segments, {} records to apply", directory.toAbsolutePath(),
+                segments.size(), lastSeq - appliedSeq);
+    }
+
+    /**
+     * Append {@code transaction} to the log.
+     *
+     * @return the sequence number of the record, emitted once it is on disk.
+     */
+    public Mono<Long> append(Transaction transaction) {
+        return Mono.defer(() -> {
+            PendingAppend append = new PendingAppend();
+            synchronized (this) {
+                if (!running) {
+                    return Mono.error(new IllegalStateException("Write-ahead log is not accepting operations", failure));
+                }
+                long seq = lastSeq + 1;
+                byte[] record = WalRecord.encode(seq, transaction);
+                if (!current.append(seq, record)) {
+                    roll(seq, record);
+                }
+                lastSeq = seq;
+                append.seq = seq;
+                pending.add(append);
+                notifyAll();
+            }
+            return append.durable;
+        });
+    }
+
+    /**
+     * @return the sequence number of the last durable record.
+     */
+    public long getDurableSeq() {
+        return durableSeq;
+    }
+
+    /**
+     * Wait until a record after {@code seq} is durable.
+     *
+     * @return the sequence number of the last durable record, which is still {@code seq} on timeout.
+     */
+    public long awaitDurable(long seq, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (this) {
+            long remaining = timeoutMs;
+            while (durableSeq <= seq && running && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+        return durableSeq;
+    }
+
+    /**
+     * Read up to {@code max} durable records, in order, starting at {@code fromSeq}.
+     * <p>
+     * Meant for a single reader: where the previous read stopped is remembered, so reading on from there
+     * does not scan the segment again.
+     */
+    public List<WalRecord> read(long fromSeq, int max) {
+        long upTo = durableSeq;
+        List<WalRecord> records = new ArrayList<>();
+        for (WalSegment segment : segmentsFrom(fromSeq)) {
+            ByteBuffer buffer = segment.records();
+            if (segment == readSegment && fromSeq == readSeq) {
+                buffer.position(readPosition);
+            }
+            while (records.size() < max) {
+                int position = buffer.position();
+                WalRecord record = WalRecord.read(buffer);
+                if (record == null || record.getSeq() > upTo) {
+                    buffer.position(position);
+                    break;
+                }
+                if (record.getSeq() >= fromSeq) {
+                    records.add(record);
+                    readSegment = segment;
+                    readPosition = buffer.position();
+                    readSeq = record.getSeq() + 1;
+                }
+            }
+            if (records.size() >= max) {
+                break;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Delete the segments whose records are all applied.
+     */
+    public synchronized void release(long appliedSeq) throws IOException {
+        Iterator<WalSegment> it = segments.iterator();
+        while (it.hasNext()) {
+            WalSegment segment = it.next();
+            if (segment == current || segment.getLastSeq() > appliedSeq) {
+                break;
+            }
+            segment.delete();
+            it.remove();
+            log.debug("Deleted write-ahead log segment {} to {}", segment.getFirstSeq(), segment.getLastSeq());
+        }
+    }
+
+    /**
+     * Make the pending appends durable and stop accepting new ones.
+     */
+    @Override
+    public void destroy() throws InterruptedException, IOException {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            notifyAll();
+        }
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        synchronized (this) {
+            for (WalSegment segment : segments) {
+                segment.close();
+            }
+        }
+    }
+
+    private synchronized List<WalSegment> segmentsFrom(long fromSeq) {
+        List<WalSegment> from = new ArrayList<>();
+        for (WalSegment segment : segments) {
+            if (!segment.isEmpty() && segment.getLastSeq() >= fromSeq) {
+                from.add(segment);
+            }
+        }
+        return from;
+    }
+
+    private void roll(long seq, byte[] record) {
+        try {
+            current.force();
+            current = WalSegment.create(directory, seq, Math.max(segmentSize, record.length + WalRecord.HEADER));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create write-ahead log segment " + seq, e);
+        }
+        segments.add(current);
+        current.append(seq, record);
+    }
+
+    /**
+     * Flusher loop: force the current segment, then acknowledge every append it covered.
+     */
+    private void flush() {
+        while (true) {
+            List<PendingAppend> group;
+            WalSegment segment;
+            long upTo;
+            synchronized (this) {
+                while (pending.isEmpty() && running) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        running = false;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    notifyAll();
+                    return;
+                }
+                group = pending;
+                pending = new ArrayList<>();
+                segment = current;
+                upTo = lastSeq;
+            }
+            try {
+                // Segments rolled over before this one were forced when they were rolled
+                segment.force();
+            } catch (RuntimeException e) {
+                fail(group, e);
+                return;
+            }
+            fsyncSize.record(group.size());
+            synchronized (this) {
+                durableSeq = upTo;
+                notifyAll();
+            }
+            for (PendingAppend append : group) {
+                append.complete();
+            }
+        }
+    }
+
+    private void fail(List<PendingAppend> group, RuntimeException e) {
+        log.error("Write-ahead log fsync failed, no longer accepting operations", e);
+        List<PendingAppend> failed = new ArrayList<>(group);
+        synchronized (this) {
+            running = false;
+            failure = new IOException("fsync failed", e);
+            failed.addAll(pending);
+            pending.clear();
+            notifyAll();
+        }
+        for (PendingAppend append : failed) {
+            append.durable.onError(failure);
+        }
+    }
+
+    private final class PendingAppend {
+
+        private final long start = System.nanoTime();
+
+        private final MonoProcessor<Long> durable = MonoProcessor.create();
+
+        private long seq;
+
+        void complete() {
+            appendLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            durable.onNext(seq);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.xbank.benchmark;
+
+import com.xbank.event.EventBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events published per second through the {@link EventBus} to {@code subscribers} subscribers, each consuming on a
+ * worker of a parallel scheduler as WebSocket sessions do on their connection's event loop. The events dropped for
+ * subscribers that fell behind are counted as {@code xbank.events.dropped}, not reported by the benchmark.
+ * <p>
+ * With {@code broadcast} routing every subscriber takes every event, so deliveries per second are the score times
+ * {@code subscribers}. With {@code targeted} routing each subscriber has a key of its own and each event goes to
+ * one of them, as the events of a user go to the sessions of that user.
+ * <p>
+ * Run with {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.xbank.benchmark.EventBusBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventBusBenchmark {
+
+    @Param({"1000", "5000"})
+    private int subscribers;
+
+    @Param({"broadcast", "targeted"})
+    private String routing;
+
+    @Param({"DROP_OLDEST"})
+    private EventBus.OverflowPolicy overflowPolicy;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private EventBus<Long> eventBus;
+
+    private Scheduler consumers;
+
+    private List<Disposable> subscriptions;
+
+    private long event;
+
+    @Setup
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        eventBus = new EventBus<>("benchmark", meterRegistry, 256, overflowPolicy,
+            value -> Collections.singletonList(key(value % subscribers)));
+        consumers = Schedulers.newParallel("consumer", Runtime.getRuntime().availableProcessors());
+        subscriptions = new ArrayList<>(subscribers);
+        for (int i = 0; i < subscribers; i++) {
+            subscriptions.add((routing.equals("broadcast") ? eventBus.subscribe() : eventBus.subscribe(Collections.singletonList(key(i))))
+                .publishOn(consumers, 32)
+                .subscribe());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscriptions.forEach(Disposable::dispose);
+        consumers.dispose();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void publishSingleWriter() {
+        eventBus.publish(event++);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void publishFourWriters() {
+        eventBus.publish(System.nanoTime());
+    }
+
+    private static String key(long subscriber) {
+        return "user-" + subscriber;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EventBusBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,70 @@
+package com.xbank.benchmark;
+
+import com.xbank.domain.FxRate;
+import com.xbank.service.FxRates;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the currency conversion step of a transfer, against the bare multiplication it has to do anyway.
+ * <p>
+ * Run with {@code -prof gc} to see the allocation per operation: the rate lookup allocates nothing, and a
+ * same-currency transfer does not convert at all.
+ * <p>
+ * Run with {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.xbank.benchmark.FxRatesBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class FxRatesBenchmark {
+
+    private static final BigDecimal RATE = new BigDecimal("25000");
+
+    private final BigDecimal amount = BigDecimal.valueOf(120);
+
+    private FxRates fxRates;
+
+    @Setup
+    public void setup() {
+        // Rates are only read from the snapshot, the repository is never used
+        fxRates = new FxRates(null, "VND");
+        fxRates.update(Arrays.asList(
+            new FxRate("USD", "VND", RATE),
+            new FxRate("EUR", "VND", new BigDecimal("27000"))));
+    }
+
+    @Benchmark
+    public BigDecimal multiplyOnly() {
+        return amount.multiply(RATE).setScale(0, RoundingMode.HALF_EVEN);
+    }
+
+    @Benchmark
+    public BigDecimal sameCurrency() {
+        return fxRates.convert(amount, "VND", "VND");
+    }
+
+    @Benchmark
+    public BigDecimal directRate() {
+        return fxRates.convert(amount, "USD", "VND");
+    }
+
+    @Benchmark
+    public BigDecimal crossRate() {
+        return fxRates.convert(amount, "USD", "EUR");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(FxRatesBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,196 @@
+package com.xbank.benchmark;
+
+import com.xbank.domain.Account;
+import com.xbank.domain.Transaction;
+import com.xbank.rest.errors.TranferException;
+import com.xbank.service.ledger.LedgerEngine;
+import com.xbank.service.ledger.LedgerEntry;
+import com.xbank.service.ledger.LedgerStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.r2dbc.connectionfactory.R2dbcTransactionManager;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers/s of the in-memory {@link LedgerEngine} against two R2DBC paths: the original read-modify-write
+ * sequence (select, insert transaction, update source, select, update target) and the guarded
+ * {@code balance >= amount} updates that {@code AccountRepository} issues on H2.
+ * <p>
+ * {@code hotAccounts} controls contention: with 1 every transfer leaves the same account.
+ * <p>
+ * Run with {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.xbank.benchmark.LedgerEngineBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class LedgerEngineBenchmark {
+
+    private static final int ACCOUNTS = 1_000;
+
+    private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+    @Param({"1", "1000"})
+    public int hotAccounts;
+
+    private LedgerEngine ledgerEngine;
+
+    private DatabaseClient db;
+
+    private TransactionalOperator transactionalOperator;
+
+    @Setup
+    public void setup() {
+        ledgerEngine = new LedgerEngine(new InMemoryLedgerStore(), new SimpleMeterRegistry(), 0, 500, 20, 100_000, 100);
+
+        ConnectionFactory connectionFactory = ConnectionFactories.get(
+            "r2dbc:h2:mem:///ledger-benchmark?options=DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        db = DatabaseClient.create(connectionFactory);
+        transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+        db.execute("DROP TABLE IF EXISTS \"ACCOUNT\"").then()
+            .then(db.execute("DROP TABLE IF EXISTS transaction").then())
+            .then(db.execute("CREATE TABLE \"ACCOUNT\" (id BIGINT AUTO_INCREMENT PRIMARY KEY, account VARCHAR(50) UNIQUE, balance BIGINT)").then())
+            .then(db.execute("CREATE TABLE transaction (id BIGINT AUTO_INCREMENT PRIMARY KEY, account VARCHAR(50), to_account VARCHAR(50), " +
+                "amount BIGINT, transact_at TIMESTAMP)").then())
+            .block();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            db.execute("INSERT INTO \"ACCOUNT\" (account, balance) VALUES (:account, :balance)")
+                .bind("account", accountNumber(i))
+                .bind("balance", Long.MAX_VALUE / 4)
+                .then()
+                .block();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        ledgerEngine.destroy();
+    }
+
+    @Benchmark
+    public Account ledgerEngineTransfer() {
+        return ledgerEngine.transfer(nextTransaction(), TranferException::new).block();
+    }
+
+    @Benchmark
+    public Integer r2dbcReadModifyWriteTransfer() {
+        Transaction transaction = nextTransaction();
+        return db.execute("SELECT balance FROM \"ACCOUNT\" WHERE account = :account")
+            .bind("account", transaction.getAccount())
+            .map(row -> row.get("balance", Long.class))
+            .one()
+            .flatMap(balance -> db.execute("INSERT INTO transaction (account, to_account, amount, transact_at) VALUES (:account, :toAccount, :amount, :at)")
+                .bind("account", transaction.getAccount())
+                .bind("toAccount", transaction.getToAccount())
+                .bind("amount", transaction.getAmount())
+                .bind("at", transaction.getTransactAt())
+                .then()
+                .then(db.execute("UPDATE \"ACCOUNT\" SET balance = :balance WHERE account = :account")
+                    .bind("balance", balance - AMOUNT.longValue())
+                    .bind("account", transaction.getAccount())
+                    .fetch()
+                    .rowsUpdated()))
+            .then(db.execute("SELECT balance FROM \"ACCOUNT\" WHERE account = :account")
+                .bind("account", transaction.getToAccount())
+                .map(row -> row.get("balance", Long.class))
+                .one())
+            .flatMap(balance -> db.execute("UPDATE \"ACCOUNT\" SET balance = :balance WHERE account = :account")
+                .bind("balance", balance + AMOUNT.longValue())
+                .bind("account", transaction.getToAccount())
+                .fetch()
+                .rowsUpdated())
+            .as(transactionalOperator::transactional)
+            .block();
+    }
+
+    @Benchmark
+    public Integer r2dbcGuardedTransfer() {
+        Transaction transaction = nextTransaction();
+        return db.execute("UPDATE \"ACCOUNT\" SET balance = balance - :amount WHERE account = :account AND balance >= :amount " +
+                "AND EXISTS (SELECT 1 FROM \"ACCOUNT\" WHERE account = :toAccount)")
+            .bind("amount", transaction.getAmount())
+            .bind("account", transaction.getAccount())
+            .bind("toAccount", transaction.getToAccount())
+            .fetch()
+            .rowsUpdated()
+            .filter(debited -> debited > 0)
+            .flatMap(debited -> db.execute("UPDATE \"ACCOUNT\" SET balance = balance + :amount WHERE account = :toAccount")
+                .bind("amount", transaction.getAmount())
+                .bind("toAccount", transaction.getToAccount())
+                .fetch()
+                .rowsUpdated())
+            .flatMap(credited -> db.execute("INSERT INTO transaction (account, to_account, amount, transact_at) VALUES (:account, :toAccount, :amount, :at)")
+                .bind("account", transaction.getAccount())
+                .bind("toAccount", transaction.getToAccount())
+                .bind("amount", transaction.getAmount())
+                .bind("at", transaction.getTransactAt())
+                .fetch()
+                .rowsUpdated())
+            .as(transactionalOperator::transactional)
+            .block();
+    }
+
+    private Transaction nextTransaction() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Transaction transaction = new Transaction();
+        transaction.setAction(1);
+        transaction.setAccount(accountNumber(random.nextInt(hotAccounts)));
+        transaction.setToAccount(accountNumber(random.nextInt(ACCOUNTS)));
+        transaction.setAmount(AMOUNT);
+        transaction.setTransactAt(LocalDateTime.now());
+        return transaction;
+    }
+
+    private static String accountNumber(int i) {
+        return String.format("%010d", i);
+    }
+
+    /**
+     * Keeps the engine's persistence out of the measurement; the write-behind stage only counts entries.
+     */
+    private static class InMemoryLedgerStore implements LedgerStore {
+
+        private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+        InMemoryLedgerStore() {
+            for (int i = 0; i < ACCOUNTS; i++) {
+                Account account = new Account();
+                account.setAccount(accountNumber(i));
+                account.setBalance(BigDecimal.valueOf(Long.MAX_VALUE / 4));
+                accounts.put(account.getAccount(), account);
+            }
+        }
+
+        @Override
+        public Mono<Account> load(String account) {
+            return Mono.justOrEmpty(accounts.get(account));
+        }
+
+        @Override
+        public Mono<Void> persist(List<LedgerEntry> entries) {
+            return Mono.empty();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LedgerEngineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
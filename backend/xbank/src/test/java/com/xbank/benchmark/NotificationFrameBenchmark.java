@@ -0,0 +1,87 @@
+package com.xbank.benchmark;
+
+import com.xbank.domain.Transaction;
+import com.xbank.event.TransactionEvent;
+import com.xbank.event.TransactionNotifications;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning one transaction event into the WebSocket messages of {@code sessions} recipient sessions:
+ * formatting and encoding the notification for every session, as the handler used to, against rendering it
+ * once per event and wrapping the shared bytes for each session.
+ * <p>
+ * The gc profiler is on, {@code gc.alloc.rate.norm} is the allocation per event.
+ * <p>
+ * Run with {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.xbank.benchmark.NotificationFrameBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NotificationFrameBenchmark {
+
+    @Param({"10000"})
+    private int sessions;
+
+    private final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    private Transaction transaction;
+
+    @Setup
+    public void setup() {
+        transaction = new Transaction();
+        transaction.setOwner("user-1");
+        transaction.setAction(1);
+        transaction.setAccount("9800000001");
+        transaction.setToAccount("9800000002");
+        transaction.setAmount(new BigDecimal("1250000"));
+        transaction.setCurrency("VND");
+        transaction.setTransactAt(LocalDateTime.of(2026, 10, 18, 12, 0));
+    }
+
+    @Benchmark
+    public void renderPerSession(Blackhole blackhole) {
+        for (int i = 0; i < sessions; i++) {
+            String transactionAt = transaction.getTransactAt().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+            DecimalFormat formatter = new DecimalFormat("###,###,###.##");
+            String text = "Số dư tài khoản " + transaction.getAccount() + " - " + formatter.format(transaction.getAmount())
+                + "VNĐ. Chuyển tiền sang tài khoàn " + transaction.getToAccount() + " ngày " + transactionAt;
+            // What WebSocketSession.textMessage does with the text
+            blackhole.consume(new WebSocketMessage(WebSocketMessage.Type.TEXT,
+                bufferFactory.wrap(text.getBytes(StandardCharsets.UTF_8))));
+        }
+    }
+
+    @Benchmark
+    public void renderOnce(Blackhole blackhole) {
+        TransactionEvent event = new TransactionEvent(TransactionEvent.ITEM_CREATED, transaction);
+        for (int i = 0; i < sessions; i++) {
+            blackhole.consume(new WebSocketMessage(WebSocketMessage.Type.TEXT,
+                bufferFactory.wrap(event.getNotification(TransactionNotifications.DEFAULT_LOCALE))));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(NotificationFrameBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,186 @@
+package com.xbank.benchmark;
+
+import com.xbank.Application;
+import com.xbank.domain.Account;
+import com.xbank.dto.AccountTranferBatchDTO;
+import com.xbank.dto.AccountTranferDTO;
+import com.xbank.dto.WithDrawDTO;
+import com.xbank.repository.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * End-to-end operations/s through {@code POST /api/accounts/transfer}, {@code /transfer/batch} and
+ * {@code /deposit}, including HTTP, JSON and persistence.
+ * <p>
+ * Not part of the regular test run. Compare the R2DBC path with group commit and with the ledger engine by
+ * running it once per mode:
+ * <pre>
+ * ./mvnw test -Dtest=TransferEndToEndBenchmark
+ * ./mvnw test -Dtest=TransferEndToEndBenchmark -Dapplication.group-commit.enabled=true
+ * ./mvnw test -Dtest=TransferEndToEndBenchmark -Dapplication.ledger.enabled=true
+ * </pre>
+ */
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class TransferEndToEndBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferEndToEndBenchmark.class);
+
+    private static final int ACCOUNTS = 100;
+
+    private static final int TRANSFERS = 20_000;
+
+    private static final int CONCURRENCY = 64;
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final int BATCH_CONCURRENCY = 4;
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${application.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    @Value("${application.group-commit.enabled:false}")
+    private boolean groupCommitEnabled;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @BeforeEach
+    public void setup() {
+        accountRepository.deleteAll().block();
+        Flux.range(0, ACCOUNTS)
+            .map(i -> {
+                Account account = new Account();
+                account.setAccount(accountNumber(i));
+                account.setOwner("benchmark");
+                account.setCreatedBy("benchmark");
+                account.setCurrency("VND");
+                account.setBalance(BigDecimal.valueOf(Long.MAX_VALUE / 4));
+                return account;
+            })
+            .concatMap(accountRepository::save)
+            .blockLast();
+    }
+
+    @Test
+    public void transfersPerSecond() {
+        WebClient client = WebClient.create("http://localhost:" + port);
+        // Warm up the JIT, the connection pools and, in ledger mode, the shards
+        run(client, TRANSFERS / 10);
+
+        long start = System.nanoTime();
+        run(client, TRANSFERS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.info("{} transfers with concurrency {} in {}s: {} transfers/s ({})",
+            TRANSFERS, CONCURRENCY, String.format("%.2f", seconds), String.format("%.0f", TRANSFERS / seconds),
+            mode());
+    }
+
+    @Test
+    public void batchTransfersPerSecond() {
+        WebClient client = WebClient.create("http://localhost:" + port);
+        runBatches(client, TRANSFERS / 10);
+
+        long start = System.nanoTime();
+        runBatches(client, TRANSFERS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.info("{} transfers in batches of {} with concurrency {} in {}s: {} transfers/s ({})",
+            TRANSFERS, BATCH_SIZE, BATCH_CONCURRENCY, String.format("%.2f", seconds), String.format("%.0f", TRANSFERS / seconds),
+            mode());
+    }
+
+    @Test
+    public void depositsPerSecond() {
+        WebClient client = WebClient.create("http://localhost:" + port);
+        runDeposits(client, TRANSFERS / 10);
+
+        long start = System.nanoTime();
+        runDeposits(client, TRANSFERS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.info("{} deposits with concurrency {} in {}s: {} deposits/s ({})",
+            TRANSFERS, CONCURRENCY, String.format("%.2f", seconds), String.format("%.0f", TRANSFERS / seconds),
+            mode());
+    }
+
+    private void runDeposits(WebClient client, int deposits) {
+        Flux.range(0, deposits)
+            .flatMap(i -> client.post().uri("/api/accounts/deposit")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(nextDeposit())
+                .exchange()
+                .flatMap(response -> response.releaseBody()), CONCURRENCY)
+            .blockLast();
+    }
+
+    private void runBatches(WebClient client, int transfers) {
+        Flux.range(0, transfers / BATCH_SIZE)
+            .flatMap(i -> Flux.range(0, BATCH_SIZE)
+                .map(j -> nextTransfer())
+                .collectList()
+                .map(TransferEndToEndBenchmark::batchOf)
+                .flatMap(batch -> client.post().uri("/api/accounts/transfer/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(batch)
+                    .exchange())
+                .flatMap(response -> response.releaseBody()), BATCH_CONCURRENCY)
+            .blockLast();
+    }
+
+    private static AccountTranferBatchDTO batchOf(List<AccountTranferDTO> items) {
+        AccountTranferBatchDTO batch = new AccountTranferBatchDTO();
+        batch.setItems(items);
+        return batch;
+    }
+
+    private void run(WebClient client, int transfers) {
+        Flux.range(0, transfers)
+            .flatMap(i -> client.post().uri("/api/accounts/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(nextTransfer())
+                .exchange()
+                .flatMap(response -> response.releaseBody()), CONCURRENCY)
+            .blockLast();
+    }
+
+    private static AccountTranferDTO nextTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        AccountTranferDTO transfer = new AccountTranferDTO();
+        int from = random.nextInt(ACCOUNTS);
+        transfer.setAccount(accountNumber(from));
+        // Transfers to the same account are rejected
+        transfer.setToAccount(accountNumber((from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS));
+        transfer.setBalance(BigDecimal.ONE);
+        return transfer;
+    }
+
+    private static WithDrawDTO nextDeposit() {
+        WithDrawDTO deposit = new WithDrawDTO();
+        deposit.setAccount(accountNumber(ThreadLocalRandom.current().nextInt(ACCOUNTS)));
+        deposit.setBalance(BigDecimal.ONE);
+        return deposit;
+    }
+
+    private String mode() {
+        return ledgerEnabled ? "ledger engine" : groupCommitEnabled ? "group commit" : "one transaction per request";
+    }
+
+    private static String accountNumber(int i) {
+        return String.format("%010d", i);
+    }
+}
@@ -0,0 +1,88 @@
+package com.xbank.benchmark;
+
+import com.xbank.domain.Transaction;
+import com.xbank.service.wal.WriteAheadLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Latency of {@link WriteAheadLog#append} until the record is durable, with appends from {@code threads}
+ * concurrent writers sharing fsyncs.
+ * <p>
+ * Run with {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.xbank.benchmark.WriteAheadLogBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WriteAheadLogBenchmark {
+
+    private static final int ACCOUNTS = 1_000;
+
+    private Path directory;
+
+    private WriteAheadLog writeAheadLog;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("wal-benchmark");
+        writeAheadLog = new WriteAheadLog(new SimpleMeterRegistry(), directory.toString(), 64);
+        writeAheadLog.open(0);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException, IOException {
+        writeAheadLog.destroy();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Long appendSingleWriter() {
+        return writeAheadLog.append(nextTransaction()).block();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Long appendSixteenWriters() {
+        return writeAheadLog.append(nextTransaction()).block();
+    }
+
+    private static Transaction nextTransaction() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Transaction transaction = new Transaction();
+        transaction.setOwner("system");
+        transaction.setAction(1);
+        transaction.setAccount(accountNumber(random.nextInt(ACCOUNTS)));
+        transaction.setToAccount(accountNumber(random.nextInt(ACCOUNTS)));
+        transaction.setAmount(BigDecimal.ONE);
+        transaction.setCurrency("VND");
+        transaction.setTransactAt(LocalDateTime.now());
+        return transaction;
+    }
+
+    private static String accountNumber(int i) {
+        return String.format("%010d", i);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(WriteAheadLogBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,144 @@
+package com.xbank.event;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link EventBus}.
+ */
+public class EventBusUnitTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void assertThatEverySubscriberGetsEveryEvent() {
+        EventBus<Integer> eventBus = new EventBus<>("test", meterRegistry, 16, EventBus.OverflowPolicy.DROP_OLDEST, EventBusUnitTest::keys);
+        List<Integer> first = new CopyOnWriteArrayList<>();
+        List<Integer> second = new CopyOnWriteArrayList<>();
+        Disposable one = eventBus.subscribe().subscribe(first::add);
+        Disposable two = eventBus.subscribe().subscribe(second::add);
+
+        for (int i = 0; i < 3; i++) {
+            eventBus.publish(i);
+        }
+        one.dispose();
+        eventBus.publish(3);
+        two.dispose();
+
+        assertThat(first).containsExactly(0, 1, 2);
+        assertThat(second).containsExactly(0, 1, 2, 3);
+        assertThat(eventBus.getSubscriberCount()).isZero();
+    }
+
+    @Test
+    public void assertThatASlowSubscriberOnlyLosesItsOldestEvents() {
+        EventBus<Integer> eventBus = new EventBus<>("test", meterRegistry, 2, EventBus.OverflowPolicy.DROP_OLDEST, EventBusUnitTest::keys);
+        SlowSubscriber slow = new SlowSubscriber();
+        List<Integer> fast = new CopyOnWriteArrayList<>();
+        eventBus.subscribe().subscribe(slow);
+        eventBus.subscribe().subscribe(fast::add);
+
+        for (int i = 0; i < 5; i++) {
+            eventBus.publish(i);
+        }
+        assertThat(meterRegistry.get("xbank.events.queue.max-depth").gauge().value()).isEqualTo(2);
+        slow.request(10);
+
+        assertThat(slow.received).containsExactly(3, 4);
+        assertThat(fast).containsExactly(0, 1, 2, 3, 4);
+        assertThat(meterRegistry.get("xbank.events.dropped").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("xbank.events.queue.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    public void assertThatASlowSubscriberIsTerminatedOnOverflowWithTheErrorPolicy() {
+        EventBus<Integer> eventBus = new EventBus<>("test", meterRegistry, 2, EventBus.OverflowPolicy.ERROR, EventBusUnitTest::keys);
+        SlowSubscriber slow = new SlowSubscriber();
+        eventBus.subscribe().subscribe(slow);
+
+        for (int i = 0; i < 3; i++) {
+            eventBus.publish(i);
+        }
+
+        assertThat(slow.error).isNotNull();
+        assertThat(eventBus.getSubscriberCount()).isZero();
+    }
+
+    @Test
+    public void assertThatKeyedSubscribersOnlyGetTheirEvents() {
+        EventBus<Integer> eventBus = new EventBus<>("test", meterRegistry, 16, EventBus.OverflowPolicy.DROP_OLDEST, EventBusUnitTest::keys);
+        List<Integer> even = new CopyOnWriteArrayList<>();
+        List<Integer> evenAgain = new CopyOnWriteArrayList<>();
+        List<Integer> both = new CopyOnWriteArrayList<>();
+        Disposable one = eventBus.subscribe(Collections.singletonList("even")).subscribe(even::add);
+        Disposable two = eventBus.subscribe(Collections.singletonList("even")).subscribe(evenAgain::add);
+        Disposable three = eventBus.subscribe(Arrays.asList("even", "odd", "all")).subscribe(both::add);
+
+        for (int i = 0; i < 4; i++) {
+            eventBus.publish(i);
+        }
+        one.dispose();
+        two.dispose();
+        three.dispose();
+
+        assertThat(even).containsExactly(0, 2);
+        assertThat(evenAgain).containsExactly(0, 2);
+        assertThat(both).containsExactly(0, 1, 2, 3);
+        assertThat(eventBus.getSubscriberCount()).isZero();
+    }
+
+    @Test
+    public void assertThatKeysCanBeAddedToSubscribers() {
+        EventBus<Integer> eventBus = new EventBus<>("test", meterRegistry, 16, EventBus.OverflowPolicy.DROP_OLDEST, EventBusUnitTest::keys);
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        Disposable subscription = eventBus.subscribe(Collections.singletonList("even")).subscribe(received::add);
+
+        eventBus.publish(1);
+        eventBus.addKey("even", "odd");
+        eventBus.addKey("missing", "all");
+        eventBus.publish(2);
+        eventBus.publish(3);
+        subscription.dispose();
+        eventBus.publish(5);
+
+        assertThat(received).containsExactly(2, 3);
+        assertThat(eventBus.getSubscriberCount()).isZero();
+    }
+
+    private static List<String> keys(Integer value) {
+        return Arrays.asList(value % 2 == 0 ? "even" : "odd", "all");
+    }
+
+    private static final class SlowSubscriber extends BaseSubscriber<Integer> {
+
+        private final List<Integer> received = new ArrayList<>();
+
+        private Throwable error;
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            // Requests nothing until told to
+        }
+
+        @Override
+        protected void hookOnNext(Integer value) {
+            received.add(value);
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            error = throwable;
+        }
+    }
+}
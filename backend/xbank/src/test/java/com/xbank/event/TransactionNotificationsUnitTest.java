@@ -0,0 +1,51 @@
+package com.xbank.event;
+
+import com.xbank.domain.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link TransactionNotifications}.
+ */
+public class TransactionNotificationsUnitTest {
+
+    @Test
+    public void assertThatNotificationsAreRendered() {
+        assertThat(text(transaction(1))).isEqualTo("Số dư tài khoản 9800000001 - 1,250,000.5VNĐ. Chuyển tiền sang tài khoàn 9800000002 ngày 2026-10-18 12:00:00");
+        assertThat(text(transaction(2))).isEqualTo("Số dư tài khoản 9800000001 - 1,250,000.5VNĐ. Rút tiền ngày 2026-10-18 12:00:00");
+        assertThat(text(transaction(3))).isEqualTo("Số dư tài khoản 9800000001 + 1,250,000.5VNĐ. Nạp tiền ngày 2026-10-18 12:00:00");
+        assertThat(TransactionNotifications.render(transaction(4), Locale.US)).isEmpty();
+    }
+
+    @Test
+    public void assertThatAnEventIsRenderedOncePerLocale() {
+        TransactionEvent event = new TransactionEvent(TransactionEvent.ITEM_CREATED, transaction(3));
+
+        byte[] first = event.getNotification(Locale.US);
+
+        assertThat(event.getNotification(Locale.US)).isSameAs(first);
+        assertThat(new String(event.getNotification(Locale.GERMANY), StandardCharsets.UTF_8)).contains("1.250.000,5VNĐ");
+    }
+
+    private static String text(Transaction transaction) {
+        return new String(TransactionNotifications.render(transaction, Locale.US), StandardCharsets.UTF_8);
+    }
+
+    private static Transaction transaction(int action) {
+        Transaction transaction = new Transaction();
+        transaction.setOwner("user-1");
+        transaction.setAction(action);
+        transaction.setAccount("9800000001");
+        transaction.setToAccount("9800000002");
+        transaction.setAmount(new BigDecimal("1250000.5"));
+        transaction.setCurrency("VND");
+        transaction.setTransactAt(LocalDateTime.of(2026, 10, 18, 12, 0));
+        return transaction;
+    }
+}
@@ -0,0 +1,28 @@
+package com.xbank.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the partition naming of {@link PartitionRepository}.
+ */
+public class PartitionRepositoryUnitTest {
+
+    @Test
+    public void assertThatPartitionNamesCarryTheirMonth() {
+        String partition = PartitionRepository.partitionName("transaction", YearMonth.of(2026, 11));
+
+        assertThat(partition).isEqualTo("transaction_p202611");
+        assertThat(PartitionRepository.monthOf("transaction", partition)).isEqualTo(YearMonth.of(2026, 11));
+    }
+
+    @Test
+    public void assertThatOtherPartitionsHaveNoMonth() {
+        assertThat(PartitionRepository.monthOf("transaction", "transaction_default")).isNull();
+        assertThat(PartitionRepository.monthOf("transaction", "notification_p202611")).isNull();
+        assertThat(PartitionRepository.monthOf("transaction", "transaction_p2026xx")).isNull();
+    }
+}
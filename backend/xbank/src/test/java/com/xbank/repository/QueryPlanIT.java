@@ -0,0 +1,212 @@
+package com.xbank.repository;
+
+import com.xbank.Application;
+import com.xbank.config.Constants;
+import com.xbank.domain.Account;
+import com.xbank.domain.Notification;
+import com.xbank.domain.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.data.r2dbc.repository.Query;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Query plan regression tests: runs {@code EXPLAIN} on every {@link Query} of the repositories against a seeded
+ * database, and fails if a query on a hot path is planned as a full table scan.
+ * <p>
+ * A new query needs a sample value for each of its parameters in {@link #SAMPLES}; a new hot query belongs in
+ * {@link #HOT}.
+ */
+@SpringBootTest(classes = Application.class)
+public class QueryPlanIT {
+
+    private static final List<Class<?>> REPOSITORIES = Arrays.asList(
+        AccountRepository.class, TransactionRepository.class, UserRepository.class, NotificationRepository.class,
+        AccountStripeRepository.class, IdempotencyKeyRepository.class, PostingRepository.class,
+        StandingOrderRepository.class, ReconciliationRepository.class, PersistenceAuditEventRepository.class,
+        TransactionArchiveSegmentRepository.class);
+
+    /**
+     * Queries run per request or by the every-second jobs, as {@code Repository.method}.
+     */
+    private static final Set<String> HOT = new HashSet<>(Arrays.asList(
+        "AccountRepository.findOneByAccount",
+        "AccountRepository.countByUser",
+        "AccountRepository.findByOwner",
+        "AccountRepository.findPageByOwner",
+        "AccountRepository.getAccountDetail",
+        "AccountRepository.findAllWithStripesByAccountIn",
+        "AccountRepository.findAllStriped",
+        "AccountRepository.findOneWithStripes",
+        "AccountRepository.lock",
+        "AccountRepository.lockInIdOrder",
+        "TransactionRepository.findPageByAccount",
+        "TransactionRepository.findPageByOwner",
+        "TransactionRepository.countTransactionsByUser",
+        "UserRepository.findOneByActivationKey",
+        "UserRepository.findOneByResetKey",
+        "UserRepository.findOneByLogin",
+        "UserRepository.findOneByEmail",
+        "UserRepository.deleteAllUserAccount",
+        "NotificationRepository.readAll",
+        "NotificationRepository.findPageByAccount",
+        "NotificationRepository.findOneByAccount",
+        "NotificationRepository.read",
+        "NotificationRepository.countUnread",
+        "AccountStripeRepository.findStripes",
+        "AccountStripeRepository.lockAll",
+        "AccountStripeRepository.credit",
+        "AccountStripeRepository.reset",
+        "IdempotencyKeyRepository.findOneByOwnerAndKey",
+        "PostingRepository.findByAccountPostedBetween",
+        "PostingRepository.sumByAccount",
+        "PostingRepository.sumByAccountBefore",
+        "StandingOrderRepository.findByOwner",
+        "StandingOrderRepository.findOneByOwner",
+        "StandingOrderRepository.countRuns",
+        "ReconciliationRepository.findDiscrepancies"));
+
+    private static final Map<String, Object> SAMPLES = new HashMap<>();
+
+    static {
+        LocalDateTime now = LocalDateTime.of(2026, 10, 18, 12, 0);
+        SAMPLES.put("account", "9800000001");
+        SAMPLES.put("toAccount", "9800000002");
+        SAMPLES.put("accounts", Arrays.asList("9800000001", "9800000002"));
+        SAMPLES.put("owner", "user-1");
+        SAMPLES.put("login", "user-1");
+        SAMPLES.put("anonymousUser", Constants.ANONYMOUS_USER);
+        SAMPLES.put("email", "user-1@localhost");
+        SAMPLES.put("activationKey", "activation");
+        SAMPLES.put("resetKey", "reset");
+        SAMPLES.put("key", "key");
+        SAMPLES.put("id", 1L);
+        SAMPLES.put("afterId", 0L);
+        SAMPLES.put("lastId", 1L);
+        SAMPLES.put("orderId", 1L);
+        SAMPLES.put("runId", 1L);
+        SAMPLES.put("runDate", now.toLocalDate());
+        SAMPLES.put("error", "Insufficient balance");
+        SAMPLES.put("limit", 20);
+        SAMPLES.put("stripe", 0);
+        SAMPLES.put("partition", 0);
+        SAMPLES.put("partitions", 4);
+        SAMPLES.put("amount", BigDecimal.ONE);
+        SAMPLES.put("at", now);
+        SAMPLES.put("before", now);
+        SAMPLES.put("from", now.minusDays(30));
+        SAMPLES.put("to", now);
+        SAMPLES.put("dateTime", now);
+        SAMPLES.put("today", now.toLocalDate());
+    }
+
+    private static final Pattern PARAMETER = Pattern.compile("(?<![:\\w]):(\\w+)");
+
+    @Autowired
+    private DatabaseClient db;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @BeforeEach
+    public void init() {
+        notificationRepository.deleteAll().block();
+        transactionRepository.deleteAll().block();
+        accountRepository.deleteAll().block();
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String owner = "user-" + (i % 20);
+            Account account = new Account();
+            account.setAccount(String.valueOf(9800000000L + i));
+            account.setOwner(owner);
+            account.setCreatedBy(owner);
+            account.setCurrency("VND");
+            account.setBalance(BigDecimal.TEN);
+            accountRepository.save(account).block();
+            for (int j = 0; j < 5; j++) {
+                transactions.add(transaction(owner, account.getAccount(), LocalDate.of(2026, 10, 1).atStartOfDay().plusHours(i + j)));
+            }
+            Notification notification = new Notification();
+            notification.setAccount(owner);
+            notification.setTitle("Seed");
+            notification.setRead(i % 2 == 0);
+            notification.setCreatedDate(LocalDateTime.now());
+            notificationRepository.save(notification).block();
+        }
+        transactionRepository.insertAll(transactions).block();
+    }
+
+    @Test
+    public void assertThatHotQueriesUseAnIndex() {
+        List<String> scans = new ArrayList<>();
+        Set<String> explained = new HashSet<>();
+        for (Class<?> repository : REPOSITORIES) {
+            for (Method method : repository.getDeclaredMethods()) {
+                Query query = method.getAnnotation(Query.class);
+                if (query == null || query.value().trim().toUpperCase().startsWith("INSERT")) {
+                    continue;
+                }
+                String name = repository.getSimpleName() + "." + method.getName();
+                String plan = explain(name, query.value());
+                explained.add(name);
+                if (HOT.contains(name) && plan.contains("tableScan")) {
+                    scans.add(name + ": " + plan);
+                }
+            }
+        }
+
+        assertThat(explained).as("Hot queries that no longer exist").containsAll(HOT);
+        assertThat(scans).as("Hot queries planned as a full table scan").isEmpty();
+    }
+
+    private String explain(String name, String sql) {
+        DatabaseClient.GenericExecuteSpec spec = db.execute("EXPLAIN " + sql);
+        Matcher parameters = PARAMETER.matcher(sql);
+        while (parameters.find()) {
+            Object value = SAMPLES.get(parameters.group(1));
+            if (value == null) {
+                fail("No sample value for :" + parameters.group(1) + " of " + name);
+            }
+            spec = spec.bind(parameters.group(1), value);
+        }
+        return String.join("\n", spec.map((row, metadata) -> row.get(0, String.class)).all().collectList().block());
+    }
+
+    private static Transaction transaction(String owner, String account, LocalDateTime at) {
+        Transaction transaction = new Transaction();
+        transaction.setOwner(owner);
+        transaction.setAction(3);
+        transaction.setAccount(account);
+        transaction.setAmount(BigDecimal.ONE);
+        transaction.setCurrency("VND");
+        transaction.setTransactAt(at);
+        transaction.setResult(1);
+        transaction.setCreatedBy(owner);
+        return transaction;
+    }
+}
@@ -0,0 +1,41 @@
+package com.xbank.service;
+
+import com.xbank.dto.AccountDTO;
+
+import java.math.BigDecimal;
+
+/**
+ * Utility class for the accounts the service integration tests start from.
+ */
+public final class AccountFixtures {
+
+    /**
+     * The balance the source account of {@link #openPair} starts with.
+     */
+    public static final BigDecimal OPENING_BALANCE = BigDecimal.valueOf(100);
+
+    private AccountFixtures() {
+    }
+
+    public static AccountDTO account(String account, BigDecimal balance) {
+        AccountDTO dto = new AccountDTO();
+        dto.setAccount(account);
+        dto.setBalance(balance);
+        return dto;
+    }
+
+    /**
+     * Open {@code account} with {@code balance} for the current user.
+     */
+    public static void open(AccountService accountService, String account, BigDecimal balance) {
+        accountService.createAccount(account(account, balance)).block();
+    }
+
+    /**
+     * Open {@code from} with {@link #OPENING_BALANCE} and {@code to} with nothing, for the current user.
+     */
+    public static void openPair(AccountService accountService, String from, String to) {
+        open(accountService, from, OPENING_BALANCE);
+        open(accountService, to, BigDecimal.ZERO);
+    }
+}
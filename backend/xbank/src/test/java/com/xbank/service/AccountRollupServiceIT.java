@@ -0,0 +1,170 @@
+package com.xbank.service;
+
+import com.xbank.Application;
+import com.xbank.config.Constants;
+import com.xbank.domain.AccountDailyRollup;
+import com.xbank.domain.Transaction;
+import com.xbank.dto.AccountSummaryDTO;
+import com.xbank.dto.WithDrawDTO;
+import com.xbank.event.TransactionEvent;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.AccountRollupRepository;
+import com.xbank.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.xbank.service.AccountFixtures.open;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Integration tests for {@link AccountRollupService}.
+ */
+@SpringBootTest(classes = Application.class, properties = "application.rollup.flush-interval-ms=3600000")
+public class AccountRollupServiceIT {
+
+    private static final String ACCOUNT = "9400000001";
+
+    private static final String OTHER = "9400000002";
+
+    @Autowired
+    private AccountRollupService accountRollupService;
+
+    @SpyBean
+    private AccountRollupRepository accountRollupRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DatabaseClient db;
+
+    @BeforeEach
+    public void init() {
+        db.execute("DELETE FROM account_daily_rollup").fetch().rowsUpdated().block();
+        transactionRepository.deleteAll().block();
+        accountRepository.deleteAll().block();
+        open(accountService, ACCOUNT, BigDecimal.ZERO);
+    }
+
+    @Test
+    public void assertThatTransactionsAreRolledUpAsTheyHappen() {
+        accountService.deposit(amount(BigDecimal.valueOf(100))).block();
+        accountService.deposit(amount(BigDecimal.valueOf(50))).block();
+        accountService.withDraw(amount(BigDecimal.valueOf(30))).block();
+
+        accountRollupService.flushPending().block();
+        AccountSummaryDTO summary = accountRollupService
+            .getSummary(Constants.SYSTEM_ACCOUNT, ACCOUNT, LocalDate.now(), LocalDate.now()).block();
+
+        assertThat(summary.getTransactionCount()).isEqualTo(3);
+        assertThat(summary.getCreditSum()).isEqualByComparingTo("150");
+        assertThat(summary.getDebitSum()).isEqualByComparingTo("30");
+        assertThat(summary.getClosingBalance()).isEqualByComparingTo("120");
+    }
+
+    @Test
+    public void assertThatBackfillRebuildsDaysFromTheTransactions() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        Transaction transfer = transaction(1, ACCOUNT, OTHER, 40, 1);
+        Transaction deposit = transaction(3, ACCOUNT, ACCOUNT, 10, 1);
+        Transaction failed = transaction(2, ACCOUNT, ACCOUNT, 1000, 0);
+        for (Transaction transaction : Arrays.asList(transfer, deposit, failed)) {
+            transaction.setTransactAt(yesterday.atTime(12, 0));
+        }
+        transactionRepository.insertAll(Arrays.asList(transfer, deposit, failed)).block();
+
+        Integer rebuilt = accountRollupService.backfill(yesterday, LocalDate.now()).block();
+        List<AccountDailyRollup> account = accountRollupRepository.findByAccount(ACCOUNT, yesterday, yesterday).collectList().block();
+        List<AccountDailyRollup> other = accountRollupRepository.findByAccount(OTHER, yesterday, yesterday).collectList().block();
+
+        assertThat(rebuilt).isEqualTo(2);
+        assertThat(account).hasSize(1);
+        assertThat(account.get(0).getTransactionCount()).isEqualTo(2);
+        assertThat(account.get(0).getDebitSum()).isEqualByComparingTo("40");
+        assertThat(account.get(0).getCreditSum()).isEqualByComparingTo("10");
+        assertThat(other).hasSize(1);
+        assertThat(other.get(0).getCreditSum()).isEqualByComparingTo("40");
+    }
+
+    @Test
+    public void assertThatBackfillDropsTheTotalsWaitingForAFlush() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        Transaction deposit = transaction(3, ACCOUNT, ACCOUNT, 10, 1);
+        deposit.setTransactAt(yesterday.atTime(23, 59));
+        transactionRepository.insertAll(Arrays.asList(deposit)).block();
+        // Booked just before midnight, its event is still waiting for a flush when the backfill runs
+        accountRollupService.onApplicationEvent(new TransactionEvent(TransactionEvent.ITEM_CREATED, deposit));
+
+        accountRollupService.backfill(yesterday, LocalDate.now()).block();
+        accountRollupService.flushPending().block();
+
+        List<AccountDailyRollup> account = accountRollupRepository.findByAccount(ACCOUNT, yesterday, yesterday).collectList().block();
+        assertThat(account).hasSize(1);
+        assertThat(account.get(0).getTransactionCount()).isEqualTo(1);
+        assertThat(account.get(0).getCreditSum()).isEqualByComparingTo("10");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void assertThatAFlushInFlightIsNotAddedOnTopOfARebuiltDay() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        Transaction deposit = transaction(3, ACCOUNT, ACCOUNT, 10, 1);
+        deposit.setTransactAt(yesterday.atTime(23, 59));
+        transactionRepository.insertAll(Arrays.asList(deposit)).block();
+        accountRollupService.onApplicationEvent(new TransactionEvent(TransactionEvent.ITEM_CREATED, deposit));
+        // The flush has taken the totals and is still writing them when the backfill starts
+        doAnswer(invocation -> Mono.delay(Duration.ofMillis(500)).then((Mono<Integer>) invocation.callRealMethod()))
+            .when(accountRollupRepository).addAll(anyList(), any(LocalDateTime.class));
+
+        Mono<Integer> flushing = accountRollupService.flushPending().cache();
+        flushing.subscribe();
+        accountRollupService.backfill(yesterday, LocalDate.now()).block();
+        flushing.block();
+
+        List<AccountDailyRollup> account = accountRollupRepository.findByAccount(ACCOUNT, yesterday, yesterday).collectList().block();
+        assertThat(account).hasSize(1);
+        assertThat(account.get(0).getTransactionCount()).isEqualTo(1);
+        assertThat(account.get(0).getCreditSum()).isEqualByComparingTo("10");
+    }
+
+    private static WithDrawDTO amount(BigDecimal amount) {
+        WithDrawDTO data = new WithDrawDTO();
+        data.setAccount(ACCOUNT);
+        data.setBalance(amount);
+        return data;
+    }
+
+    private static Transaction transaction(int action, String account, String toAccount, long amount, int result) {
+        Transaction transaction = new Transaction();
+        transaction.setOwner(Constants.SYSTEM_ACCOUNT);
+        transaction.setAction(action);
+        transaction.setAccount(account);
+        transaction.setToAccount(toAccount);
+        transaction.setAmount(BigDecimal.valueOf(amount));
+        transaction.setCurrency("VND");
+        transaction.setResult(result);
+        transaction.setCreatedBy(Constants.SYSTEM_ACCOUNT);
+        return transaction;
+    }
+}
@@ -0,0 +1,121 @@
+package com.xbank.service;
+
+import com.xbank.Application;
+import com.xbank.config.Constants;
+import com.xbank.domain.Account;
+import com.xbank.dto.AccountTranferDTO;
+import com.xbank.dto.TranferResultDTO;
+import com.xbank.dto.WithDrawDTO;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.AccountStripeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.xbank.service.AccountFixtures.openPair;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Integration tests for {@link AccountService#transferBatch}.
+ */
+@SpringBootTest(classes = Application.class)
+public class AccountServiceBatchIT {
+
+    private static final String FROM = "9300000001";
+
+    private static final String TO = "9300000002";
+
+    private static final String MERCHANT = "9300000003";
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private StripedBalances stripedBalances;
+
+    @SpyBean
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private AccountStripeRepository accountStripeRepository;
+
+    @BeforeEach
+    public void init() {
+        accountStripeRepository.deleteAll().block();
+        accountRepository.deleteAll().block();
+        openPair(accountService, FROM, TO);
+        Account merchant = new Account();
+        merchant.setAccount(MERCHANT);
+        merchant.setOwner(Constants.SYSTEM_ACCOUNT);
+        merchant.setCreatedBy(Constants.SYSTEM_ACCOUNT);
+        merchant.setCurrency("VND");
+        merchant.setBalance(BigDecimal.ZERO);
+        merchant.setStripes(4);
+        accountRepository.save(merchant).block();
+        stripedBalances.fold();
+    }
+
+    @Test
+    public void assertThatAMixedBatchReportsEveryItem() {
+        // Lands on the stripes, the account row stays at 0
+        WithDrawDTO deposit = new WithDrawDTO();
+        deposit.setAccount(MERCHANT);
+        deposit.setBalance(BigDecimal.valueOf(50));
+        accountService.deposit(deposit).block();
+
+        List<TranferResultDTO> results = accountService.transferBatch(Arrays.asList(
+            item(FROM, TO, 60),
+            item(FROM, TO, 0),
+            item(FROM, "9300000099", 10),
+            item(FROM, TO, 50),
+            item(MERCHANT, TO, 30),
+            item(FROM, FROM, 10),
+            item(FROM, TO, 40))).block();
+
+        assertThat(results).extracting(TranferResultDTO::isSuccess).containsExactly(true, false, false, false, true, false, true);
+        assertThat(results.get(1).getError()).isEqualTo("Amount must be positive");
+        assertThat(results.get(2).getError()).isEqualTo("To account not found");
+        assertThat(results.get(3).getError()).isEqualTo("Insufficient balance");
+        assertThat(results.get(5).getError()).isEqualTo("Cannot transfer to the same account");
+        assertThat(accountRepository.findOneByAccount(FROM).block().getBalance()).isEqualByComparingTo("0");
+        assertThat(accountRepository.findOneByAccount(TO).block().getBalance()).isEqualByComparingTo("130");
+        assertThat(accountRepository.findOneWithStripes(MERCHANT).block().getBalance()).isEqualByComparingTo("20");
+    }
+
+    @Test
+    public void assertThatARacedBatchFallsBackToItemByItem() {
+        // As if a concurrent request moved the balance between the read and the guarded update
+        doReturn(Mono.just(0)).when(accountRepository).addBalanceIfCovered(anyString(), any(BigDecimal.class));
+
+        List<TranferResultDTO> results = accountService.transferBatch(Arrays.asList(
+            item(FROM, TO, 30),
+            item(FROM, TO, 100),
+            item(FROM, TO, 70))).block();
+
+        verify(accountRepository, atLeastOnce()).addBalanceIfCovered(anyString(), any(BigDecimal.class));
+        assertThat(results).extracting(TranferResultDTO::isSuccess).containsExactly(true, false, true);
+        assertThat(results.get(1).getError()).startsWith("Insufficient balance");
+        assertThat(accountRepository.findOneByAccount(FROM).block().getBalance()).isEqualByComparingTo("0");
+        assertThat(accountRepository.findOneByAccount(TO).block().getBalance()).isEqualByComparingTo("100");
+    }
+
+    private static AccountTranferDTO item(String account, String toAccount, long amount) {
+        AccountTranferDTO item = new AccountTranferDTO();
+        item.setAccount(account);
+        item.setToAccount(toAccount);
+        item.setBalance(BigDecimal.valueOf(amount));
+        return item;
+    }
+}
@@ -0,0 +1,126 @@
+package com.xbank.service;
+
+import com.xbank.Application;
+import com.xbank.config.Constants;
+import com.xbank.domain.Posting;
+import com.xbank.dto.AccountDTO;
+import com.xbank.dto.AccountTranferDTO;
+import com.xbank.dto.WithDrawDTO;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.PostingRepository;
+import com.xbank.rest.errors.WithdrawException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.xbank.service.AccountFixtures.account;
+import static com.xbank.service.AccountFixtures.openPair;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link AccountService}.
+ */
+@SpringBootTest(classes = Application.class)
+public class AccountServiceIT {
+
+    private static final String FROM = "9100000001";
+
+    private static final String TO = "9100000002";
+
+    private static final String DOLLARS = "9100000003";
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PostingRepository postingRepository;
+
+    @Autowired
+    private FxRates fxRates;
+
+    @BeforeEach
+    public void init() {
+        postingRepository.deleteAll().block();
+        accountRepository.deleteAll().block();
+        openPair(accountService, FROM, TO);
+        fxRates.refresh();
+    }
+
+    @Test
+    public void assertThatEveryOperationPostsBalancedLegs() {
+        AccountTranferDTO transfer = new AccountTranferDTO();
+        transfer.setAccount(FROM);
+        transfer.setToAccount(TO);
+        transfer.setBalance(BigDecimal.valueOf(30));
+        accountService.transfer(transfer).block();
+        accountService.withDraw(amount(TO, BigDecimal.valueOf(10))).block();
+        accountService.deposit(amount(FROM, BigDecimal.valueOf(5))).block();
+
+        List<Posting> postings = postingRepository.findAll().collectList().block();
+        Map<String, BigDecimal> entries = postings.stream()
+            .collect(Collectors.toMap(Posting::getEntryId, Posting::getAmount, BigDecimal::add));
+        assertThat(entries.values()).allSatisfy(sum -> assertThat(sum).isEqualByComparingTo("0"));
+        assertThat(postingRepository.sumByAccount(FROM).block()).isEqualByComparingTo("75");
+        assertThat(postingRepository.sumByAccount(TO).block()).isEqualByComparingTo("20");
+        assertThat(postingRepository.sumByAccount(Constants.EXTERNAL_ACCOUNT).block()).isEqualByComparingTo("-95");
+        assertThat(postingRepository.findByAccountPostedBetween(TO, LocalDateTime.now().minusHours(1), LocalDateTime.now().plusHours(1))
+            .map(Posting::getAmount).collectList().block())
+            .usingElementComparator(BigDecimal::compareTo)
+            .containsExactly(BigDecimal.valueOf(30), BigDecimal.valueOf(-10));
+    }
+
+    @Test
+    public void assertThatCrossCurrencyTransferCreditsTheConvertedAmount() {
+        AccountDTO dollars = account(DOLLARS, BigDecimal.TEN);
+        dollars.setCurrency("USD");
+        accountService.createAccount(dollars).block();
+
+        AccountTranferDTO transfer = new AccountTranferDTO();
+        transfer.setAccount(DOLLARS);
+        transfer.setToAccount(TO);
+        transfer.setBalance(BigDecimal.valueOf(2));
+        accountService.transfer(transfer).block();
+
+        assertThat(accountRepository.findOneByAccount(DOLLARS).block().getBalance()).isEqualByComparingTo("8");
+        assertThat(accountRepository.findOneByAccount(TO).block().getBalance()).isEqualByComparingTo("50000");
+        assertThat(postingRepository.sumByAccount(Constants.FX_ACCOUNT).block()).isEqualByComparingTo(BigDecimal.valueOf(2 - 50000));
+    }
+
+    /**
+     * Runs the sequential guarded statements of H2; the single-statement CTEs are only exercised on PostgreSQL.
+     */
+    @Test
+    public void assertThatConcurrentWithdrawalsNeverOverdraw() {
+        Map<Boolean, Long> outcomes = Flux.range(0, 25)
+            .flatMap(i -> accountService.withDraw(amount(FROM, BigDecimal.TEN))
+                .map(response -> Boolean.TRUE)
+                .onErrorResume(WithdrawException.class, e -> Mono.just(Boolean.FALSE))
+                .subscribeOn(Schedulers.parallel()), 25)
+            .collect(Collectors.groupingBy(withdrawn -> withdrawn, Collectors.counting()))
+            .block();
+
+        assertThat(outcomes).containsEntry(Boolean.TRUE, 10L).containsEntry(Boolean.FALSE, 15L);
+        assertThat(accountRepository.findOneByAccount(FROM).block().getBalance()).isEqualByComparingTo("0");
+        assertThat(postingRepository.sumByAccount(FROM).block()).isEqualByComparingTo("0");
+    }
+
+    private static WithDrawDTO amount(String account, BigDecimal amount) {
+        WithDrawDTO dto = new WithDrawDTO();
+        dto.setAccount(account);
+        dto.setBalance(amount);
+        return dto;
+    }
+}
@@ -0,0 +1,88 @@
+package com.xbank.service;
+
+import com.xbank.Application;
+import com.xbank.domain.BalanceSnapshot;
+import com.xbank.dto.WithDrawDTO;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.BalanceJournalRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+import static com.xbank.service.AccountFixtures.open;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link BalanceJournalService}.
+ */
+@SpringBootTest(classes = Application.class, properties = "application.journal.snapshot-every=2")
+public class BalanceJournalServiceIT {
+
+    private static final String ACCOUNT = "9000000002";
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private BalanceJournalService balanceJournalService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private BalanceJournalRepository balanceJournalRepository;
+
+    @Autowired
+    private DatabaseClient db;
+
+    @BeforeEach
+    public void init() {
+        db.execute("DELETE FROM balance_snapshot").fetch().rowsUpdated().block();
+        db.execute("DELETE FROM balance_journal").fetch().rowsUpdated().block();
+        accountRepository.deleteAll().block();
+        open(accountService, ACCOUNT, BigDecimal.ZERO);
+    }
+
+    @Test
+    public void assertThatBalanceIsReadAtAPointInTime() throws InterruptedException {
+        accountService.deposit(deposit(BigDecimal.valueOf(100))).block();
+        accountService.deposit(deposit(BigDecimal.valueOf(50))).block();
+        Thread.sleep(10);
+        Instant before = Instant.now();
+        Thread.sleep(10);
+        balanceJournalService.takeSnapshots();
+        accountService.withDraw(deposit(BigDecimal.valueOf(30))).block();
+
+        assertThat(balanceJournalService.balanceAt(ACCOUNT, before).block()).isEqualByComparingTo("150");
+        assertThat(balanceJournalService.balanceAt(ACCOUNT, Instant.now()).block()).isEqualByComparingTo("120");
+    }
+
+    @Test
+    public void assertThatASnapshotStartsFromThePreviousOne() {
+        accountService.deposit(deposit(BigDecimal.valueOf(100))).block();
+        accountService.deposit(deposit(BigDecimal.valueOf(50))).block();
+        balanceJournalService.takeSnapshots();
+        BalanceSnapshot first = balanceJournalRepository.findLatestSnapshot(ACCOUNT, LocalDateTime.now().plusDays(1)).block();
+        accountService.withDraw(deposit(BigDecimal.valueOf(30))).block();
+        accountService.deposit(deposit(BigDecimal.valueOf(10))).block();
+        balanceJournalService.takeSnapshots();
+
+        BalanceSnapshot second = balanceJournalRepository.findLatestSnapshot(ACCOUNT, LocalDateTime.now().plusDays(1)).block();
+        assertThat(first.getBalance()).isEqualByComparingTo("150");
+        assertThat(second.getSeq()).isEqualTo(first.getSeq() + 2);
+        assertThat(second.getBalance()).isEqualByComparingTo("130");
+    }
+
+    private static WithDrawDTO deposit(BigDecimal amount) {
+        WithDrawDTO deposit = new WithDrawDTO();
+        deposit.setAccount(ACCOUNT);
+        deposit.setBalance(amount);
+        return deposit;
+    }
+}
@@ -0,0 +1,109 @@
+package com.xbank.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.GenericReactiveTransaction;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link ContentionRetry}.
+ */
+public class ContentionRetryUnitTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private ContentionRetry contentionRetry;
+
+    @BeforeEach
+    public void init() {
+        ReactiveTransactionManager transactionManager = mock(ReactiveTransactionManager.class);
+        when(transactionManager.getReactiveTransaction(any()))
+            .thenAnswer(invocation -> Mono.just(new GenericReactiveTransaction(null, true, true, false, false, null)));
+        when(transactionManager.commit(any())).thenReturn(Mono.empty());
+        when(transactionManager.rollback(any())).thenReturn(Mono.empty());
+        contentionRetry = new ContentionRetry(transactionManager, meterRegistry, 3, 1, 5, 1);
+    }
+
+    @Test
+    public void assertThatTransientFailuresAreRetried() {
+        String result = contentionRetry.transactional("transfer", () -> attempts.incrementAndGet() < 3
+            ? Mono.error(new TransientDataAccessResourceException("Lock timeout"))
+            : Mono.just("transferred"), "9800000001", "9800000002").block();
+
+        assertThat(result).isEqualTo("transferred");
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(meterRegistry.get("xbank.account.conflicts").tag("operation", "transfer").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("xbank.account.retries").tag("operation", "transfer").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void assertThatAVersionConflictIsRetried() {
+        String result = contentionRetry.transactional("withdraw", () -> attempts.incrementAndGet() == 1
+            ? Mono.error(new OptimisticLockingFailureException("Version changed"))
+            : Mono.just("withdrawn"), "9800000001").block();
+
+        assertThat(result).isEqualTo("withdrawn");
+        assertThat(attempts.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void assertThatRetriesStopAtTheAttemptLimit() {
+        assertThatThrownBy(() -> contentionRetry.transactional("deposit", () -> {
+            attempts.incrementAndGet();
+            return Mono.error(new TransientDataAccessResourceException("Deadlock"));
+        }, "9800000001").block())
+            .isInstanceOf(TransientDataAccessResourceException.class)
+            .hasMessage("Deadlock");
+
+        // The first attempt and 3 retries
+        assertThat(attempts.get()).isEqualTo(4);
+        assertThat(meterRegistry.get("xbank.account.retries").tag("operation", "deposit").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    public void assertThatOnlyTheHottestAccountsArePublished() {
+        contentionRetry.transactional("transfer", () -> attempts.incrementAndGet() < 3
+            ? Mono.error(new TransientDataAccessResourceException("Lock timeout"))
+            : Mono.just("transferred"), "9800000001", "9800000002").block();
+        attempts.set(0);
+        contentionRetry.transactional("withdraw", () -> attempts.incrementAndGet() == 1
+            ? Mono.error(new TransientDataAccessResourceException("Lock timeout"))
+            : Mono.just("withdrawn"), "9800000002").block();
+
+        contentionRetry.publishHotAccounts();
+
+        assertThat(meterRegistry.get("xbank.account.hot-conflicts").tag("account", "9800000002").gauge().value()).isEqualTo(3);
+        assertThat(meterRegistry.find("xbank.account.hot-conflicts").tag("account", "9800000001").gauge()).isNull();
+
+        // Counting starts over with each interval
+        contentionRetry.publishHotAccounts();
+
+        assertThat(meterRegistry.find("xbank.account.hot-conflicts").gauges()).isEmpty();
+    }
+
+    @Test
+    public void assertThatOtherFailuresAreNotRetried() {
+        assertThatThrownBy(() -> contentionRetry.transactional("deposit", () -> {
+            attempts.incrementAndGet();
+            return Mono.error(new IllegalStateException("Account not found"));
+        }, "9800000001").block())
+            .isInstanceOf(IllegalStateException.class);
+
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("xbank.account.conflicts").tag("operation", "deposit").counter().count()).isZero();
+    }
+}
@@ -0,0 +1,145 @@
+package com.xbank.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.ReactiveTransaction;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.GenericReactiveTransaction;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link GroupCommit}.
+ */
+public class GroupCommitUnitTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CountingTransactionManager transactionManager = new CountingTransactionManager();
+
+    private GroupCommit groupCommit;
+
+    @AfterEach
+    public void stop() throws InterruptedException {
+        if (groupCommit != null) {
+            groupCommit.destroy();
+        }
+    }
+
+    @Test
+    public void assertThatOperationsWithinTheWindowShareOneCommit() {
+        groupCommit = start(50, 100);
+
+        List<Integer> results = Flux.range(0, 5)
+            .flatMap(i -> groupCommit.submit("test", () -> Mono.just(i), "9800000001"))
+            .collectList()
+            .block();
+
+        assertThat(results).containsExactlyInAnyOrder(0, 1, 2, 3, 4);
+        assertThat(transactionManager.commits.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("xbank.group.commit.size").summary().totalAmount()).isEqualTo(5);
+    }
+
+    @Test
+    public void assertThatEachOperationKeepsItsOutcomeWhenTheGroupFails() {
+        groupCommit = start(50, 100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        Mono<String> flaky = groupCommit.submit("test", () -> attempts.incrementAndGet() == 1
+            ? Mono.error(new DataAccessResourceFailureException("Connection reset"))
+            : Mono.just("flaky"), "9800000001");
+        Mono<String> rejected = groupCommit.submit("test", () -> Mono.error(new IllegalArgumentException("Insufficient balance")), "9800000002");
+        Mono<String> applied = groupCommit.submit("test", () -> Mono.just("applied"), "9800000003");
+        List<Object> outcomes = Flux.merge(flaky, rejected.onErrorResume(e -> Mono.just(e.getMessage())), applied)
+            .collectList()
+            .block();
+
+        assertThat(outcomes).containsExactlyInAnyOrder("flaky", "Insufficient balance", "applied");
+        assertThat(attempts.get()).isEqualTo(2);
+        // The group was rolled back, then each operation ran in a transaction of its own
+        assertThat(transactionManager.rollbacks.get()).isEqualTo(2);
+        assertThat(transactionManager.commits.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void assertThatOperationsAreRefusedWhileTheQueueIsFull() {
+        groupCommit = start(200, 100, 2);
+
+        Mono<Integer> first = groupCommit.submit("test", () -> Mono.just(1)).cache();
+        Mono<Integer> second = groupCommit.submit("test", () -> Mono.just(2)).cache();
+        first.subscribe();
+        second.subscribe();
+
+        assertThatThrownBy(() -> groupCommit.submit("test", () -> Mono.just(3)).block())
+            .isInstanceOfSatisfying(ResponseStatusException.class,
+                e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+
+        assertThat(first.block()).isEqualTo(1);
+        assertThat(second.block()).isEqualTo(2);
+        assertThat(groupCommit.submit("test", () -> Mono.just(4)).block()).isEqualTo(4);
+    }
+
+    @Test
+    public void assertThatOperationsKeepCompletingWhileACommitOutlastsTheWindow() {
+        transactionManager.commitDelay = Duration.ofMillis(50);
+        groupCommit = start(2, 100);
+
+        List<Integer> results = Flux.range(0, 40)
+            .delayElements(Duration.ofMillis(5))
+            .flatMap(i -> groupCommit.submit("test", () -> Mono.just(i), "9800000001"))
+            .collectList()
+            .block(Duration.ofSeconds(10));
+
+        assertThat(results).hasSize(40);
+        assertThat(transactionManager.commits.get()).isGreaterThan(1);
+        assertThat(groupCommit.submit("test", () -> Mono.just(40)).block(Duration.ofSeconds(10))).isEqualTo(40);
+    }
+
+    private GroupCommit start(long windowMs, int maxBatch) {
+        return start(windowMs, maxBatch, 1000);
+    }
+
+    private GroupCommit start(long windowMs, int maxBatch, int capacity) {
+        ContentionRetry contentionRetry = new ContentionRetry(transactionManager, meterRegistry, 3, 1, 10, 10);
+        return new GroupCommit(transactionManager, contentionRetry, meterRegistry, windowMs, maxBatch, 1, capacity);
+    }
+
+    /**
+     * Transactions that hold nothing, counted as they commit or roll back. Commits take {@link #commitDelay}.
+     */
+    private static final class CountingTransactionManager implements ReactiveTransactionManager {
+
+        private final AtomicInteger commits = new AtomicInteger();
+
+        private final AtomicInteger rollbacks = new AtomicInteger();
+
+        private volatile Duration commitDelay = Duration.ZERO;
+
+        @Override
+        public Mono<ReactiveTransaction> getReactiveTransaction(TransactionDefinition definition) {
+            return Mono.just(new GenericReactiveTransaction(null, true, true, false, false, null));
+        }
+
+        @Override
+        public Mono<Void> commit(ReactiveTransaction transaction) {
+            return Mono.delay(commitDelay).then(Mono.fromRunnable(commits::incrementAndGet));
+        }
+
+        @Override
+        public Mono<Void> rollback(ReactiveTransaction transaction) {
+            return Mono.fromRunnable(rollbacks::incrementAndGet);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.xbank.service;
+
+import com.xbank.Application;
+import com.xbank.config.Constants;
+import com.xbank.dto.WithDrawDTO;
+import com.xbank.repository.IdempotencyKeyRepository;
+import com.xbank.rest.errors.IdempotencyKeyException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for {@link IdempotencyService}.
+ */
+@SpringBootTest(classes = Application.class)
+public class IdempotencyServiceIT {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private AtomicInteger executions;
+
+    @BeforeEach
+    public void init() {
+        idempotencyKeyRepository.deleteAll().block();
+        executions = new AtomicInteger();
+    }
+
+    @Test
+    public void assertThatRetryReplaysTheRecordedResponse() {
+        String key = UUID.randomUUID().toString();
+        WithDrawDTO request = request(BigDecimal.TEN);
+
+        ResponseEntity<String> first = idempotencyService.execute(key, "deposit", request, String.class, this::operation).block();
+        ResponseEntity<String> retry = idempotencyService.execute(key, "deposit", request, String.class, this::operation).block();
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getBody()).isEqualTo(first.getBody());
+        assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(idempotencyKeyRepository.findOneByOwnerAndKey(Constants.SYSTEM_ACCOUNT, key).block().getResponseStatus())
+            .isEqualTo(HttpStatus.CREATED.value());
+    }
+
+    @Test
+    public void assertThatKeyCannotBeReusedForAnotherRequest() {
+        String key = UUID.randomUUID().toString();
+        idempotencyService.execute(key, "deposit", request(BigDecimal.TEN), String.class, this::operation).block();
+
+        assertThatThrownBy(() -> idempotencyService.execute(key, "deposit", request(BigDecimal.ONE), String.class, this::operation).block())
+            .isInstanceOf(IdempotencyKeyException.class);
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void assertThatFailedRequestDoesNotConsumeTheKey() {
+        String key = UUID.randomUUID().toString();
+        WithDrawDTO request = request(BigDecimal.TEN);
+
+        assertThatThrownBy(() -> idempotencyService.execute(key, "deposit", request, String.class,
+            () -> Mono.<ResponseEntity<String>>error(new IllegalStateException("failed"))).block())
+            .isInstanceOf(IllegalStateException.class);
+        idempotencyService.execute(key, "deposit", request, String.class, this::operation).block();
+
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    private Mono<ResponseEntity<String>> operation() {
+        return Mono.fromSupplier(() -> ResponseEntity.status(HttpStatus.CREATED).body("execution-" + executions.incrementAndGet()));
+    }
+
+    private static WithDrawDTO request(BigDecimal amount) {
+        WithDrawDTO request = new WithDrawDTO();
+        request.setAccount("0000000001");
+        request.setBalance(amount);
+        return request;
+    }
+}
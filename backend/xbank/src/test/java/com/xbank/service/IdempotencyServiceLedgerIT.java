@@ -0,0 +1,92 @@
+package com.xbank.service;
+
+import com.xbank.Application;
+import com.xbank.config.Constants;
+import com.xbank.dto.WithDrawDTO;
+import com.xbank.repository.IdempotencyKeyRepository;
+import com.xbank.rest.errors.IdempotencyKeyException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for {@link IdempotencyService} with the ledger engine, where the key is claimed before the
+ * operation runs.
+ */
+@SpringBootTest(classes = Application.class, properties = "application.ledger.enabled=true")
+public class IdempotencyServiceLedgerIT {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private AtomicInteger executions;
+
+    @BeforeEach
+    public void init() {
+        idempotencyKeyRepository.deleteAll().block();
+        executions = new AtomicInteger();
+    }
+
+    @Test
+    public void assertThatTheKeyIsClaimedBeforeTheOperationRuns() {
+        String key = UUID.randomUUID().toString();
+        WithDrawDTO request = request(BigDecimal.TEN);
+
+        AtomicReference<Throwable> racing = new AtomicReference<>();
+
+        // A retry racing the first request must not run the operation a second time
+        ResponseEntity<String> first = idempotencyService.execute(key, "deposit", request, String.class, () ->
+            idempotencyService.execute(key, "deposit", request, String.class, this::operation)
+                .doOnError(racing::set)
+                .onErrorResume(e -> Mono.empty())
+                .then(operation())).block();
+        ResponseEntity<String> retry = idempotencyService.execute(key, "deposit", request, String.class, this::operation).block();
+
+        assertThat(racing.get()).isInstanceOf(IdempotencyKeyException.class).hasMessageContaining("still in progress");
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(retry.getBody()).isEqualTo(first.getBody());
+        assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(idempotencyKeyRepository.findOneByOwnerAndKey(Constants.SYSTEM_ACCOUNT, key).block().getResponseStatus())
+            .isEqualTo(HttpStatus.CREATED.value());
+    }
+
+    @Test
+    public void assertThatFailedRequestReleasesTheKey() {
+        String key = UUID.randomUUID().toString();
+        WithDrawDTO request = request(BigDecimal.TEN);
+
+        assertThatThrownBy(() -> idempotencyService.execute(key, "deposit", request, String.class,
+            () -> Mono.<ResponseEntity<String>>error(new IllegalStateException("failed"))).block())
+            .isInstanceOf(IllegalStateException.class);
+        assertThat(idempotencyKeyRepository.findOneByOwnerAndKey(Constants.SYSTEM_ACCOUNT, key).block()).isNull();
+
+        idempotencyService.execute(key, "deposit", request, String.class, this::operation).block();
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    private Mono<ResponseEntity<String>> operation() {
+        return Mono.fromSupplier(() -> ResponseEntity.status(HttpStatus.CREATED).body("execution-" + executions.incrementAndGet()));
+    }
+
+    private static WithDrawDTO request(BigDecimal amount) {
+        WithDrawDTO request = new WithDrawDTO();
+        request.setAccount("0000000001");
+        request.setBalance(amount);
+        return request;
+    }
+}
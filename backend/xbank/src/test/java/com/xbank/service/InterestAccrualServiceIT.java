@@ -0,0 +1,115 @@
+package com.xbank.service;
+
+import com.xbank.Application;
+import com.xbank.config.Constants;
+import com.xbank.domain.Account;
+import com.xbank.domain.InterestAccrual;
+import com.xbank.dto.AccountDTO;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.PostingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link InterestAccrualService}.
+ */
+@SpringBootTest(classes = Application.class)
+public class InterestAccrualServiceIT {
+
+    private static final String SAVINGS = "9300000001";
+
+    private static final String OTHER_SAVINGS = "9300000002";
+
+    private static final String CURRENT = "9300000003";
+
+    private static final LocalDate DATE = LocalDate.of(2026, 1, 15);
+
+    @Autowired
+    private InterestAccrualService interestAccrualService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PostingRepository postingRepository;
+
+    @Autowired
+    private DatabaseClient db;
+
+    @BeforeEach
+    public void init() {
+        db.execute("DELETE FROM interest_accrual").fetch().rowsUpdated().block();
+        postingRepository.deleteAll().block();
+        accountRepository.deleteAll().block();
+        // 5% a year: 136.986301 a day
+        accountService.createAccount(account(SAVINGS, 1_000_000, 500)).block();
+        accountService.createAccount(account(OTHER_SAVINGS, 1_000_000, 500)).block();
+        accountService.createAccount(account(CURRENT, 1_000_000, 0)).block();
+    }
+
+    @Test
+    public void assertThatWholeUnitsAreCreditedAndTheRestIsCarried() {
+        InterestAccrual run = interestAccrualService.accrue(DATE).block();
+
+        assertThat(run.isFinished()).isTrue();
+        assertThat(run.getAccounts()).isEqualTo(2);
+        assertThat(run.getCredited()).isEqualByComparingTo("272");
+        Account savings = accountRepository.findOneByAccount(SAVINGS).block();
+        assertThat(savings.getBalance()).isEqualByComparingTo("1000136");
+        assertThat(savings.getAccruedInterest()).isEqualTo(986_301);
+        assertThat(accountRepository.findOneByAccount(CURRENT).block().getBalance()).isEqualByComparingTo("1000000");
+        assertThat(postingRepository.sumByAccount(Constants.INTEREST_ACCOUNT).block()).isEqualByComparingTo("-272");
+
+        interestAccrualService.accrue(DATE.plusDays(1)).block();
+
+        savings = accountRepository.findOneByAccount(SAVINGS).block();
+        // 0.986301 carried + 137.004931 on the new balance
+        assertThat(savings.getBalance()).isEqualByComparingTo("1000273");
+        assertThat(savings.getAccruedInterest()).isEqualTo(991_232);
+    }
+
+    @Test
+    public void assertThatADayIsAccruedOnce() {
+        interestAccrualService.accrue(DATE).block();
+        interestAccrualService.accrue(DATE).block();
+
+        assertThat(accountRepository.findOneByAccount(SAVINGS).block().getBalance()).isEqualByComparingTo("1000136");
+    }
+
+    @Test
+    public void assertThatAnInterruptedRunResumesAfterItsCheckpoint() {
+        Long first = accountRepository.findOneByAccount(SAVINGS).block().getId();
+        db.execute("INSERT INTO interest_accrual (accrual_date, last_account_id, accounts, credited, started_at) " +
+            "VALUES (:date, :id, 1, 136, :now)")
+            .bind("date", DATE)
+            .bind("id", first)
+            .bind("now", LocalDateTime.now())
+            .fetch().rowsUpdated().block();
+
+        InterestAccrual run = interestAccrualService.accrue(DATE).block();
+
+        assertThat(run.getAccounts()).isEqualTo(2);
+        assertThat(accountRepository.findOneByAccount(SAVINGS).block().getBalance()).isEqualByComparingTo("1000000");
+        assertThat(accountRepository.findOneByAccount(OTHER_SAVINGS).block().getBalance()).isEqualByComparingTo("1000136");
+    }
+
+    private static AccountDTO account(String account, long balance, int interestRate) {
+        AccountDTO dto = new AccountDTO();
+        dto.setAccount(account);
+        dto.setBalance(BigDecimal.valueOf(balance));
+        dto.setInterestRate(interestRate);
+        return dto;
+    }
+}
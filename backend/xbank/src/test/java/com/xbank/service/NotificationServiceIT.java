@@ -0,0 +1,112 @@
+package com.xbank.service;
+
+import com.xbank.Application;
+import com.xbank.domain.Notification;
+import com.xbank.dto.PageCursor;
+import com.xbank.repository.NotificationRepository;
+import com.xbank.rest.util.CursorPaginationUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the notification inbox of {@link NotificationService}.
+ */
+@SpringBootTest(classes = Application.class)
+public class NotificationServiceIT {
+
+    private static final String USER = "inbox-user";
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UnreadNotificationCounter unreadNotificationCounter;
+
+    @BeforeEach
+    public void init() {
+        notificationRepository.deleteAll().block();
+        List<Notification> notifications = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            notifications.add(notification(USER));
+        }
+        notifications.add(notification("other-user"));
+        notificationRepository.insertAll(notifications).block();
+        // Forget the counts of the previous tests, so that they are rebuilt from the table
+        unreadNotificationCounter.evict(USER);
+        unreadNotificationCounter.evict("other-user");
+    }
+
+    @Test
+    public void assertThatTheInboxIsPagedById() {
+        ResponseEntity<List<Notification>> first = notificationService.getAllNotifications(USER, null, 3).block();
+        String after = first.getHeaders().getFirst(CursorPaginationUtil.NEXT_CURSOR_HEADER);
+        ResponseEntity<List<Notification>> second = notificationService.getAllNotifications(USER, after, 3).block();
+
+        assertThat(first.getBody()).hasSize(3);
+        assertThat(second.getBody()).hasSize(2);
+        assertThat(second.getHeaders().getFirst(CursorPaginationUtil.NEXT_CURSOR_HEADER)).isNull();
+        List<Notification> all = new ArrayList<>(first.getBody());
+        all.addAll(second.getBody());
+        assertThat(all).allMatch(notification -> USER.equals(notification.getAccount()));
+        assertThat(all).isSortedAccordingTo((a, b) -> Long.compare(b.getId(), a.getId()));
+        assertThat(PageCursor.decodeNewestFirst(after).getId()).isEqualTo(first.getBody().get(2).getId());
+    }
+
+    @Test
+    public void assertThatTheUnreadCountFollowsInsertsAndReads() {
+        assertThat(unreadNotificationCounter.get(USER).block()).isEqualTo(5);
+
+        Notification inserted = notification(USER);
+        notificationRepository.insertAll(Arrays.asList(inserted)).block();
+        unreadNotificationCounter.inserted(Arrays.asList(inserted));
+        assertThat(unreadNotificationCounter.get(USER).block()).isEqualTo(6);
+
+        // Served from memory: a row changed behind its back is not seen
+        notificationRepository.readAll(USER).block();
+        assertThat(unreadNotificationCounter.get(USER).block()).isEqualTo(6);
+
+        unreadNotificationCounter.readAll(USER);
+        assertThat(unreadNotificationCounter.get(USER).block()).isZero();
+    }
+
+    @Test
+    public void assertThatReadingANotificationUncountsIt() {
+        Notification notification = notificationService.getAllNotifications(USER, null, 1).block().getBody().get(0);
+        Notification other = notificationRepository.findAll()
+            .filter(candidate -> "other-user".equals(candidate.getAccount()))
+            .blockFirst();
+
+        assertThat(notificationService.countUnread(USER).block()).isEqualTo(5);
+
+        assertThat(notificationService.detailNotification(USER, notification.getId()).block().getRead()).isTrue();
+        assertThat(notificationService.detailNotification(USER, notification.getId()).block().getRead()).isTrue();
+        assertThat(notificationService.detailNotification(USER, other.getId()).block()).isNull();
+
+        assertThat(notificationService.countUnread(USER).block()).isEqualTo(4);
+        assertThat(notificationRepository.countUnread(USER).block()).isEqualTo(4);
+        assertThat(notificationRepository.countUnread("other-user").block()).isEqualTo(1);
+    }
+
+    private static Notification notification(String account) {
+        Notification notification = new Notification();
+        notification.setAccount(account);
+        notification.setTitle("Số dư tài khoản " + account);
+        notification.setRead(false);
+        notification.setCreatedDate(LocalDateTime.now());
+        notification.setLastModifiedDate(LocalDateTime.now());
+        return notification;
+    }
+}
@@ -0,0 +1,136 @@
+package com.xbank.service;
+
+import com.xbank.domain.Notification;
+import com.xbank.repository.NotificationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link NotificationWriter}.
+ */
+public class NotificationWriterUnitTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<List<Notification>> inserted = new CopyOnWriteArrayList<>();
+
+    private final AtomicBoolean databaseDown = new AtomicBoolean();
+
+    private NotificationWriter notificationWriter;
+
+    @AfterEach
+    public void stop() throws InterruptedException {
+        if (notificationWriter != null) {
+            notificationWriter.destroy();
+        }
+    }
+
+    @Test
+    public void assertThatNotificationsAreInsertedInBatches() throws Exception {
+        notificationWriter = start(2);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(notificationWriter.write(notification("user-" + i))).isTrue();
+        }
+
+        await(() -> insertedCount() == 5);
+        assertThat(inserted).allMatch(batch -> batch.size() <= 2);
+        assertThat(meterRegistry.get("xbank.notifications.flush.size").summary().totalAmount()).isEqualTo(5);
+        assertThat(meterRegistry.get("xbank.notifications.flush.latency").timer().count()).isEqualTo(inserted.size());
+    }
+
+    @Test
+    public void assertThatNotificationsAreSpilledWhileTheDatabaseIsDown() throws Exception {
+        databaseDown.set(true);
+        notificationWriter = start(10);
+        Path spillFile = directory.resolve("notifications.spill");
+
+        notificationWriter.write(notification("user-1"));
+        notificationWriter.write(notification("user-2"));
+        await(() -> Files.exists(spillFile));
+
+        assertThat(insertedCount()).isZero();
+        assertThat(Files.readAllLines(spillFile)).hasSize(2);
+
+        databaseDown.set(false);
+        notificationWriter.write(notification("user-3"));
+        await(() -> insertedCount() == 3);
+
+        assertThat(Files.exists(spillFile)).isFalse();
+        List<String> accounts = new ArrayList<>();
+        inserted.forEach(batch -> batch.forEach(notification -> accounts.add(notification.getAccount())));
+        assertThat(accounts).containsExactly("user-1", "user-2", "user-3");
+        assertThat(inserted.get(0).get(0).getTitle()).isEqualTo("Số dư tài khoản user-1");
+    }
+
+    @Test
+    public void assertThatSpilledNotificationsAreDecoded() {
+        Notification notification = notification("user-1");
+
+        Notification decoded = NotificationWriter.decode(NotificationWriter.encode(notification));
+
+        assertThat(decoded.getAccount()).isEqualTo("user-1");
+        assertThat(decoded.getTitle()).isEqualTo(notification.getTitle());
+        assertThat(decoded.getRead()).isFalse();
+        assertThat(decoded.getCreatedDate()).isEqualTo(notification.getCreatedDate());
+        assertThat(decoded.getLastModifiedDate()).isEqualTo(notification.getLastModifiedDate());
+    }
+
+    private NotificationWriter start(int batchSize) {
+        NotificationRepository notificationRepository = mock(NotificationRepository.class);
+        when(notificationRepository.insertAll(anyList())).thenAnswer(invocation -> Mono.defer(() -> {
+            if (databaseDown.get()) {
+                return Mono.error(new IllegalStateException("Connection refused"));
+            }
+            inserted.add(new ArrayList<>(invocation.<List<Notification>>getArgument(0)));
+            return Mono.empty();
+        }));
+        UnreadNotificationCounter unreadNotificationCounter = new UnreadNotificationCounter(notificationRepository, 60_000);
+        NotificationWriter writer = new NotificationWriter(notificationRepository, unreadNotificationCounter, meterRegistry, batchSize, 20, 1, 100,
+            directory.resolve("notifications.spill").toString());
+        writer.afterPropertiesSet();
+        return writer;
+    }
+
+    private int insertedCount() {
+        return inserted.stream().mapToInt(List::size).sum();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("Timed out").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static Notification notification(String account) {
+        Notification notification = new Notification();
+        notification.setAccount(account);
+        notification.setTitle("Số dư tài khoản " + account);
+        notification.setRead(false);
+        notification.setCreatedDate(LocalDateTime.of(2026, 10, 18, 12, 0));
+        notification.setLastModifiedDate(LocalDateTime.of(2026, 10, 18, 12, 0));
+        return notification;
+    }
+}
@@ -0,0 +1,80 @@
+package com.xbank.service;
+
+import com.xbank.Application;
+import com.xbank.domain.ReconciliationDiscrepancy;
+import com.xbank.domain.ReconciliationRun;
+import com.xbank.dto.AccountTranferDTO;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.PostingRepository;
+import com.xbank.repository.ReconciliationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static com.xbank.service.AccountFixtures.openPair;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link ReconciliationService}.
+ */
+@SpringBootTest(classes = Application.class)
+public class ReconciliationServiceIT {
+
+    private static final String FROM = "9400000001";
+
+    private static final String TO = "9400000002";
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @Autowired
+    private ReconciliationRepository reconciliationRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PostingRepository postingRepository;
+
+    @BeforeEach
+    public void init() {
+        postingRepository.deleteAll().block();
+        accountRepository.deleteAll().block();
+        openPair(accountService, FROM, TO);
+        AccountTranferDTO transfer = new AccountTranferDTO();
+        transfer.setAccount(FROM);
+        transfer.setToAccount(TO);
+        transfer.setBalance(BigDecimal.valueOf(40));
+        accountService.transfer(transfer).block();
+    }
+
+    @Test
+    public void assertThatBalancesMatchingTheirPostingsAreReconciled() {
+        ReconciliationRun run = reconciliationService.reconcile().block();
+
+        assertThat(run.getFinishedAt()).isNotNull();
+        assertThat(run.getAccounts()).isEqualTo(2);
+        assertThat(run.getDiscrepancies()).isZero();
+    }
+
+    @Test
+    public void assertThatABalanceChangedOutsideOfTheLedgerIsReported() {
+        accountRepository.addBalance(TO, BigDecimal.valueOf(5)).block();
+
+        ReconciliationRun run = reconciliationService.reconcile().block();
+
+        assertThat(run.getDiscrepancies()).isEqualTo(1);
+        List<ReconciliationDiscrepancy> discrepancies = reconciliationRepository.findDiscrepancies(run.getId()).collectList().block();
+        assertThat(discrepancies).hasSize(1);
+        assertThat(discrepancies.get(0).getAccount()).isEqualTo(TO);
+        assertThat(discrepancies.get(0).getBalance()).isEqualByComparingTo("45");
+        assertThat(discrepancies.get(0).getDifference()).isEqualByComparingTo("5");
+    }
+}
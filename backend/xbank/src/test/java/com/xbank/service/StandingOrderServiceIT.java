@@ -0,0 +1,112 @@
+package com.xbank.service;
+
+import com.xbank.Application;
+import com.xbank.config.Constants;
+import com.xbank.domain.StandingOrder;
+import com.xbank.domain.StandingOrderRun;
+import com.xbank.dto.StandingOrderDTO;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.StandingOrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static com.xbank.service.AccountFixtures.openPair;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link StandingOrderService}.
+ */
+@SpringBootTest(classes = Application.class)
+public class StandingOrderServiceIT {
+
+    private static final String FROM = "9200000001";
+
+    private static final String TO = "9200000002";
+
+    @Autowired
+    private StandingOrderService standingOrderService;
+
+    @Autowired
+    private StandingOrderRepository standingOrderRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private DatabaseClient db;
+
+    @BeforeEach
+    public void init() {
+        db.execute("DELETE FROM standing_order_run").fetch().rowsUpdated().block();
+        standingOrderRepository.deleteAll().block();
+        accountRepository.deleteAll().block();
+        openPair(accountService, FROM, TO);
+    }
+
+    @Test
+    public void assertThatEachPeriodIsExecutedOnce() {
+        LocalDate today = LocalDate.now();
+        StandingOrder monthly = standingOrderService.create(Constants.SYSTEM_ACCOUNT, order(StandingOrder.Frequency.MONTHLY, 10)).block();
+        standingOrderService.create(Constants.SYSTEM_ACCOUNT, order(StandingOrder.Frequency.DAILY, 5)).block();
+
+        assertThat(standingOrderService.executeDue(today).block()).isEqualTo(2);
+        assertThat(standingOrderService.executeDue(today).block()).isZero();
+
+        assertThat(accountRepository.findOneByAccount(TO).block().getBalance()).isEqualByComparingTo("15");
+        StandingOrder advanced = standingOrderRepository.findById(monthly.getId()).block();
+        assertThat(advanced.getNextRun()).isEqualTo(today.plusMonths(1));
+        assertThat(advanced.getRuns()).isEqualTo(1);
+
+        assertThat(standingOrderService.executeDue(today.plusDays(1)).block()).isEqualTo(1);
+        assertThat(accountRepository.findOneByAccount(TO).block().getBalance()).isEqualByComparingTo("20");
+    }
+
+    @Test
+    public void assertThatAnExecutedPeriodIsSkipped() {
+        LocalDate today = LocalDate.now();
+        StandingOrder executed = standingOrderService.create(Constants.SYSTEM_ACCOUNT, order(StandingOrder.Frequency.WEEKLY, 10)).block();
+        standingOrderService.create(Constants.SYSTEM_ACCOUNT, order(StandingOrder.Frequency.WEEKLY, 20)).block();
+        // As if another node booked it but this one read the order before it was advanced
+        standingOrderRepository.insertRuns(Collections.singletonList(
+            new StandingOrderRun(executed.getId(), today, null, LocalDateTime.now()))).block();
+
+        assertThat(standingOrderService.executeDue(today).block()).isEqualTo(1);
+
+        assertThat(accountRepository.findOneByAccount(TO).block().getBalance()).isEqualByComparingTo("20");
+        assertThat(standingOrderRepository.countRuns(executed.getId()).block()).isEqualTo(1);
+    }
+
+    @Test
+    public void assertThatARejectedPeriodIsRecordedAndTheOrderMovesOn() {
+        LocalDate today = LocalDate.now();
+        StandingOrderDTO dto = order(StandingOrder.Frequency.DAILY, 500);
+        dto.setEndDate(today);
+        StandingOrder order = standingOrderService.create(Constants.SYSTEM_ACCOUNT, dto).block();
+
+        assertThat(standingOrderService.executeDue(today).block()).isZero();
+
+        assertThat(accountRepository.findOneByAccount(FROM).block().getBalance()).isEqualByComparingTo("100");
+        assertThat(standingOrderRepository.countRuns(order.getId()).block()).isEqualTo(1);
+        assertThat(standingOrderRepository.findById(order.getId()).block().isActive()).isFalse();
+    }
+
+    private static StandingOrderDTO order(StandingOrder.Frequency frequency, long amount) {
+        StandingOrderDTO order = new StandingOrderDTO();
+        order.setAccount(FROM);
+        order.setToAccount(TO);
+        order.setAmount(BigDecimal.valueOf(amount));
+        order.setFrequency(frequency);
+        return order;
+    }
+}
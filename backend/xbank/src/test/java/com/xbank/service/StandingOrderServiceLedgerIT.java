@@ -0,0 +1,87 @@
+package com.xbank.service;
+
+import com.xbank.Application;
+import com.xbank.config.Constants;
+import com.xbank.domain.StandingOrder;
+import com.xbank.domain.StandingOrderRun;
+import com.xbank.dto.StandingOrderDTO;
+import com.xbank.repository.StandingOrderRepository;
+import com.xbank.service.ledger.LedgerEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static com.xbank.service.AccountFixtures.openPair;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link StandingOrderService} with the ledger engine, which moves money outside of the
+ * transaction recording the runs.
+ */
+@SpringBootTest(classes = Application.class, properties = "application.ledger.enabled=true")
+public class StandingOrderServiceLedgerIT {
+
+    private static final String FROM = "9210000001";
+
+    private static final String TO = "9210000002";
+
+    @Autowired
+    private StandingOrderService standingOrderService;
+
+    @Autowired
+    private StandingOrderRepository standingOrderRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private LedgerEngine ledgerEngine;
+
+    @Autowired
+    private DatabaseClient db;
+
+    @BeforeEach
+    public void init() {
+        db.execute("DELETE FROM standing_order_run").fetch().rowsUpdated().block();
+        standingOrderRepository.deleteAll().block();
+        db.execute("DELETE FROM account WHERE account IN ('" + FROM + "', '" + TO + "')").fetch().rowsUpdated().block();
+        openPair(accountService, FROM, TO);
+    }
+
+    @Test
+    public void assertThatAnExecutedPeriodIsNotPaidAgain() {
+        LocalDate today = LocalDate.now();
+        StandingOrder executed = standingOrderService.create(Constants.SYSTEM_ACCOUNT, order(10)).block();
+        StandingOrder due = standingOrderService.create(Constants.SYSTEM_ACCOUNT, order(20)).block();
+        // As if another node booked it but this one read the order before it was advanced
+        standingOrderRepository.insertRuns(Collections.singletonList(
+            new StandingOrderRun(executed.getId(), today, null, LocalDateTime.now()))).block();
+
+        assertThat(standingOrderService.executeDue(today).block()).isEqualTo(1);
+
+        assertThat(ledgerEngine.getAccount(FROM).block().getBalance()).isEqualByComparingTo("80");
+        assertThat(ledgerEngine.getAccount(TO).block().getBalance()).isEqualByComparingTo("20");
+        assertThat(standingOrderRepository.countRuns(executed.getId()).block()).isEqualTo(1);
+        assertThat(db.execute("SELECT result FROM standing_order_run WHERE order_id = :orderId")
+            .bind("orderId", due.getId())
+            .map((row, metadata) -> row.get(0, Integer.class))
+            .one().block()).isEqualTo(1);
+        assertThat(standingOrderRepository.findById(due.getId()).block().getNextRun()).isEqualTo(today.plusWeeks(1));
+    }
+
+    private static StandingOrderDTO order(long amount) {
+        StandingOrderDTO order = new StandingOrderDTO();
+        order.setAccount(FROM);
+        order.setToAccount(TO);
+        order.setAmount(BigDecimal.valueOf(amount));
+        order.setFrequency(StandingOrder.Frequency.WEEKLY);
+        return order;
+    }
+}
@@ -0,0 +1,81 @@
+package com.xbank.service;
+
+import com.xbank.Application;
+import com.xbank.config.Constants;
+import com.xbank.dto.AccountTranferDTO;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.PostingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static com.xbank.service.AccountFixtures.openPair;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for {@link StatementService}.
+ */
+@SpringBootTest(classes = Application.class)
+public class StatementServiceIT {
+
+    private static final String FROM = "9500000001";
+
+    private static final String TO = "9500000002";
+
+    @Autowired
+    private StatementService statementService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PostingRepository postingRepository;
+
+    @BeforeEach
+    public void init() {
+        postingRepository.deleteAll().block();
+        accountRepository.deleteAll().block();
+        openPair(accountService, FROM, TO);
+    }
+
+    @Test
+    public void assertThatTheStatementHasARunningBalance() {
+        LocalDateTime start = LocalDateTime.now().minusDays(1);
+        accountService.transfer(transfer(BigDecimal.valueOf(30))).block();
+        accountService.transfer(transfer(BigDecimal.valueOf(20))).block();
+
+        String csv = String.join("", statementService.csv(Constants.SYSTEM_ACCOUNT, FROM, start, LocalDateTime.now().plusSeconds(1))
+            .flatMapMany(lines -> lines)
+            .collectList()
+            .block());
+
+        String[] lines = csv.split("\n");
+        assertThat(lines[0] + "\n").isEqualTo(StatementService.HEADER);
+        assertThat(lines).hasSize(4);
+        assertThat(lines[1]).endsWith("," + Constants.EXTERNAL_ACCOUNT + ",100,100");
+        assertThat(lines[2]).endsWith("," + TO + ",-30,70");
+        assertThat(lines[3]).endsWith("," + TO + ",-20,50");
+    }
+
+    @Test
+    public void assertThatOnlyTheOwnerGetsAStatement() {
+        assertThatThrownBy(() -> statementService.csv("someone-else", FROM, LocalDateTime.now().minusDays(1), LocalDateTime.now()).block())
+            .hasMessageContaining("Account not found");
+    }
+
+    private static AccountTranferDTO transfer(BigDecimal amount) {
+        AccountTranferDTO transfer = new AccountTranferDTO();
+        transfer.setAccount(FROM);
+        transfer.setToAccount(TO);
+        transfer.setBalance(amount);
+        return transfer;
+    }
+}
@@ -0,0 +1,85 @@
+package com.xbank.service;
+
+import com.xbank.Application;
+import com.xbank.config.Constants;
+import com.xbank.domain.Account;
+import com.xbank.dto.WithDrawDTO;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.AccountStripeRepository;
+import com.xbank.rest.errors.WithdrawException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for {@link StripedBalances}.
+ */
+@SpringBootTest(classes = Application.class)
+public class StripedBalancesIT {
+
+    private static final String MERCHANT = "9000000001";
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private StripedBalances stripedBalances;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private AccountStripeRepository accountStripeRepository;
+
+    @BeforeEach
+    public void init() {
+        accountStripeRepository.deleteAll().block();
+        accountRepository.deleteAll().block();
+        Account account = new Account();
+        account.setAccount(MERCHANT);
+        account.setOwner(Constants.SYSTEM_ACCOUNT);
+        account.setCreatedBy(Constants.SYSTEM_ACCOUNT);
+        account.setCurrency("VND");
+        account.setBalance(BigDecimal.valueOf(100));
+        account.setStripes(4);
+        accountRepository.save(account).block();
+        stripedBalances.fold();
+    }
+
+    @Test
+    public void assertThatCreditsLandOnStripesAndAreFolded() {
+        Flux.range(0, 20).concatMap(i -> accountService.deposit(deposit(MERCHANT, BigDecimal.TEN))).blockLast();
+
+        assertThat(accountRepository.findOneByAccount(MERCHANT).block().getBalance()).isEqualByComparingTo("100");
+        assertThat(accountService.getAccountDetail(Constants.SYSTEM_ACCOUNT, MERCHANT).block().getBalance()).isEqualByComparingTo("300");
+
+        stripedBalances.fold();
+
+        assertThat(accountRepository.findOneByAccount(MERCHANT).block().getBalance()).isEqualByComparingTo("300");
+        assertThat(accountService.getAccountDetail(Constants.SYSTEM_ACCOUNT, MERCHANT).block().getBalance()).isEqualByComparingTo("300");
+    }
+
+    @Test
+    public void assertThatDebitsAreCheckedAgainstBalanceAndStripes() {
+        accountService.deposit(deposit(MERCHANT, BigDecimal.valueOf(50))).block();
+
+        assertThat(accountService.withDraw(deposit(MERCHANT, BigDecimal.valueOf(150))).block().getBody().getBalance())
+            .isEqualByComparingTo("0");
+        assertThatThrownBy(() -> accountService.withDraw(deposit(MERCHANT, BigDecimal.ONE)).block())
+            .isInstanceOf(WithdrawException.class);
+    }
+
+    private static WithDrawDTO deposit(String account, BigDecimal amount) {
+        WithDrawDTO deposit = new WithDrawDTO();
+        deposit.setAccount(account);
+        deposit.setBalance(amount);
+        return deposit;
+    }
+}
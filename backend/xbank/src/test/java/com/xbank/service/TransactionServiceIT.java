@@ -0,0 +1,120 @@
+package com.xbank.service;
+
+import com.xbank.Application;
+import com.xbank.config.Constants;
+import com.xbank.domain.Account;
+import com.xbank.domain.Transaction;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.TransactionRepository;
+import com.xbank.rest.errors.BadRequestAlertException;
+import com.xbank.rest.util.CursorPaginationUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for the cursor pagination of {@link TransactionService}.
+ */
+@SpringBootTest(classes = Application.class)
+public class TransactionServiceIT {
+
+    private static final String ACCOUNT = "9600000001";
+
+    private static final String OTHER = "9600000002";
+
+    private static final LocalDateTime AT = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @BeforeEach
+    public void init() {
+        transactionRepository.deleteAll().block();
+        accountRepository.deleteAll().block();
+        Account account = new Account();
+        account.setAccount(ACCOUNT);
+        account.setOwner(Constants.SYSTEM_ACCOUNT);
+        account.setCreatedBy(Constants.SYSTEM_ACCOUNT);
+        account.setCurrency("VND");
+        account.setBalance(BigDecimal.ZERO);
+        accountRepository.save(account).block();
+        List<Transaction> transactions = new ArrayList<>();
+        // Two transactions share each timestamp, so pages have to break ties on the id
+        for (int i = 0; i < 5; i++) {
+            transactions.add(transaction(Constants.SYSTEM_ACCOUNT, ACCOUNT, AT.plusMinutes(i / 2), i));
+        }
+        transactions.add(transaction("someone-else", OTHER, AT, 99));
+        transactionRepository.insertAll(transactions).block();
+    }
+
+    @Test
+    public void assertThatPagesWalkTheAccountNewestFirst() {
+        List<BigDecimal> amounts = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        do {
+            ResponseEntity<List<Transaction>> page = transactionService
+                .getAllTransactionsByAccount(Constants.SYSTEM_ACCOUNT, ACCOUNT, AT.minusDays(1), after, 2).block();
+            page.getBody().forEach(transaction -> amounts.add(transaction.getAmount()));
+            after = page.getHeaders().getFirst(CursorPaginationUtil.NEXT_CURSOR_HEADER);
+            pages++;
+        } while (after != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(amounts.stream().map(BigDecimal::intValue).collect(Collectors.toList())).containsExactly(4, 3, 2, 1, 0);
+    }
+
+    @Test
+    public void assertThatPagesStopAtTheStartDate() {
+        List<Transaction> page = transactionService
+            .getAllTransactionsByAccount(Constants.SYSTEM_ACCOUNT, ACCOUNT, AT.plusMinutes(1), null, 100).block().getBody();
+
+        assertThat(page.stream().map(transaction -> transaction.getAmount().intValue()).collect(Collectors.toList()))
+            .containsExactly(4, 3, 2);
+    }
+
+    @Test
+    public void assertThatPagesAreScopedToTheOwner() {
+        List<Transaction> page = transactionService.getAllTransactionsByUser(Constants.SYSTEM_ACCOUNT, AT.minusDays(1), null, 100).block().getBody();
+
+        assertThat(page).hasSize(5).allMatch(transaction -> ACCOUNT.equals(transaction.getAccount()));
+        assertThatThrownBy(() -> transactionService.getAllTransactionsByAccount(Constants.SYSTEM_ACCOUNT, OTHER, null, null, null).block())
+            .hasMessageContaining("Account not found");
+    }
+
+    @Test
+    public void assertThatAForgedCursorIsRejected() {
+        assertThatThrownBy(() -> transactionService.getAllTransactionsByUser(Constants.SYSTEM_ACCOUNT, null, "not a cursor", null))
+            .isInstanceOf(BadRequestAlertException.class);
+    }
+
+    private static Transaction transaction(String owner, String account, LocalDateTime at, int amount) {
+        Transaction transaction = new Transaction();
+        transaction.setOwner(owner);
+        transaction.setAction(3);
+        transaction.setAccount(account);
+        transaction.setAmount(BigDecimal.valueOf(amount));
+        transaction.setCurrency("VND");
+        transaction.setTransactAt(at);
+        transaction.setResult(1);
+        transaction.setCreatedBy(owner);
+        return transaction;
+    }
+}
@@ -0,0 +1,97 @@
+package com.xbank.service.archive;
+
+import com.xbank.domain.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link ArchiveSegment}.
+ */
+public class ArchiveSegmentUnitTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    private static final LocalDateTime NEWEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void assertThatRowsOfAnAccountAreReadBack() throws Exception {
+        ArchiveSegment segment = ArchiveSegment.write(directory.resolve("a" + ArchiveSegment.SUFFIX), transactions(100), 8);
+        ArchiveSegment reopened = ArchiveSegment.open(segment.getPath());
+        segment.close();
+
+        List<Transaction> found = reopened.findByAccount("0000000003", START, NEWEST, Long.MAX_VALUE, 100);
+        reopened.close();
+
+        assertThat(reopened.getRows()).isEqualTo(100);
+        assertThat(found).extracting(Transaction::getId).containsExactlyInAnyOrder(4L, 14L, 24L, 34L, 44L, 54L, 64L, 74L, 84L, 94L);
+        Transaction first = found.stream().filter(t -> t.getId() == 4L).findFirst().get();
+        assertThat(first.getOwner()).isEqualTo("user-0");
+        assertThat(first.getAmount()).isEqualByComparingTo("4");
+        assertThat(first.getTransactAt()).isEqualTo(START.plusHours(4));
+        assertThat(first.getToAccount()).isNull();
+    }
+
+    @Test
+    public void assertThatLookupsHonourTheStartDateAndTheCursor() throws Exception {
+        ArchiveSegment segment = ArchiveSegment.write(directory.resolve("b" + ArchiveSegment.SUFFIX), transactions(100), 8);
+
+        List<Transaction> found = segment.findByOwner("user-1", START.plusHours(20), START.plusHours(60), 60, 100);
+        segment.close();
+
+        assertThat(found).extracting(Transaction::getId).containsExactlyInAnyOrder(21L, 23L, 25L, 27L, 29L, 31L, 33L, 35L,
+                37L, 39L, 41L, 43L, 45L, 47L, 49L, 51L, 53L, 55L, 57L, 59L);
+    }
+
+    @Test
+    public void assertThatLookupsStopAtTheLimit() throws Exception {
+        ArchiveSegment segment = ArchiveSegment.write(directory.resolve("d" + ArchiveSegment.SUFFIX), transactions(100), 2);
+
+        List<Transaction> byAccount = segment.findByAccount("0000000003", START, START.plusHours(84), 84, 3);
+        List<Transaction> byOwner = segment.findByOwner("user-0", START, NEWEST, Long.MAX_VALUE, 4);
+        segment.close();
+
+        assertThat(byAccount).extracting(Transaction::getId).containsExactly(74L, 64L, 54L);
+        assertThat(byOwner).extracting(Transaction::getId).containsExactly(100L, 98L, 96L, 94L);
+    }
+
+    @Test
+    public void assertThatRowsAreFoundById() throws Exception {
+        ArchiveSegment segment = ArchiveSegment.write(directory.resolve("c" + ArchiveSegment.SUFFIX), transactions(100), 8);
+
+        Transaction found = segment.findById(57);
+        Transaction missing = segment.findById(101);
+        segment.close();
+
+        assertThat(found.getAccount()).isEqualTo("0000000006");
+        assertThat(missing).isNull();
+    }
+
+    private static List<Transaction> transactions(int count) {
+        List<Transaction> transactions = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            Transaction transaction = new Transaction();
+            transaction.setId(id);
+            transaction.setOwner("user-" + (id % 2));
+            transaction.setAction(3);
+            transaction.setAccount(String.format("%010d", (id - 1) % 10));
+            transaction.setAmount(BigDecimal.valueOf(id));
+            transaction.setCurrency("VND");
+            transaction.setTransactAt(START.plusHours(id));
+            transaction.setResult(1);
+            transaction.setCreatedBy("user-" + (id % 2));
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,95 @@
+package com.xbank.service.archive;
+
+import com.xbank.Application;
+import com.xbank.config.Constants;
+import com.xbank.domain.Account;
+import com.xbank.domain.Transaction;
+import com.xbank.repository.AccountRepository;
+import com.xbank.repository.TransactionArchiveSegmentRepository;
+import com.xbank.repository.TransactionRepository;
+import com.xbank.service.TransactionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the {@link TransactionArchiver} and the read through of {@link TransactionService}.
+ */
+@SpringBootTest(classes = Application.class, properties = {
+    "application.archive.enabled=true",
+    "application.archive.directory=target/test-archive",
+    "application.archive.segment-rows=2",
+    "application.archive.row-group-size=2"})
+public class TransactionArchiverIT {
+
+    private static final String ACCOUNT = "9500000001";
+
+    private static final LocalDateTime AT = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    @Autowired
+    private TransactionArchiver transactionArchiver;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionArchiveSegmentRepository segmentRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Test
+    public void assertThatArchivedTransactionsAreStillListed() {
+        transactionRepository.deleteAll().block();
+        accountRepository.deleteAll().block();
+        Account account = new Account();
+        account.setAccount(ACCOUNT);
+        account.setOwner(Constants.SYSTEM_ACCOUNT);
+        account.setCreatedBy(Constants.SYSTEM_ACCOUNT);
+        account.setCurrency("VND");
+        account.setBalance(BigDecimal.ZERO);
+        accountRepository.save(account).block();
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            transactions.add(transaction(AT.plusDays(i), i));
+        }
+        transactionRepository.insertAll(transactions).block();
+        long oldest = transactionRepository.findAll().filter(t -> t.getAmount().signum() == 0).blockFirst().getId();
+        long segments = segmentRepository.count().block();
+
+        Long archived = transactionArchiver.archive(AT.plusDays(3)).block();
+
+        assertThat(archived).isEqualTo(3);
+        assertThat(segmentRepository.count().block()).isEqualTo(segments + 2);
+        assertThat(transactionRepository.findAll().map(t -> t.getAmount().intValue()).collectList().block())
+            .containsExactlyInAnyOrder(3, 4);
+        List<Transaction> page = transactionService
+            .getAllTransactionsByAccount(Constants.SYSTEM_ACCOUNT, ACCOUNT, AT.minusDays(1), null, 4).block().getBody();
+        assertThat(page.stream().map(t -> t.getAmount().intValue()).collect(Collectors.toList())).containsExactly(4, 3, 2, 1);
+        assertThat(transactionService.detailTransaction(oldest).block().getAmount()).isEqualByComparingTo("0");
+    }
+
+    private static Transaction transaction(LocalDateTime at, int amount) {
+        Transaction transaction = new Transaction();
+        transaction.setOwner(Constants.SYSTEM_ACCOUNT);
+        transaction.setAction(3);
+        transaction.setAccount(ACCOUNT);
+        transaction.setAmount(BigDecimal.valueOf(amount));
+        transaction.setCurrency("VND");
+        transaction.setTransactAt(at);
+        transaction.setResult(1);
+        transaction.setCreatedBy(Constants.SYSTEM_ACCOUNT);
+        return transaction;
+    }
+}
@@ -0,0 +1,225 @@
+package com.xbank.service.ledger;
+
+import com.xbank.domain.Account;
+import com.xbank.domain.Transaction;
+import com.xbank.rest.errors.TranferException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link LedgerEngine}.
+ */
+public class LedgerEngineUnitTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final TestLedgerStore store = new TestLedgerStore();
+
+    private LedgerEngine ledgerEngine;
+
+    @AfterEach
+    public void stop() throws InterruptedException {
+        store.gate.onComplete();
+        if (ledgerEngine != null) {
+            ledgerEngine.destroy();
+        }
+    }
+
+    @Test
+    public void assertThatATransferAcrossShardsIsPersisted() throws Exception {
+        ledgerEngine = new LedgerEngine(store, meterRegistry, 2, 500, 20, 100, 3);
+        String from = "9800000001";
+        String to = otherShard(from, 2);
+        store.accounts.put(from, LedgerShardUnitTest.account(from, 100));
+        store.accounts.put(to, LedgerShardUnitTest.account(to, 0));
+        Transaction transaction = transaction(from, to, 30);
+
+        Account debited = ledgerEngine.transfer(transaction, TranferException::new).block();
+
+        assertThat(debited.getBalance()).isEqualByComparingTo("70");
+        assertThat(ledgerEngine.getAccount(to).block().getBalance()).isEqualByComparingTo("30");
+        await(() -> store.persistedCount() == 1);
+        LedgerEntry entry = store.persisted.get(0).get(0);
+        assertThat(entry.getTransaction()).isSameAs(transaction);
+        assertThat(entry.getDeltas()).containsOnlyKeys(from, to);
+        assertThat(entry.getDeltas().get(from)).isEqualByComparingTo("-30");
+        assertThat(entry.getDeltas().get(to)).isEqualByComparingTo("30");
+    }
+
+    @Test
+    public void assertThatARejectedTransferIsNotPersisted() throws Exception {
+        ledgerEngine = new LedgerEngine(store, meterRegistry, 2, 500, 20, 100, 3);
+        store.accounts.put("9800000001", LedgerShardUnitTest.account("9800000001", 10));
+        store.accounts.put("9800000002", LedgerShardUnitTest.account("9800000002", 0));
+
+        assertThatThrownBy(() -> ledgerEngine.transfer(transaction("9800000001", "9800000002", 11), TranferException::new).block())
+            .isInstanceOf(TranferException.class);
+        ledgerEngine.deposit(transaction("9800000002", null, 5)).block();
+
+        await(() -> store.persistedCount() == 1);
+        assertThat(store.persisted.get(0).get(0).getDeltas()).containsOnlyKeys("9800000002");
+        assertThat(ledgerEngine.getAccount("9800000001").block().getBalance()).isEqualByComparingTo("10");
+    }
+
+    @Test
+    public void assertThatMovementsAreRefusedWhileTheWriteBehindIsFull() throws Exception {
+        store.gate = MonoProcessor.create();
+        ledgerEngine = new LedgerEngine(store, meterRegistry, 1, 500, 20, 2, 3);
+        store.accounts.put("9800000001", LedgerShardUnitTest.account("9800000001", 0));
+
+        ledgerEngine.deposit(transaction("9800000001", null, 1)).block();
+        ledgerEngine.deposit(transaction("9800000001", null, 1)).block();
+
+        assertThatThrownBy(() -> ledgerEngine.deposit(transaction("9800000001", null, 1)).block())
+            .isInstanceOfSatisfying(ResponseStatusException.class,
+                e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThat(ledgerEngine.getAccount("9800000001").block().getBalance()).isEqualByComparingTo("2");
+
+        store.gate.onComplete();
+        await(() -> ledgerEngine.deposit(transaction("9800000001", null, 1))
+            .onErrorResume(ResponseStatusException.class, e -> Mono.empty())
+            .blockOptional()
+            .isPresent());
+        assertThat(store.persistedCount()).isGreaterThanOrEqualTo(2);
+        assertThat(ledgerEngine.getAccount("9800000001").block().getBalance()).isEqualByComparingTo("3");
+    }
+
+    @Test
+    public void assertThatEntriesKeepQueueingWhileTheStoreStalls() throws Exception {
+        store.gate = MonoProcessor.create();
+        ledgerEngine = new LedgerEngine(store, meterRegistry, 1, 500, 5, 1000, 3);
+        store.accounts.put("9800000001", LedgerShardUnitTest.account("9800000001", 0));
+
+        // Far more flush intervals than the persisting stage prefetches
+        for (int i = 0; i < 60; i++) {
+            ledgerEngine.deposit(transaction("9800000001", null, 1)).block();
+            Thread.sleep(10);
+        }
+        store.gate.onComplete();
+
+        await(() -> store.persistedCount() == 60);
+        ledgerEngine.deposit(transaction("9800000001", null, 1)).block();
+        await(() -> store.persistedCount() == 61);
+        assertThat(ledgerEngine.getAccount("9800000001").block().getBalance()).isEqualByComparingTo("61");
+    }
+
+    @Test
+    public void assertThatTransientFailuresAreRetried() throws Exception {
+        store.transientFailures.set(2);
+        ledgerEngine = new LedgerEngine(store, meterRegistry, 1, 500, 20, 100, 3);
+        store.accounts.put("9800000001", LedgerShardUnitTest.account("9800000001", 0));
+
+        ledgerEngine.deposit(transaction("9800000001", null, 1)).block();
+
+        await(() -> store.persistedCount() == 1);
+        assertThat(meterRegistry.get("xbank.ledger.dead-letters").counter().count()).isZero();
+    }
+
+    @Test
+    public void assertThatAFailingEntryIsDeadLettered() throws Exception {
+        ledgerEngine = new LedgerEngine(store, meterRegistry, 1, 500, 200, 100, 3);
+        store.accounts.put("9800000001", LedgerShardUnitTest.account("9800000001", 0));
+        store.accounts.put("9800000002", LedgerShardUnitTest.account("9800000002", 0));
+        store.rejected = "9800000002";
+
+        ledgerEngine.deposit(transaction("9800000001", null, 1)).block();
+        ledgerEngine.deposit(transaction("9800000002", null, 1)).block();
+        ledgerEngine.deposit(transaction("9800000001", null, 1)).block();
+
+        await(() -> meterRegistry.get("xbank.ledger.dead-letters").counter().count() == 1);
+        await(() -> store.persistedCount() == 2);
+        assertThat(store.persisted).allMatch(batch -> batch.stream().noneMatch(entry -> entry.getDeltas().containsKey("9800000002")));
+    }
+
+    private static String otherShard(String account, int shards) {
+        for (long number = Long.parseLong(account) + 1; ; number++) {
+            String candidate = Long.toString(number);
+            if (Math.floorMod(candidate.hashCode(), shards) != Math.floorMod(account.hashCode(), shards)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("Timed out").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static Transaction transaction(String account, String toAccount, long amount) {
+        Transaction transaction = new Transaction();
+        transaction.setOwner("user-1");
+        transaction.setAction(toAccount == null ? 3 : 1);
+        transaction.setAccount(account);
+        transaction.setToAccount(toAccount);
+        transaction.setAmount(BigDecimal.valueOf(amount));
+        transaction.setCurrency("VND");
+        transaction.setTransactAt(LocalDateTime.of(2026, 10, 18, 12, 0));
+        return transaction;
+    }
+
+    /**
+     * Accounts kept in a map; batches are recorded once {@link #gate} completes.
+     */
+    private static final class TestLedgerStore implements LedgerStore {
+
+        private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+        private final List<List<LedgerEntry>> persisted = new CopyOnWriteArrayList<>();
+
+        private final AtomicInteger transientFailures = new AtomicInteger();
+
+        private volatile MonoProcessor<Void> gate = MonoProcessor.create();
+
+        private volatile String rejected;
+
+        TestLedgerStore() {
+            gate.onComplete();
+        }
+
+        @Override
+        public Mono<Account> load(String account) {
+            return Mono.justOrEmpty(accounts.get(account));
+        }
+
+        @Override
+        public Mono<Void> persist(List<LedgerEntry> entries) {
+            return gate.then(Mono.defer(() -> {
+                if (transientFailures.getAndDecrement() > 0) {
+                    return Mono.error(new DataAccessResourceFailureException("Connection refused"));
+                }
+                if (entries.stream().anyMatch(entry -> entry.getDeltas().containsKey(rejected))) {
+                    return Mono.error(new DataIntegrityViolationException("Check constraint violated"));
+                }
+                persisted.add(new ArrayList<>(entries));
+                return Mono.empty();
+            }));
+        }
+
+        int persistedCount() {
+            return persisted.stream().mapToInt(List::size).sum();
+        }
+    }
+}
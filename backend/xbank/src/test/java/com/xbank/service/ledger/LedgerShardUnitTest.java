@@ -0,0 +1,73 @@
+package com.xbank.service.ledger;
+
+import com.xbank.domain.Account;
+import com.xbank.rest.errors.WithdrawException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link LedgerShard}.
+ */
+public class LedgerShardUnitTest {
+
+    private final LedgerShard shard = new LedgerShard(0);
+
+    @AfterEach
+    public void stop() {
+        shard.dispose();
+    }
+
+    @Test
+    public void assertThatAnOverdraftIsRejected() {
+        shard.load("9800000001", number -> Mono.just(account(number, 10))).block();
+
+        assertThatThrownBy(() -> shard.debit("9800000001", BigDecimal.valueOf(11), WithdrawException::new).block())
+            .isInstanceOf(WithdrawException.class);
+
+        assertThat(shard.debit("9800000001", BigDecimal.TEN, WithdrawException::new).block().getBalance()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    public void assertThatAnAccountIsLoadedOnce() {
+        shard.load("9800000001", number -> Mono.just(account(number, 10))).block();
+        shard.credit("9800000001", BigDecimal.ONE).block();
+
+        Account reloaded = shard.load("9800000001", number -> Mono.just(account(number, 0))).block();
+
+        assertThat(reloaded.getBalance()).isEqualByComparingTo("11");
+        assertThat(shard.credit("9800000002", BigDecimal.ONE).block()).isNull();
+    }
+
+    @Test
+    public void assertThatSnapshotsKeepTheAccountState() {
+        Account loaded = account("9800000001", 10);
+        loaded.setVersion(7L);
+        loaded.setStripes(4);
+        loaded.setInterestRate(250);
+        loaded.setAccruedInterest(12);
+
+        Account snapshot = shard.load("9800000001", number -> Mono.just(loaded)).block();
+
+        assertThat(snapshot).isNotSameAs(loaded);
+        assertThat(snapshot.getVersion()).isEqualTo(7L);
+        assertThat(snapshot.getStripes()).isEqualTo(4);
+        assertThat(snapshot.getInterestRate()).isEqualTo(250);
+        assertThat(snapshot.getAccruedInterest()).isEqualTo(12);
+        assertThat(snapshot.getOwner()).isEqualTo("user-1");
+    }
+
+    static Account account(String number, long balance) {
+        Account account = new Account();
+        account.setAccount(number);
+        account.setOwner("user-1");
+        account.setCurrency("VND");
+        account.setBalance(BigDecimal.valueOf(balance));
+        return account;
+    }
+}
@@ -0,0 +1,157 @@
+package com.xbank.service.wal;
+
+import com.xbank.domain.Transaction;
+import com.xbank.repository.WalCheckpointRepository;
+import com.xbank.service.AccountService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link WalDrainer}.
+ */
+public class WalDrainerUnitTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final WalCheckpointRepository walCheckpointRepository = mock(WalCheckpointRepository.class);
+
+    private final AccountService accountService = mock(AccountService.class);
+
+    private final List<BigDecimal> applied = new CopyOnWriteArrayList<>();
+
+    /**
+     * Checkpoints written by the drainer itself; those handed to the mocked service are never subscribed.
+     */
+    private final List<Long> checkpoints = new CopyOnWriteArrayList<>();
+
+    private WriteAheadLog writeAheadLog;
+
+    private WalDrainer walDrainer;
+
+    @AfterEach
+    public void stop() throws Exception {
+        if (walDrainer != null) {
+            walDrainer.destroy();
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.destroy();
+        }
+    }
+
+    @Test
+    public void assertThatARecordThatCannotBeAppliedIsRecordedAsFailed() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        when(accountService.applyLogged(any(Transaction.class), any())).thenAnswer(invocation -> {
+            Transaction transaction = invocation.getArgument(0);
+            if (transaction.getAmount().intValue() == 1) {
+                attempts.incrementAndGet();
+                return Mono.error(new DataIntegrityViolationException("Check constraint violated"));
+            }
+            applied.add(transaction.getAmount());
+            return Mono.just(Boolean.TRUE);
+        });
+        when(accountService.rejectLogged(any(Transaction.class), anyString(), any())).thenReturn(Mono.empty());
+        start(transaction(1), transaction(2));
+
+        await(() -> applied.size() == 1);
+
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(applied).containsExactly(BigDecimal.valueOf(2));
+        verify(accountService).rejectLogged(any(Transaction.class), anyString(), any());
+        assertThat(meterRegistry.get("xbank.wal.dead-letters").counter().count()).isZero();
+    }
+
+    @Test
+    public void assertThatARecordThatCannotBeRecordedIsDeadLettered() throws Exception {
+        when(accountService.applyLogged(any(Transaction.class), any())).thenAnswer(invocation -> {
+            Transaction transaction = invocation.getArgument(0);
+            if (transaction.getAmount().intValue() == 1) {
+                return Mono.error(new DataIntegrityViolationException("Check constraint violated"));
+            }
+            applied.add(transaction.getAmount());
+            return Mono.just(Boolean.TRUE);
+        });
+        when(accountService.rejectLogged(any(Transaction.class), anyString(), any()))
+            .thenReturn(Mono.error(new DataIntegrityViolationException("Check constraint violated")));
+        start(transaction(1), transaction(2));
+
+        await(() -> applied.size() == 1);
+
+        assertThat(meterRegistry.get("xbank.wal.dead-letters").counter().count()).isEqualTo(1);
+        assertThat(checkpoints).containsExactly(1L);
+    }
+
+    @Test
+    public void assertThatARecordIsRetriedWhileTheDatabaseIsUnavailable() throws Exception {
+        AtomicInteger outages = new AtomicInteger(5);
+        when(accountService.applyLogged(any(Transaction.class), any())).thenAnswer(invocation -> {
+            if (outages.getAndDecrement() > 0) {
+                return Mono.error(new DataAccessResourceFailureException("Connection refused"));
+            }
+            applied.add(((Transaction) invocation.getArgument(0)).getAmount());
+            return Mono.just(Boolean.TRUE);
+        });
+        start(transaction(1));
+
+        await(() -> applied.size() == 1);
+
+        verify(accountService, never()).rejectLogged(any(Transaction.class), anyString(), any());
+    }
+
+    private void start(Transaction... transactions) throws Exception {
+        when(walCheckpointRepository.findSeq("test")).thenReturn(Mono.just(0L));
+        when(walCheckpointRepository.advance(eq("test"), anyLong()))
+            .thenAnswer(invocation -> Mono.fromRunnable(() -> checkpoints.add(invocation.getArgument(1))));
+        writeAheadLog = new WriteAheadLog(meterRegistry, directory.toString(), 1);
+        walDrainer = new WalDrainer(writeAheadLog, walCheckpointRepository, accountService, meterRegistry, "test", 500, 3);
+        walDrainer.afterPropertiesSet();
+        for (Transaction transaction : transactions) {
+            writeAheadLog.append(transaction).block();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("Timed out").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static Transaction transaction(int amount) {
+        Transaction transaction = new Transaction();
+        transaction.setOwner("system");
+        transaction.setAction(3);
+        transaction.setAccount("0000000001");
+        transaction.setAmount(BigDecimal.valueOf(amount));
+        transaction.setCurrency("VND");
+        transaction.setTransactAt(LocalDateTime.now());
+        return transaction;
+    }
+}
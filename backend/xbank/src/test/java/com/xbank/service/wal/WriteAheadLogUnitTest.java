@@ -0,0 +1,85 @@
+package com.xbank.service.wal;
+
+import com.xbank.domain.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link WriteAheadLog}.
+ */
+public class WriteAheadLogUnitTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void assertThatDurableRecordsAreReadBackInOrder() throws Exception {
+        WriteAheadLog writeAheadLog = open(0);
+        for (int i = 1; i <= 3; i++) {
+            assertThat(writeAheadLog.append(transaction(i)).block()).isEqualTo(i);
+        }
+
+        List<WalRecord> records = writeAheadLog.read(2, 10);
+        writeAheadLog.destroy();
+
+        assertThat(records).extracting(WalRecord::getSeq).containsExactly(2L, 3L);
+        assertThat(records.get(0).getTransaction().getAmount()).isEqualByComparingTo("2");
+        assertThat(records.get(0).getTransaction().getAccount()).isEqualTo("0000000001");
+        assertThat(records.get(0).getTransaction().getResult()).isEqualTo(1);
+        assertThat(records.get(0).getTransaction().getError()).isEqualTo("No error");
+    }
+
+    @Test
+    public void assertThatUnappliedRecordsAreReplayedAfterRestart() throws Exception {
+        WriteAheadLog writeAheadLog = open(0);
+        for (int i = 1; i <= 5; i++) {
+            writeAheadLog.append(transaction(i)).block();
+        }
+        writeAheadLog.destroy();
+
+        WriteAheadLog reopened = open(3);
+        List<Long> replayed = reopened.read(4, 10).stream().map(WalRecord::getSeq).collect(Collectors.toList());
+        Long next = reopened.append(transaction(6)).block();
+        reopened.destroy();
+
+        assertThat(replayed).containsExactly(4L, 5L);
+        assertThat(next).isEqualTo(6);
+    }
+
+    @Test
+    public void assertThatNumberingResumesAfterTheCheckpointOnAnEmptyDirectory() throws Exception {
+        WriteAheadLog writeAheadLog = open(41);
+
+        Long seq = writeAheadLog.append(transaction(1)).block();
+        writeAheadLog.destroy();
+
+        assertThat(seq).isEqualTo(42);
+    }
+
+    private WriteAheadLog open(long appliedSeq) throws Exception {
+        WriteAheadLog writeAheadLog = new WriteAheadLog(new SimpleMeterRegistry(), directory.toString(), 1);
+        writeAheadLog.open(appliedSeq);
+        return writeAheadLog;
+    }
+
+    private static Transaction transaction(int amount) {
+        Transaction transaction = new Transaction();
+        transaction.setOwner("system");
+        transaction.setAction(1);
+        transaction.setAccount("0000000001");
+        transaction.setToAccount("0000000002");
+        transaction.setAmount(BigDecimal.valueOf(amount));
+        transaction.setCurrency("VND");
+        transaction.setTransactAt(LocalDateTime.now());
+        return transaction;
+    }
+}
@@ -13,6 +13,7 @@ import { Notification } from 'src/app/models/notification.model';
 export class LayoutComponent {
   currentUser: User;
   notifications: Notification[];
+  unreadCount: number;
 
   constructor(
     private userService: UserService,
@@ -32,6 +33,9 @@ export class LayoutComponent {
     this.notificationService.notifications.subscribe(
       (data) => (this.notifications = data)
     );
+    this.notificationService.unreadCount.subscribe(
+      (count) => (this.unreadCount = count)
+    );
 
     // Connect Websocket server
     this.notificationService.setupWebsocket();
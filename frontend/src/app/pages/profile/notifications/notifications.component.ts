@@ -9,7 +9,8 @@ import { Notification } from 'src/app/models/notification.model';
   styleUrls: ['./notifications.component.css'],
 })
 export class NotificationsComponent implements OnInit {
-  notifications: Notification[];
+  notifications: Notification[] = [];
+  next: string | null = null;
 
   constructor(
     private titleService: Title,
@@ -18,9 +19,15 @@ export class NotificationsComponent implements OnInit {
 
   ngOnInit(): void {
     this.titleService.setTitle('Thông báo');
+    this.loadMore();
+  }
 
-    this.notificationService.getNotifications().subscribe((data) => {
-      this.notifications = data;
-    });
+  loadMore(): void {
+    this.notificationService
+      .getNotifications(this.next)
+      .subscribe(({ notifications, next }) => {
+        this.notifications = this.notifications.concat(notifications);
+        this.next = next;
+      });
   }
 }
@@ -1,13 +1,15 @@
 import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpResponse } from '@angular/common/http';
 import { environment } from 'src/environments/environment';
 import { BehaviorSubject, Observable } from 'rxjs';
-import { tap } from 'rxjs/operators';
+import { map, tap } from 'rxjs/operators';
 import { Notification } from 'src/app/models/notification.model';
+import { UserService } from './user.service';
 
 const NOTIFICATION_API_ENDPOINT: string =
   environment.API_ENDPOINT + '/notifications';
 const WS_ENDPOINT = environment.SOCKET_ENDPOINT;
+const NEXT_CURSOR_HEADER = 'X-Next-Cursor';
 
 @Injectable({
   providedIn: 'root',
@@ -15,15 +17,24 @@ const WS_ENDPOINT = environment.SOCKET_ENDPOINT;
 export class NotificationService {
   private notifications$: BehaviorSubject<Notification[]>;
   public notifications: Observable<Notification[]>;
+  private unreadCount$: BehaviorSubject<number>;
+  public unreadCount: Observable<number>;
 
-  constructor(private http: HttpClient) {
+  constructor(private http: HttpClient, private userService: UserService) {
     this.notifications$ = new BehaviorSubject<Notification[]>([]);
     this.notifications = this.notifications$.asObservable();
+    this.unreadCount$ = new BehaviorSubject<number>(0);
+    this.unreadCount = this.unreadCount$.asObservable();
     this.getNewNotifications().subscribe();
+    this.getUnreadCount().subscribe();
   }
 
   setupWebsocket() {
-    const connection = new WebSocket(WS_ENDPOINT);
+    // Browsers cannot set headers on the handshake, the server reads the token from the query
+    const token = this.userService.currentUserValue?.token;
+    const connection = new WebSocket(
+      WS_ENDPOINT + '?access_token=' + encodeURIComponent(token)
+    );
 
     connection.onmessage = (message) => {
       const newNotifications = this.notifications$.value;
@@ -32,13 +43,14 @@ export class NotificationService {
         read: false,
       });
       this.notifications$.next(newNotifications);
+      this.unreadCount$.next(this.unreadCount$.value + 1);
     };
   }
 
   getNewNotifications(): Observable<Notification[]> {
     return this.http
       .get<Notification[]>(
-        NOTIFICATION_API_ENDPOINT + '?page=1&size=10&sort=id,desc'
+        NOTIFICATION_API_ENDPOINT + '?size=10'
       )
       .pipe(
         tap((notifications) =>
@@ -47,13 +59,37 @@ export class NotificationService {
       );
   }
 
-  getNotifications(): Observable<Notification[]> {
-    return this.http.get<Notification[]>(NOTIFICATION_API_ENDPOINT);
+  getUnreadCount(): Observable<number> {
+    return this.http
+      .get<number>(NOTIFICATION_API_ENDPOINT + '/unread-count')
+      .pipe(tap((count) => this.unreadCount$.next(count)));
+  }
+
+  // A page of notifications, newest first, and the cursor of the next page if there is one
+  getNotifications(
+    after?: string
+  ): Observable<{ notifications: Notification[]; next: string | null }> {
+    const api =
+      NOTIFICATION_API_ENDPOINT +
+      (after ? '?after=' + encodeURIComponent(after) : '');
+    return this.http
+      .get<Notification[]>(api, { observe: 'response' })
+      .pipe(
+        map((response: HttpResponse<Notification[]>) => ({
+          notifications: response.body,
+          next: response.headers.get(NEXT_CURSOR_HEADER),
+        }))
+      );
   }
 
   readAllNotifications() {
     return this.http
       .get<any>(NOTIFICATION_API_ENDPOINT + '/readAll')
-      .pipe(tap(() => this.notifications$.next([])));
+      .pipe(
+        tap(() => {
+          this.notifications$.next([]);
+          this.unreadCount$.next(0);
+        })
+      );
   }
 }